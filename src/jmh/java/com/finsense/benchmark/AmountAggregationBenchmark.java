@@ -0,0 +1,107 @@
+package com.finsense.benchmark;
+
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-currency totals and equality checks over {@code count} payment amounts, the work in-process
+ * aggregation and settlement matching do per row. The {@code minorUnits} methods use {@link Money};
+ * the {@code bigDecimal} methods are the previous representation, a {@link BigDecimal} amount with a
+ * String currency code, kept here as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AmountAggregationBenchmark {
+
+    private static final CurrencyCode[] CURRENCIES = {CurrencyCode.KES, CurrencyCode.UGX, CurrencyCode.TZS};
+    private static final int CURRENCY_COUNT = CurrencyCode.values().length;
+
+    @Param({"10000"})
+    public int count;
+
+    private Money[] amounts;
+    private BigDecimal[] decimalAmounts;
+    private String[] currencyCodes;
+    private long[] statementAmounts; // Hundredths, as SettlementStatement holds them
+
+    @Setup(Level.Trial)
+    public void createAmounts() {
+        amounts = new Money[count];
+        decimalAmounts = new BigDecimal[count];
+        currencyCodes = new String[count];
+        statementAmounts = new long[count];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) {
+            CurrencyCode currency = CURRENCIES[i % CURRENCIES.length];
+            BigDecimal amount = BigDecimal.valueOf(random.nextLong(100, 1000000) * currency.getSubunits(), currency.getScale());
+            amounts[i] = Money.of(amount, currency);
+            // Amounts read from the database come back at the column scale
+            decimalAmounts[i] = amount.setScale(2);
+            currencyCodes[i] = currency.name();
+            statementAmounts[i] = amount.movePointRight(2).longValueExact();
+        }
+    }
+
+    @Benchmark
+    public long[] totalMinorUnits() {
+        long[] totals = new long[CURRENCY_COUNT];
+        for (Money amount : amounts) {
+            totals[amount.getCurrency().ordinal()] += amount.getMinorUnits();
+        }
+        return totals;
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> totalBigDecimal() {
+        Map<String, BigDecimal> totals = new HashMap<>();
+        for (int i = 0; i < decimalAmounts.length; i++) {
+            totals.merge(currencyCodes[i], decimalAmounts[i], BigDecimal::add);
+        }
+        return totals;
+    }
+
+    @Benchmark
+    public int matchMinorUnits() {
+        int matched = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            if (amounts[i].hasValue(statementAmounts[i], 2)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    // The previous SettlementMatcher comparison
+    @Benchmark
+    public int matchBigDecimal() {
+        int matched = 0;
+        for (int i = 0; i < decimalAmounts.length; i++) {
+            if (BigDecimal.valueOf(statementAmounts[i], 2).compareTo(decimalAmounts[i]) == 0) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+}
@@ -0,0 +1,89 @@
+package com.finsense.benchmark;
+
+import com.finsense.Application;
+import com.finsense.model.B2CPaymentRequest;
+import com.finsense.model.BatchPaymentRequest;
+import com.finsense.model.BatchSummary;
+import com.finsense.model.PaymentStatus;
+import com.finsense.service.BatchPaymentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to accept a payroll batch and dispatch every payout to a provider with 1 s latency, using a
+ * 10-connection pool. Payouts per minute = batchSize * 60 / score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 2)
+@Fork(1)
+public class BatchPayoutBenchmark {
+
+    @Param("10000")
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private BatchPaymentService batchPaymentService;
+    private BatchPaymentRequest request;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--finsense.mock.provider-latency-ms=1000",
+                        "--spring.datasource.hikari.maximum-pool-size=10",
+                        "--logging.level.com.finsense=WARN");
+        batchPaymentService = context.getBean(BatchPaymentService.class);
+
+        List<B2CPaymentRequest> payments = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            B2CPaymentRequest payment = new B2CPaymentRequest();
+            payment.setRecipientPhoneNumber("+2547" + (10000000 + i));
+            payment.setAmount(BigDecimal.valueOf(1500));
+            payment.setCurrency("KES");
+            payment.setProvider("MOCK");
+            payment.setDescription("Payroll");
+            payments.add(payment);
+        }
+        request = new BatchPaymentRequest();
+        request.setPayments(payments);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public BatchSummary submitAndDispatch() throws InterruptedException {
+        String batchId = batchPaymentService.submitBatch(request).getBatchId();
+        while (true) {
+            BatchSummary summary = batchPaymentService.getBatchSummary(batchId).get();
+            if (!summary.getStatusCounts().containsKey(PaymentStatus.PENDING)) {
+                return summary;
+            }
+            Thread.sleep(250);
+        }
+    }
+}
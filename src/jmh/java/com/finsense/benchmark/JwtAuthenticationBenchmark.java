@@ -0,0 +1,147 @@
+package com.finsense.benchmark;
+
+import com.finsense.Application;
+import com.finsense.model.B2CPaymentRequest;
+import com.finsense.service.PaymentService;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Authenticated {@code GET /api/v1/payments/{id}/status} requests per second through the full filter chain,
+ * with the verified-token cache on and off. Clients present one of {@code clients} long-lived RS256 tokens
+ * signed by a key set generated for the run and served from a local JWKS file. The status itself comes from
+ * the status cache, so the score is dominated by request handling and token verification.
+ * {@code decodeToken} measures the configured {@link JwtDecoder} on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationBenchmark {
+
+    @Param({"true", "false"})
+    public boolean tokenCache;
+
+    @Param({"100"})
+    public int clients;
+
+    private Path jwksFile;
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private JwtDecoder jwtDecoder;
+    private String transactionId;
+    private String[] tokens;
+    private String[] authorizations;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("benchmark-key").generate();
+        jwksFile = Files.createTempFile("jwks", ".json");
+        Files.write(jwksFile, new JWKSet(key).toString().getBytes(StandardCharsets.UTF_8));
+
+        context = new SpringApplicationBuilder(Application.class)
+                .run("--server.port=0",
+                        "--spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + jwksFile.toUri(),
+                        "--finsense.security.jwt.token-cache-enabled=" + tokenCache,
+                        "--logging.level.com.finsense=WARN",
+                        "--logging.level.org.springframework=WARN");
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .apply(springSecurity())
+                .build();
+        jwtDecoder = context.getBean(JwtDecoder.class);
+
+        B2CPaymentRequest request = new B2CPaymentRequest();
+        request.setRecipientPhoneNumber("+254712345678");
+        request.setAmount(BigDecimal.valueOf(100));
+        request.setCurrency("KES");
+        request.setProvider("MOCK");
+        request.setDescription("Benchmark payment");
+        transactionId = context.getBean(PaymentService.class).initiatePayment(request).getId();
+
+        tokens = new String[clients];
+        authorizations = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            tokens[i] = token(key, "client-" + i);
+            authorizations[i] = "Bearer " + tokens[i];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() throws Exception {
+        context.close();
+        Files.deleteIfExists(jwksFile);
+    }
+
+    @Benchmark
+    public MvcResult getStatusWithBearerToken() throws Exception {
+        String authorization = authorizations[next++ % authorizations.length];
+        MvcResult result = mockMvc.perform(get("/api/v1/payments/{transactionId}/status", transactionId)
+                        .header(HttpHeaders.AUTHORIZATION, authorization))
+                .andReturn();
+        if (result.getResponse().getStatus() != 200) {
+            throw new IllegalStateException("Request failed with status " + result.getResponse().getStatus());
+        }
+        return result;
+    }
+
+    // The decoder alone, without the servlet and security filter overhead
+    @Benchmark
+    public Jwt decodeToken() {
+        return jwtDecoder.decode(tokens[next++ % tokens.length]);
+    }
+
+    private static String token(RSAKey key, String subject) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(subject)
+                .claim("scope", "payment:status")
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plusSeconds(3600)))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
@@ -0,0 +1,88 @@
+package com.finsense.benchmark;
+
+import com.finsense.Application;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.NotificationStatus;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.repository.NotificationOutboxRepository;
+import com.finsense.service.NotificationOutboxService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to deliver a backlog of SMS notifications through the outbox relay against the mock gateway
+ * (300 ms per sendBatch call). Messages per second = backlog / score. The previous five-thread
+ * executor, paying 300 ms per message, needed backlog / 16.7 seconds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 2)
+@Fork(1)
+public class NotificationOutboxBenchmark {
+
+    @Param("10000")
+    private int backlog;
+
+    private ConfigurableApplicationContext context;
+    private NotificationOutboxService notificationOutboxService;
+    private NotificationOutboxRepository notificationOutboxRepository;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--finsense.mock.sms-latency-ms=300",
+                        "--logging.level.com.finsense=WARN");
+        notificationOutboxService = context.getBean(NotificationOutboxService.class);
+        notificationOutboxRepository = context.getBean(NotificationOutboxRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public long enqueueAndDeliver() throws InterruptedException {
+        transactionTemplate.execute(status -> {
+            for (int i = 0; i < backlog; i++) {
+                PaymentTransaction transaction = new PaymentTransaction();
+                transaction.setId("bench-" + i);
+                transaction.setRecipientPhoneNumber("+2547" + (10000000 + i));
+                transaction.setAmount(Money.of(BigDecimal.valueOf(1500), CurrencyCode.KES));
+                notificationOutboxService.enqueue(transaction, PaymentStatus.SUCCESS);
+            }
+            return null;
+        });
+        long pending;
+        while ((pending = notificationOutboxRepository.countByStatus(NotificationStatus.PENDING)) > 0) {
+            Thread.sleep(50);
+        }
+        return pending;
+    }
+}
@@ -0,0 +1,109 @@
+package com.finsense.benchmark;
+
+import com.finsense.config.NotificationProperties;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.NotificationLocale;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.service.notification.NotificationTemplates;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SMS body rendering with the compiled {@link NotificationTemplates} against the {@code String.format}
+ * switch it replaced (kept here as {@link #format}). Run with {@code -prof gc} to compare allocation
+ * per message as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationTemplateBenchmark {
+
+    private NotificationTemplates templates;
+    private PaymentTransaction successful;
+    private PaymentTransaction failed;
+    private PaymentTransaction failedSwahili;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        templates = new NotificationTemplates(new NotificationProperties());
+        successful = transaction("0J3K5V2QD0001", null);
+        failed = transaction("0J3K5V2QD0002", "External API error: Insufficient float");
+        failedSwahili = transaction("0J3K5V2QD0003", "External API error: Insufficient float");
+        failedSwahili.setLocale(NotificationLocale.SW);
+    }
+
+    @Benchmark
+    public String formatSuccessMessage() {
+        return format(successful, PaymentStatus.SUCCESS);
+    }
+
+    @Benchmark
+    public String renderSuccessMessage() {
+        return templates.render(successful, PaymentStatus.SUCCESS);
+    }
+
+    @Benchmark
+    public String formatFailureMessage() {
+        return format(failed, PaymentStatus.FAILED);
+    }
+
+    @Benchmark
+    public String renderFailureMessage() {
+        return templates.render(failed, PaymentStatus.FAILED);
+    }
+
+    @Benchmark
+    public String renderSwahiliFailureMessage() {
+        return templates.render(failedSwahili, PaymentStatus.FAILED);
+    }
+
+    private static PaymentTransaction transaction(String id, String failureReason) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId(id);
+        transaction.setAmount(Money.of(new BigDecimal("1500.00"), CurrencyCode.KES));
+        transaction.setFailureReason(failureReason);
+        return transaction;
+    }
+
+    // The previous NotificationOutboxService.renderMessage, fed the BigDecimal amount it used to get
+    private static String format(PaymentTransaction transaction, PaymentStatus status) {
+        switch (status) {
+            case SUCCESS:
+                return String.format("Your payment of %s %s has been successfully processed. Transaction ID: %s",
+                        transaction.getAmount().toBigDecimal(), transaction.getAmount().getCurrency(), transaction.getId());
+            case FAILED:
+                return String.format("Your payment of %s %s failed. Transaction ID: %s. Reason: %s",
+                        transaction.getAmount().toBigDecimal(), transaction.getAmount().getCurrency(), transaction.getId(),
+                        transaction.getFailureReason() != null ? transaction.getFailureReason() : "Unknown");
+            case PENDING:
+                return String.format("Your payment of %s %s is pending. Transaction ID: %s",
+                        transaction.getAmount().toBigDecimal(), transaction.getAmount().getCurrency(), transaction.getId());
+            case IN_PROGRESS:
+                return String.format("Your payment of %s %s is being processed. Transaction ID: %s",
+                        transaction.getAmount().toBigDecimal(), transaction.getAmount().getCurrency(), transaction.getId());
+            case CANCELLED:
+                return String.format("Your payment of %s %s has been cancelled. Transaction ID: %s",
+                        transaction.getAmount().toBigDecimal(), transaction.getAmount().getCurrency(), transaction.getId());
+            default:
+                return String.format("Update on your payment of %s %s. Transaction ID: %s. Status: %s",
+                        transaction.getAmount().toBigDecimal(), transaction.getAmount().getCurrency(), transaction.getId(), status);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.finsense.benchmark;
+
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.PaymentAggregate;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.ProviderType;
+import com.finsense.service.aggregate.AggregateWindow;
+import com.finsense.service.aggregate.PaymentAggregates;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PaymentAggregates} with a day of history: 4 threads recording transitions while one reads the 1-hour
+ * window ({@code live}), and the 24-hour snapshot on its own. The history is 100 transitions per minute spread
+ * over 3 providers, 3 currencies and every status.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentAggregatesBenchmark {
+
+    private static final ProviderType[] PROVIDERS = {ProviderType.MPESA, ProviderType.AIRTEL_MONEY, ProviderType.MTN_MOMO};
+    private static final CurrencyCode[] CURRENCIES = {CurrencyCode.KES, CurrencyCode.UGX, CurrencyCode.TZS};
+    private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+
+    private PaymentAggregates aggregates;
+
+    @Setup(Level.Trial)
+    public void loadHistory() {
+        aggregates = new PaymentAggregates(System::currentTimeMillis);
+        long now = System.currentTimeMillis();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (long minute = 0; minute < TimeUnit.DAYS.toMinutes(1); minute++) {
+            for (int i = 0; i < 100; i++) {
+                record(random, now - TimeUnit.MINUTES.toMillis(minute) - random.nextInt(60000));
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("live")
+    @GroupThreads(4)
+    public void record() {
+        record(ThreadLocalRandom.current(), System.currentTimeMillis());
+    }
+
+    @Benchmark
+    @Group("live")
+    @GroupThreads(1)
+    public List<PaymentAggregate> snapshotOneHour() {
+        return aggregates.snapshot(AggregateWindow.ONE_HOUR);
+    }
+
+    @Benchmark
+    @Group("day")
+    public List<PaymentAggregate> snapshotOneDay() {
+        return aggregates.snapshot(AggregateWindow.ONE_DAY);
+    }
+
+    private void record(ThreadLocalRandom random, long timeMillis) {
+        CurrencyCode currency = CURRENCIES[random.nextInt(CURRENCIES.length)];
+        PaymentStatus status = STATUSES[random.nextInt(STATUSES.length)];
+        aggregates.record(PROVIDERS[random.nextInt(PROVIDERS.length)], Money.ofMinor(random.nextLong(100, 10000000), currency),
+                status, timeMillis, status == PaymentStatus.PENDING ? -1 : random.nextInt(1, 30000));
+    }
+}
@@ -0,0 +1,102 @@
+package com.finsense.benchmark;
+
+import com.finsense.Application;
+import com.finsense.model.B2CPaymentRequest;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.service.PaymentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The amount-carrying paths, meant to be run with {@code -prof gc} for bytes allocated per operation:
+ * {@code initiatePayment} end to end (amount validation, insert, provider call, status update and the
+ * SMS rendered for it) with an instant mock provider, and {@code sumByCurrency}, a count and total per
+ * currency computed by the database over {@code PRELOADED_ROWS} payments in three currencies. The
+ * notification relay and the reconciler are parked so their background work does not show up in the figures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentAmountBenchmark {
+
+    private static final int PRELOADED_ROWS = 20000;
+    private static final String[] CURRENCIES = {"KES", "UGX", "TZS"};
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    private static final String SUM_BY_CURRENCY = "select t.amount.currency, count(t), sum(t.amount.minorUnits) " +
+            "from PaymentTransaction t where t.createdAt > :after group by t.amount.currency";
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private EntityManager entityManager;
+    private B2CPaymentRequest request;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--finsense.mock.provider-latency-ms=0",
+                        "--finsense.mock.sms-latency-ms=0",
+                        "--finsense.notification.poll-interval-ms=86400000",
+                        "--finsense.reconciliation.interval-ms=86400000",
+                        "--logging.level.com.finsense=WARN");
+        paymentService = context.getBean(PaymentService.class);
+        entityManager = context.getBean(EntityManager.class);
+
+        for (int i = 0; i < PRELOADED_ROWS; i++) {
+            paymentService.initiatePayment(newRequest(BigDecimal.valueOf(100 + i % 5000), CURRENCIES[i % CURRENCIES.length]));
+        }
+        request = newRequest(new BigDecimal("1500.00"), "KES");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public PaymentTransaction initiatePayment() {
+        return paymentService.initiatePayment(request);
+    }
+
+    // A different bound on every call keeps H2 from serving a cached result
+    @Benchmark
+    public List<?> sumByCurrency() {
+        return entityManager.createQuery(SUM_BY_CURRENCY)
+                .setParameter("after", EPOCH.plusNanos(next++))
+                .getResultList();
+    }
+
+    private static B2CPaymentRequest newRequest(BigDecimal amount, String currency) {
+        B2CPaymentRequest request = new B2CPaymentRequest();
+        request.setRecipientPhoneNumber("+254712345678");
+        request.setAmount(amount);
+        request.setCurrency(currency);
+        request.setProvider("MOCK");
+        request.setDescription("Benchmark payment");
+        return request;
+    }
+}
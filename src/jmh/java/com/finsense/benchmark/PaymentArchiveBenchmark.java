@@ -0,0 +1,128 @@
+package com.finsense.benchmark;
+
+import com.finsense.Application;
+import com.finsense.config.ArchiveProperties;
+import com.finsense.model.PaymentStatusView;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.repository.ArchivedPaymentTransactionRepository;
+import com.finsense.repository.PaymentTransactionRepository;
+import com.finsense.service.PaymentArchiver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of recent payments by ID and by provider transaction ID, with {@value #OLD_ROWS} old SUCCESS payments
+ * still in the payment table or moved to the archive by {@link PaymentArchiver}. The database is file-backed with
+ * a small page cache, as in {@link PaymentInsertBenchmark}, so index pages that do not fit are re-read.
+ * {@code archivedStatus} is the fallback lookup of an archived payment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class PaymentArchiveBenchmark {
+
+    private static final int OLD_ROWS = 1000000;
+    private static final int HOT_ROWS = 20000;
+
+    @Param({"false", "true"})
+    private boolean archived;
+
+    private ConfigurableApplicationContext context;
+    private PaymentTransactionRepository repository;
+    private ArchivedPaymentTransactionRepository archiveRepository;
+    private File databaseDirectory;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        databaseDirectory = new File("target/jmh-archive-" + archived);
+        FileSystemUtils.deleteRecursively(databaseDirectory);
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:file:./" + databaseDirectory.getPath() + "/paymentdb;CACHE_SIZE=4096",
+                        "--logging.level.com.finsense=WARN", "--finsense.reconciliation.enabled=false",
+                        "--finsense.aggregates.rebuild-on-startup=false", "--finsense.archive.enabled=false");
+        repository = context.getBean(PaymentTransactionRepository.class);
+        archiveRepository = context.getBean(ArchivedPaymentTransactionRepository.class);
+
+        // Old payments a second apart ending 100 days ago, then the recent ones; IDs are time-ordered like snowflake IDs
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        LocalDateTime oldStart = LocalDateTime.now().minusDays(100).minusSeconds(OLD_ROWS);
+        LocalDateTime hotStart = LocalDateTime.now().minusSeconds(HOT_ROWS);
+        List<Object[]> rows = new ArrayList<>(10000);
+        for (int i = 0; i < OLD_ROWS + HOT_ROWS; i++) {
+            Timestamp time = Timestamp.valueOf(i < OLD_ROWS ? oldStart.plusSeconds(i) : hotStart.plusSeconds(i - OLD_ROWS));
+            rows.add(new Object[]{id(i), "+2547" + (10000000 + i % 50000), 150000L, "KES", "MOCK", "SUCCESS",
+                    "MOCK_" + id(i), time, time});
+            if (rows.size() == 10000) {
+                insert(jdbcTemplate, rows);
+                rows.clear();
+            }
+        }
+
+        if (archived) {
+            ArchiveProperties properties = context.getBean(ArchiveProperties.class);
+            properties.setBatchSize(2000);
+            properties.setMaxBatchesPerRun(Integer.MAX_VALUE);
+            context.getBean(PaymentArchiver.class).archive();
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+        FileSystemUtils.deleteRecursively(databaseDirectory);
+    }
+
+    @Benchmark
+    public Optional<PaymentTransaction> hotById() {
+        return repository.findById(id(OLD_ROWS + ThreadLocalRandom.current().nextInt(HOT_ROWS)));
+    }
+
+    @Benchmark
+    public Optional<PaymentTransaction> hotByProviderTransactionId() {
+        return repository.findByProviderTransactionId("MOCK_" + id(OLD_ROWS + ThreadLocalRandom.current().nextInt(HOT_ROWS)));
+    }
+
+    @Benchmark
+    public Optional<PaymentStatusView> archivedStatus() {
+        return archiveRepository.findStatusById(id(ThreadLocalRandom.current().nextInt(OLD_ROWS)));
+    }
+
+    private static String id(int i) {
+        return String.format("bench-%08d", i);
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("insert into payment_transaction (id, recipient_phone_number, amount_minor, currency, provider, " +
+                "status, provider_transaction_id, created_at, updated_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+}
@@ -0,0 +1,43 @@
+package com.finsense.benchmark;
+
+import com.finsense.util.SnowflakePaymentIdGenerator;
+import com.finsense.util.UuidPaymentIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ID generation throughput with several threads sharing one generator, as the request and dispatch
+ * threads do. UUIDs contend on the shared SecureRandom; the snowflake generator only on one CAS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(4)
+@Fork(1)
+public class PaymentIdGeneratorBenchmark {
+
+    private final UuidPaymentIdGenerator uuid = new UuidPaymentIdGenerator();
+    private final SnowflakePaymentIdGenerator snowflake = new SnowflakePaymentIdGenerator(1, 1704067200000L);
+
+    @Benchmark
+    public String uuid() {
+        return uuid.generate();
+    }
+
+    @Benchmark
+    public String snowflake() {
+        return snowflake.generate();
+    }
+}
@@ -0,0 +1,91 @@
+package com.finsense.benchmark;
+
+import com.finsense.Application;
+import com.finsense.exception.ServiceOverloadedException;
+import com.finsense.model.B2CPaymentRequest;
+import com.finsense.service.PaymentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares how many payments per second the request threads get through with the synchronous
+ * initiate path versus accept-then-dispatch, under the same provider latency and connection pool.
+ * <p>
+ * The synchronous path is capped at roughly {@code min(threads, pool size) / latency} because every
+ * request holds a JDBC connection for the provider round trip. The asynchronous path only holds a
+ * connection for the insert and is capped by {@code dispatch workers / latency}; once the dispatch
+ * stage is full callers back off and retry, so the score reflects sustained end-to-end throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(32)
+public class PaymentInitiationBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--finsense.mock.provider-latency-ms=200",
+                        "--finsense.dispatch.worker-threads=64",
+                        "--finsense.dispatch.queue-capacity=256",
+                        "--spring.datasource.hikari.maximum-pool-size=10",
+                        "--logging.level.com.finsense=WARN");
+        paymentService = context.getBean(PaymentService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object initiateSynchronously() {
+        return paymentService.initiatePayment(newRequest());
+    }
+
+    @Benchmark
+    public Object acceptAndDispatch() {
+        while (true) {
+            try {
+                return paymentService.acceptPayment(newRequest());
+            } catch (ServiceOverloadedException e) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+            }
+        }
+    }
+
+    private static B2CPaymentRequest newRequest() {
+        B2CPaymentRequest request = new B2CPaymentRequest();
+        request.setRecipientPhoneNumber("+254712345678");
+        request.setAmount(BigDecimal.valueOf(100));
+        request.setCurrency("KES");
+        request.setProvider("MOCK");
+        request.setDescription("Benchmark payment");
+        return request;
+    }
+}
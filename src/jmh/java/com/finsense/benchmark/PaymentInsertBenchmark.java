@@ -0,0 +1,86 @@
+package com.finsense.benchmark;
+
+import com.finsense.Application;
+import com.finsense.util.PaymentIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert rate into payment_transaction as the table grows, keyed by each ID strategy. The table lives
+ * in a file-backed H2 database with a small page cache, so index pages touched by random keys must be
+ * re-read while time-ordered keys keep appending to the right-most leaf.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PaymentInsertBenchmark {
+
+    private static final int ROWS_PER_INVOCATION = 1000;
+
+    @Param({"uuid", "snowflake"})
+    private String strategy;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private PaymentIdGenerator paymentIdGenerator;
+    private File databaseDirectory;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        databaseDirectory = new File("target/jmh-insert-" + strategy);
+        FileSystemUtils.deleteRecursively(databaseDirectory);
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--finsense.id.strategy=" + strategy,
+                        "--spring.datasource.url=jdbc:h2:file:./" + databaseDirectory.getPath() + "/paymentdb;CACHE_SIZE=4096",
+                        "--logging.level.com.finsense=WARN");
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        paymentIdGenerator = context.getBean(PaymentIdGenerator.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+        FileSystemUtils.deleteRecursively(databaseDirectory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS_PER_INVOCATION)
+    public int[] insertBatch() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<>(ROWS_PER_INVOCATION);
+        for (int i = 0; i < ROWS_PER_INVOCATION; i++) {
+            rows.add(new Object[]{paymentIdGenerator.generate(), "+254712345678", 150000L, "KES",
+                    "MOCK", "PENDING", now, now});
+        }
+        return jdbcTemplate.batchUpdate("insert into payment_transaction " +
+                "(id, recipient_phone_number, amount_minor, currency, provider, status, created_at, updated_at) " +
+                "values (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+}
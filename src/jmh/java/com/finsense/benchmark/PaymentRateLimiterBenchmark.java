@@ -0,0 +1,106 @@
+package com.finsense.benchmark;
+
+import com.finsense.config.RateLimitProperties;
+import com.finsense.exception.RateLimitExceededException;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.service.ratelimit.PaymentRateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PaymentRateLimiter} with the default rules from application.properties. The recipient checks run
+ * against a simulated clock that moves 100 µs per payment, i.e. 10,000 payments per second. {@code newRecipient}
+ * pays a different number each time, from a pool of 1,000,000, so every check creates an entry in the
+ * 100,000-entry map and evicts one. {@code limitedRecipient} keeps paying one number that is already over its
+ * limit, as a runaway client loop would. {@code client} is the per-client token bucket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentRateLimiterBenchmark {
+
+    private static final int RECIPIENTS = 1000000;
+    private static final long NANOS_PER_PAYMENT = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Money amount = Money.of(new BigDecimal("1500.00"), CurrencyCode.KES);
+    private String[] recipients;
+    private long nanoTime;
+    private int next;
+    private PaymentRateLimiter recipientLimiter;
+    private PaymentRateLimiter clientLimiter;
+
+    @Setup(Level.Trial)
+    public void createLimiters() {
+        recipients = new String[RECIPIENTS];
+        for (int i = 0; i < RECIPIENTS; i++) {
+            recipients[i] = "+2547" + (10000000 + i);
+        }
+        recipientLimiter = new PaymentRateLimiter(defaultProperties(), () -> nanoTime);
+
+        RateLimitProperties clientProperties = defaultProperties();
+        clientProperties.setClientRequestsPerSecond(1e9);
+        clientProperties.setClientBurst(1000000000); // Never refuses, so only the check itself is measured
+        clientLimiter = new PaymentRateLimiter(clientProperties);
+    }
+
+    @Benchmark
+    public int newRecipient() {
+        nanoTime += NANOS_PER_PAYMENT;
+        int recipient = next++ % RECIPIENTS;
+        recipientLimiter.checkRecipient(recipients[recipient], amount);
+        return recipient;
+    }
+
+    @Benchmark
+    public long limitedRecipient() {
+        nanoTime += NANOS_PER_PAYMENT;
+        try {
+            recipientLimiter.checkRecipient("+254799999999", amount);
+            return 0;
+        } catch (RateLimitExceededException e) {
+            return e.getRetryAfterSeconds();
+        }
+    }
+
+    @Benchmark
+    public PaymentRateLimiter client() {
+        clientLimiter.checkClient("dashboard-client");
+        return clientLimiter;
+    }
+
+    // The rules shipped in application.properties
+    private static RateLimitProperties defaultProperties() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getRecipientRules().add(rule(60, 30));
+        properties.getRecipientRules().add(rule(3600, 120));
+        RateLimitProperties.RecipientRule daily = rule(86400, 500);
+        daily.getMaxAmount().put("KES", new BigDecimal("1000000"));
+        daily.getMaxAmount().put("UGX", new BigDecimal("30000000"));
+        daily.getMaxAmount().put("TZS", new BigDecimal("20000000"));
+        properties.getRecipientRules().add(daily);
+        return properties;
+    }
+
+    private static RateLimitProperties.RecipientRule rule(long windowSeconds, int maxCount) {
+        RateLimitProperties.RecipientRule rule = new RateLimitProperties.RecipientRule();
+        rule.setWindowSeconds(windowSeconds);
+        rule.setMaxCount(maxCount);
+        return rule;
+    }
+}
@@ -0,0 +1,96 @@
+package com.finsense.benchmark;
+
+import com.finsense.Application;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.repository.PaymentTransactionRepository;
+import com.finsense.util.PaymentIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-row {@link PaymentTransactionRepository} save and find-by-ID against the in-memory H2
+ * database, each in its own repository transaction as the request paths issue them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentRepositoryBenchmark {
+
+    private static final int PRELOADED_ROWS = 10000;
+
+    private ConfigurableApplicationContext context;
+    private PaymentTransactionRepository repository;
+    private PaymentIdGenerator paymentIdGenerator;
+    private List<String> existingIds;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.com.finsense=WARN");
+        repository = context.getBean(PaymentTransactionRepository.class);
+        paymentIdGenerator = context.getBean(PaymentIdGenerator.class);
+
+        List<PaymentTransaction> preloaded = new ArrayList<>(PRELOADED_ROWS);
+        for (int i = 0; i < PRELOADED_ROWS; i++) {
+            preloaded.add(newTransaction());
+        }
+        repository.saveAll(preloaded);
+        existingIds = new ArrayList<>(PRELOADED_ROWS);
+        preloaded.forEach(transaction -> existingIds.add(transaction.getId()));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public PaymentTransaction save() {
+        return repository.save(newTransaction());
+    }
+
+    @Benchmark
+    public Optional<PaymentTransaction> findById() {
+        return repository.findById(existingIds.get(ThreadLocalRandom.current().nextInt(PRELOADED_ROWS)));
+    }
+
+    private PaymentTransaction newTransaction() {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId(paymentIdGenerator.generate());
+        transaction.setRecipientPhoneNumber("+254712345678");
+        transaction.setAmount(Money.of(new BigDecimal("1500.00"), CurrencyCode.KES));
+        transaction.setProvider("MOCK");
+        transaction.setStatus(PaymentStatus.PENDING);
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(LocalDateTime.now());
+        return transaction;
+    }
+}
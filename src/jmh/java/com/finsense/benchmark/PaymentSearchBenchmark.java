@@ -0,0 +1,136 @@
+package com.finsense.benchmark;
+
+import com.finsense.Application;
+import com.finsense.model.PaymentListItem;
+import com.finsense.model.PaymentSearchCriteria;
+import com.finsense.model.PaymentSearchPage;
+import com.finsense.model.PaymentStatus;
+import com.finsense.service.PaymentSearchService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a 50-row search page {@code depth} rows into {@value #ROWS} payments, fetched with the
+ * keyset cursor of {@link PaymentSearchService} and, for comparison, with OFFSET. Each invocation
+ * starts at a slightly different row so H2 cannot answer from its cached result of the previous query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class PaymentSearchBenchmark {
+
+    private static final int ROWS = 1000000;
+    private static final int PAGE_SIZE = 50;
+    private static final int POSITIONS = 64;
+
+    @Param({"1000", "990000"})
+    private int depth;
+
+    private ConfigurableApplicationContext context;
+    private PaymentSearchService searchService;
+    private EntityManagerFactory entityManagerFactory;
+    private PaymentSearchCriteria noFilter;
+    private String[] cursors;
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.com.finsense=WARN", "--finsense.reconciliation.enabled=false");
+        searchService = context.getBean(PaymentSearchService.class);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+
+        // Row i is created i seconds after start, so the newest-first position of row i is ROWS - 1 - i
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>(10000);
+        for (int i = 0; i < ROWS; i++) {
+            Timestamp createdAt = Timestamp.valueOf(start.plusSeconds(i));
+            rows.add(new Object[]{id(i), "+2547" + (10000000 + i % 50000), 150000L, "KES", "MOCK",
+                    PaymentStatus.values()[i % PaymentStatus.values().length].name(), createdAt, createdAt});
+            if (rows.size() == 10000) {
+                insert(jdbcTemplate, rows);
+                rows.clear();
+            }
+        }
+        jdbcTemplate.execute("ANALYZE");
+
+        noFilter = new PaymentSearchCriteria();
+        // The cursor a client holds after reading the first depth + p rows: the ID and time of the last of them
+        cursors = new String[POSITIONS];
+        for (int p = 0; p < POSITIONS; p++) {
+            int lastRead = ROWS - (depth + p);
+            cursors[p] = cursor(start.plusSeconds(lastRead), id(lastRead));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public PaymentSearchPage keysetPage() {
+        return searchService.search(noFilter, cursors[invocation++ & (POSITIONS - 1)], PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<PaymentListItem> offsetPage() {
+        int offset = depth + (invocation++ & (POSITIONS - 1));
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery("select new com.finsense.model.PaymentListItem(t.id, t.status, " +
+                            "t.recipientPhoneNumber, t.amount, t.provider, t.batchId, t.createdAt, t.updatedAt) " +
+                            "from PaymentTransaction t order by t.createdAt desc, t.id desc", PaymentListItem.class)
+                    .setFirstResult(offset)
+                    .setMaxResults(PAGE_SIZE)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static String id(int i) {
+        return String.format("bench-%08d", i);
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("insert into payment_transaction (id, recipient_phone_number, amount_minor, currency, provider, " +
+                "status, created_at, updated_at) values (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    // Same encoding as the nextCursor returned by PaymentSearchService
+    private static String cursor(LocalDateTime createdAt, String id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt.toString() + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
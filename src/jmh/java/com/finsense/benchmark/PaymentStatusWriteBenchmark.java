@@ -0,0 +1,180 @@
+package com.finsense.benchmark;
+
+import com.finsense.Application;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusEvent;
+import com.finsense.model.PaymentStatusChangedEvent;
+import com.finsense.model.PaymentStatusView;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.repository.PaymentStatusEventRepository;
+import com.finsense.repository.PaymentTransactionRepository;
+import com.finsense.service.PaymentStatusEventLog;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status changes per second on payment_transaction, each committed on its own as a dispatch worker
+ * does:
+ * <ul>
+ * <li>{@code mergeFullRow}: the previous write, {@code save} of a detached copy, which Hibernate turns into
+ * a SELECT plus an UPDATE. No history.</li>
+ * <li>{@code mergeFullRowWithEventInsert}: the same, plus the status event inserted in the same transaction.</li>
+ * <li>{@code targetedUpdateWithEventLog}: the current write, a single guarded UPDATE, with the event inserted
+ * in batches by {@link PaymentStatusEventLog}. The flush is part of every invocation, so its cost is included.</li>
+ * </ul>
+ * <p>
+ * Rows flip between PENDING and IN_PROGRESS on every pass over the table, so any number of iterations can
+ * run against the same {@value #ROWS} rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 10)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PaymentStatusWriteBenchmark {
+
+    private static final int ROWS = 20000;
+    private static final int CHANGES_PER_INVOCATION = 1000;
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private Server databaseServer;
+    private ConfigurableApplicationContext context;
+    private PaymentTransactionRepository repository;
+    private PaymentStatusEventRepository eventRepository;
+    private PaymentStatusEventLog eventLog;
+    private TransactionTemplate transactionTemplate;
+    private PaymentStatus[] statuses;
+    private long[] versions;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws SQLException {
+        // Over TCP, so every statement costs a round trip as it would against a database server
+        databaseServer = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.com.finsense=WARN", "--finsense.reconciliation.enabled=false",
+                        "--finsense.status-events.flush-interval-ms=3600000",
+                        "--spring.datasource.url=jdbc:h2:tcp://localhost:" + databaseServer.getPort()
+                                + "/mem:statusbenchmark;DB_CLOSE_DELAY=-1");
+        repository = context.getBean(PaymentTransactionRepository.class);
+        eventLog = context.getBean(PaymentStatusEventLog.class);
+        eventRepository = context.getBean(PaymentStatusEventRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        Timestamp createdAt = Timestamp.valueOf(CREATED_AT);
+        List<Object[]> rows = new ArrayList<>(ROWS);
+        statuses = new PaymentStatus[ROWS];
+        versions = new long[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{id(i), "+254712345678", 150000L, "KES", "MOCK", PaymentStatus.PENDING.name(), createdAt, createdAt});
+            statuses[i] = PaymentStatus.PENDING;
+        }
+        context.getBean(JdbcTemplate.class).batchUpdate("insert into payment_transaction " +
+                "(id, recipient_phone_number, amount_minor, currency, provider, status, created_at, updated_at) " +
+                "values (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+        databaseServer.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHANGES_PER_INVOCATION)
+    public void mergeFullRow() {
+        for (int n = 0; n < CHANGES_PER_INVOCATION; n++) {
+            PaymentTransaction transaction = nextChange();
+            transactionTemplate.execute(status -> repository.save(transaction));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHANGES_PER_INVOCATION)
+    public void mergeFullRowWithEventInsert() {
+        for (int n = 0; n < CHANGES_PER_INVOCATION; n++) {
+            PaymentTransaction transaction = nextChange();
+            PaymentStatus previous = previousStatus(transaction);
+            transactionTemplate.execute(status -> {
+                repository.save(transaction);
+                return eventRepository.save(PaymentStatusEvent.of(
+                        new PaymentStatusChangedEvent(PaymentStatusView.of(transaction), previous)));
+            });
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHANGES_PER_INVOCATION)
+    public void targetedUpdateWithEventLog() {
+        for (int n = 0; n < CHANGES_PER_INVOCATION; n++) {
+            PaymentTransaction transaction = nextChange();
+            PaymentStatus previous = previousStatus(transaction);
+            transactionTemplate.execute(status -> repository.updateStatus(transaction.getId(), previous,
+                    transaction.getStatus(), transaction.getProviderTransactionId(), null, transaction.getUpdatedAt()));
+            // What the after-commit listener does
+            eventLog.onStatusChanged(new PaymentStatusChangedEvent(PaymentStatusView.of(transaction), previous));
+        }
+        eventLog.flush();
+    }
+
+    // The copy a dispatch worker holds, every column as read when the payment was accepted, moved to the
+    // other status
+    private PaymentTransaction nextChange() {
+        int i = next;
+        next = (next + 1) % ROWS;
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId(id(i));
+        transaction.setRecipientPhoneNumber("+254712345678");
+        transaction.setAmount(Money.of(new BigDecimal("1500.00"), CurrencyCode.KES));
+        transaction.setProvider("MOCK");
+        transaction.setCreatedAt(CREATED_AT);
+        statuses[i] = otherStatus(statuses[i]);
+        transaction.setStatus(statuses[i]);
+        transaction.setVersion(versions[i]++); // Every variant moves the row on by one version
+        transaction.setProviderTransactionId("MOCK_" + i);
+        transaction.setUpdatedAt(LocalDateTime.now());
+        return transaction;
+    }
+
+    private static PaymentStatus previousStatus(PaymentTransaction transaction) {
+        return otherStatus(transaction.getStatus());
+    }
+
+    private static PaymentStatus otherStatus(PaymentStatus status) {
+        return status == PaymentStatus.PENDING ? PaymentStatus.IN_PROGRESS : PaymentStatus.PENDING;
+    }
+
+    private static String id(int i) {
+        return String.format("status-%08d", i);
+    }
+}
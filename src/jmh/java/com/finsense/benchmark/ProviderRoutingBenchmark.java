@@ -0,0 +1,109 @@
+package com.finsense.benchmark;
+
+import com.finsense.config.RoutingProperties;
+import com.finsense.model.ProviderType;
+import com.finsense.service.routing.ProviderRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing lookups per second for a table of {@code routes} prefixes across several country codes, against
+ * recipients of which about one in ten matches no prefix. {@code linearScan} is the straightforward
+ * alternative: test every prefix with {@code startsWith} and keep the longest match.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProviderRoutingBenchmark {
+
+    private static final String[] COUNTRY_CODES = {"254", "255", "256", "250", "233", "234", "260", "265", "237", "225"};
+    private static final ProviderType[] PROVIDERS = {ProviderType.MPESA, ProviderType.AIRTEL_MONEY,
+            ProviderType.TKASH, ProviderType.MTN_MOMO};
+    private static final int RECIPIENTS = 4096;
+
+    @Param({"50", "500"})
+    private int routes;
+
+    private ProviderRouter router;
+    private List<Map.Entry<String, ProviderType>> table;
+    private String[] recipients;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        Map<String, ProviderType> compiled = new LinkedHashMap<>();
+        while (prefixes.size() < routes) {
+            // Operator ranges of two to four digits after the country code
+            StringBuilder prefix = new StringBuilder(COUNTRY_CODES[random.nextInt(COUNTRY_CODES.length)]);
+            prefix.append(7);
+            for (int digits = 1 + random.nextInt(3); digits > 0; digits--) {
+                prefix.append(random.nextInt(10));
+            }
+            ProviderType provider = PROVIDERS[random.nextInt(PROVIDERS.length)];
+            prefixes.put(prefix.toString(), provider.name());
+            compiled.put(prefix.toString(), provider);
+        }
+        RoutingProperties properties = new RoutingProperties();
+        properties.setPrefixes(prefixes);
+        router = new ProviderRouter(properties);
+        table = new ArrayList<>(compiled.entrySet());
+
+        List<String> known = new ArrayList<>(compiled.keySet());
+        recipients = new String[RECIPIENTS];
+        for (int i = 0; i < RECIPIENTS; i++) {
+            StringBuilder msisdn = new StringBuilder("+");
+            msisdn.append(i % 10 == 0 ? "2618" : known.get(random.nextInt(known.size())));
+            while (msisdn.length() < 13) {
+                msisdn.append(random.nextInt(10));
+            }
+            recipients[i] = msisdn.toString();
+        }
+    }
+
+    @Benchmark
+    public ProviderType prefixTrie() {
+        return router.route(nextRecipient());
+    }
+
+    @Benchmark
+    public ProviderType linearScan() {
+        String msisdn = nextRecipient();
+        ProviderType match = null;
+        int longest = 0;
+        for (Map.Entry<String, ProviderType> route : table) {
+            String prefix = route.getKey();
+            if (prefix.length() > longest && msisdn.startsWith(prefix, 1)) {
+                match = route.getValue();
+                longest = prefix.length();
+            }
+        }
+        return match;
+    }
+
+    private String nextRecipient() {
+        next = (next + 1) & (RECIPIENTS - 1);
+        return recipients[next];
+    }
+}
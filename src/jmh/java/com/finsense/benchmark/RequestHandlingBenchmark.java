@@ -0,0 +1,115 @@
+package com.finsense.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.finsense.model.B2CPaymentRequest;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request CPU work outside the database: bean validation of {@link B2CPaymentRequest} (including
+ * the phone number {@code @Pattern}) and Jackson (de)serialization with the same module setup as the
+ * Spring MVC converters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestHandlingBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private B2CPaymentRequest validRequest;
+    private B2CPaymentRequest invalidPhoneRequest;
+    private PaymentTransaction transaction;
+    private ObjectWriter transactionWriter;
+    private ObjectReader requestReader;
+    private byte[] requestJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        validRequest = request("+254712345678");
+        invalidPhoneRequest = request("0712-345-678");
+
+        transaction = new PaymentTransaction();
+        transaction.setId("0J3K5V2QD0001");
+        transaction.setRecipientPhoneNumber("+254712345678");
+        transaction.setAmount(Money.of(new BigDecimal("1500.00"), CurrencyCode.KES));
+        transaction.setProvider("MOCK");
+        transaction.setDescription("Salary");
+        transaction.setStatus(PaymentStatus.IN_PROGRESS);
+        transaction.setProviderTransactionId("MOCK_0J3K5V2QD0003");
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(LocalDateTime.now());
+
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        transactionWriter = objectMapper.writerFor(PaymentTransaction.class);
+        requestReader = objectMapper.readerFor(B2CPaymentRequest.class);
+        requestJson = objectMapper.writeValueAsBytes(validRequest);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<B2CPaymentRequest>> validateValidRequest() {
+        return validator.validate(validRequest);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<B2CPaymentRequest>> validateInvalidPhone() {
+        return validator.validate(invalidPhoneRequest);
+    }
+
+    @Benchmark
+    public byte[] serializeTransaction() throws IOException {
+        return transactionWriter.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public B2CPaymentRequest deserializeRequest() throws IOException {
+        return requestReader.readValue(requestJson);
+    }
+
+    private static B2CPaymentRequest request(String phoneNumber) {
+        B2CPaymentRequest request = new B2CPaymentRequest();
+        request.setRecipientPhoneNumber(phoneNumber);
+        request.setAmount(new BigDecimal("1500.00"));
+        request.setCurrency("KES");
+        request.setProvider("MOCK");
+        request.setDescription("Salary");
+        return request;
+    }
+}
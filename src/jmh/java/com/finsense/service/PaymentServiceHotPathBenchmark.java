@@ -0,0 +1,77 @@
+package com.finsense.service;
+
+import com.finsense.config.RoutingProperties;
+import com.finsense.config.StatusUpdateProperties;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.service.routing.ProviderRegistry;
+import com.finsense.service.routing.ProviderRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Package-private PaymentService hot path: provider lookup. Lives in the service package, like a unit
+ * test would, to reach it without widening its visibility.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentServiceHotPathBenchmark {
+
+    private PaymentService paymentService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Registration order as a multi-provider deployment would have it; the lookup is for the last one,
+        // the worst case for the former linear scan
+        List<MobileMoneyService> providers = new ArrayList<>();
+        for (String provider : new String[]{"MPESA", "AIRTEL_MONEY", "TKASH", "MOCK"}) {
+            providers.add(new StubMobileMoneyService(provider));
+        }
+        paymentService = new PaymentService(null, null, new ProviderRegistry(providers), new ProviderRouter(new RoutingProperties()),
+                null, null, null, null, null, null, new StatusUpdateProperties());
+    }
+
+    @Benchmark
+    public MobileMoneyService findMobileMoneyService() {
+        return paymentService.findMobileMoneyService("mock");
+    }
+
+    private static final class StubMobileMoneyService implements MobileMoneyService {
+        private final String providerType;
+
+        StubMobileMoneyService(String providerType) {
+            this.providerType = providerType;
+        }
+
+        @Override
+        public String initiateB2CPayment(PaymentTransaction transaction) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PaymentTransaction checkPaymentStatus(String providerTransactionId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getProviderType() {
+            return providerType;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.finsense.service.settlement;
+
+import com.finsense.config.SettlementProperties;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.SettlementRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end settlement matching without the database: parse a generated statement of {@code lines}
+ * records, probe the same number of local rows (one in a hundred with a different amount, one in a hundred
+ * missing from the statement) and resolve the unmatched records. The target is under a minute for five
+ * million lines. Single-shot, since every run maps and indexes the whole file again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class SettlementReconciliationBenchmark {
+
+    private static final BigDecimal[] AMOUNTS = new BigDecimal[1000];
+    private static final Money[] LOCAL_AMOUNTS = new Money[AMOUNTS.length];
+
+    static {
+        for (int i = 0; i < AMOUNTS.length; i++) {
+            AMOUNTS[i] = BigDecimal.valueOf(100000 + i * 37L, 2);
+            LOCAL_AMOUNTS[i] = Money.of(AMOUNTS[i], CurrencyCode.KES);
+        }
+    }
+
+    @Param({"5000000"})
+    private int lines;
+
+    private Path statementFile;
+    private SettlementProperties properties;
+    private ExecutorService executor;
+    private int parallelism;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        statementFile = Files.createTempFile("settlement-benchmark", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(statementFile, StandardCharsets.US_ASCII)) {
+            writer.write("provider_transaction_id,amount,currency,fee,status,completed_at\n");
+            for (int i = 0; i < lines; i++) {
+                if (i % 100 == 99) {
+                    continue; // Missing at the provider
+                }
+                BigDecimal amount = i % 100 == 42 ? AMOUNTS[i % AMOUNTS.length].add(BigDecimal.ONE) : AMOUNTS[i % AMOUNTS.length];
+                writer.write(providerTransactionId(i));
+                writer.write(',');
+                writer.write(amount.toPlainString());
+                writer.write(",KES,12.50,COMPLETED,2024-03-01T10:15:30Z\n");
+            }
+        }
+        properties = new SettlementProperties();
+        parallelism = Runtime.getRuntime().availableProcessors();
+        executor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        Files.deleteIfExists(statementFile);
+    }
+
+    @Benchmark
+    public long reconcile() throws IOException, InterruptedException {
+        SettlementStatement statement = new SettlementFileParser(properties, executor, parallelism).parse(statementFile);
+        AtomicLong mismatches = new AtomicLong();
+        SettlementMatcher matcher = new SettlementMatcher(statement, mismatch -> mismatches.incrementAndGet(), true);
+        for (int i = 0; i < lines; i++) {
+            matcher.probe(new SettlementRow("0J3K5V2QD" + i, providerTransactionId(i), LOCAL_AMOUNTS[i % AMOUNTS.length],
+                    PaymentStatus.SUCCESS));
+        }
+        matcher.finish(ids -> Collections.emptyList(), properties.getLookupBatchSize(), executor);
+        return matcher.getMatched() + mismatches.get();
+    }
+
+    private static String providerTransactionId(int i) {
+        return "MPESA_QK" + (100000000 + i);
+    }
+}
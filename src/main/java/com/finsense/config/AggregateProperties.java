@@ -0,0 +1,14 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.aggregates")
+public class AggregateProperties {
+
+    // Replay the last 24 hours of payments into the aggregates once the application has started
+    private boolean rebuildOnStartup = true;
+}
@@ -0,0 +1,24 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.archive")
+public class ArchiveProperties {
+
+    private boolean enabled = true;
+
+    private long intervalMs = 3600000;
+
+    // SUCCESS, FAILED and CANCELLED payments last changed longer ago than this are moved to the archive
+    private long minAgeDays = 90;
+
+    // Rows moved per database transaction, so no run holds its locks for long
+    private int batchSize = 500;
+
+    // Batches per status per run; the next run carries on with what is left
+    private int maxBatchesPerRun = 200;
+}
@@ -0,0 +1,26 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.batch")
+public class BatchProperties {
+
+    private int maxSize = 50000;
+
+    // Payments sent to providers by one worker before their outcomes are written back in one transaction.
+    // Calls within a chunk are sequential, so keep it small enough that a batch spreads over all workers.
+    private int dispatchChunkSize = 25;
+
+    // Concurrent chunks across all batches; sustained rate is roughly parallelism / provider latency
+    private int dispatchParallelism = 200;
+
+    // Chunks waiting for a worker across all batches; batches that do not fit are rejected with 503
+    private int queuedChunks = 2000;
+
+    // Validation errors reported back for a rejected batch
+    private int maxReportedErrors = 100;
+}
@@ -0,0 +1,33 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.callback")
+public class CallbackProperties {
+
+    // Distinct provider transactions waiting to be applied; callbacks beyond this are answered with 503
+    private int queueCapacity = 100000;
+
+    // Updates applied per database transaction
+    private int batchSize = 500;
+
+    private long flushIntervalMs = 100;
+
+    // Failed flushes are retried after initialBackoffMs, doubling up to maxBackoffMs; an update that has been
+    // in maxAttempts failed batches is dropped and logged
+    private int maxAttempts = 5;
+
+    private long initialBackoffMs = 1000;
+
+    private long maxBackoffMs = 60000;
+
+    // HMAC-SHA256 key shared with each provider (by name, e.g. MPESA); callbacks naming any other provider get 401
+    private Map<String, String> secrets = new HashMap<>();
+}
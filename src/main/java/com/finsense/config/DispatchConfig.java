@@ -0,0 +1,24 @@
+package com.finsense.config;
+
+import com.finsense.service.PaymentDispatcher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class DispatchConfig {
+
+    @Bean
+    @Primary
+    public PaymentDispatcher paymentDispatcher(DispatchProperties properties) {
+        return new PaymentDispatcher("payment-dispatch", properties.getWorkerThreads(),
+                properties.getQueueCapacity(), properties.getShutdownTimeoutMs());
+    }
+
+    // Separate pool so a large payout batch cannot starve interactive payments of dispatch workers
+    @Bean
+    public PaymentDispatcher batchDispatcher(BatchProperties properties, DispatchProperties dispatchProperties) {
+        return new PaymentDispatcher("batch-dispatch", properties.getDispatchParallelism(),
+                properties.getQueuedChunks(), dispatchProperties.getShutdownTimeoutMs());
+    }
+}
@@ -0,0 +1,21 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.dispatch")
+public class DispatchProperties {
+
+    // When enabled, POST /initiate persists the PENDING transaction and returns 202 instead of
+    // calling the provider on the request thread.
+    private boolean asyncEnabled = false;
+
+    private int workerThreads = 32;
+
+    private int queueCapacity = 1000;
+
+    private long shutdownTimeoutMs = 30000;
+}
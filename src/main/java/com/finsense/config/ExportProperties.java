@@ -0,0 +1,14 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.export")
+public class ExportProperties {
+
+    private int maxRangeDays = 31;
+    private int bufferSizeBytes = 65536;
+}
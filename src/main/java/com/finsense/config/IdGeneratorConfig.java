@@ -0,0 +1,25 @@
+package com.finsense.config;
+
+import com.finsense.util.PaymentIdGenerator;
+import com.finsense.util.SnowflakePaymentIdGenerator;
+import com.finsense.util.UuidPaymentIdGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Instant;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    public PaymentIdGenerator paymentIdGenerator(IdProperties properties) {
+        switch (properties.getStrategy().toLowerCase()) {
+            case "uuid":
+                return new UuidPaymentIdGenerator();
+            case "snowflake":
+                return new SnowflakePaymentIdGenerator(properties.getNodeId(), Instant.parse(properties.getEpoch()).toEpochMilli());
+            default:
+                throw new IllegalArgumentException("Unknown finsense.id.strategy: " + properties.getStrategy());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.id")
+public class IdProperties {
+
+    // snowflake (time-ordered) or uuid
+    private String strategy = "snowflake";
+
+    // 0-1023, must be unique per running instance
+    private int nodeId = 0;
+
+    // Start of the 41-bit millisecond range (about 69 years); never change it once IDs have been issued
+    private String epoch = "2024-01-01T00:00:00Z";
+}
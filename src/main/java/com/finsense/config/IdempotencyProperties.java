@@ -0,0 +1,23 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.idempotency")
+public class IdempotencyProperties {
+
+    // Keys per Bloom filter generation; two generations are kept, so memory is bounded at about
+    // 2 * 1.2 bytes per expected key at a 1% false-positive rate
+    private long bloomExpectedInsertions = 1000000;
+    private double bloomFalsePositiveRate = 0.01;
+
+    // Recently used key -> transaction/batch ID mappings kept in memory
+    private long cacheMaximumSize = 100000;
+    private long cacheTtlHours = 24;
+
+    // How long a duplicate request waits for the in-flight original before giving up with 503
+    private long inFlightWaitMs = 30000;
+}
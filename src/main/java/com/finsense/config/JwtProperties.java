@@ -0,0 +1,27 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.security.jwt")
+public class JwtProperties {
+
+    // The key set at spring.security.oauth2.resourceserver.jwt.jwk-set-uri is reloaded in the background
+    private long jwkSetRefreshIntervalMs = 300000;
+
+    // A token signed by an unknown key triggers a reload, at most this often
+    private long jwkSetMinRefreshIntervalMs = 30000;
+
+    private int jwkSetConnectTimeoutMs = 2000;
+    private int jwkSetReadTimeoutMs = 3000;
+
+    // Verified tokens, keyed by their SHA-256 hash and evicted when they expire
+    private boolean tokenCacheEnabled = true;
+    private long tokenCacheMaximumSize = 100000;
+
+    // Upper bound on how long a verified token is trusted without checking its signature again
+    private long tokenCacheMaxTtlSeconds = 3600;
+}
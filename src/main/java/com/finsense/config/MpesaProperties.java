@@ -0,0 +1,42 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.mpesa")
+public class MpesaProperties {
+
+    // Registers MpesaB2CService as the MPESA provider
+    private boolean enabled = false;
+
+    private String baseUrl = "https://sandbox.safaricom.co.ke";
+    private String consumerKey;
+    private String consumerSecret;
+
+    // B2C initiator: the paying short code and the API operator with its encrypted password
+    private String shortCode;
+    private String initiatorName;
+    private String securityCredential;
+    private String commandId = "BusinessPayment";
+
+    // Where M-Pesa posts the final result of each request
+    private String resultUrl;
+    private String queueTimeoutUrl;
+
+    // Connection pool: calls in flight are bounded by connections, not threads
+    private int maxConnections = 2000;
+    private int maxConnectionsPerRoute = 1000;
+    private int ioThreads = 2;
+    private long connectTimeoutMs = 5000;
+    private long responseTimeoutMs = 30000;
+    // How long a call may wait for a pooled connection
+    private long connectionRequestTimeoutMs = 10000;
+    // Idle time before a pooled connection is closed, unless the server's Keep-Alive header says otherwise
+    private long keepAliveMs = 30000;
+
+    // The OAuth token is refreshed in the background this long before it expires
+    private long tokenRefreshAheadSeconds = 60;
+}
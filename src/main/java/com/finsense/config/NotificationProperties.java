@@ -0,0 +1,43 @@
+package com.finsense.config;
+
+import com.finsense.model.NotificationLocale;
+import com.finsense.model.PaymentStatus;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.notification")
+public class NotificationProperties {
+
+    private long pollIntervalMs = 200;
+
+    // Messages handed to SmsGateway.sendBatch at once
+    private int batchSize = 100;
+
+    // Concurrent sendBatch calls; at most workerThreads * batchSize messages are held in memory
+    private int workerThreads = 4;
+
+    private int maxAttempts = 8;
+
+    private long initialBackoffMs = 1000;
+
+    private long maxBackoffMs = 300000;
+
+    // How long a claimed row is hidden from other pollers; rows left by a crashed instance reappear after this
+    private long claimTimeoutMs = 60000;
+
+    private long shutdownTimeoutMs = 30000;
+
+    private long sentRetentionHours = 72;
+
+    // For payments submitted without a locale, and for statuses a locale has no template for
+    private NotificationLocale defaultLocale = NotificationLocale.EN;
+
+    // Overrides of the built-in templates by locale and status, e.g. templates.sw.FAILED=...
+    private Map<NotificationLocale, Map<PaymentStatus, String>> templates = new LinkedHashMap<>();
+}
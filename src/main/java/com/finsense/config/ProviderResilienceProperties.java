@@ -0,0 +1,31 @@
+package com.finsense.config;
+
+import lombok.Data;
+
+/**
+ * Settings under {@code finsense.resilience}, applied to every {@code MobileMoneyService}. Bound by
+ * {@link ResilienceConfig} rather than registered as a component, because the post-processor that
+ * uses them is created before regular beans.
+ */
+@Data
+public class ProviderResilienceProperties {
+
+    // Adaptive concurrency limit (AIMD): grows by one while latency stays near the best observed round
+    // trip and is multiplied by backoff-ratio on errors or when latency exceeds latency-tolerance times it
+    private int initialLimit = 200;
+    private int minLimit = 4;
+    private int maxLimit = 500;
+    private double backoffRatio = 0.9;
+    private double latencyTolerance = 2.0;
+    // The best round trip is re-learned after this many samples so a lasting latency shift is accepted
+    private int minRttResetSamples = 1000;
+    // How long a call may wait for a free slot before failing fast
+    private long maxWaitMs = 1000;
+
+    // Circuit breaker over the last sliding-window-size calls
+    private int slidingWindowSize = 20;
+    private int minimumCalls = 10;
+    private int failureRateThreshold = 50;
+    private long openStateMs = 10000;
+    private int halfOpenProbes = 3;
+}
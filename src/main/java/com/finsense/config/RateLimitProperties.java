@@ -0,0 +1,41 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Token bucket per authenticated client: sustained requests per second, and how many may arrive at once
+    private double clientRequestsPerSecond = 50;
+    private int clientBurst = 100;
+    private long maxClients = 10000;
+
+    // Velocity rules per recipient number and currency, all of which must pass
+    private List<RecipientRule> recipientRules = new ArrayList<>();
+    private long maxRecipients = 100000;
+
+    @Data
+    public static class RecipientRule {
+
+        private long windowSeconds;
+
+        // Payments per window; 0 for no limit
+        private int maxCount;
+
+        // Largest total per window by currency code, in major units (KES=500000); currencies not listed are
+        // only counted
+        private Map<String, BigDecimal> maxAmount = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,36 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.reconciliation")
+public class ReconciliationProperties {
+
+    private boolean enabled = true;
+
+    private long intervalMs = 30000;
+
+    // IN_PROGRESS payments younger than this are left to the provider callback
+    private long minAgeSeconds = 60;
+
+    // A payment is re-checked after backoff-factor times its age, clamped to [min, max] interval
+    private double backoffFactor = 0.25;
+    private long minIntervalSeconds = 30;
+    private long maxIntervalSeconds = 1800;
+
+    private int pageSize = 200;
+
+    // Provider calls per run; the scan resumes where it stopped on the next run
+    private int maxChecksPerRun = 2000;
+
+    private int perProviderParallelism = 8;
+
+    private long checkTimeoutMs = 30000;
+
+    // PENDING payments no worker has claimed for this long are dispatched again, e.g. after a crash or a
+    // shutdown that dropped queued dispatches
+    private long pendingRedispatchAfterSeconds = 600;
+}
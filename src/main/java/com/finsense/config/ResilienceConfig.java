@@ -0,0 +1,20 @@
+package com.finsense.config;
+
+import com.finsense.service.resilience.ProviderResilienceRegistry;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+public class ResilienceConfig {
+
+    // Static so the post-processor is registered without instantiating this configuration early
+    @Bean
+    public static ProviderResilienceRegistry providerResilienceRegistry(Environment environment) {
+        ProviderResilienceProperties properties = Binder.get(environment)
+                .bind("finsense.resilience", ProviderResilienceProperties.class)
+                .orElseGet(ProviderResilienceProperties::new);
+        return new ProviderResilienceRegistry(properties);
+    }
+}
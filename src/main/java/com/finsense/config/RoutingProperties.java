@@ -0,0 +1,23 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.routing")
+public class RoutingProperties {
+
+    // E.164 prefix (digits, optional leading +) to provider name; the longest matching prefix wins
+    private Map<String, String> prefixes = new LinkedHashMap<>();
+
+    // Optional properties file of further prefix=PROVIDER routes, overriding the ones above and reloaded
+    // when it changes
+    private String file;
+
+    private long reloadIntervalMs = 10000;
+}
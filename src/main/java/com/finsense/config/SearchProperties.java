@@ -0,0 +1,14 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.search")
+public class SearchProperties {
+
+    private int defaultPageSize = 50;
+    private int maxPageSize = 500;
+}
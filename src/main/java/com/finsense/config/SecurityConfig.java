@@ -1,20 +1,37 @@
 package com.finsense.config;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.finsense.security.CachingJwtDecoder;
+import com.finsense.security.JwkSetCache;
+import com.finsense.security.JwkSetJwtDecoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Clock;
+import java.time.Duration;
 
 @Configuration
 @EnableWebSecurity
-//@EnableGlobalMethodSecurity(prePostEnabled = true)
+@EnableGlobalMethodSecurity(prePostEnabled = true)
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
-	@Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}")
-	private String jwkSetUri;
+	private final JwkSetCache jwkSetCache;
+	private final JwtProperties jwtProperties;
+	private final MeterRegistry meterRegistry;
+
+	@Autowired
+	public SecurityConfig(JwkSetCache jwkSetCache, JwtProperties jwtProperties, MeterRegistry meterRegistry) {
+		this.jwkSetCache = jwkSetCache;
+		this.jwtProperties = jwtProperties;
+		this.meterRegistry = meterRegistry;
+	}
 
 	@Override
 	protected void configure(HttpSecurity http) throws Exception {
@@ -22,15 +39,28 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 				.csrf().disable()
 				.authorizeRequests()
 				.antMatchers("/actuator/**").permitAll()
-				// Temporarily allow all requests without authentication for development
-				.anyRequest().permitAll()
+				// Providers post status callbacks without our tokens; ProviderCallbackController checks their HMAC signature
+				.antMatchers("/api/v1/callbacks/**").permitAll()
+				.anyRequest().authenticated()
 				.and()
-				// OAuth2/JWT configuration temporarily disabled
-				// .oauth2ResourceServer()
-				//     .jwt()
-				//         .jwkSetUri(jwkSetUri)
-				// .and().and()
+				// Scopes in the token become SCOPE_ authorities, checked by @PreAuthorize on the controllers
+				.oauth2ResourceServer()
+					.jwt()
+						.decoder(jwtDecoder())
+				.and().and()
 				.sessionManagement()
 				.sessionCreationPolicy(SessionCreationPolicy.STATELESS);
 	}
-}
\ No newline at end of file
+
+	@Bean
+	public JwtDecoder jwtDecoder() {
+		JwtDecoder decoder = new JwkSetJwtDecoder(jwkSetCache);
+		if (!jwtProperties.isTokenCacheEnabled()) {
+			return decoder;
+		}
+		CachingJwtDecoder cachingDecoder = new CachingJwtDecoder(decoder, jwtProperties.getTokenCacheMaximumSize(),
+				Duration.ofSeconds(jwtProperties.getTokenCacheMaxTtlSeconds()), Clock.systemUTC(), meterRegistry);
+		jwkSetCache.onKeyRemoval(cachingDecoder::invalidateAll);
+		return cachingDecoder;
+	}
+}
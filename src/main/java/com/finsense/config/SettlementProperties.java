@@ -0,0 +1,32 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.settlement")
+public class SettlementProperties {
+
+    // Provider statements are read from here; full mismatch reports are written to report-dir
+    private String inboxDir = "settlements/inbox";
+    private String reportDir = "settlements/reports";
+
+    // Header names of the statement columns that are matched; other columns are ignored
+    private String idColumn = "provider_transaction_id";
+    private String amountColumn = "amount";
+    private String currencyColumn = "currency";
+    private String statusColumn = "status";
+    private char delimiter = ',';
+
+    // Parser threads; 0 uses every available core. Partitions must be a power of two.
+    private int parallelism = 0;
+    private int partitions = 64;
+
+    // Mismatches included in the response; the report file always has all of them
+    private int maxReportedMismatches = 100;
+
+    private int lookupBatchSize = 1000;
+    private int correctionBatchSize = 500;
+}
@@ -0,0 +1,19 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.status-cache")
+public class StatusCacheProperties {
+
+    private long maximumSize = 100000;
+
+    // Bounds staleness of in-flight payments updated by another instance
+    private long activeTtlSeconds = 5;
+
+    // Terminal statuses never change, so they can stay cached much longer
+    private long terminalTtlSeconds = 3600;
+}
@@ -0,0 +1,19 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.status-events")
+public class StatusEventProperties {
+
+    // Committed status changes waiting to be written; when full, the committing thread writes a batch itself
+    private int queueCapacity = 100000;
+
+    // Events inserted per database transaction
+    private int batchSize = 500;
+
+    private long flushIntervalMs = 200;
+}
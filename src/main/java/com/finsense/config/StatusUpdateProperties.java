@@ -0,0 +1,17 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.status-updates")
+public class StatusUpdateProperties {
+
+    // Locks serializing provider status updates per provider transaction within this instance
+    private int lockStripes = 1024;
+
+    // Attempts of a provider status update batch that lost an optimistic version check to another writer
+    private int maxAttempts = 3;
+}
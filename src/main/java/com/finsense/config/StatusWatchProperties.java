@@ -0,0 +1,29 @@
+package com.finsense.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "finsense.status-watch")
+public class StatusWatchProperties {
+
+    private long defaultWaitSeconds = 30;
+
+    private long maxWaitSeconds = 60;
+
+    private long streamTimeoutSeconds = 300;
+
+    // Transaction IDs a single SSE stream may watch
+    private int maxStreamIds = 100;
+
+    // Parked long-polls and stream subscriptions across all clients; beyond this requests get 503
+    private int maxWatchers = 10000;
+
+    // Watched payments are re-read this often to pick up changes committed by other instances; 0 turns it off
+    private long pollIntervalMs = 2000;
+
+    // Threads for those re-reads and for the final read of a timed-out long-poll
+    private int readThreads = 4;
+}
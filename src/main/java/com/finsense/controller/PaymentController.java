@@ -1,19 +1,50 @@
 package com.finsense.controller;
 
+import com.finsense.config.DispatchProperties;
+import com.finsense.exception.InvalidRequestException;
 import com.finsense.exception.PaymentException;
 import com.finsense.model.B2CPaymentRequest;
+import com.finsense.model.BatchPaymentRequest;
+import com.finsense.model.BatchSummary;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.ExportFormat;
+import com.finsense.model.PaymentSearchCriteria;
+import com.finsense.model.PaymentSearchPage;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusEvent;
+import com.finsense.model.PaymentStatusView;
 import com.finsense.model.PaymentTransaction;
+import com.finsense.model.ProviderType;
+import com.finsense.service.BatchPaymentService;
+import com.finsense.service.IdempotencyService;
+import com.finsense.service.IdempotencyService.IdempotentResult;
+import com.finsense.service.PaymentExportService;
+import com.finsense.service.PaymentSearchService;
 import com.finsense.service.PaymentService;
+import com.finsense.service.PaymentStatusEventLog;
+import com.finsense.service.PaymentStatusWatchService;
+import com.finsense.service.metrics.PaymentMetrics;
+import com.finsense.service.ratelimit.PaymentRateLimiter;
+import com.finsense.service.ratelimit.RecipientReservation;
 import javax.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/payments")
@@ -21,35 +52,143 @@ public class PaymentController {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentController.class);
 
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     private final PaymentService paymentService;
+    private final BatchPaymentService batchPaymentService;
+    private final PaymentStatusWatchService statusWatchService;
+    private final PaymentSearchService paymentSearchService;
+    private final PaymentExportService paymentExportService;
+    private final IdempotencyService idempotencyService;
+    private final PaymentStatusEventLog statusEventLog;
+    private final DispatchProperties dispatchProperties;
+    private final PaymentMetrics paymentMetrics;
+    private final PaymentRateLimiter rateLimiter;
 
     @Autowired
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService,
+                             BatchPaymentService batchPaymentService,
+                             PaymentStatusWatchService statusWatchService,
+                             PaymentSearchService paymentSearchService,
+                             PaymentExportService paymentExportService,
+                             IdempotencyService idempotencyService,
+                             PaymentStatusEventLog statusEventLog,
+                             DispatchProperties dispatchProperties,
+                             PaymentMetrics paymentMetrics,
+                             PaymentRateLimiter rateLimiter) {
         this.paymentService = paymentService;
+        this.batchPaymentService = batchPaymentService;
+        this.statusWatchService = statusWatchService;
+        this.paymentSearchService = paymentSearchService;
+        this.paymentExportService = paymentExportService;
+        this.idempotencyService = idempotencyService;
+        this.statusEventLog = statusEventLog;
+        this.dispatchProperties = dispatchProperties;
+        this.paymentMetrics = paymentMetrics;
+        this.rateLimiter = rateLimiter;
     }
 
     @PostMapping("/initiate")
     @PreAuthorize("hasAuthority('SCOPE_payment:initiate')") // Secure this endpoint
-    public ResponseEntity<?> initiatePayment(@Valid @RequestBody B2CPaymentRequest request) {
+    public ResponseEntity<?> initiatePayment(@Valid @RequestBody B2CPaymentRequest request,
+                                             @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                             Principal principal) {
         logger.info("Received payment initiation request for recipient: {}", request.getRecipientPhoneNumber());
+        rateLimiter.checkClient(clientId(principal));
         try {
-            PaymentTransaction transaction = paymentService.initiatePayment(request);
+            boolean async = dispatchProperties.isAsyncEnabled();
+            IdempotentResult<PaymentTransaction> result = idempotencyService.execute("payment", idempotencyKey,
+                    key -> {
+                        // Replays never get here, so they do not count against the recipient
+                        RecipientReservation reservation = rateLimiter.checkRecipient(request.getRecipientPhoneNumber(),
+                                paymentService.amountOf(request));
+                        try {
+                            return async ? paymentService.acceptPayment(request, key) : paymentService.initiatePayment(request, key);
+                        } catch (RuntimeException e) {
+                            // Overloaded, unroutable, refused by the provider or lost the race to a concurrent
+                            // duplicate: nothing was paid, so the retry or replay must not count it again
+                            reservation.release();
+                            throw e;
+                        }
+                    },
+                    paymentService::findPaymentIdByIdempotencyKey,
+                    id -> paymentService.getPayment(id).orElseThrow(() -> new IllegalStateException("Payment " + id + " vanished")),
+                    PaymentTransaction::getId);
+            PaymentTransaction transaction = result.getValue();
+            if (result.isReplayed()) {
+                logger.info("Replaying payment {} for idempotency key {}", transaction.getId(), idempotencyKey);
+                return replay(transaction);
+            }
+            if (async) {
+                logger.info("Payment accepted for asynchronous dispatch with transaction ID: {}", transaction.getId());
+                return new ResponseEntity<>(transaction, HttpStatus.ACCEPTED);
+            }
             logger.info("Payment initiation request processed successfully for transaction ID: {}", transaction.getId());
             return new ResponseEntity<>(transaction, HttpStatus.CREATED);
         } catch (PaymentException e) {
             logger.error("Payment initiation failed", e);
+            paymentMetrics.recordError(e);
             return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST); // Or a more specific error response
-        } catch (Exception e) {
-            logger.error("An unexpected error occurred during payment initiation", e);
-            return new ResponseEntity<>("An internal server error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    @GetMapping("/search")
+    @PreAuthorize("hasAuthority('SCOPE_payment:status')")
+    public ResponseEntity<PaymentSearchPage> searchPayments(@RequestParam(required = false) PaymentStatus status,
+                                                            @RequestParam(required = false) String provider,
+                                                            @RequestParam(required = false) String currency,
+                                                            @RequestParam(required = false) String recipient,
+                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+                                                            @RequestParam(required = false) String cursor,
+                                                            @RequestParam(required = false) Integer limit) {
+        PaymentSearchCriteria criteria = new PaymentSearchCriteria();
+        criteria.setStatus(status);
+        if (provider != null) {
+            ProviderType providerType = ProviderType.fromName(provider);
+            if (providerType == null) {
+                throw new InvalidRequestException("Unsupported mobile money provider: " + provider);
+            }
+            criteria.setProvider(providerType.name());
+        }
+        if (currency != null) {
+            criteria.setCurrency(CurrencyCode.fromCode(currency));
+            if (criteria.getCurrency() == null) {
+                throw new InvalidRequestException("Unsupported currency: " + currency);
+            }
+        }
+        criteria.setRecipientPhoneNumber(recipient);
+        criteria.setCreatedFrom(createdFrom);
+        criteria.setCreatedTo(createdTo);
+        return new ResponseEntity<>(paymentSearchService.search(criteria, cursor, limit), HttpStatus.OK);
+    }
+
+    // The body is written on an MVC async thread after this method returns, one row at a time
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('SCOPE_payment:export')")
+    public ResponseEntity<StreamingResponseBody> exportPayments(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                                @RequestParam(required = false) PaymentStatus status,
+                                                                @RequestParam(defaultValue = "ndjson") String format,
+                                                                @RequestParam(defaultValue = "false") boolean gzip) {
+        ExportFormat exportFormat = ExportFormat.fromParameter(format);
+        paymentExportService.validateRange(from, to);
+        logger.info("Exporting payments created in [{}, {}) with status {} as {}", from, to, status, exportFormat);
+
+        String fileName = "payments-" + from.toLocalDate() + "." + exportFormat.getFileExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> paymentExportService.export(from, to, status, exportFormat, gzip, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+
     @GetMapping("/{transactionId}/status")
     @PreAuthorize("hasAuthority('SCOPE_payment:status')") // Secure this endpoint
     public ResponseEntity<?> getPaymentStatus(@PathVariable String transactionId) {
         logger.info("Received request for payment status for transaction ID: {}", transactionId);
-        Optional<PaymentTransaction> transaction = paymentService.getPaymentStatus(transactionId);
+        Optional<PaymentStatusView> transaction = paymentService.getPaymentStatus(transactionId);
 
         if (transaction.isPresent()) {
             logger.info("Found transaction status for ID {}: {}", transactionId, transaction.get().getStatus());
@@ -60,5 +199,83 @@ public class PaymentController {
         }
     }
 
+    @GetMapping("/{transactionId}/events")
+    @PreAuthorize("hasAuthority('SCOPE_payment:status')")
+    public ResponseEntity<?> getPaymentTimeline(@PathVariable String transactionId) {
+        logger.info("Received request for status timeline of transaction ID: {}", transactionId);
+        List<PaymentStatusEvent> timeline = statusEventLog.getTimeline(transactionId);
+        // Payments created before the event log existed have an empty timeline
+        if (timeline.isEmpty() && !paymentService.getPayment(transactionId).isPresent()) {
+            logger.warn("Payment transaction not found with ID: {}", transactionId);
+            return new ResponseEntity<>("Payment transaction not found.", HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(timeline, HttpStatus.OK);
+    }
+
+    // Long-poll: the request is parked (no servlet thread held) until the status leaves knownStatus or the wait elapses
+    @GetMapping("/{transactionId}/status/await")
+    @PreAuthorize("hasAuthority('SCOPE_payment:status')")
+    public CompletableFuture<ResponseEntity<?>> awaitPaymentStatus(@PathVariable String transactionId,
+                                                                   @RequestParam(required = false) PaymentStatus knownStatus,
+                                                                   @RequestParam(required = false) Long timeoutSeconds) {
+        return statusWatchService.awaitStatusChange(transactionId, knownStatus, timeoutSeconds)
+                .thenApply(transaction -> {
+                    if (transaction.isPresent()) {
+                        return new ResponseEntity<>(transaction.get(), HttpStatus.OK);
+                    }
+                    logger.warn("Payment transaction not found with ID: {}", transactionId);
+                    return new ResponseEntity<>("Payment transaction not found.", HttpStatus.NOT_FOUND);
+                });
+    }
 
-}
\ No newline at end of file
+    @GetMapping(value = "/status/stream", produces = "text/event-stream")
+    @PreAuthorize("hasAuthority('SCOPE_payment:status')")
+    public SseEmitter streamPaymentStatus(@RequestParam List<String> ids) {
+        logger.info("Opening status stream for {} transactions", ids.size());
+        return statusWatchService.streamStatus(ids);
+    }
+
+    @PostMapping("/batch")
+    @PreAuthorize("hasAuthority('SCOPE_payment:initiate')")
+    public ResponseEntity<?> submitBatch(@Valid @RequestBody BatchPaymentRequest request,
+                                         @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                         Principal principal) {
+        logger.info("Received batch payment request with {} payments", request.getPayments().size());
+        rateLimiter.checkClient(clientId(principal), request.getPayments().size());
+        IdempotentResult<BatchSummary> result = idempotencyService.execute("batch", idempotencyKey,
+                key -> batchPaymentService.submitBatch(request, key),
+                batchPaymentService::findBatchIdByIdempotencyKey,
+                id -> batchPaymentService.getBatchSummary(id).orElseThrow(() -> new IllegalStateException("Batch " + id + " vanished")),
+                BatchSummary::getBatchId);
+        BatchSummary summary = result.getValue();
+        if (result.isReplayed()) {
+            logger.info("Replaying batch {} for idempotency key {}", summary.getBatchId(), idempotencyKey);
+            return replay(summary);
+        }
+        logger.info("Batch {} accepted with {} payments", summary.getBatchId(), summary.getTotal());
+        return new ResponseEntity<>(summary, HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping("/batch/{batchId}")
+    @PreAuthorize("hasAuthority('SCOPE_payment:status')")
+    public ResponseEntity<?> getBatchSummary(@PathVariable String batchId) {
+        logger.info("Received request for batch summary for batch ID: {}", batchId);
+        Optional<BatchSummary> summary = batchPaymentService.getBatchSummary(batchId);
+
+        if (summary.isPresent()) {
+            return new ResponseEntity<>(summary.get(), HttpStatus.OK);
+        } else {
+            logger.warn("Payment batch not found with ID: {}", batchId);
+            return new ResponseEntity<>("Payment batch not found.", HttpStatus.NOT_FOUND);
+        }
+    }
+
+    private static ResponseEntity<?> replay(Object body) {
+        return ResponseEntity.ok().header(IDEMPOTENT_REPLAYED_HEADER, "true").body(body);
+    }
+
+    // The token subject; every request to these endpoints is authenticated
+    private static String clientId(Principal principal) {
+        return principal != null ? principal.getName() : "anonymous";
+    }
+}
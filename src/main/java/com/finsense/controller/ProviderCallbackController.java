@@ -0,0 +1,96 @@
+package com.finsense.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finsense.exception.InvalidRequestException;
+import com.finsense.model.ProviderStatusUpdate;
+import com.finsense.model.ProviderType;
+import com.finsense.security.CallbackSignatureVerifier;
+import com.finsense.service.ProviderCallbackQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/v1/callbacks")
+public class ProviderCallbackController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderCallbackController.class);
+
+    private final ProviderCallbackQueue providerCallbackQueue;
+    private final CallbackSignatureVerifier signatureVerifier;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Autowired
+    public ProviderCallbackController(ProviderCallbackQueue providerCallbackQueue, CallbackSignatureVerifier signatureVerifier,
+                                      ObjectMapper objectMapper, Validator validator) {
+        this.providerCallbackQueue = providerCallbackQueue;
+        this.signatureVerifier = signatureVerifier;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    // Accepts a single update object or an array of them and acknowledges once they are queued. The path is
+    // open to providers (no bearer token), so the body is only parsed once its signature checks out.
+    @PostMapping("/status")
+    public ResponseEntity<?> receiveStatusUpdates(@RequestHeader(value = "X-Callback-Provider", required = false) String provider,
+                                                  @RequestHeader(value = "X-Callback-Signature", required = false) String signature,
+                                                  @RequestBody byte[] body) {
+        ProviderType verified = signatureVerifier.verify(provider, signature, body);
+        List<ProviderStatusUpdate> updates = parse(readTree(body));
+        logger.info("Received {} provider status update(s) from {}", updates.size(), verified);
+        providerCallbackQueue.submit(verified, updates);
+        return new ResponseEntity<>(Collections.singletonMap("accepted", updates.size()), HttpStatus.ACCEPTED);
+    }
+
+    private JsonNode readTree(byte[] body) {
+        JsonNode tree;
+        try {
+            tree = objectMapper.readTree(body);
+        } catch (IOException e) {
+            tree = null;
+        }
+        if (tree == null || !(tree.isArray() || tree.isObject())) {
+            throw new InvalidRequestException("Malformed status update payload.");
+        }
+        return tree;
+    }
+
+    private List<ProviderStatusUpdate> parse(JsonNode body) {
+        List<ProviderStatusUpdate> updates = new ArrayList<>(body.isArray() ? body.size() : 1);
+        Iterable<JsonNode> nodes = body.isArray() ? body : Collections.singletonList(body);
+        int index = 0;
+        for (JsonNode node : nodes) {
+            ProviderStatusUpdate update;
+            try {
+                update = objectMapper.treeToValue(node, ProviderStatusUpdate.class);
+            } catch (Exception e) {
+                throw new InvalidRequestException("Malformed status update at index " + index + ".");
+            }
+            Set<ConstraintViolation<ProviderStatusUpdate>> violations = validator.validate(update);
+            if (!violations.isEmpty()) {
+                throw new InvalidRequestException("Invalid status update at index " + index + ": "
+                        + violations.iterator().next().getMessage());
+            }
+            updates.add(update);
+            index++;
+        }
+        return updates;
+    }
+}
@@ -0,0 +1,40 @@
+package com.finsense.controller;
+
+import com.finsense.model.SettlementReconciliationRequest;
+import com.finsense.model.SettlementReport;
+import com.finsense.service.settlement.SettlementReconciliationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+
+@RestController
+@RequestMapping("/api/v1/settlements")
+public class SettlementController {
+
+    private static final Logger logger = LoggerFactory.getLogger(SettlementController.class);
+
+    private final SettlementReconciliationService settlementReconciliationService;
+
+    @Autowired
+    public SettlementController(SettlementReconciliationService settlementReconciliationService) {
+        this.settlementReconciliationService = settlementReconciliationService;
+    }
+
+    // Runs synchronously; a five-million-line statement takes tens of seconds
+    @PostMapping("/reconcile")
+    @PreAuthorize("hasAuthority('SCOPE_payment:reconcile')")
+    public ResponseEntity<SettlementReport> reconcile(@Valid @RequestBody SettlementReconciliationRequest request) {
+        logger.info("Reconciling settlement statement {} for provider {} over [{}, {})", request.getFileName(),
+                request.getProvider(), request.getFrom(), request.getTo());
+        return new ResponseEntity<>(settlementReconciliationService.reconcile(request), HttpStatus.OK);
+    }
+}
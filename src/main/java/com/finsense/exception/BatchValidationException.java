@@ -0,0 +1,17 @@
+package com.finsense.exception;
+
+import java.util.List;
+
+public class BatchValidationException extends InvalidRequestException {
+
+    private final List<String> errors;
+
+    public BatchValidationException(String message, List<String> errors) {
+        super(message);
+        this.errors = errors;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
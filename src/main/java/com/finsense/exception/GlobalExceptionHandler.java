@@ -1,45 +1,104 @@
 package com.finsense.exception;
 
+import com.finsense.service.metrics.PaymentMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
+    private final PaymentMetrics paymentMetrics;
+
+    @Autowired
+    public GlobalExceptionHandler(PaymentMetrics paymentMetrics) {
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    @ExceptionHandler(BatchValidationException.class)
+    public ResponseEntity<Map<String, Object>> handleBatchValidationException(BatchValidationException ex) {
+        paymentMetrics.recordError(ex);
+        logger.error("Invalid batch request: {}", ex.getMessage());
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("message", ex.getMessage());
+        body.put("errors", ex.getErrors());
+        return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(InvalidRequestException.class)
     public ResponseEntity<String> handleInvalidRequestException(InvalidRequestException ex) {
+        paymentMetrics.recordError(ex);
         logger.error("Invalid request: {}", ex.getMessage());
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
     @ExceptionHandler(PaymentException.class)
     public ResponseEntity<String> handlePaymentException(PaymentException ex) {
+        paymentMetrics.recordError(ex);
         logger.error("Payment processing error: {}", ex.getMessage(), ex);
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR); // Consider more specific status codes based on the underlying cause
     }
 
     @ExceptionHandler(ExternalApiException.class)
     public ResponseEntity<String> handleExternalApiException(ExternalApiException ex) {
+        paymentMetrics.recordError(ex);
         logger.error("External API error: {}", ex.getMessage(), ex);
         return new ResponseEntity<>("Error communicating with external service.", HttpStatus.BAD_GATEWAY); // Or SERVICE_UNAVAILABLE
     }
 
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<String> handleServiceOverloadedException(ServiceOverloadedException ex) {
+        paymentMetrics.recordError(ex);
+        logger.warn("Rejected request under load: {}", ex.getMessage());
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<String> handleRateLimitExceededException(RateLimitExceededException ex) {
+        paymentMetrics.recordError(ex);
+        logger.warn("Rate limited: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidSignatureException.class)
+    public ResponseEntity<String> handleInvalidSignatureException(InvalidSignatureException ex) {
+        paymentMetrics.recordError(ex);
+        logger.warn("Rejected callback: {}", ex.getMessage());
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.UNAUTHORIZED);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<String> handleValidationExceptions(MethodArgumentNotValidException ex) {
+        paymentMetrics.recordError(ex);
         String errorMessage = ex.getBindingResult().getFieldError().getDefaultMessage();
         logger.error("Validation error: {}", errorMessage);
         return new ResponseEntity<>(errorMessage, HttpStatus.BAD_REQUEST);
     }
 
+    // Missing scope for a @PreAuthorize method; not a payment error
+    @ExceptionHandler(AccessDeniedException.class)
+    public ResponseEntity<String> handleAccessDeniedException(AccessDeniedException ex) {
+        logger.warn("Access denied: {}", ex.getMessage());
+        return new ResponseEntity<>("Access denied.", HttpStatus.FORBIDDEN);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleGenericException(Exception ex) {
+        paymentMetrics.recordError(ex);
         logger.error("An unexpected error occurred:", ex);
         return new ResponseEntity<>("An internal server error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
     }
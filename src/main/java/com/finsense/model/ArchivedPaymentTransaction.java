@@ -0,0 +1,106 @@
+package com.finsense.model;
+
+import lombok.Data;
+
+import javax.persistence.Column;
+import javax.persistence.Embedded;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * A terminal payment moved out of {@link PaymentTransaction} by {@link com.finsense.service.PaymentArchiver}.
+ * Rows are written once and never updated. {@code archiveMonth} is the partition key: the month the payment
+ * was created in, as {@code yyyymm}.
+ */
+@Entity
+@Table(name = "payment_transaction_archive", indexes = {
+        @Index(name = "idx_archive_month", columnList = "archiveMonth,id"),
+        @Index(name = "idx_archive_provider_tx_id", columnList = "providerTransactionId"),
+        @Index(name = "idx_archive_idempotency_key", columnList = "idempotencyKey"),
+        @Index(name = "idx_archive_batch", columnList = "batchId,batchIndex"),
+        @Index(name = "idx_archive_created", columnList = "createdAt,id")
+})
+@Data
+public class ArchivedPaymentTransaction {
+
+    @Id
+    private String id;
+
+    @Column(nullable = false)
+    private int archiveMonth;
+
+    private String recipientPhoneNumber;
+
+    @Embedded
+    private Money amount;
+
+    private String provider;
+    private String description;
+
+    @Enumerated(EnumType.STRING)
+    private NotificationLocale locale;
+
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus status;
+
+    private String providerTransactionId;
+    private String failureReason;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    private String idempotencyKey;
+    private String batchId;
+    private Integer batchIndex;
+
+    private LocalDateTime archivedAt;
+
+    public static ArchivedPaymentTransaction of(PaymentTransaction transaction, LocalDateTime archivedAt) {
+        ArchivedPaymentTransaction archived = new ArchivedPaymentTransaction();
+        archived.setId(transaction.getId());
+        archived.setArchiveMonth(monthOf(transaction.getCreatedAt()));
+        archived.setRecipientPhoneNumber(transaction.getRecipientPhoneNumber());
+        archived.setAmount(transaction.getAmount());
+        archived.setProvider(transaction.getProvider());
+        archived.setDescription(transaction.getDescription());
+        archived.setLocale(transaction.getLocale());
+        archived.setStatus(transaction.getStatus());
+        archived.setProviderTransactionId(transaction.getProviderTransactionId());
+        archived.setFailureReason(transaction.getFailureReason());
+        archived.setCreatedAt(transaction.getCreatedAt());
+        archived.setUpdatedAt(transaction.getUpdatedAt());
+        archived.setIdempotencyKey(transaction.getIdempotencyKey());
+        archived.setBatchId(transaction.getBatchId());
+        archived.setBatchIndex(transaction.getBatchIndex());
+        archived.setArchivedAt(archivedAt);
+        return archived;
+    }
+
+    // Detached copy for callers that work with payments, e.g. an idempotent replay of an archived payment
+    public PaymentTransaction toTransaction() {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId(id);
+        transaction.setRecipientPhoneNumber(recipientPhoneNumber);
+        transaction.setAmount(amount);
+        transaction.setProvider(provider);
+        transaction.setDescription(description);
+        transaction.setLocale(locale);
+        transaction.setStatus(status);
+        transaction.setProviderTransactionId(providerTransactionId);
+        transaction.setFailureReason(failureReason);
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(updatedAt);
+        transaction.setIdempotencyKey(idempotencyKey);
+        transaction.setBatchId(batchId);
+        transaction.setBatchIndex(batchIndex);
+        return transaction;
+    }
+
+    public static int monthOf(LocalDateTime time) {
+        return time.getYear() * 100 + time.getMonthValue();
+    }
+}
@@ -21,9 +21,11 @@ public class B2CPaymentRequest {
     @NotBlank(message = "Currency is required")
     private String currency; // e.g., KES, USD
 
-    @NotBlank(message = "Mobile money provider is required")
-    private String provider; // e.g., MPESA, AIRTEL_MONEY
+    private String provider; // e.g., MPESA, AIRTEL_MONEY; optional when the recipient's number prefix is routed
 
     private String description;
+
+    @Pattern(regexp = "^(?i)(en|sw)(-[a-z]{2})?$", message = "Unsupported locale")
+    private String locale; // Language of the recipient's SMS notifications, e.g. sw or sw-KE; optional
 }
 
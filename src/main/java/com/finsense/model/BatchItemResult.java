@@ -0,0 +1,16 @@
+package com.finsense.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult {
+
+    private Integer index;
+    private String transactionId;
+    private PaymentStatus status;
+    private String failureReason;
+}
@@ -0,0 +1,14 @@
+package com.finsense.model;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Data
+public class BatchPaymentRequest {
+
+    // Items are validated together by BatchPaymentService so every error is reported in one response
+    @NotEmpty(message = "At least one payment is required")
+    private List<B2CPaymentRequest> payments;
+}
@@ -0,0 +1,16 @@
+package com.finsense.model;
+
+import lombok.Data;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class BatchSummary {
+
+    private String batchId;
+    private long total;
+    private Map<PaymentStatus, Long> statusCounts = new EnumMap<>(PaymentStatus.class);
+    private List<BatchItemResult> items;
+}
@@ -0,0 +1,89 @@
+package com.finsense.model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ISO 4217 currencies payments can be made in, with the number of decimal places of each one's minor unit
+ * (two for KES, none for UGX, three for KWD). Add a constant here to accept a new currency.
+ */
+public enum CurrencyCode {
+    // East Africa
+    KES(404, 2),
+    UGX(800, 0),
+    TZS(834, 2),
+    RWF(646, 0),
+    BIF(108, 0),
+    ETB(230, 2),
+    SOS(706, 2),
+    SSP(728, 2),
+    CDF(976, 2),
+    // Rest of Africa
+    NGN(566, 2),
+    GHS(936, 2),
+    XOF(952, 0),
+    XAF(950, 0),
+    ZAR(710, 2),
+    ZMW(967, 2),
+    MWK(454, 2),
+    MZN(943, 2),
+    BWP(72, 2),
+    EGP(818, 2),
+    MAD(504, 2),
+    // Remittance corridors
+    USD(840, 2),
+    EUR(978, 2),
+    GBP(826, 2),
+    AED(784, 2),
+    SAR(682, 2),
+    KWD(414, 3),
+    BHD(48, 3),
+    OMR(512, 3),
+    INR(356, 2),
+    CNY(156, 2),
+    JPY(392, 0);
+
+    private static final Map<String, CurrencyCode> BY_CODE = new HashMap<>();
+
+    static {
+        for (CurrencyCode currency : values()) {
+            BY_CODE.put(currency.name(), currency);
+        }
+    }
+
+    private final int numericCode;
+    private final int scale;
+    private final long subunits;
+
+    CurrencyCode(int numericCode, int scale) {
+        this.numericCode = numericCode;
+        this.scale = scale;
+        long subunits = 1;
+        for (int i = 0; i < scale; i++) {
+            subunits *= 10;
+        }
+        this.subunits = subunits;
+    }
+
+    public int getNumericCode() {
+        return numericCode;
+    }
+
+    // Decimal places of the minor unit
+    public int getScale() {
+        return scale;
+    }
+
+    // Minor units per major unit: 100 for KES, 1 for UGX
+    public long getSubunits() {
+        return subunits;
+    }
+
+    /**
+     * Currency for an alphabetic code such as {@code KES} (case-insensitive), or null if it is not supported.
+     */
+    public static CurrencyCode fromCode(String code) {
+        return code == null ? null : BY_CODE.get(code.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,26 @@
+package com.finsense.model;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+// Stores the alphabetic ISO 4217 code, the value the currency column has always held
+@Converter
+public class CurrencyCodeConverter implements AttributeConverter<CurrencyCode, String> {
+
+    @Override
+    public String convertToDatabaseColumn(CurrencyCode currency) {
+        return currency != null ? currency.name() : null;
+    }
+
+    @Override
+    public CurrencyCode convertToEntityAttribute(String code) {
+        if (code == null) {
+            return null;
+        }
+        CurrencyCode currency = CurrencyCode.fromCode(code);
+        if (currency == null) {
+            throw new IllegalArgumentException("Unsupported currency code in database: " + code);
+        }
+        return currency;
+    }
+}
@@ -0,0 +1,175 @@
+package com.finsense.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * An amount as a whole number of its currency's minor units, so comparing, adding and storing amounts
+ * never allocates. {@link BigDecimal} only appears at the edges: request amounts and reports.
+ * <p>
+ * Embedded as the {@code amount_minor} and {@code currency} columns. Owners unwrap it in JSON, which
+ * keeps the {@code "amount": 1500.00, "currency": "KES"} shape of the API.
+ */
+@Embeddable
+@JsonSerialize(using = MoneyJsonSerializer.class)
+@JsonDeserialize(using = MoneyJsonDeserializer.class)
+public final class Money implements Comparable<Money>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Sign, 19 digits and the decimal point
+    public static final int MAX_PLAIN_LENGTH = 21;
+
+    @Column(name = "amount_minor", nullable = false)
+    private long minorUnits;
+
+    @Convert(converter = CurrencyCodeConverter.class)
+    @Column(length = 3, nullable = false)
+    private CurrencyCode currency;
+
+    // For JPA
+    private Money() {
+    }
+
+    private Money(long minorUnits, CurrencyCode currency) {
+        this.minorUnits = minorUnits;
+        this.currency = Objects.requireNonNull(currency, "currency");
+    }
+
+    public static Money ofMinor(long minorUnits, CurrencyCode currency) {
+        return new Money(minorUnits, currency);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the amount has more decimal places than the currency's minor unit,
+     *                                  or does not fit in a long of minor units
+     */
+    public static Money of(BigDecimal amount, CurrencyCode currency) {
+        BigDecimal minor = amount.movePointRight(currency.getScale());
+        if (minor.signum() != 0 && minor.stripTrailingZeros().scale() > 0) {
+            throw new IllegalArgumentException(currency.getScale() == 0
+                    ? currency + " amounts cannot have decimal places"
+                    : currency + " amounts have at most " + currency.getScale() + " decimal places");
+        }
+        try {
+            return new Money(minor.longValueExact(), currency);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount is out of range");
+        }
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public CurrencyCode getCurrency() {
+        return currency;
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    // No minor units, e.g. KES 1500.00 but not KES 1500.50
+    public boolean isWhole() {
+        return minorUnits % currency.getSubunits() == 0;
+    }
+
+    public Money plus(Money other) {
+        if (other.currency != currency) {
+            throw new IllegalArgumentException("Cannot add " + other.currency + " to " + currency);
+        }
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    /**
+     * Whether this amount equals {@code unscaledValue × 10^-scale}, e.g. {@code (150000, 2)} for 1500.00,
+     * compared without allocating.
+     */
+    public boolean hasValue(long unscaledValue, int scale) {
+        int shift = scale - currency.getScale();
+        long value = shift >= 0 ? minorUnits : unscaledValue;
+        long other = shift >= 0 ? unscaledValue : minorUnits;
+        for (int i = Math.abs(shift); i > 0; i--) {
+            if (Math.abs(value) > Long.MAX_VALUE / 10) {
+                return false;
+            }
+            value *= 10;
+        }
+        return value == other;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, currency.getScale());
+    }
+
+    // 1500.00 for KES 150000 minor units, 15000 for UGX 15000
+    public String toPlainString() {
+        char[] buffer = new char[MAX_PLAIN_LENGTH];
+        return new String(buffer, 0, writePlain(buffer));
+    }
+
+    /**
+     * Writes {@link #toPlainString()} into {@code buffer}, which must hold {@link #MAX_PLAIN_LENGTH} chars,
+     * and returns the number of chars written.
+     */
+    public int writePlain(char[] buffer) {
+        long unit = currency.getSubunits();
+        long whole = Math.abs(minorUnits / unit);
+        long fraction = Math.abs(minorUnits % unit);
+        int end = MAX_PLAIN_LENGTH;
+        for (int i = 0; i < currency.getScale(); i++) {
+            buffer[--end] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        if (currency.getScale() > 0) {
+            buffer[--end] = '.';
+        }
+        do {
+            buffer[--end] = (char) ('0' + whole % 10);
+            whole /= 10;
+        } while (whole > 0);
+        if (minorUnits < 0) {
+            buffer[--end] = '-';
+        }
+        int length = MAX_PLAIN_LENGTH - end;
+        System.arraycopy(buffer, end, buffer, 0, length);
+        return length;
+    }
+
+    // Amounts in different currencies are ordered by currency first
+    @Override
+    public int compareTo(Money other) {
+        int byCurrency = currency.compareTo(other.currency);
+        return byCurrency != 0 ? byCurrency : Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money other = (Money) o;
+        return minorUnits == other.minorUnits && currency == other.currency;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return currency + " " + toPlainString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.finsense.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.util.NameTransformer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Reads the {@code amount} and {@code currency} fields written by {@link MoneyJsonSerializer}. Unwrapped
+ * owners hand over an object holding all of their unmapped fields, so anything else is skipped.
+ */
+public class MoneyJsonDeserializer extends StdDeserializer<Money> {
+
+    private final NameTransformer unwrapper; // Null when read from an object of its own
+
+    public MoneyJsonDeserializer() {
+        this(null);
+    }
+
+    private MoneyJsonDeserializer(NameTransformer unwrapper) {
+        super(Money.class);
+        this.unwrapper = unwrapper;
+    }
+
+    // Must be a new instance: that is what tells the owner's deserializer to buffer its fields for this one
+    @Override
+    public JsonDeserializer<Money> unwrappingDeserializer(NameTransformer unwrapper) {
+        return new MoneyJsonDeserializer(unwrapper);
+    }
+
+    @Override
+    public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = p.nextToken();
+        }
+        BigDecimal amount = null;
+        String code = null;
+        for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+            String field = p.getCurrentName();
+            token = p.nextToken();
+            if (name("amount").equals(field) && token != JsonToken.VALUE_NULL) {
+                amount = token == JsonToken.VALUE_STRING ? new BigDecimal(p.getText().trim()) : p.getDecimalValue();
+            } else if (name("currency").equals(field) && token != JsonToken.VALUE_NULL) {
+                code = p.getValueAsString();
+            } else {
+                p.skipChildren();
+            }
+        }
+        if (amount == null && code == null) {
+            return null;
+        }
+        if (amount == null || code == null) {
+            return (Money) ctxt.handleUnexpectedToken(Money.class, p.getCurrentToken(), p,
+                    "Money needs both an amount and a currency");
+        }
+        CurrencyCode currency = CurrencyCode.fromCode(code);
+        if (currency == null) {
+            return (Money) ctxt.handleWeirdStringValue(Money.class, code, "Unsupported currency");
+        }
+        try {
+            return Money.of(amount, currency);
+        } catch (IllegalArgumentException e) {
+            return (Money) ctxt.handleWeirdNumberValue(Money.class, amount, e.getMessage());
+        }
+    }
+
+    private String name(String field) {
+        return unwrapper != null ? unwrapper.transform(field) : field;
+    }
+}
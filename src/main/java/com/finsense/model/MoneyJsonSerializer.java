@@ -0,0 +1,59 @@
+package com.finsense.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.NameTransformer;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link Money} as {@code {"amount": 1500.00, "currency": "KES"}}, or just the two fields when the
+ * owning property is {@code @JsonUnwrapped}. The amount is written as a number straight from the minor
+ * units, without a {@link java.math.BigDecimal} or an intermediate string.
+ */
+public class MoneyJsonSerializer extends StdSerializer<Money> {
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[Money.MAX_PLAIN_LENGTH]);
+
+    private final NameTransformer unwrapper; // Null when written as an object of its own
+
+    public MoneyJsonSerializer() {
+        this(null);
+    }
+
+    private MoneyJsonSerializer(NameTransformer unwrapper) {
+        super(Money.class);
+        this.unwrapper = unwrapper;
+    }
+
+    @Override
+    public void serialize(Money value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        if (unwrapper == null) {
+            gen.writeStartObject(value);
+        }
+        gen.writeFieldName(name("amount"));
+        char[] buffer = BUFFER.get();
+        gen.writeRawValue(buffer, 0, value.writePlain(buffer));
+        gen.writeFieldName(name("currency"));
+        gen.writeString(value.getCurrency().name());
+        if (unwrapper == null) {
+            gen.writeEndObject();
+        }
+    }
+
+    @Override
+    public boolean isUnwrappingSerializer() {
+        return unwrapper != null;
+    }
+
+    @Override
+    public JsonSerializer<Money> unwrappingSerializer(NameTransformer unwrapper) {
+        return new MoneyJsonSerializer(unwrapper);
+    }
+
+    private String name(String field) {
+        return unwrapper != null ? unwrapper.transform(field) : field;
+    }
+}
@@ -0,0 +1,37 @@
+package com.finsense.model;
+
+/**
+ * Language of the SMS notifications sent to a recipient.
+ */
+public enum NotificationLocale {
+    EN("Unknown"),
+    SW("Haijulikani");
+
+    // Stands in for a missing failure reason
+    private final String unknownReason;
+
+    NotificationLocale(String unknownReason) {
+        this.unknownReason = unknownReason;
+    }
+
+    public String getUnknownReason() {
+        return unknownReason;
+    }
+
+    /**
+     * Locale for a language tag such as {@code sw} or {@code sw-KE}, or null if there is none for it.
+     */
+    public static NotificationLocale fromTag(String tag) {
+        if (tag == null) {
+            return null;
+        }
+        int separator = tag.indexOf('-');
+        String language = separator < 0 ? tag : tag.substring(0, separator);
+        for (NotificationLocale locale : values()) {
+            if (locale.name().equalsIgnoreCase(language)) {
+                return locale;
+            }
+        }
+        return null;
+    }
+}
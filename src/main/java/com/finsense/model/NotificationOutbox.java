@@ -0,0 +1,47 @@
+package com.finsense.model;
+
+import lombok.Data;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * SMS notification written in the same transaction as the status change it reports, and delivered
+ * later by {@link com.finsense.service.NotificationRelay}. The message is rendered at write time so
+ * delivery never reads the payment back.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_notification_outbox_due", columnList = "status,nextAttemptAt"))
+@Data
+public class NotificationOutbox {
+
+    // Sequence with a large allocation size so Hibernate can batch the inserts
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_outbox_seq")
+    @SequenceGenerator(name = "notification_outbox_seq", allocationSize = 100)
+    private Long id;
+
+    private String transactionId;
+    private String recipientPhoneNumber;
+
+    @Column(length = 500)
+    private String message;
+
+    @Enumerated(EnumType.STRING)
+    private NotificationStatus status;
+
+    private int attempts;
+    private LocalDateTime nextAttemptAt; // Also pushed forward while a relay worker holds the row
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,7 @@
+package com.finsense.model;
+
+public enum NotificationStatus {
+    PENDING,
+    SENT,
+    FAILED // Gave up after the maximum number of attempts
+}
@@ -0,0 +1,24 @@
+package com.finsense.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.Value;
+
+/**
+ * Payments of one provider and currency that reached {@code status} within a window. Latencies are measured from
+ * creation to the status, and are absent for {@code PENDING}, which is where payments start.
+ */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PaymentAggregate {
+
+    private ProviderType provider;
+    private PaymentStatus status;
+    private long count;
+    @JsonUnwrapped
+    private Money amount; // Total of the payments counted
+    private Long latencyP50Ms;
+    private Long latencyP95Ms;
+    private Long latencyP99Ms;
+    private Long latencyMaxMs;
+}
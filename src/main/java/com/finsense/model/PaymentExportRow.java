@@ -0,0 +1,24 @@
+package com.finsense.model;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+// One exported payment, selected as a projection so streamed rows never enter the persistence context
+@Value
+public class PaymentExportRow {
+
+    private String id;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private PaymentStatus status;
+    private String recipientPhoneNumber;
+    @JsonUnwrapped
+    private Money amount;
+    private String provider;
+    private String providerTransactionId;
+    private String batchId;
+    private String failureReason;
+    private String description;
+}
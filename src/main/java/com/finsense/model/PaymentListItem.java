@@ -0,0 +1,21 @@
+package com.finsense.model;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+// Row of a payment search page, selected directly by the query rather than loaded as an entity
+@Value
+public class PaymentListItem {
+
+    private String id;
+    private PaymentStatus status;
+    private String recipientPhoneNumber;
+    @JsonUnwrapped
+    private Money amount;
+    private String provider;
+    private String batchId;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
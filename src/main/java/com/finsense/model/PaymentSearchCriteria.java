@@ -0,0 +1,17 @@
+package com.finsense.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Filters of GET /api/v1/payments/search; every field is optional
+@Data
+public class PaymentSearchCriteria {
+
+    private PaymentStatus status;
+    private String provider;
+    private CurrencyCode currency;
+    private String recipientPhoneNumber;
+    private LocalDateTime createdFrom; // Inclusive
+    private LocalDateTime createdTo; // Exclusive
+}
@@ -0,0 +1,12 @@
+package com.finsense.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class PaymentSearchPage {
+
+    private List<PaymentListItem> items;
+    private String nextCursor; // Pass back as ?cursor= for the next page; null on the last page
+}
@@ -5,5 +5,22 @@ public enum PaymentStatus {
     SUCCESS,
     FAILED,
     IN_PROGRESS,
-    CANCELLED
+    CANCELLED;
+
+    public boolean isTerminal() {
+        return this == SUCCESS || this == FAILED || this == CANCELLED;
+    }
+
+    // Status only moves forward: PENDING -> IN_PROGRESS -> SUCCESS/FAILED/CANCELLED, and a terminal
+    // status is final. Re-applying the current status is not a transition.
+    public boolean canTransitionTo(PaymentStatus next) {
+        switch (this) {
+            case PENDING:
+                return next != PENDING;
+            case IN_PROGRESS:
+                return next.isTerminal();
+            default:
+                return false;
+        }
+    }
 }
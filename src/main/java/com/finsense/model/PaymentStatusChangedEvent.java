@@ -0,0 +1,11 @@
+package com.finsense.model;
+
+import lombok.Value;
+
+// Published by the payment write paths for every new transaction and status change
+@Value
+public class PaymentStatusChangedEvent {
+
+    private PaymentStatusView transaction;
+    private PaymentStatus previousStatus; // null when the transaction was just created
+}
@@ -0,0 +1,55 @@
+package com.finsense.model;
+
+import lombok.Data;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Append-only record of one payment status change. Rows are never updated; {@link PaymentTransaction}
+ * holds the current state and this table the history, written behind by
+ * {@link com.finsense.service.PaymentStatusEventLog}.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_status_event_transaction", columnList = "transactionId,occurredAt,id"))
+@Data
+public class PaymentStatusEvent {
+
+    // Sequence with a large allocation size so Hibernate can batch the inserts
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_status_event_seq")
+    @SequenceGenerator(name = "payment_status_event_seq", allocationSize = 500)
+    private Long id;
+
+    private String transactionId;
+
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus previousStatus; // Null for the event that created the payment
+
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus status;
+
+    private String providerTransactionId;
+    private String failureReason;
+    private LocalDateTime occurredAt;
+
+    public static PaymentStatusEvent of(PaymentStatusChangedEvent change) {
+        PaymentStatusView transaction = change.getTransaction();
+        PaymentStatusEvent event = new PaymentStatusEvent();
+        event.setTransactionId(transaction.getId());
+        event.setPreviousStatus(change.getPreviousStatus());
+        event.setStatus(transaction.getStatus());
+        event.setProviderTransactionId(transaction.getProviderTransactionId());
+        event.setFailureReason(transaction.getFailureReason());
+        event.setOccurredAt(transaction.getUpdatedAt());
+        return event;
+    }
+}
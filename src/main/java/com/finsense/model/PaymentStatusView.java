@@ -0,0 +1,30 @@
+package com.finsense.model;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+// Immutable status projection served by GET /{transactionId}/status and held by PaymentStatusCache. Carries
+// every field that endpoint returned when it served the entity, so clients see the same response
+@Value
+public class PaymentStatusView {
+
+    private String id;
+    private String recipientPhoneNumber;
+    private PaymentStatus status;
+    @JsonUnwrapped
+    private Money amount;
+    private String provider;
+    private String description;
+    private String providerTransactionId;
+    private String failureReason;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public static PaymentStatusView of(PaymentTransaction transaction) {
+        return new PaymentStatusView(transaction.getId(), transaction.getRecipientPhoneNumber(), transaction.getStatus(),
+                transaction.getAmount(), transaction.getProvider(), transaction.getDescription(), transaction.getProviderTransactionId(),
+                transaction.getFailureReason(), transaction.getCreatedAt(), transaction.getUpdatedAt());
+    }
+}
@@ -1,27 +1,53 @@
 package com.finsense.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
 import lombok.Data;
+import org.hibernate.annotations.DynamicUpdate;
 
+import javax.persistence.Column;
+import javax.persistence.Embedded;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.Id;
-import java.math.BigDecimal;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_payment_batch_id", columnList = "batchId"),
+        @Index(name = "idx_payment_provider_tx_id", columnList = "providerTransactionId"),
+        @Index(name = "idx_payment_status_updated", columnList = "status,updatedAt,id"),
+        // Search: newest-first keyset pages, alone or under one equality filter
+        @Index(name = "idx_payment_created", columnList = "createdAt DESC,id DESC"),
+        @Index(name = "idx_payment_status_created", columnList = "status,createdAt DESC,id DESC"),
+        @Index(name = "idx_payment_provider_created", columnList = "provider,createdAt DESC,id DESC"),
+        @Index(name = "idx_payment_currency_created", columnList = "currency,createdAt DESC,id DESC"),
+        @Index(name = "idx_payment_recipient_created", columnList = "recipientPhoneNumber,createdAt DESC,id DESC")
+}, uniqueConstraints = @UniqueConstraint(name = "uk_payment_idempotency_key", columnNames = "idempotencyKey"))
 @Data
+@DynamicUpdate // Status changes rewrite only the columns that changed
 public class PaymentTransaction {
 
     @Id
     private String id;
 
     private String recipientPhoneNumber;
-    private BigDecimal amount;
-    private String currency;
+
+    @Embedded
+    @JsonUnwrapped // The "amount" and "currency" fields
+    private Money amount;
+
     private String provider;
     private String description;
 
+    @Enumerated(EnumType.STRING)
+    private NotificationLocale locale; // Language of the recipient's SMS; the configured default when null
+
     @Enumerated(EnumType.STRING)
     private PaymentStatus status;
 
@@ -29,4 +55,22 @@ public class PaymentTransaction {
     private String failureReason;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+
+    private String batchId; // Set for payments submitted through the batch API
+    private Integer batchIndex; // Position of the payment in the submitted batch
+
+    private LocalDateTime lastReconciledAt; // Last time PaymentReconciler asked the provider for the status
+
+    @JsonIgnore
+    private LocalDateTime dispatchedAt; // Set when a worker claims the payment for its provider call
+
+    @JsonIgnore
+    private String idempotencyKey; // Scoped client Idempotency-Key; batch items append "#<index>"
+
+    // Optimistic lock: a managed update of a row another writer changed since it was read fails at flush.
+    // Bulk status updates bump it too; the default covers rows inserted with plain SQL.
+    @Version
+    @JsonIgnore
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
 }
@@ -0,0 +1,38 @@
+package com.finsense.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProviderStatusUpdate {
+
+    @NotBlank(message = "Provider transaction ID is required")
+    private String providerTransactionId;
+
+    @NotNull(message = "Status is required")
+    private PaymentStatus status;
+
+    private String failureReason;
+
+    // Canonical name of the provider reporting the update; set from the verified callback signature, never the body
+    @JsonIgnore
+    private String provider;
+
+    /**
+     * Identifies the payment an update is for: provider transaction IDs are only unique per provider.
+     */
+    public String key() {
+        return key(provider, providerTransactionId);
+    }
+
+    public static String key(String provider, String providerTransactionId) {
+        return provider + '/' + providerTransactionId;
+    }
+}
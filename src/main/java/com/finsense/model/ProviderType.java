@@ -0,0 +1,42 @@
+package com.finsense.model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public enum ProviderType {
+    MPESA("M-PESA", "M_PESA"),
+    AIRTEL_MONEY("AIRTEL", "AIRTEL-MONEY"),
+    TKASH("T-KASH", "T_KASH"),
+    MTN_MOMO("MTN", "MOMO", "MTN-MOMO"),
+    MOCK;
+
+    private static final Map<String, ProviderType> BY_NAME = new HashMap<>();
+
+    static {
+        for (ProviderType type : values()) {
+            BY_NAME.put(type.name(), type);
+            for (String alias : type.aliases) {
+                BY_NAME.put(alias, type);
+            }
+        }
+    }
+
+    private final String[] aliases;
+
+    ProviderType(String... aliases) {
+        this.aliases = aliases;
+    }
+
+    /**
+     * Case-insensitive lookup by name or alias (e.g. {@code mpesa}, {@code M-PESA}); null if the provider is
+     * unknown.
+     */
+    public static ProviderType fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        ProviderType type = BY_NAME.get(name);
+        return type != null ? type : BY_NAME.get(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
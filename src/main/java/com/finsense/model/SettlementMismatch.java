@@ -0,0 +1,19 @@
+package com.finsense.model;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+@Value
+public class SettlementMismatch {
+
+    private SettlementMismatchType type;
+    private String providerTransactionId;
+    private String transactionId; // Null for MISSING_LOCALLY
+    private BigDecimal localAmount;
+    private String localCurrency;
+    private PaymentStatus localStatus;
+    private BigDecimal providerAmount;
+    private String providerCurrency;
+    private PaymentStatus providerStatus; // Null when the statement status is missing or not recognised
+}
@@ -0,0 +1,8 @@
+package com.finsense.model;
+
+public enum SettlementMismatchType {
+    MISSING_LOCALLY, // In the provider statement, no local payment with that provider transaction ID
+    MISSING_AT_PROVIDER, // Local payment in the statement window that the statement does not list
+    AMOUNT_MISMATCH, // Amount or currency differ
+    STATUS_MISMATCH
+}
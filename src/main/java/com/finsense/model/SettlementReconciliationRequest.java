@@ -0,0 +1,27 @@
+package com.finsense.model;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+@Data
+public class SettlementReconciliationRequest {
+
+    @NotBlank(message = "File name is required")
+    private String fileName; // Statement file in finsense.settlement.inbox-dir
+
+    @NotBlank(message = "Provider is required")
+    private String provider;
+
+    // Local payments created in [from, to) are expected in the statement
+    @NotNull(message = "from is required")
+    private LocalDateTime from;
+
+    @NotNull(message = "to is required")
+    private LocalDateTime to;
+
+    // Apply terminal statement statuses to local payments still PENDING or IN_PROGRESS
+    private boolean applyCorrections;
+}
@@ -0,0 +1,25 @@
+package com.finsense.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class SettlementReport {
+
+    private String fileName;
+    private String provider;
+    private long statementLines;
+    private long malformedLines;
+    private long duplicateLines;
+    private long localPayments;
+    private long matched; // Present on both sides with the same amount, currency and status
+    private Map<SettlementMismatchType, Long> mismatchCounts = new EnumMap<>(SettlementMismatchType.class);
+    private List<SettlementMismatch> mismatches = new ArrayList<>(); // First max-reported-mismatches only
+    private String reportFile; // CSV with every mismatch
+    private int correctionsApplied;
+    private long elapsedMs;
+}
@@ -0,0 +1,13 @@
+package com.finsense.model;
+
+import lombok.Value;
+
+// Local side of a settlement match, selected as a projection while streaming the statement window
+@Value
+public class SettlementRow {
+
+    private String id;
+    private String providerTransactionId;
+    private Money amount;
+    private PaymentStatus status;
+}
@@ -0,0 +1,15 @@
+package com.finsense.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SmsMessage {
+
+    private String reference; // Echoed back by SmsGateway.sendBatch for messages that failed
+    private String recipientPhoneNumber;
+    private String message;
+}
@@ -0,0 +1,58 @@
+package com.finsense.repository;
+
+import com.finsense.model.ArchivedPaymentTransaction;
+import com.finsense.model.BatchItemResult;
+import com.finsense.model.PaymentExportRow;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusView;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.finsense.repository.PaymentTransactionRepository.EXPORT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+@Repository
+public interface ArchivedPaymentTransactionRepository extends JpaRepository<ArchivedPaymentTransaction, String> {
+
+    @Query("select new com.finsense.model.PaymentStatusView(a.id, a.recipientPhoneNumber, a.status, a.amount, a.provider, " +
+            "a.description, a.providerTransactionId, a.failureReason, a.createdAt, a.updatedAt) from ArchivedPaymentTransaction a where a.id = :id")
+    Optional<PaymentStatusView> findStatusById(@Param("id") String id);
+
+    long countByArchiveMonth(int archiveMonth);
+
+    @Query("select a.id from ArchivedPaymentTransaction a where a.idempotencyKey = :idempotencyKey")
+    Optional<String> findIdByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
+
+    @Query("select a.batchId from ArchivedPaymentTransaction a where a.idempotencyKey = :idempotencyKey")
+    Optional<String> findBatchIdByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
+
+    @Query("select a.status, count(a) from ArchivedPaymentTransaction a where a.batchId = :batchId group by a.status")
+    List<Object[]> countByStatusForBatch(@Param("batchId") String batchId);
+
+    @Query("select new com.finsense.model.BatchItemResult(a.batchIndex, a.id, a.status, a.failureReason) " +
+            "from ArchivedPaymentTransaction a where a.batchId = :batchId order by a.batchIndex")
+    List<BatchItemResult> findBatchItems(@Param("batchId") String batchId);
+
+    String EXPORT_SELECT = "select new com.finsense.model.PaymentExportRow(a.id, a.createdAt, a.updatedAt, a.status, " +
+            "a.recipientPhoneNumber, a.amount, a.provider, a.providerTransactionId, a.batchId, " +
+            "a.failureReason, a.description) from ArchivedPaymentTransaction a ";
+
+    // Archived side of an export, with the same cursor settings and order as PaymentTransactionRepository's
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query(EXPORT_SELECT + "where a.createdAt >= :from and a.createdAt < :to order by a.createdAt, a.id")
+    Stream<PaymentExportRow> streamForExport(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query(EXPORT_SELECT + "where a.status = :status and a.createdAt >= :from and a.createdAt < :to order by a.createdAt, a.id")
+    Stream<PaymentExportRow> streamForExport(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                             @Param("status") PaymentStatus status);
+}
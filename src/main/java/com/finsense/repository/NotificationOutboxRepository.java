@@ -0,0 +1,39 @@
+package com.finsense.repository;
+
+import com.finsense.model.NotificationOutbox;
+import com.finsense.model.NotificationStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+    // Rows locked by another instance's claim are skipped (lock timeout -2 maps to SKIP LOCKED where supported)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("select n from NotificationOutbox n where n.status = :status and n.nextAttemptAt <= :now order by n.id")
+    List<NotificationOutbox> findDue(@Param("status") NotificationStatus status, @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Modifying
+    @Query("update NotificationOutbox n set n.status = com.finsense.model.NotificationStatus.SENT, " +
+            "n.attempts = n.attempts + 1, n.sentAt = :now, n.lastError = null where n.id in :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("delete from NotificationOutbox n where n.status = com.finsense.model.NotificationStatus.SENT and n.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+
+    long countByStatus(NotificationStatus status);
+}
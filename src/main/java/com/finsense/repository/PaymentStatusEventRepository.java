@@ -0,0 +1,14 @@
+package com.finsense.repository;
+
+import com.finsense.model.PaymentStatusEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PaymentStatusEventRepository extends JpaRepository<PaymentStatusEvent, Long> {
+
+    // Served by idx_status_event_transaction; the ID orders events recorded in the same millisecond
+    List<PaymentStatusEvent> findByTransactionIdOrderByOccurredAtAscIdAsc(String transactionId);
+}
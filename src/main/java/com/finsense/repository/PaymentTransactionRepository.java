@@ -1,14 +1,118 @@
 package com.finsense.repository;
 
+import com.finsense.model.BatchItemResult;
+import com.finsense.model.PaymentExportRow;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusView;
 import com.finsense.model.PaymentTransaction;
+import com.finsense.model.SettlementRow;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface PaymentTransactionRepository extends JpaRepository<PaymentTransaction, String> {
+public interface PaymentTransactionRepository extends JpaRepository<PaymentTransaction, String>, PaymentTransactionRepositoryCustom {
     Optional<PaymentTransaction> findByProviderTransactionId(String providerTransactionId);
 
-}
+    List<PaymentTransaction> findByProviderTransactionIdIn(Collection<String> providerTransactionIds);
+
+    @Query("select t.id from PaymentTransaction t where t.idempotencyKey = :idempotencyKey")
+    Optional<String> findIdByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
+
+    @Query("select t.batchId from PaymentTransaction t where t.idempotencyKey = :idempotencyKey")
+    Optional<String> findBatchIdByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
+
+    @Query("select t.status, count(t) from PaymentTransaction t where t.batchId = :batchId group by t.status")
+    List<Object[]> countByStatusForBatch(@Param("batchId") String batchId);
+
+    @Query("select new com.finsense.model.BatchItemResult(t.batchIndex, t.id, t.status, t.failureReason) " +
+            "from PaymentTransaction t where t.batchId = :batchId order by t.batchIndex")
+    List<BatchItemResult> findBatchItems(@Param("batchId") String batchId);
+
+    // Keyset page over idx_payment_status_updated: resumes after (afterUpdatedAt, afterId), so each page
+    // costs the same however many rows precede it. As in search, the redundant "updatedAt >= after" gives
+    // the database a range start and ordering by the constant status lets it read the index in order
+    // instead of sorting every matching row.
+    @Query("select t from PaymentTransaction t where t.status = :status and t.updatedAt < :updatedBefore " +
+            "and t.updatedAt >= :afterUpdatedAt " +
+            "and (t.updatedAt > :afterUpdatedAt or (t.updatedAt = :afterUpdatedAt and t.id > :afterId)) " +
+            "order by t.status, t.updatedAt, t.id")
+    List<PaymentTransaction> findPageByStatusUpdatedBefore(@Param("status") PaymentStatus status,
+                                                           @Param("updatedBefore") LocalDateTime updatedBefore,
+                                                           @Param("afterUpdatedAt") LocalDateTime afterUpdatedAt,
+                                                           @Param("afterId") String afterId,
+                                                           Pageable pageable);
+
+    // Status change without loading the row; applies only while the row is still in expectedStatus. Bumps
+    // the version, so a concurrent managed update of the same row fails its optimistic check.
+    @Modifying
+    @Query("update PaymentTransaction t set t.status = :status, t.providerTransactionId = :providerTransactionId, " +
+            "t.failureReason = :failureReason, t.updatedAt = :updatedAt, t.version = t.version + 1 " +
+            "where t.id = :id and t.status = :expectedStatus")
+    int updateStatus(@Param("id") String id, @Param("expectedStatus") PaymentStatus expectedStatus,
+                     @Param("status") PaymentStatus status, @Param("providerTransactionId") String providerTransactionId,
+                     @Param("failureReason") String failureReason, @Param("updatedAt") LocalDateTime updatedAt);
+
+    // Claims a PENDING payment for its provider call; 0 if it was already claimed, so no payment is sent to its
+    // provider twice. Leaves the version alone, as status updates never write dispatchedAt.
+    @Modifying
+    @Query("update PaymentTransaction t set t.dispatchedAt = :dispatchedAt " +
+            "where t.id = :id and t.status = com.finsense.model.PaymentStatus.PENDING and t.dispatchedAt is null")
+    int claimDispatch(@Param("id") String id, @Param("dispatchedAt") LocalDateTime dispatchedAt);
 
+    // Leaves the version alone: status updates never write lastReconciledAt, so they cannot lose this change
+    @Modifying
+    @Query("update PaymentTransaction t set t.lastReconciledAt = :reconciledAt where t.id in :ids")
+    int markReconciled(@Param("ids") Collection<String> ids, @Param("reconciledAt") LocalDateTime reconciledAt);
+
+    String EXPORT_SELECT = "select new com.finsense.model.PaymentExportRow(t.id, t.createdAt, t.updatedAt, t.status, " +
+            "t.recipientPhoneNumber, t.amount, t.provider, t.providerTransactionId, t.batchId, " +
+            "t.failureReason, t.description) from PaymentTransaction t ";
+
+    // Forward-only cursors for exports: the driver fetches EXPORT_FETCH_SIZE rows per round trip and
+    // nothing is retained once a row has been consumed. Must be consumed inside a transaction.
+    int EXPORT_FETCH_SIZE = 1000;
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query(EXPORT_SELECT + "where t.createdAt >= :from and t.createdAt < :to order by t.createdAt, t.id")
+    Stream<PaymentExportRow> streamForExport(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query(EXPORT_SELECT + "where t.status = :status and t.createdAt >= :from and t.createdAt < :to order by t.createdAt, t.id")
+    Stream<PaymentExportRow> streamForExport(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                             @Param("status") PaymentStatus status);
+
+    String SETTLEMENT_SELECT = "select new com.finsense.model.SettlementRow(t.id, t.providerTransactionId, t.amount, " +
+            "t.status) from PaymentTransaction t ";
+
+    // Local side of a settlement match, read with the export cursor settings over idx_payment_provider_created.
+    // No ordering: the statement is hashed, so rows are probed in whatever order the index yields them.
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query(SETTLEMENT_SELECT + "where t.provider = :provider and t.createdAt >= :from and t.createdAt < :to " +
+            "and t.providerTransactionId is not null")
+    Stream<SettlementRow> streamForSettlement(@Param("provider") String provider, @Param("from") LocalDateTime from,
+                                              @Param("to") LocalDateTime to);
+
+    @Query(SETTLEMENT_SELECT + "where t.providerTransactionId in :providerTransactionIds")
+    List<SettlementRow> findSettlementRows(@Param("providerTransactionIds") Collection<String> providerTransactionIds);
+
+    // Every payment changed since the given time, in one pass with the export cursor settings; rebuilds the
+    // in-memory payment aggregates at startup
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query("select new com.finsense.model.PaymentStatusView(t.id, t.recipientPhoneNumber, t.status, t.amount, t.provider, " +
+            "t.description, t.providerTransactionId, t.failureReason, t.createdAt, t.updatedAt) from PaymentTransaction t where t.updatedAt >= :since")
+    Stream<PaymentStatusView> streamUpdatedSince(@Param("since") LocalDateTime since);
+}
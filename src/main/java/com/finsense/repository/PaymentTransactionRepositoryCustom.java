@@ -0,0 +1,36 @@
+package com.finsense.repository;
+
+import com.finsense.model.PaymentListItem;
+import com.finsense.model.PaymentSearchCriteria;
+import com.finsense.model.PaymentTransaction;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface PaymentTransactionRepositoryCustom {
+
+    /**
+     * Inserts new transactions with {@code persist} rather than {@code save}, which would issue a
+     * SELECT per row for entities with assigned ids. Must be called inside a transaction.
+     */
+    void persistAll(List<PaymentTransaction> transactions);
+
+    /**
+     * Newest-first page of payments matching {@code criteria}, ordered by {@code (createdAt, id)}
+     * descending and starting strictly after the keyset {@code (beforeCreatedAt, beforeId)}, or at the
+     * newest payment when both are null. Only the {@link PaymentListItem} columns are selected.
+     */
+    List<PaymentListItem> search(PaymentSearchCriteria criteria, LocalDateTime beforeCreatedAt, String beforeId, int limit);
+
+    /**
+     * As {@link #search}, over {@code payment_transaction_archive}.
+     */
+    List<PaymentListItem> searchArchive(PaymentSearchCriteria criteria, LocalDateTime beforeCreatedAt, String beforeId, int limit);
+
+    /**
+     * Copies terminal transactions into the archive table and deletes them from the payment table, and
+     * returns how many rows were deleted. Rows no longer terminal are left in place. Must be called inside
+     * a transaction, which the caller rolls back unless every row moved.
+     */
+    int moveToArchive(List<PaymentTransaction> transactions, LocalDateTime archivedAt);
+}
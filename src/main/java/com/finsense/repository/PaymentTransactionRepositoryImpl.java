@@ -0,0 +1,162 @@
+package com.finsense.repository;
+
+import com.finsense.model.ArchivedPaymentTransaction;
+import com.finsense.model.PaymentListItem;
+import com.finsense.model.PaymentSearchCriteria;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class PaymentTransactionRepositoryImpl implements PaymentTransactionRepositoryCustom {
+
+    private static final List<PaymentStatus> TERMINAL_STATUSES = Arrays.stream(PaymentStatus.values())
+            .filter(PaymentStatus::isTerminal)
+            .collect(Collectors.toList());
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}")
+    private int batchSize;
+
+    @Override
+    public void persistAll(List<PaymentTransaction> transactions) {
+        for (int i = 0; i < transactions.size(); i++) {
+            entityManager.persist(transactions.get(i));
+            // Flush one JDBC batch at a time and keep the persistence context from growing with the list
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    public List<PaymentListItem> search(PaymentSearchCriteria criteria, LocalDateTime beforeCreatedAt, String beforeId, int limit) {
+        return search(PaymentTransaction.class, criteria, beforeCreatedAt, beforeId, limit);
+    }
+
+    @Override
+    public List<PaymentListItem> searchArchive(PaymentSearchCriteria criteria, LocalDateTime beforeCreatedAt, String beforeId,
+                                               int limit) {
+        return search(ArchivedPaymentTransaction.class, criteria, beforeCreatedAt, beforeId, limit);
+    }
+
+    // Both tables name the searched columns alike
+    private List<PaymentListItem> search(Class<?> table, PaymentSearchCriteria criteria, LocalDateTime beforeCreatedAt,
+                                         String beforeId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PaymentListItem> query = cb.createQuery(PaymentListItem.class);
+        Root<?> root = query.from(table);
+        Path<LocalDateTime> createdAt = root.get("createdAt");
+        Path<String> id = root.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        addEquals(cb, root, predicates, "recipientPhoneNumber", criteria.getRecipientPhoneNumber());
+        addEquals(cb, root, predicates, "status", criteria.getStatus());
+        addEquals(cb, root, predicates, "provider", criteria.getProvider());
+        addEquals(cb, root, predicates, "amount.currency", criteria.getCurrency());
+        if (criteria.getCreatedFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(createdAt, criteria.getCreatedFrom()));
+        }
+        if (criteria.getCreatedTo() != null) {
+            predicates.add(cb.lessThan(createdAt, criteria.getCreatedTo()));
+        }
+        if (beforeCreatedAt != null) {
+            // The redundant "createdAt <= before" is what the database can turn into an index range start
+            predicates.add(cb.lessThanOrEqualTo(createdAt, beforeCreatedAt));
+            predicates.add(cb.or(
+                    cb.lessThan(createdAt, beforeCreatedAt),
+                    cb.and(cb.equal(createdAt, beforeCreatedAt), cb.lessThan(id, beforeId))));
+        }
+
+        // Sorting by the (constant) leading filter column as well lets the database read the rows in
+        // order from that filter's (column, createdAt desc, id desc) index and stop after `limit` rows
+        List<Order> order = new ArrayList<>();
+        String leadingFilter = leadingFilter(criteria);
+        if (leadingFilter != null) {
+            order.add(cb.asc(path(root, leadingFilter)));
+        }
+        order.add(cb.desc(createdAt));
+        order.add(cb.desc(id));
+
+        query.select(cb.construct(PaymentListItem.class, id, root.get("status"), root.get("recipientPhoneNumber"),
+                        root.get("amount"), root.get("provider"), root.get("batchId"),
+                        createdAt, root.get("updatedAt")))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(order);
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public int moveToArchive(List<PaymentTransaction> transactions, LocalDateTime archivedAt) {
+        List<String> ids = new ArrayList<>(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            PaymentTransaction transaction = transactions.get(i);
+            ids.add(transaction.getId());
+            entityManager.persist(ArchivedPaymentTransaction.of(transaction, archivedAt));
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+            }
+        }
+        entityManager.flush();
+        // Terminal statuses are final, so the status guard only skips rows that were never terminal
+        int deleted = entityManager.createQuery("delete from PaymentTransaction t where t.id in :ids and t.status in :terminal")
+                .setParameter("ids", ids)
+                .setParameter("terminal", TERMINAL_STATUSES)
+                .executeUpdate();
+        entityManager.clear();
+        return deleted;
+    }
+
+    private static void addEquals(CriteriaBuilder cb, Root<?> root, List<Predicate> predicates,
+                                  String attribute, Object value) {
+        if (value != null) {
+            predicates.add(cb.equal(path(root, attribute), value));
+        }
+    }
+
+    // Dotted names reach into embeddables, e.g. "amount.currency"
+    private static Path<?> path(Root<?> root, String attribute) {
+        Path<?> path = root;
+        for (String name : attribute.split("\\.")) {
+            path = path.get(name);
+        }
+        return path;
+    }
+
+    // Most selective equality filter first
+    private static String leadingFilter(PaymentSearchCriteria criteria) {
+        if (criteria.getRecipientPhoneNumber() != null) {
+            return "recipientPhoneNumber";
+        }
+        if (criteria.getStatus() != null) {
+            return "status";
+        }
+        if (criteria.getProvider() != null) {
+            return "provider";
+        }
+        if (criteria.getCurrency() != null) {
+            return "amount.currency";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package com.finsense.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Bounded cache of verified {@link Jwt}s in front of another {@link JwtDecoder}, so a client presenting the
+ * same bearer token again skips parsing and signature verification.
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the token, so the cache never holds the credentials themselves,
+ * and expire at the token's {@code exp}, or after {@code maxTtl} if that comes first. Tokens without an
+ * expiry are not cached, and neither are failures. Hit, miss and eviction counts are published as the
+ * {@code cache.*} metrics with {@code cache=jwt}.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwtDecoder delegate;
+    private final Clock clock;
+    private final long maxTtlNanos;
+    private final Cache<String, Jwt> cache;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maximumSize, Duration maxTtl, Clock clock, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.clock = clock;
+        this.maxTtlNanos = maxTtl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Jwt>() {
+                    @Override
+                    public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+                        long untilExpiry = Duration.between(clock.instant(), jwt.getExpiresAt()).toNanos();
+                        return Math.max(0, Math.min(untilExpiry, maxTtlNanos));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt");
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = hash(token);
+        Jwt jwt = cache.getIfPresent(key);
+        Instant now = clock.instant();
+        if (jwt != null && now.isBefore(jwt.getExpiresAt())) {
+            return jwt;
+        }
+        jwt = delegate.decode(token);
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt != null && now.isBefore(expiresAt) && maxTtlNanos > 0) {
+            cache.put(key, jwt);
+        }
+        return jwt;
+    }
+
+    /**
+     * Forgets every verified token, for when a signing key is withdrawn.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static String hash(String token) {
+        byte[] digest = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+}
@@ -0,0 +1,72 @@
+package com.finsense.security;
+
+import com.finsense.config.CallbackProperties;
+import com.finsense.exception.InvalidSignatureException;
+import com.finsense.model.ProviderType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Checks that a provider status callback was sent by the provider it names: the {@code X-Callback-Signature}
+ * header must be the hex HMAC-SHA256 of the raw request body under that provider's shared secret from
+ * {@code finsense.callback.secrets}. Providers without a configured secret cannot post callbacks.
+ */
+@Component
+public class CallbackSignatureVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final Map<ProviderType, SecretKeySpec> keys = new EnumMap<>(ProviderType.class);
+
+    @Autowired
+    public CallbackSignatureVerifier(CallbackProperties properties) {
+        properties.getSecrets().forEach((name, secret) -> {
+            ProviderType provider = ProviderType.fromName(name);
+            if (provider == null) {
+                throw new IllegalStateException("Callback secret configured for unknown provider " + name);
+            }
+            if (secret != null && !secret.isEmpty()) {
+                keys.put(provider, new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            }
+        });
+    }
+
+    public ProviderType verify(String providerName, String signature, byte[] body) {
+        ProviderType provider = ProviderType.fromName(providerName);
+        SecretKeySpec key = provider != null ? keys.get(provider) : null;
+        if (key == null) {
+            throw new InvalidSignatureException("Callbacks are not accepted from provider " + providerName + ".");
+        }
+        if (signature == null || !MessageDigest.isEqual(sign(key, body),
+                signature.trim().toLowerCase().getBytes(StandardCharsets.US_ASCII))) {
+            throw new InvalidSignatureException("Invalid callback signature for provider " + provider + ".");
+        }
+        return provider;
+    }
+
+    // Lower-case hex, compared as bytes in constant time
+    private static byte[] sign(SecretKeySpec key, byte[] body) {
+        byte[] digest;
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            digest = mac.doFinal(body);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+        byte[] hex = new byte[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = (byte) Character.forDigit((digest[i] >> 4) & 0xf, 16);
+            hex[2 * i + 1] = (byte) Character.forDigit(digest[i] & 0xf, 16);
+        }
+        return hex;
+    }
+}
@@ -0,0 +1,137 @@
+package com.finsense.security;
+
+import com.finsense.config.JwtProperties;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The issuer's public keys, loaded from {@code spring.security.oauth2.resourceserver.jwt.jwk-set-uri}
+ * ({@code https:} or {@code file:}) and reloaded every {@code jwk-set-refresh-interval-ms}, so token
+ * verification never waits for the issuer. A token signed by a key that is not in the set triggers one
+ * reload, at most every {@code jwk-set-min-refresh-interval-ms}, to pick up rotated keys early. A failed
+ * reload is logged and the previous keys stay in use.
+ */
+@Component
+public class JwkSetCache implements JWKSource<SecurityContext> {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwkSetCache.class);
+
+    private final URL url;
+    private final JwtProperties properties;
+    private final long minRefreshIntervalNanos;
+    private final List<Runnable> keyRemovalListeners = new CopyOnWriteArrayList<>();
+    private volatile JWKSet keys;
+    private volatile long lastLoadNanos;
+
+    @Autowired
+    public JwkSetCache(@Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+                       JwtProperties properties) {
+        try {
+            this.url = new URL(jwkSetUri);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException("Invalid JWK set URI " + jwkSetUri, e);
+        }
+        this.properties = properties;
+        this.minRefreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(properties.getJwkSetMinRefreshIntervalMs());
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector selector, SecurityContext context) throws KeySourceException {
+        JWKSet current = keys;
+        if (current != null) {
+            List<JWK> matches = selector.select(current);
+            if (!matches.isEmpty()) {
+                return matches;
+            }
+        }
+        JWKSet refreshed = refreshIfUnchanged(current);
+        return refreshed != null ? selector.select(refreshed) : Collections.emptyList();
+    }
+
+    /**
+     * Runs when a reload drops a key that was in use, so anything verified with it can be forgotten.
+     */
+    public void onKeyRemoval(Runnable listener) {
+        keyRemovalListeners.add(listener);
+    }
+
+    public int size() {
+        JWKSet current = keys;
+        return current != null ? current.getKeys().size() : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${finsense.security.jwt.jwk-set-refresh-interval-ms:300000}")
+    public void refresh() {
+        try {
+            load();
+        } catch (IOException | ParseException e) {
+            logger.warn("JWK set not reloaded from {}, keeping the previous {} keys: {}", url, size(), e.toString());
+        }
+    }
+
+    // Callers that missed the same key set queue here; only the first reloads, the rest see its result
+    private synchronized JWKSet refreshIfUnchanged(JWKSet seen) throws KeySourceException {
+        JWKSet current = keys;
+        if (current != seen || (current != null && System.nanoTime() - lastLoadNanos < minRefreshIntervalNanos)) {
+            return current;
+        }
+        try {
+            load();
+        } catch (IOException | ParseException e) {
+            if (current == null) {
+                throw new KeySourceException("Failed to load JWK set from " + url + ": " + e.getMessage(), e);
+            }
+            logger.warn("JWK set not reloaded from {}, keeping the previous {} keys: {}", url, current.getKeys().size(), e.toString());
+        }
+        return keys;
+    }
+
+    private synchronized void load() throws IOException, ParseException {
+        lastLoadNanos = System.nanoTime();
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(properties.getJwkSetConnectTimeoutMs());
+        connection.setReadTimeout(properties.getJwkSetReadTimeoutMs());
+        JWKSet loaded;
+        try (InputStream in = connection.getInputStream()) {
+            loaded = JWKSet.parse(StreamUtils.copyToString(in, StandardCharsets.UTF_8));
+        }
+        JWKSet previous = keys;
+        keys = loaded;
+        if (previous != null && !keys(loaded).containsAll(keys(previous))) {
+            logger.info("JWK set from {} no longer has some keys, {} keys now", url, loaded.getKeys().size());
+            keyRemovalListeners.forEach(Runnable::run);
+        } else {
+            logger.debug("Loaded {} keys from {}", loaded.getKeys().size(), url);
+        }
+    }
+
+    private static Set<Map<String, Object>> keys(JWKSet set) {
+        return set.getKeys().stream().<Map<String, Object>>map(JWK::toJSONObject).collect(Collectors.toSet());
+    }
+}
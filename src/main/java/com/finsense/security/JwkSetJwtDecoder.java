@@ -0,0 +1,81 @@
+package com.finsense.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.BadJOSEException;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.JWTParser;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies RS256-signed tokens against the keys of a {@link JWKSource}, normally the {@link JwkSetCache},
+ * then applies the default {@link JwtValidators} (expiry and not-before, with clock skew). Same result as
+ * Spring's {@code NimbusJwtDecoderJwkSupport}, which cannot take a key source of its own.
+ */
+public class JwkSetJwtDecoder implements JwtDecoder {
+
+    private final DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+    private final Converter<Map<String, Object>, Map<String, Object>> claimSetConverter =
+            MappedJwtClaimSetConverter.withDefaults(Collections.emptyMap());
+    private final OAuth2TokenValidator<Jwt> validator = JwtValidators.createDefault();
+
+    public JwkSetJwtDecoder(JWKSource<SecurityContext> keySource) {
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, keySource));
+        // Timestamps are checked by the validator, like every other Spring Security decoder
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> { });
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        JWT parsed;
+        try {
+            parsed = JWTParser.parse(token);
+        } catch (ParseException e) {
+            throw new JwtException("An error occurred while attempting to decode the Jwt: " + e.getMessage(), e);
+        }
+        if (!(parsed instanceof SignedJWT)) {
+            throw new JwtException("Unsupported algorithm of " + parsed.getHeader().getAlgorithm());
+        }
+        JWTClaimsSet claimsSet;
+        try {
+            claimsSet = jwtProcessor.process(parsed, null);
+        } catch (BadJOSEException | JOSEException e) {
+            throw new JwtException("An error occurred while attempting to decode the Jwt: " + e.getMessage(), e);
+        }
+        Map<String, Object> headers = new LinkedHashMap<>(parsed.getHeader().toJSONObject());
+        Map<String, Object> claims = claimSetConverter.convert(claimsSet.getClaims());
+        Jwt jwt = new Jwt(token, (Instant) claims.get(JwtClaimNames.IAT), (Instant) claims.get(JwtClaimNames.EXP), headers, claims);
+
+        OAuth2TokenValidatorResult result = validator.validate(jwt);
+        if (result.hasErrors()) {
+            String description = result.getErrors().stream()
+                    .map(OAuth2Error::getDescription)
+                    .collect(Collectors.joining(", "));
+            throw new JwtValidationException("An error occurred while attempting to decode the Jwt: " + description, result.getErrors());
+        }
+        return jwt;
+    }
+}
@@ -0,0 +1,46 @@
+package com.finsense.service;
+
+import com.finsense.model.PaymentTransaction;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Provider adapter whose calls hold no thread while the provider responds, so the number of calls in flight
+ * is bounded by connections rather than threads. Futures are completed on the adapter's I/O threads:
+ * callers must move blocking work such as database writes to their own executor.
+ * <p>
+ * The blocking {@link MobileMoneyService} methods wait for the futures, for callers that need the result
+ * inline.
+ */
+public interface AsyncMobileMoneyService extends MobileMoneyService {
+
+    CompletableFuture<String> initiateB2CPaymentAsync(PaymentTransaction transaction);
+
+    CompletableFuture<PaymentTransaction> checkPaymentStatusAsync(String providerTransactionId);
+
+    @Override
+    default String initiateB2CPayment(PaymentTransaction transaction) {
+        return await(initiateB2CPaymentAsync(transaction));
+    }
+
+    @Override
+    default PaymentTransaction checkPaymentStatus(String providerTransactionId) {
+        return await(checkPaymentStatusAsync(providerTransactionId));
+    }
+
+    /**
+     * Waits for {@code future} and rethrows the exception it failed with, rather than a {@link CompletionException}.
+     */
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
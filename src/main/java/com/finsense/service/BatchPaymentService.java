@@ -0,0 +1,320 @@
+package com.finsense.service;
+
+import com.finsense.config.BatchProperties;
+import com.finsense.exception.BatchValidationException;
+import com.finsense.exception.ExternalApiException;
+import com.finsense.exception.InvalidRequestException;
+import com.finsense.exception.ServiceOverloadedException;
+import com.finsense.model.B2CPaymentRequest;
+import com.finsense.model.BatchItemResult;
+import com.finsense.model.BatchPaymentRequest;
+import com.finsense.model.BatchSummary;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.repository.ArchivedPaymentTransactionRepository;
+import com.finsense.repository.PaymentTransactionRepository;
+import com.finsense.service.ratelimit.PaymentRateLimiter;
+import com.finsense.service.ratelimit.RecipientReservation;
+import com.finsense.util.PaymentIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class BatchPaymentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchPaymentService.class);
+
+    private final PaymentTransactionRepository paymentTransactionRepository;
+    private final ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository;
+    private final PaymentService paymentService;
+    private final NotificationOutboxService notificationOutboxService;
+    private final PaymentDispatcher batchDispatcher;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final BatchProperties properties;
+    private final PaymentIdGenerator paymentIdGenerator;
+    private final PaymentRateLimiter rateLimiter;
+
+    @Autowired
+    public BatchPaymentService(PaymentTransactionRepository paymentTransactionRepository,
+                               ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository,
+                               PaymentService paymentService,
+                               NotificationOutboxService notificationOutboxService,
+                               @Qualifier("batchDispatcher") PaymentDispatcher batchDispatcher,
+                               Validator validator,
+                               PlatformTransactionManager transactionManager,
+                               BatchProperties properties,
+                               PaymentIdGenerator paymentIdGenerator,
+                               PaymentRateLimiter rateLimiter) {
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.archivedPaymentTransactionRepository = archivedPaymentTransactionRepository;
+        this.paymentService = paymentService;
+        this.notificationOutboxService = notificationOutboxService;
+        this.batchDispatcher = batchDispatcher;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.paymentIdGenerator = paymentIdGenerator;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Validates every payment in one pass, counts them against the recipient velocity rules, inserts them
+     * with JDBC batching in a single transaction and queues provider dispatch in chunks. Like {@link PaymentService#acceptPayment}, dispatch capacity
+     * is reserved before any connection is taken.
+     */
+    public BatchSummary submitBatch(BatchPaymentRequest request) {
+        return submitBatch(request, null);
+    }
+
+    /**
+     * @param idempotencyKey scoped key of the whole batch; item {@code i} stores {@code key#i}, so the
+     *                       unique constraint rejects a replayed batch as one unit
+     */
+    public BatchSummary submitBatch(BatchPaymentRequest request, String idempotencyKey) {
+        List<B2CPaymentRequest> payments = request.getPayments();
+        if (payments.size() > properties.getMaxSize()) {
+            throw new InvalidRequestException("Batch exceeds the maximum of " + properties.getMaxSize() + " payments.");
+        }
+        List<String> errors = validate(payments);
+        if (!errors.isEmpty()) {
+            throw new BatchValidationException("Batch rejected: " + errors.size() + " invalid payment(s).",
+                    errors.subList(0, Math.min(errors.size(), properties.getMaxReportedErrors())));
+        }
+        RecipientReservation reservation = rateLimiter.checkRecipients(
+                payments.stream().map(B2CPaymentRequest::getRecipientPhoneNumber).collect(Collectors.toList()),
+                payments.stream().map(paymentService::amountOf).collect(Collectors.toList()));
+
+        String batchId = paymentIdGenerator.generate();
+        logger.info("Submitting batch {} with {} payments", batchId, payments.size());
+
+        List<PaymentTransaction> transactions = new ArrayList<>(payments.size());
+        List<List<PaymentTransaction>> chunks;
+        try {
+            for (int i = 0; i < payments.size(); i++) {
+                PaymentTransaction transaction = paymentService.newTransaction(payments.get(i),
+                        paymentService.amountOf(payments.get(i)), paymentService.resolveProvider(payments.get(i)));
+                transaction.setBatchId(batchId);
+                transaction.setBatchIndex(i);
+                if (idempotencyKey != null) {
+                    transaction.setIdempotencyKey(idempotencyKey + "#" + i);
+                }
+                transactions.add(transaction);
+            }
+
+            chunks = chunk(transactions, properties.getDispatchChunkSize());
+            if (!batchDispatcher.tryReserve(chunks.size())) {
+                throw new ServiceOverloadedException("Batch dispatch queue is full. Please retry later.");
+            }
+        } catch (RuntimeException e) {
+            // Nothing was stored, so the retry must not count the batch again
+            reservation.release();
+            throw e;
+        }
+        try {
+            transactionTemplate.execute(status -> {
+                paymentTransactionRepository.persistAll(transactions);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            batchDispatcher.release(chunks.size());
+            // Also the path of a concurrent duplicate, which is then replayed and must not count twice
+            reservation.release();
+            throw e;
+        }
+        transactions.forEach(transaction -> paymentService.publishStatusChange(transaction, null));
+        logger.info("Batch {} persisted, dispatching in {} chunks", batchId, chunks.size());
+
+        batchDispatcher.submitAfterCommit(chunks.stream()
+                .<Runnable>map(chunk -> () -> dispatchChunk(chunk))
+                .collect(Collectors.toList()));
+
+        BatchSummary summary = new BatchSummary();
+        summary.setBatchId(batchId);
+        summary.setTotal(transactions.size());
+        summary.getStatusCounts().put(PaymentStatus.PENDING, (long) transactions.size());
+        summary.setItems(transactions.stream()
+                .map(t -> new BatchItemResult(t.getBatchIndex(), t.getId(), t.getStatus(), null))
+                .collect(Collectors.toList()));
+        return summary;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<String> findBatchIdByIdempotencyKey(String idempotencyKey) {
+        Optional<String> batchId = paymentTransactionRepository.findBatchIdByIdempotencyKey(idempotencyKey + "#0");
+        return batchId.isPresent() ? batchId : archivedPaymentTransactionRepository.findBatchIdByIdempotencyKey(idempotencyKey + "#0");
+    }
+
+    /**
+     * Counts and items of a batch, including items PaymentArchiver has moved to the archive. The payment
+     * table is read first, so an item archived between the two reads shows up twice rather than not at all;
+     * such duplicates are dropped and the counts taken from the merged items.
+     */
+    public Optional<BatchSummary> getBatchSummary(String batchId) {
+        List<Object[]> counts = paymentTransactionRepository.countByStatusForBatch(batchId);
+        List<Object[]> archivedCounts = archivedPaymentTransactionRepository.countByStatusForBatch(batchId);
+        if (counts.isEmpty() && archivedCounts.isEmpty()) {
+            return Optional.empty();
+        }
+        BatchSummary summary = new BatchSummary();
+        summary.setBatchId(batchId);
+        if (archivedCounts.isEmpty()) {
+            for (Object[] row : counts) {
+                long count = (Long) row[1];
+                summary.getStatusCounts().put((PaymentStatus) row[0], count);
+                summary.setTotal(summary.getTotal() + count);
+            }
+            summary.setItems(paymentTransactionRepository.findBatchItems(batchId));
+            return Optional.of(summary);
+        }
+
+        Map<String, BatchItemResult> items = new HashMap<>();
+        paymentTransactionRepository.findBatchItems(batchId).forEach(item -> items.put(item.getTransactionId(), item));
+        archivedPaymentTransactionRepository.findBatchItems(batchId).forEach(item -> items.put(item.getTransactionId(), item));
+        List<BatchItemResult> merged = new ArrayList<>(items.values());
+        merged.sort(Comparator.comparing(BatchItemResult::getIndex));
+        for (BatchItemResult item : merged) {
+            summary.getStatusCounts().merge(item.getStatus(), 1L, Long::sum);
+        }
+        summary.setTotal(merged.size());
+        summary.setItems(merged);
+        return Optional.of(summary);
+    }
+
+    private List<String> validate(List<B2CPaymentRequest> payments) {
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < payments.size(); i++) {
+            B2CPaymentRequest payment = payments.get(i);
+            if (payment == null) {
+                errors.add("payments[" + i + "]: Payment is required");
+                continue;
+            }
+            Set<ConstraintViolation<B2CPaymentRequest>> violations = validator.validate(payment);
+            if (!violations.isEmpty()) {
+                String prefix = "payments[" + i + "].";
+                violations.stream()
+                        .sorted(Comparator.comparing(v -> v.getPropertyPath().toString()))
+                        .forEach(v -> errors.add(prefix + v.getPropertyPath() + ": " + v.getMessage()));
+                continue;
+            }
+            try {
+                paymentService.amountOf(payment);
+            } catch (InvalidRequestException e) {
+                errors.add("payments[" + i + "].amount: " + e.getMessage());
+            }
+            try {
+                paymentService.resolveProvider(payment);
+            } catch (InvalidRequestException e) {
+                errors.add("payments[" + i + "].provider: " + e.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    // Runs on a batch dispatch worker. Provider calls happen outside any transaction; the outcomes of
+    // the whole chunk are then written back with one IN lookup and batched updates. If that transaction
+    // fails, each outcome is written on its own so one bad row cannot lose the rest of the chunk.
+    void dispatchChunk(List<PaymentTransaction> chunk) {
+        List<PaymentTransaction> claimed = paymentService.claimForDispatch(chunk);
+        Map<String, DispatchOutcome> outcomes = new HashMap<>(claimed.size() * 2);
+        for (PaymentTransaction transaction : claimed) {
+            try {
+                MobileMoneyService mobileMoneyService = paymentService.findMobileMoneyService(transaction.getProvider());
+                outcomes.put(transaction.getId(), DispatchOutcome.inProgress(mobileMoneyService.initiateB2CPayment(transaction)));
+            } catch (ExternalApiException e) {
+                logger.error("Error dispatching batch transaction {} to provider: {}", transaction.getId(), transaction.getProvider(), e);
+                outcomes.put(transaction.getId(), DispatchOutcome.failed("External API error: " + e.getMessage()));
+            } catch (Exception e) {
+                logger.error("An unexpected error occurred while dispatching batch transaction {}", transaction.getId(), e);
+                outcomes.put(transaction.getId(), DispatchOutcome.failed("An unexpected error occurred: " + e.getMessage()));
+            }
+        }
+
+        try {
+            transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                for (PaymentTransaction transaction : paymentTransactionRepository.findAllById(outcomes.keySet())) {
+                    if (transaction.getStatus() != PaymentStatus.PENDING) {
+                        continue;
+                    }
+                    DispatchOutcome outcome = outcomes.get(transaction.getId());
+                    transaction.setStatus(outcome.status);
+                    transaction.setProviderTransactionId(outcome.providerTransactionId);
+                    transaction.setFailureReason(outcome.failureReason);
+                    transaction.setUpdatedAt(now);
+                    paymentService.publishStatusChange(transaction, PaymentStatus.PENDING);
+                    notificationOutboxService.enqueue(transaction,
+                            outcome.status == PaymentStatus.FAILED ? PaymentStatus.FAILED : PaymentStatus.SUCCESS);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            logger.error("Failed to record provider outcomes for batch chunk of {} transactions; recording them one by one",
+                    outcomes.size(), e);
+            recordEach(claimed, outcomes);
+        }
+    }
+
+    private void recordEach(List<PaymentTransaction> claimed, Map<String, DispatchOutcome> outcomes) {
+        for (PaymentTransaction transaction : claimed) {
+            DispatchOutcome outcome = outcomes.get(transaction.getId());
+            try {
+                if (outcome.status == PaymentStatus.IN_PROGRESS) {
+                    paymentService.markInProgress(transaction, outcome.providerTransactionId);
+                } else {
+                    paymentService.markFailed(transaction, outcome.failureReason);
+                }
+            } catch (RuntimeException e) {
+                // Claimed, so PaymentReconciler reports it instead of sending it again
+                logger.error("Could not record {} for batch transaction {} (provider transaction ID: {}); left PENDING",
+                        outcome.status, transaction.getId(), outcome.providerTransactionId, e);
+            }
+        }
+    }
+
+    private static <T> List<List<T>> chunk(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>((items.size() + size - 1) / size);
+        for (int from = 0; from < items.size(); from += size) {
+            chunks.add(items.subList(from, Math.min(items.size(), from + size)));
+        }
+        return chunks;
+    }
+
+    private static final class DispatchOutcome {
+        private final PaymentStatus status;
+        private final String providerTransactionId;
+        private final String failureReason;
+
+        private DispatchOutcome(PaymentStatus status, String providerTransactionId, String failureReason) {
+            this.status = status;
+            this.providerTransactionId = providerTransactionId;
+            this.failureReason = failureReason;
+        }
+
+        static DispatchOutcome inProgress(String providerTransactionId) {
+            return new DispatchOutcome(PaymentStatus.IN_PROGRESS, providerTransactionId, null);
+        }
+
+        static DispatchOutcome failed(String failureReason) {
+            return new DispatchOutcome(PaymentStatus.FAILED, null, failureReason);
+        }
+    }
+}
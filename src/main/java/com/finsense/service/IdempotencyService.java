@@ -0,0 +1,179 @@
+package com.finsense.service;
+
+import com.finsense.config.IdempotencyProperties;
+import com.finsense.exception.InvalidRequestException;
+import com.finsense.exception.ServiceOverloadedException;
+import com.finsense.util.BloomFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Executes a keyed operation at most once. The unique {@code idempotencyKey} column is the source of
+ * truth; in front of it:
+ * <ul>
+ *     <li>concurrent requests with the same key on this instance share one in-flight execution,</li>
+ *     <li>a Bloom filter of recently seen keys answers "definitely new" without a database lookup, which
+ *     is the common case,</li>
+ *     <li>an LRU maps recently used keys to the transaction or batch they created.</li>
+ * </ul>
+ * A key the filter no longer remembers (e.g. after a restart), or one used concurrently on another
+ * instance, is caught by the unique constraint and turned into a replay.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final int MAX_KEY_LENGTH = 200;
+
+    private final IdempotencyProperties properties;
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, String> references;
+    private final AtomicLong insertionsInGeneration = new AtomicLong();
+    private volatile BloomFilter currentKeys;
+    private volatile BloomFilter previousKeys;
+
+    @Autowired
+    public IdempotencyService(IdempotencyProperties properties) {
+        this.properties = properties;
+        this.references = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheMaximumSize())
+                .expireAfterWrite(properties.getCacheTtlHours(), TimeUnit.HOURS)
+                .build();
+        this.currentKeys = newFilter();
+        this.previousKeys = newFilter();
+    }
+
+    /**
+     * Runs {@code action} unless {@code clientKey} was already used in {@code scope}, in which case the resource
+     * it created is loaded and returned as a replay. A null key always runs the action.
+     *
+     * @param action        receives the scoped key to persist, or null when the client sent none
+     * @param findReference database lookup of the ID (transaction or batch) created for a scoped key
+     * @param load          loads the resource for an ID
+     * @param referenceOf   ID of the resource returned by the action
+     */
+    public <T> IdempotentResult<T> execute(String scope, String clientKey, Function<String, T> action,
+                                           Function<String, Optional<String>> findReference,
+                                           Function<String, T> load, Function<T, String> referenceOf) {
+        if (clientKey == null) {
+            return new IdempotentResult<>(action.apply(null), false);
+        }
+        if (clientKey.trim().isEmpty() || clientKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters.");
+        }
+        String key = scope + ":" + clientKey;
+
+        while (true) {
+            CompletableFuture<Object> mine = new CompletableFuture<>();
+            CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+            if (running == null) {
+                try {
+                    IdempotentResult<T> result = executeOwned(key, action, findReference, load, referenceOf);
+                    mine.complete(result.getValue());
+                    return result;
+                } catch (RuntimeException e) {
+                    mine.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlight.remove(key, mine);
+                }
+            }
+
+            // A request with the same key is executing here: wait for it rather than racing it
+            try {
+                Object value = running.get(properties.getInFlightWaitMs(), TimeUnit.MILLISECONDS);
+                @SuppressWarnings("unchecked")
+                T original = (T) value;
+                logger.info("Collapsed concurrent duplicate request for idempotency key {}", key);
+                return new IdempotentResult<>(load.apply(referenceOf.apply(original)), true);
+            } catch (ExecutionException e) {
+                // The original failed without recording anything; this request may try itself
+                logger.debug("In-flight request for idempotency key {} failed, retrying", key);
+            } catch (TimeoutException e) {
+                throw new ServiceOverloadedException("A request with the same Idempotency-Key is still being processed.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceOverloadedException("Interrupted while waiting for a request with the same Idempotency-Key.");
+            }
+        }
+    }
+
+    private <T> IdempotentResult<T> executeOwned(String key, Function<String, T> action, Function<String, Optional<String>> findReference,
+                                                 Function<String, T> load, Function<T, String> referenceOf) {
+        if (currentKeys.mightContain(key) || previousKeys.mightContain(key)) {
+            String reference = references.getIfPresent(key);
+            Optional<String> existing = reference != null ? Optional.of(reference) : findReference.apply(key);
+            if (existing.isPresent()) {
+                references.put(key, existing.get());
+                return new IdempotentResult<>(load.apply(existing.get()), true);
+            }
+        }
+
+        T value;
+        try {
+            value = action.apply(key);
+        } catch (DataIntegrityViolationException e) {
+            Optional<String> existing = findReference.apply(key);
+            if (!existing.isPresent()) {
+                throw e;
+            }
+            remember(key, existing.get());
+            return new IdempotentResult<>(load.apply(existing.get()), true);
+        }
+        remember(key, referenceOf.apply(value));
+        return new IdempotentResult<>(value, false);
+    }
+
+    private void remember(String key, String reference) {
+        references.put(key, reference);
+        // Two generations keep the filter's false-positive rate bounded while the oldest keys age out
+        if (insertionsInGeneration.incrementAndGet() > properties.getBloomExpectedInsertions()) {
+            synchronized (this) {
+                if (insertionsInGeneration.get() > properties.getBloomExpectedInsertions()) {
+                    previousKeys = currentKeys;
+                    currentKeys = newFilter();
+                    insertionsInGeneration.set(0);
+                }
+            }
+        }
+        currentKeys.put(key);
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(properties.getBloomExpectedInsertions(), properties.getBloomFalsePositiveRate());
+    }
+
+    public static final class IdempotentResult<T> {
+        private final T value;
+        private final boolean replayed;
+
+        IdempotentResult(T value, boolean replayed) {
+            this.value = value;
+            this.replayed = replayed;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public boolean isReplayed() {
+            return replayed;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.finsense.service;
+
+import com.finsense.config.NotificationProperties;
+import com.finsense.model.NotificationOutbox;
+import com.finsense.model.NotificationStatus;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.repository.NotificationOutboxRepository;
+import com.finsense.service.notification.NotificationTemplates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Transactional outbox for recipient SMS notifications. Status changes enqueue their notification in
+ * the same transaction, so a notification is recorded if and only if the change commits;
+ * {@link NotificationRelay} delivers them afterwards.
+ */
+@Service
+public class NotificationOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutboxService.class);
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final NotificationProperties properties;
+    private final NotificationTemplates notificationTemplates;
+
+    @Autowired
+    public NotificationOutboxService(NotificationOutboxRepository notificationOutboxRepository, NotificationProperties properties,
+                                     NotificationTemplates notificationTemplates) {
+        this.notificationOutboxRepository = notificationOutboxRepository;
+        this.properties = properties;
+        this.notificationTemplates = notificationTemplates;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(PaymentTransaction transaction, PaymentStatus status) {
+        LocalDateTime now = LocalDateTime.now();
+        NotificationOutbox notification = new NotificationOutbox();
+        notification.setTransactionId(transaction.getId());
+        notification.setRecipientPhoneNumber(transaction.getRecipientPhoneNumber());
+        notification.setMessage(notificationTemplates.render(transaction, status));
+        notification.setStatus(NotificationStatus.PENDING);
+        notification.setNextAttemptAt(now);
+        notification.setCreatedAt(now);
+        notificationOutboxRepository.save(notification);
+    }
+
+    /**
+     * Claims up to {@code limit} due notifications by pushing their next attempt past the claim timeout,
+     * so other pollers skip them while they are being sent.
+     */
+    @Transactional
+    public List<NotificationOutbox> claimDue(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<NotificationOutbox> due = notificationOutboxRepository.findDue(NotificationStatus.PENDING, now, PageRequest.of(0, limit));
+        LocalDateTime claimedUntil = now.plus(properties.getClaimTimeoutMs(), ChronoUnit.MILLIS);
+        due.forEach(notification -> notification.setNextAttemptAt(claimedUntil));
+        return due;
+    }
+
+    @Transactional
+    public void recordSent(Collection<Long> ids) {
+        if (!ids.isEmpty()) {
+            notificationOutboxRepository.markSent(ids, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Schedules another attempt with exponential backoff, or marks the notification FAILED once
+     * {@code maxAttempts} is reached.
+     */
+    @Transactional
+    public void recordFailures(Map<Long, String> errors) {
+        if (errors.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (NotificationOutbox notification : notificationOutboxRepository.findAllById(errors.keySet())) {
+            int attempts = notification.getAttempts() + 1;
+            String error = errors.get(notification.getId());
+            notification.setAttempts(attempts);
+            notification.setLastError(error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+            if (attempts >= properties.getMaxAttempts()) {
+                notification.setStatus(NotificationStatus.FAILED);
+                logger.error("Giving up on SMS notification {} for transaction {} after {} attempts: {}",
+                        notification.getId(), notification.getTransactionId(), attempts, error);
+            } else {
+                notification.setNextAttemptAt(now.plus(backoffMs(attempts), ChronoUnit.MILLIS));
+            }
+        }
+    }
+
+    @Transactional
+    public int purgeSentBefore(LocalDateTime before) {
+        return notificationOutboxRepository.deleteSentBefore(before);
+    }
+
+    // Exponential backoff with "equal jitter": at least half the nominal delay, so retries after a gateway
+    // outage are spread out without any of them coming back immediately.
+    long backoffMs(int attempts) {
+        long delay = properties.getInitialBackoffMs() << Math.min(attempts - 1, 30);
+        if (delay <= 0 || delay > properties.getMaxBackoffMs()) {
+            delay = properties.getMaxBackoffMs();
+        }
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+}
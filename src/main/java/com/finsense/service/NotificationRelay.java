@@ -0,0 +1,176 @@
+package com.finsense.service;
+
+import com.finsense.config.NotificationProperties;
+import com.finsense.model.NotificationOutbox;
+import com.finsense.model.SmsMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the notification outbox: claims due rows in batches and hands each batch to
+ * {@link SmsGateway#sendBatch} on a bounded worker pool. Rows are only claimed when a worker is free,
+ * so the backlog stays in the database rather than on the heap. Delivery is at-least-once: a batch
+ * whose outcome cannot be recorded is sent again once its claim expires.
+ * <p>
+ * Each {@code sendBatch} round trip is timed as {@code sms.requests}, tagged {@code gateway},
+ * {@code operation} and {@code outcome}; messages are counted by outcome as {@code sms.messages}. The worker pool is published as
+ * the {@code executor.*} meters named {@code sms-relay}.
+ */
+@Component
+public class NotificationRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationRelay.class);
+
+    private final NotificationOutboxService notificationOutboxService;
+    private final SmsGateway smsGateway;
+    private final NotificationProperties properties;
+    private final Semaphore idleWorkers;
+    private final ThreadPoolExecutor workers;
+    private final Timer sendTimer;
+    private final Timer sendErrorTimer;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private volatile boolean running = true;
+
+    @Autowired
+    public NotificationRelay(NotificationOutboxService notificationOutboxService, SmsGateway smsGateway,
+                             NotificationProperties properties, MeterRegistry meterRegistry) {
+        this.notificationOutboxService = notificationOutboxService;
+        this.smsGateway = smsGateway;
+        this.properties = properties;
+        this.idleWorkers = new Semaphore(properties.getWorkerThreads());
+        this.workers = new ThreadPoolExecutor(properties.getWorkerThreads(), properties.getWorkerThreads(),
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(properties.getWorkerThreads()),
+                new CustomizableThreadFactory("sms-relay-"));
+        new ExecutorServiceMetrics(workers, "sms-relay", Collections.emptyList()).bindTo(meterRegistry);
+        String gateway = smsGateway.getClass().getSimpleName();
+        this.sendTimer = Timer.builder("sms.requests").tag("gateway", gateway).tag("operation", "sendBatch")
+                .tag("outcome", "success").register(meterRegistry);
+        this.sendErrorTimer = Timer.builder("sms.requests").tag("gateway", gateway).tag("operation", "sendBatch")
+                .tag("outcome", "error").register(meterRegistry);
+        this.sentCounter = meterRegistry.counter("sms.messages", "gateway", gateway, "outcome", "sent");
+        this.failedCounter = meterRegistry.counter("sms.messages", "gateway", gateway, "outcome", "failed");
+    }
+
+    // Keeps claiming while full pages come back and workers are free, so a backlog drains at worker speed
+    // rather than one page per poll interval.
+    @Scheduled(fixedDelayString = "${finsense.notification.poll-interval-ms:200}")
+    public void poll() {
+        int batchSize = properties.getBatchSize();
+        while (running) {
+            int free = idleWorkers.availablePermits();
+            if (free == 0) {
+                return;
+            }
+            List<NotificationOutbox> claimed = notificationOutboxService.claimDue(free * batchSize);
+            for (int from = 0; from < claimed.size(); from += batchSize) {
+                List<NotificationOutbox> batch = claimed.subList(from, Math.min(claimed.size(), from + batchSize));
+                // Only this thread acquires, so the permits counted above are still available
+                idleWorkers.acquireUninterruptibly();
+                try {
+                    workers.execute(() -> {
+                        try {
+                            deliver(batch);
+                        } finally {
+                            idleWorkers.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    idleWorkers.release();
+                    logger.warn("SMS relay is shutting down, {} claimed notifications will be retried later", batch.size());
+                    return;
+                }
+            }
+            if (claimed.size() < free * batchSize) {
+                return;
+            }
+        }
+    }
+
+    void deliver(List<NotificationOutbox> batch) {
+        List<SmsMessage> messages = new ArrayList<>(batch.size());
+        for (NotificationOutbox notification : batch) {
+            messages.add(new SmsMessage(String.valueOf(notification.getId()), notification.getRecipientPhoneNumber(),
+                    notification.getMessage()));
+        }
+
+        Map<String, String> failures;
+        long start = System.nanoTime();
+        try {
+            failures = smsGateway.sendBatch(messages);
+            sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            sendErrorTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            logger.error("Failed to send a batch of {} SMS notifications", messages.size(), e);
+            failures = new HashMap<>(messages.size() * 2);
+            for (SmsMessage message : messages) {
+                failures.put(message.getReference(), String.valueOf(e.getMessage()));
+            }
+        }
+
+        List<Long> sent = new ArrayList<>(batch.size());
+        Map<Long, String> failed = new HashMap<>(failures.size() * 2);
+        for (NotificationOutbox notification : batch) {
+            String error = failures.get(String.valueOf(notification.getId()));
+            if (error == null) {
+                sent.add(notification.getId());
+            } else {
+                failed.put(notification.getId(), error);
+            }
+        }
+        sentCounter.increment(sent.size());
+        failedCounter.increment(failed.size());
+        try {
+            notificationOutboxService.recordSent(sent);
+            notificationOutboxService.recordFailures(failed);
+            logger.debug("Sent {} SMS notifications, {} failed", sent.size(), failed.size());
+        } catch (Exception e) {
+            logger.error("Failed to record the outcome of {} SMS notifications; they will be retried", batch.size(), e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 3600000, initialDelay = 60000)
+    public void purgeSent() {
+        int purged = notificationOutboxService.purgeSentBefore(LocalDateTime.now().minusHours(properties.getSentRetentionHours()));
+        if (purged > 0) {
+            logger.info("Purged {} delivered SMS notifications", purged);
+        }
+    }
+
+    // Stops claiming and lets in-flight batches finish; anything unsent stays PENDING in the outbox
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(properties.getShutdownTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                logger.warn("SMS relay did not drain within {} ms; unfinished notifications will be retried after their claim expires",
+                        properties.getShutdownTimeoutMs());
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
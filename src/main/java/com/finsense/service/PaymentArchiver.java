@@ -0,0 +1,131 @@
+package com.finsense.service;
+
+import com.finsense.config.ArchiveProperties;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.repository.PaymentTransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Moves SUCCESS, FAILED and CANCELLED payments last changed more than {@code finsense.archive.min-age-days}
+ * ago from the payment table to {@code payment_transaction_archive}, so the payment table and its indexes only
+ * grow with recent traffic.
+ * <p>
+ * Each terminal status is walked oldest first with a keyset cursor on {@code (updatedAt, id)}, backed by
+ * {@code idx_payment_status_updated}, the same as {@link PaymentReconciler}. Every batch is copied and deleted
+ * in its own short transaction, so a run never holds locks on more than one batch of rows.
+ */
+@Component
+public class PaymentArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentArchiver.class);
+
+    private static final LocalDateTime SCAN_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final PaymentTransactionRepository paymentTransactionRepository;
+    private final ArchiveProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public PaymentArchiver(PaymentTransactionRepository paymentTransactionRepository,
+                           ArchiveProperties properties,
+                           PlatformTransactionManager transactionManager) {
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${finsense.archive.interval-ms:3600000}",
+            initialDelayString = "${finsense.archive.interval-ms:3600000}")
+    public void scheduledArchive() {
+        if (properties.isEnabled()) {
+            archive();
+        }
+    }
+
+    /**
+     * Archives terminal payments past the configured age, up to {@code maxBatchesPerRun} batches per status,
+     * and returns how many were moved.
+     */
+    public int archive() {
+        return archiveUpdatedBefore(LocalDateTime.now().minusDays(properties.getMinAgeDays()));
+    }
+
+    /**
+     * Every archived payment was created before this time, since it was last changed before the archive cutoff.
+     * Reads confined to later payments can skip {@code payment_transaction_archive}. After
+     * {@code min-age-days} is raised, rows archived under the old setting are missed until they age past it.
+     */
+    public LocalDateTime archivedCreatedBefore() {
+        return LocalDateTime.now().minusDays(properties.getMinAgeDays());
+    }
+
+    public synchronized int archiveUpdatedBefore(LocalDateTime updatedBefore) {
+        LocalDateTime archivedAt = LocalDateTime.now();
+        int archived = 0;
+        for (PaymentStatus status : PaymentStatus.values()) {
+            if (status.isTerminal()) {
+                archived += archive(status, updatedBefore, archivedAt);
+            }
+        }
+        if (archived > 0) {
+            logger.info("Archived {} terminal payments last changed before {}", archived, updatedBefore);
+        }
+        return archived;
+    }
+
+    private int archive(PaymentStatus status, LocalDateTime updatedBefore, LocalDateTime archivedAt) {
+        LocalDateTime cursorUpdatedAt = SCAN_START;
+        String cursorId = "";
+        int archived = 0;
+
+        for (int batch = 0; batch < properties.getMaxBatchesPerRun(); batch++) {
+            List<PaymentTransaction> moved;
+            try {
+                moved = moveBatch(status, updatedBefore, cursorUpdatedAt, cursorId, archivedAt);
+            } catch (RuntimeException e) {
+                // Rolled back as a whole; the rows stay in the payment table for the next run
+                logger.warn("Archiving {} payments stopped after {} rows: {}", status, archived, e.toString());
+                break;
+            }
+            if (moved.isEmpty()) {
+                break;
+            }
+            archived += moved.size();
+            PaymentTransaction last = moved.get(moved.size() - 1);
+            cursorUpdatedAt = last.getUpdatedAt();
+            cursorId = last.getId();
+            if (moved.size() < properties.getBatchSize()) {
+                break;
+            }
+        }
+        return archived;
+    }
+
+    private List<PaymentTransaction> moveBatch(PaymentStatus status, LocalDateTime updatedBefore,
+                                               LocalDateTime afterUpdatedAt, String afterId, LocalDateTime archivedAt) {
+        List<PaymentTransaction> moved = transactionTemplate.execute(tx -> {
+            List<PaymentTransaction> page = paymentTransactionRepository.findPageByStatusUpdatedBefore(status, updatedBefore,
+                    afterUpdatedAt, afterId, PageRequest.of(0, properties.getBatchSize()));
+            if (!page.isEmpty()) {
+                int deleted = paymentTransactionRepository.moveToArchive(page, archivedAt);
+                if (deleted != page.size()) {
+                    throw new IllegalStateException("Moved " + deleted + " of " + page.size() + " archived rows");
+                }
+            }
+            return page;
+        });
+        return moved != null ? moved : Collections.emptyList();
+    }
+}
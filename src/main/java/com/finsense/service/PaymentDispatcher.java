@@ -0,0 +1,190 @@
+package com.finsense.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded hand-off stage between the request threads that accept payments and the worker pool
+ * that talks to the mobile money providers.
+ * <p>
+ * Callers reserve a slot before persisting anything, so a full stage is reported to the client
+ * up front instead of leaving a PENDING transaction that nobody will dispatch.
+ * <p>
+ * A slot stays taken until its task's work is done: when the task runs, or when the future returned
+ * by an {@link #submitReservedAsync asynchronous} task completes. Asynchronous tasks free their worker
+ * at once, so {@code workerThreads + queueCapacity} provider calls can be in flight on a few threads.
+ * <p>
+ * Instances are declared in {@link com.finsense.config.DispatchConfig}; each publishes its worker pool as the
+ * {@code executor.*} meters named after it.
+ */
+public class PaymentDispatcher implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentDispatcher.class);
+
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+
+    private final String name;
+    private final Semaphore slots;
+    private final ThreadPoolExecutor executor;
+    private final long shutdownTimeoutMs;
+
+    public PaymentDispatcher(String name, int workerThreads, int queueCapacity, long shutdownTimeoutMs) {
+        int capacity = workerThreads + queueCapacity;
+        this.name = name;
+        this.slots = new Semaphore(capacity);
+        this.executor = new ThreadPoolExecutor(workerThreads, workerThreads,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(capacity),
+                new CustomizableThreadFactory(name + "-"));
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+    }
+
+    public boolean tryReserve() {
+        return slots.tryAcquire();
+    }
+
+    public boolean tryReserve(int count) {
+        return slots.tryAcquire(count);
+    }
+
+    public void release() {
+        slots.release();
+    }
+
+    public void release(int count) {
+        slots.release(count);
+    }
+
+    /**
+     * Runs the task on the worker pool using a slot previously obtained from {@link #tryReserve()}.
+     * The slot is returned once the task completes.
+     */
+    public void submitReserved(Runnable task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.error("Unexpected error in {} task", name, e);
+            } finally {
+                slots.release();
+            }
+        });
+    }
+
+    /**
+     * Runs a task that starts asynchronous work, using a reserved slot. The slot is returned once the
+     * returned future completes.
+     */
+    public void submitReservedAsync(Supplier<? extends CompletionStage<?>> task) {
+        executor.execute(() -> {
+            CompletionStage<?> completion;
+            try {
+                completion = task.get();
+            } catch (Exception e) {
+                logger.error("Unexpected error in {} task", name, e);
+                slots.release();
+                return;
+            }
+            completion.whenComplete((result, error) -> {
+                if (error != null) {
+                    logger.error("Unexpected error in {} task", name, error);
+                }
+                slots.release();
+            });
+        });
+    }
+
+    /**
+     * Executor for continuations of asynchronous tasks, such as recording a provider's response. It never
+     * rejects them: each holds the slot of its task, and the queue has room for every slot.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Submits a reserved task once the surrounding transaction commits, so workers never look for a
+     * row that is not yet visible. The slot is released if the transaction rolls back.
+     */
+    public void submitAfterCommit(Runnable task) {
+        submitAfterCommit(Collections.singletonList(task));
+    }
+
+    public void submitAfterCommit(List<Runnable> tasks) {
+        List<Supplier<CompletionStage<?>>> suppliers = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            suppliers.add(() -> {
+                task.run();
+                return COMPLETED;
+            });
+        }
+        submitAsyncAfterCommit(suppliers);
+    }
+
+    public void submitAsyncAfterCommit(Supplier<CompletionStage<?>> task) {
+        submitAsyncAfterCommit(Collections.singletonList(task));
+    }
+
+    public void submitAsyncAfterCommit(List<Supplier<CompletionStage<?>>> tasks) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            tasks.forEach(this::submitReservedAsync);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    tasks.forEach(PaymentDispatcher.this::submitReservedAsync);
+                } else {
+                    slots.release(tasks.size());
+                }
+            }
+        });
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        new ExecutorServiceMetrics(executor, name, Collections.emptyList()).bindTo(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+                // Their payments stay PENDING and unclaimed, so PaymentReconciler dispatches them again
+                logger.warn("{} did not drain within {} ms, {} queued tasks dropped",
+                        name, shutdownTimeoutMs, executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
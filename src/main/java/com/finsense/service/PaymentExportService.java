@@ -0,0 +1,246 @@
+package com.finsense.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.finsense.config.ExportProperties;
+import com.finsense.exception.InvalidRequestException;
+import com.finsense.model.ExportFormat;
+import com.finsense.model.PaymentExportRow;
+import com.finsense.model.PaymentStatus;
+import com.finsense.repository.ArchivedPaymentTransactionRepository;
+import com.finsense.repository.PaymentTransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes payments created in a time range as NDJSON or CSV. Rows are read from a forward-only cursor
+ * and written as they arrive, so heap use does not depend on how many rows are exported.
+ * <p>
+ * Ranges starting before {@link PaymentArchiver#archivedCreatedBefore()} also read
+ * {@code payment_transaction_archive}. Both cursors are ordered by {@code (createdAt, id)} and merged as they
+ * are read, so the output stays in order and the heap bound holds.
+ */
+@Service
+public class PaymentExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentExportService.class);
+
+    private static final String CSV_HEADER = "id,createdAt,updatedAt,status,recipientPhoneNumber,amount,currency,provider," +
+            "providerTransactionId,batchId,failureReason,description";
+
+    private final PaymentTransactionRepository paymentTransactionRepository;
+    private final ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository;
+    private final PaymentArchiver paymentArchiver;
+    private final ObjectWriter rowWriter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExportProperties properties;
+
+    @Autowired
+    public PaymentExportService(PaymentTransactionRepository paymentTransactionRepository,
+                                ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository,
+                                PaymentArchiver paymentArchiver,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager,
+                                ExportProperties properties) {
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.archivedPaymentTransactionRepository = archivedPaymentTransactionRepository;
+        this.paymentArchiver = paymentArchiver;
+        // The default flush after every value would turn each row into its own socket write
+        this.rowWriter = objectMapper.writerFor(PaymentExportRow.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.properties = properties;
+    }
+
+    public void validateRange(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new InvalidRequestException("from must be before to.");
+        }
+        if (Duration.between(from, to).compareTo(Duration.ofDays(properties.getMaxRangeDays())) > 0) {
+            throw new InvalidRequestException("Export range must not exceed " + properties.getMaxRangeDays() + " days.");
+        }
+    }
+
+    /**
+     * Streams the matching payments, oldest first, to {@code out} and closes it.
+     *
+     * @return number of rows written
+     */
+    public long export(LocalDateTime from, LocalDateTime to, PaymentStatus status, ExportFormat format, boolean gzip,
+                       OutputStream out) throws IOException {
+        long startNanos = System.nanoTime();
+        OutputStream target = gzip ? new GZIPOutputStream(out, properties.getBufferSizeBytes()) : out;
+        boolean readArchive = from.isBefore(paymentArchiver.archivedCreatedBefore());
+        long rows;
+        try {
+            // Stream query methods need an open transaction, which also keeps the JDBC cursor open
+            rows = readOnlyTransaction.execute(tx -> {
+                try (Stream<PaymentExportRow> live = status == null
+                        ? paymentTransactionRepository.streamForExport(from, to)
+                        : paymentTransactionRepository.streamForExport(from, to, status);
+                     Stream<PaymentExportRow> archived = readArchive ? streamArchive(from, to, status) : Stream.empty()) {
+                    Iterator<PaymentExportRow> merged = new OldestFirst(live.iterator(), archived.iterator());
+                    return format == ExportFormat.CSV ? writeCsv(merged, target) : writeNdjson(merged, target);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Typically the client went away mid-download
+            throw e.getCause();
+        } finally {
+            target.close();
+        }
+        logger.info("Exported {} payments created in [{}, {}) as {} in {} ms", rows, from, to, format,
+                (System.nanoTime() - startNanos) / 1000000);
+        return rows;
+    }
+
+    private Stream<PaymentExportRow> streamArchive(LocalDateTime from, LocalDateTime to, PaymentStatus status) {
+        return status == null
+                ? archivedPaymentTransactionRepository.streamForExport(from, to)
+                : archivedPaymentTransactionRepository.streamForExport(from, to, status);
+    }
+
+    private long writeNdjson(Iterator<PaymentExportRow> rows, OutputStream out) throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = rowWriter.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            while (rows.hasNext()) {
+                rowWriter.writeValue(generator, rows.next());
+                generator.writeRaw('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long writeCsv(Iterator<PaymentExportRow> rows, OutputStream out) throws IOException {
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), properties.getBufferSizeBytes());
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        while (rows.hasNext()) {
+            PaymentExportRow row = rows.next();
+            writer.write(row.getId());
+            writeCsvField(writer, format(row.getCreatedAt()));
+            writeCsvField(writer, format(row.getUpdatedAt()));
+            writeCsvField(writer, row.getStatus() != null ? row.getStatus().name() : null);
+            writeCsvField(writer, row.getRecipientPhoneNumber());
+            writeCsvField(writer, row.getAmount() != null ? row.getAmount().toPlainString() : null);
+            writeCsvField(writer, row.getAmount() != null ? row.getAmount().getCurrency().name() : null);
+            writeCsvField(writer, row.getProvider());
+            writeCsvField(writer, row.getProviderTransactionId());
+            writeCsvField(writer, row.getBatchId());
+            writeCsvField(writer, row.getFailureReason());
+            writeCsvField(writer, row.getDescription());
+            writer.write('\n');
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    private static String format(LocalDateTime dateTime) {
+        return dateTime != null ? DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(dateTime) : null;
+    }
+
+    // RFC 4180: fields containing a separator, quote or line break are quoted, with quotes doubled
+    private static void writeCsvField(Writer writer, String text) throws IOException {
+        writer.write(',');
+        if (text == null) {
+            return;
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Merges two iterators ordered by {@code (createdAt, id)}. A payment archived while the export runs can
+     * be read from both tables, so ids already returned are skipped; only rows sharing the current
+     * {@code createdAt} are remembered.
+     */
+    private static final class OldestFirst implements Iterator<PaymentExportRow> {
+
+        private final Iterator<PaymentExportRow> left;
+        private final Iterator<PaymentExportRow> right;
+        private final Set<String> idsAtCreatedAt = new HashSet<>();
+        private PaymentExportRow nextLeft;
+        private PaymentExportRow nextRight;
+        private PaymentExportRow next;
+        private LocalDateTime createdAt;
+
+        OldestFirst(Iterator<PaymentExportRow> left, Iterator<PaymentExportRow> right) {
+            this.left = left;
+            this.right = right;
+            this.nextLeft = left.hasNext() ? left.next() : null;
+            this.nextRight = right.hasNext() ? right.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && (nextLeft != null || nextRight != null)) {
+                PaymentExportRow candidate;
+                if (nextRight == null || (nextLeft != null && compare(nextLeft, nextRight) <= 0)) {
+                    candidate = nextLeft;
+                    nextLeft = left.hasNext() ? left.next() : null;
+                } else {
+                    candidate = nextRight;
+                    nextRight = right.hasNext() ? right.next() : null;
+                }
+                if (!candidate.getCreatedAt().equals(createdAt)) {
+                    createdAt = candidate.getCreatedAt();
+                    idsAtCreatedAt.clear();
+                }
+                if (idsAtCreatedAt.add(candidate.getId())) {
+                    next = candidate;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public PaymentExportRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            PaymentExportRow row = next;
+            next = null;
+            return row;
+        }
+
+        private static int compare(PaymentExportRow a, PaymentExportRow b) {
+            int byCreatedAt = a.getCreatedAt().compareTo(b.getCreatedAt());
+            return byCreatedAt != 0 ? byCreatedAt : a.getId().compareTo(b.getId());
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.finsense.service;
+
+import com.finsense.config.ReconciliationProperties;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.model.ProviderStatusUpdate;
+import com.finsense.repository.PaymentTransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovers IN_PROGRESS payments whose provider callback never arrived by asking the provider with
+ * {@link MobileMoneyService#checkPaymentStatus}.
+ * <p>
+ * Each run walks IN_PROGRESS rows oldest first with a keyset cursor on {@code (updatedAt, id)}, backed by
+ * {@code idx_payment_status_updated}, so the scan only touches in-flight rows however large the table
+ * grows. A payment is re-checked after a delay proportional to its age, and every provider gets its own
+ * small pool so a slow provider only delays its own checks. Outcomes go through
+ * {@link PaymentService#applyProviderStatusUpdates}, the same path as provider callbacks.
+ * <p>
+ * The same scan over PENDING rows finds payments whose dispatch was lost before any worker claimed them
+ * (see {@link #recoverPending}).
+ */
+@Component
+public class PaymentReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentReconciler.class);
+
+    private static final LocalDateTime SCAN_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final PaymentTransactionRepository paymentTransactionRepository;
+    private final PaymentService paymentService;
+    private final ReconciliationProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, ExecutorService> providerExecutors = new ConcurrentHashMap<>();
+
+    // Keyset cursor; kept between runs so a capped run resumes where it stopped
+    private LocalDateTime cursorUpdatedAt = SCAN_START;
+    private String cursorId = "";
+
+    @Autowired
+    public PaymentReconciler(PaymentTransactionRepository paymentTransactionRepository,
+                             PaymentService paymentService,
+                             ReconciliationProperties properties,
+                             PlatformTransactionManager transactionManager) {
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.paymentService = paymentService;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${finsense.reconciliation.interval-ms:30000}",
+            initialDelayString = "${finsense.reconciliation.interval-ms:30000}")
+    public void scheduledReconcile() {
+        if (properties.isEnabled()) {
+            reconcile();
+            recoverPending();
+        }
+    }
+
+    /**
+     * Dispatches again the PENDING payments that no worker claimed within {@code pendingRedispatchAfterSeconds},
+     * and returns how many were queued. PENDING payments that were claimed that long ago but have no provider
+     * transaction ID may have reached the provider, so they are reported for a manual check, never sent again.
+     */
+    public synchronized int recoverPending() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime updatedBefore = now.minusSeconds(properties.getPendingRedispatchAfterSeconds());
+        LocalDateTime afterUpdatedAt = SCAN_START;
+        String afterId = "";
+        int scanned = 0;
+        int redispatched = 0;
+        boolean queueFull = false;
+        List<String> unknownOutcome = new ArrayList<>();
+
+        while (!queueFull && scanned < properties.getMaxChecksPerRun()) {
+            List<PaymentTransaction> page = paymentTransactionRepository.findPageByStatusUpdatedBefore(PaymentStatus.PENDING,
+                    updatedBefore, afterUpdatedAt, afterId, PageRequest.of(0, properties.getPageSize()));
+            if (page.isEmpty()) {
+                break;
+            }
+            for (int i = 0; i < page.size() && !queueFull; i++) {
+                PaymentTransaction transaction = page.get(i);
+                scanned++;
+                afterUpdatedAt = transaction.getUpdatedAt();
+                afterId = transaction.getId();
+                if (transaction.getDispatchedAt() != null) {
+                    if (transaction.getProviderTransactionId() == null && isDue(transaction, now)) {
+                        unknownOutcome.add(transaction.getId());
+                    }
+                    continue;
+                }
+                try {
+                    if (paymentService.redispatch(transaction)) {
+                        redispatched++;
+                    } else {
+                        logger.info("Dispatch queue full; remaining PENDING payments are recovered on the next run");
+                        queueFull = true;
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Could not dispatch PENDING transaction {} again: {}", transaction.getId(), e.toString());
+                }
+            }
+        }
+
+        if (redispatched > 0) {
+            logger.warn("Dispatched {} PENDING payments that were never sent to their provider", redispatched);
+        }
+        if (!unknownOutcome.isEmpty()) {
+            logger.error("{} PENDING payments were sent to their provider but the outcome was never recorded; check them " +
+                    "with the provider: {}", unknownOutcome.size(), unknownOutcome);
+            transactionTemplate.execute(status -> paymentTransactionRepository.markReconciled(unknownOutcome, now));
+        }
+        return redispatched;
+    }
+
+    /**
+     * Checks due IN_PROGRESS payments, up to {@code maxChecksPerRun}, and returns how many changed status.
+     */
+    public synchronized int reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime updatedBefore = now.minusSeconds(properties.getMinAgeSeconds());
+        int checked = 0;
+        int applied = 0;
+
+        while (checked < properties.getMaxChecksPerRun()) {
+            List<PaymentTransaction> page = paymentTransactionRepository.findPageByStatusUpdatedBefore(PaymentStatus.IN_PROGRESS,
+                    updatedBefore, cursorUpdatedAt, cursorId, PageRequest.of(0, properties.getPageSize()));
+            if (page.isEmpty()) {
+                cursorUpdatedAt = SCAN_START;
+                cursorId = "";
+                break;
+            }
+
+            List<PaymentTransaction> due = new ArrayList<>(page.size());
+            for (PaymentTransaction transaction : page) {
+                if (checked + due.size() >= properties.getMaxChecksPerRun()) {
+                    break;
+                }
+                cursorUpdatedAt = transaction.getUpdatedAt();
+                cursorId = transaction.getId();
+                if (transaction.getProviderTransactionId() != null && isDue(transaction, now)) {
+                    due.add(transaction);
+                }
+            }
+            checked += due.size();
+            applied += checkAndApply(due, now);
+        }
+
+        if (checked > 0) {
+            logger.info("Reconciliation checked {} IN_PROGRESS payments, {} changed status", checked, applied);
+        }
+        return applied;
+    }
+
+    boolean isDue(PaymentTransaction transaction, LocalDateTime now) {
+        if (transaction.getLastReconciledAt() == null) {
+            return true;
+        }
+        long ageSeconds = Duration.between(transaction.getUpdatedAt(), now).getSeconds();
+        long intervalSeconds = (long) (ageSeconds * properties.getBackoffFactor());
+        intervalSeconds = Math.max(properties.getMinIntervalSeconds(), Math.min(properties.getMaxIntervalSeconds(), intervalSeconds));
+        return !transaction.getLastReconciledAt().plusSeconds(intervalSeconds).isAfter(now);
+    }
+
+    private int checkAndApply(List<PaymentTransaction> due, LocalDateTime now) {
+        if (due.isEmpty()) {
+            return 0;
+        }
+        List<CompletableFuture<ProviderStatusUpdate>> checks = new ArrayList<>(due.size());
+        for (PaymentTransaction transaction : due) {
+            checks.add(CompletableFuture.supplyAsync(() -> check(transaction), executorFor(transaction.getProvider())));
+        }
+
+        List<String> checkedIds = new ArrayList<>(due.size());
+        List<ProviderStatusUpdate> updates = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getCheckTimeoutMs());
+        for (int i = 0; i < due.size(); i++) {
+            try {
+                ProviderStatusUpdate update = checks.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                checkedIds.add(due.get(i).getId());
+                if (update != null) {
+                    updates.add(update);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // Not marked as reconciled, so it is retried on the next run
+                logger.warn("Status check for transaction {} did not complete: {}", due.get(i).getId(), e.toString());
+            }
+        }
+
+        if (!checkedIds.isEmpty()) {
+            transactionTemplate.execute(status -> paymentTransactionRepository.markReconciled(checkedIds, now));
+        }
+        // Commits on its own, retried if a callback changes one of these payments at the same time
+        return updates.isEmpty() ? 0 : paymentService.applyProviderStatusUpdates(updates);
+    }
+
+    // Returns the update to apply, or null if the provider still reports the payment as in progress
+    private ProviderStatusUpdate check(PaymentTransaction transaction) {
+        MobileMoneyService provider = paymentService.findMobileMoneyService(transaction.getProvider());
+        PaymentTransaction remote = provider.checkPaymentStatus(transaction.getProviderTransactionId());
+        if (remote == null || remote.getStatus() == null || !remote.getStatus().isTerminal()) {
+            return null;
+        }
+        logger.info("Provider reports {} for stuck transaction {}", remote.getStatus(), transaction.getId());
+        return new ProviderStatusUpdate(transaction.getProviderTransactionId(), remote.getStatus(), remote.getFailureReason(),
+                transaction.getProvider());
+    }
+
+    private ExecutorService executorFor(String provider) {
+        return providerExecutors.computeIfAbsent(provider.toUpperCase(), key -> new ThreadPoolExecutor(
+                properties.getPerProviderParallelism(), properties.getPerProviderParallelism(), 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("reconcile-" + key.toLowerCase() + "-")));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        providerExecutors.values().forEach(ExecutorService::shutdownNow);
+    }
+}
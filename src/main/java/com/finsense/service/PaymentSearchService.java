@@ -0,0 +1,133 @@
+package com.finsense.service;
+
+import com.finsense.config.SearchProperties;
+import com.finsense.exception.InvalidRequestException;
+import com.finsense.model.PaymentListItem;
+import com.finsense.model.PaymentSearchCriteria;
+import com.finsense.model.PaymentSearchPage;
+import com.finsense.repository.PaymentTransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Payment search with keyset pagination. The cursor encodes the {@code (createdAt, id)} of the last
+ * row returned, and the next page starts strictly after it, so a page costs one index range scan of
+ * {@code limit} rows however deep into the result it is. Unlike OFFSET paging, payments inserted
+ * while a client pages are neither skipped nor repeated.
+ * <p>
+ * When {@code createdFrom} is open or older than {@link PaymentArchiver#archivedCreatedBefore()}, the same page
+ * is also read from {@code payment_transaction_archive} and the two are merged, so archiving a payment does not
+ * drop it from search results.
+ */
+@Service
+public class PaymentSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentSearchService.class);
+
+    private static final char CURSOR_SEPARATOR = '|';
+
+    private static final Comparator<PaymentListItem> NEWEST_FIRST = Comparator
+            .comparing(PaymentListItem::getCreatedAt)
+            .thenComparing(PaymentListItem::getId)
+            .reversed();
+
+    private final PaymentTransactionRepository paymentTransactionRepository;
+    private final PaymentArchiver paymentArchiver;
+    private final SearchProperties properties;
+
+    @Autowired
+    public PaymentSearchService(PaymentTransactionRepository paymentTransactionRepository,
+                                PaymentArchiver paymentArchiver,
+                                SearchProperties properties) {
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.paymentArchiver = paymentArchiver;
+        this.properties = properties;
+    }
+
+    @Transactional(readOnly = true)
+    public PaymentSearchPage search(PaymentSearchCriteria criteria, String cursor, Integer limit) {
+        int pageSize = limit != null ? limit : properties.getDefaultPageSize();
+        if (pageSize < 1 || pageSize > properties.getMaxPageSize()) {
+            throw new InvalidRequestException("limit must be between 1 and " + properties.getMaxPageSize() + ".");
+        }
+        if (criteria.getCreatedFrom() != null && criteria.getCreatedTo() != null
+                && !criteria.getCreatedFrom().isBefore(criteria.getCreatedTo())) {
+            throw new InvalidRequestException("createdFrom must be before createdTo.");
+        }
+
+        LocalDateTime beforeCreatedAt = null;
+        String beforeId = null;
+        if (cursor != null) {
+            String decoded = decodeCursor(cursor);
+            int separator = decoded.indexOf(CURSOR_SEPARATOR);
+            try {
+                beforeCreatedAt = LocalDateTime.parse(decoded.substring(0, separator));
+                beforeId = decoded.substring(separator + 1);
+            } catch (DateTimeParseException | StringIndexOutOfBoundsException e) {
+                throw new InvalidRequestException("Invalid cursor.");
+            }
+        }
+
+        // One extra row tells whether another page exists without a COUNT query
+        List<PaymentListItem> rows = paymentTransactionRepository.search(criteria, beforeCreatedAt, beforeId, pageSize + 1);
+        if (criteria.getCreatedFrom() == null || criteria.getCreatedFrom().isBefore(paymentArchiver.archivedCreatedBefore())) {
+            rows = merge(rows, paymentTransactionRepository.searchArchive(criteria, beforeCreatedAt, beforeId, pageSize + 1),
+                    pageSize + 1);
+        }
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            PaymentListItem last = rows.get(pageSize - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+        }
+        logger.debug("Payment search {} returned {} rows", criteria, rows.size());
+        return new PaymentSearchPage(rows, nextCursor);
+    }
+
+    // A payment archived between the two reads can come back from both; the copies are identical
+    private static List<PaymentListItem> merge(List<PaymentListItem> live, List<PaymentListItem> archived, int limit) {
+        if (archived.isEmpty()) {
+            return live;
+        }
+        List<PaymentListItem> merged = new ArrayList<>(live.size() + archived.size());
+        Set<String> ids = new HashSet<>();
+        for (PaymentListItem item : live) {
+            if (ids.add(item.getId())) {
+                merged.add(item);
+            }
+        }
+        for (PaymentListItem item : archived) {
+            if (ids.add(item.getId())) {
+                merged.add(item);
+            }
+        }
+        merged.sort(NEWEST_FIRST);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    static String encodeCursor(LocalDateTime createdAt, String id) {
+        String raw = createdAt.toString() + CURSOR_SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid cursor.");
+        }
+    }
+}
@@ -1,26 +1,49 @@
 package com.finsense.service;
 
+import com.finsense.config.StatusUpdateProperties;
 import com.finsense.exception.ExternalApiException;
 import com.finsense.exception.InvalidRequestException;
 import com.finsense.exception.PaymentException;
+import com.finsense.exception.ServiceOverloadedException;
+import com.finsense.model.ArchivedPaymentTransaction;
 import com.finsense.model.B2CPaymentRequest;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.NotificationLocale;
 import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusChangedEvent;
+import com.finsense.model.PaymentStatusView;
 import com.finsense.model.PaymentTransaction;
+import com.finsense.model.ProviderStatusUpdate;
+import com.finsense.model.ProviderType;
+import com.finsense.repository.ArchivedPaymentTransactionRepository;
 import com.finsense.repository.PaymentTransactionRepository;
+import com.finsense.service.routing.ProviderRegistry;
+import com.finsense.service.routing.ProviderRouter;
 import com.finsense.util.PaymentIdGenerator;
-import javax.annotation.PreDestroy;
+import com.finsense.util.StripedLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class PaymentService {
@@ -28,168 +51,513 @@ public class PaymentService {
     private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
 
     private final PaymentTransactionRepository paymentTransactionRepository;
-    private final List<MobileMoneyService> mobileMoneyServices;
-    private final SmsGateway smsGateway;
-    private final ExecutorService notificationExecutor;
+    private final ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository;
+    private final ProviderRegistry providerRegistry;
+    private final ProviderRouter providerRouter;
+    private final NotificationOutboxService notificationOutboxService;
+    private final PaymentDispatcher paymentDispatcher;
+    private final PaymentStatusCache paymentStatusCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentIdGenerator paymentIdGenerator;
+    private final StatusUpdateProperties statusUpdateProperties;
+    private final StripedLock statusLocks;
 
     @Autowired
     public PaymentService(PaymentTransactionRepository paymentTransactionRepository,
-                          List<MobileMoneyService> mobileMoneyServices,
-                          SmsGateway smsGateway) {
+                          ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository,
+                          ProviderRegistry providerRegistry,
+                          ProviderRouter providerRouter,
+                          NotificationOutboxService notificationOutboxService,
+                          PaymentDispatcher paymentDispatcher,
+                          PaymentStatusCache paymentStatusCache,
+                          ApplicationEventPublisher eventPublisher,
+                          PlatformTransactionManager transactionManager,
+                          PaymentIdGenerator paymentIdGenerator,
+                          StatusUpdateProperties statusUpdateProperties) {
         this.paymentTransactionRepository = paymentTransactionRepository;
-        this.mobileMoneyServices = mobileMoneyServices;
-        this.smsGateway = smsGateway;
-        this.notificationExecutor = Executors.newFixedThreadPool(5); // Thread pool for sending notifications asynchronously
+        this.archivedPaymentTransactionRepository = archivedPaymentTransactionRepository;
+        this.providerRegistry = providerRegistry;
+        this.providerRouter = providerRouter;
+        this.notificationOutboxService = notificationOutboxService;
+        this.paymentDispatcher = paymentDispatcher;
+        this.paymentStatusCache = paymentStatusCache;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.paymentIdGenerator = paymentIdGenerator;
+        this.statusUpdateProperties = statusUpdateProperties;
+        this.statusLocks = new StripedLock(statusUpdateProperties.getLockStripes());
     }
 
+    // Self-invocation bypasses the proxy, so this overload needs its own transaction
     @Transactional
     public PaymentTransaction initiatePayment(B2CPaymentRequest request) {
+        return initiatePayment(request, null);
+    }
+
+    /**
+     * @param idempotencyKey scoped key stored on the transaction; the insert is flushed before the provider
+     *                       call, so a duplicate fails on the unique constraint instead of reaching the
+     *                       provider twice
+     */
+    @Transactional
+    public PaymentTransaction initiatePayment(B2CPaymentRequest request, String idempotencyKey) {
         logger.info("Initiating payment for recipient: {}", request.getRecipientPhoneNumber());
 
-        // Basic validation
-        if (request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-            throw new InvalidRequestException("Amount must be positive.");
-        }
+        Money amount = amountOf(request);
 
-        // Find the appropriate mobile money service based on the provider
-        MobileMoneyService mobileMoneyService = findMobileMoneyService(request.getProvider());
+        ProviderType provider = resolveProvider(request);
+        MobileMoneyService mobileMoneyService = providerRegistry.get(provider);
 
-        // Create a new payment transaction
-        PaymentTransaction transaction = new PaymentTransaction();
-        transaction.setId(PaymentIdGenerator.generate());
-        transaction.setRecipientPhoneNumber(request.getRecipientPhoneNumber());
-        transaction.setAmount(request.getAmount());
-        transaction.setCurrency(request.getCurrency());
-        transaction.setProvider(request.getProvider());
-        transaction.setDescription(request.getDescription());
-        transaction.setStatus(PaymentStatus.PENDING);
-        transaction.setCreatedAt(LocalDateTime.now());
-        transaction.setUpdatedAt(LocalDateTime.now());
+        PaymentTransaction savedTransaction = newTransaction(request, amount, provider);
+        savedTransaction.setIdempotencyKey(idempotencyKey);
 
-        // Save the initial transaction state
-        PaymentTransaction savedTransaction = paymentTransactionRepository.save(transaction);
+        // Insert the initial state right away, so a duplicate key fails on the unique constraint before the
+        // provider is called. persistAll leaves the entity detached: later status changes are targeted updates.
+        paymentTransactionRepository.persistAll(Collections.singletonList(savedTransaction));
+        publishStatusChange(savedTransaction, null);
         logger.info("Payment transaction saved with ID: {}", savedTransaction.getId());
 
         try {
             // Initiate the payment with the mobile money provider
             String providerTransactionId = mobileMoneyService.initiateB2CPayment(savedTransaction);
-            savedTransaction.setProviderTransactionId(providerTransactionId);
-            savedTransaction.setStatus(PaymentStatus.IN_PROGRESS);
-            savedTransaction.setUpdatedAt(LocalDateTime.now());
-            paymentTransactionRepository.save(savedTransaction);
+            markInProgress(savedTransaction, providerTransactionId);
             logger.info("Payment initiation successful with provider transaction ID: {}", providerTransactionId);
 
-            notifyRecipient(savedTransaction.getId(), PaymentStatus.SUCCESS);
-
         } catch (ExternalApiException e) {
-            logger.error("Error initiating payment with provider: {}", request.getProvider(), e);
-            savedTransaction.setStatus(PaymentStatus.FAILED);
-            savedTransaction.setFailureReason("External API error: " + e.getMessage());
-            savedTransaction.setUpdatedAt(LocalDateTime.now());
-            paymentTransactionRepository.save(savedTransaction);
-            notifyRecipient(savedTransaction.getId(), PaymentStatus.FAILED);
+            logger.error("Error initiating payment with provider: {}", provider, e);
+            markFailed(savedTransaction, "External API error: " + e.getMessage());
             throw new PaymentException("Failed to initiate payment with mobile money provider.", e);
         } catch (Exception e) {
             logger.error("An unexpected error occurred during payment initiation", e);
-            savedTransaction.setStatus(PaymentStatus.FAILED);
-            savedTransaction.setFailureReason("An unexpected error occurred: " + e.getMessage());
-            savedTransaction.setUpdatedAt(LocalDateTime.now());
-            paymentTransactionRepository.save(savedTransaction);
-            notifyRecipient(savedTransaction.getId(), PaymentStatus.FAILED);
+            markFailed(savedTransaction, "An unexpected error occurred: " + e.getMessage());
             throw new PaymentException("An unexpected error occurred during payment initiation.", e);
         }
 
         return savedTransaction;
     }
 
-    @Transactional(readOnly = true)
-    public Optional<PaymentTransaction> getPaymentStatus(String transactionId) {
+    /**
+     * Asynchronous counterpart of {@link #initiatePayment}: persists the PENDING transaction and hands
+     * the provider call to the {@link PaymentDispatcher} once the insert has committed.
+     * <p>
+     * Deliberately not {@code @Transactional}: the dispatch slot is reserved before a connection is
+     * taken from the pool, so rejected callers never compete with the dispatch workers for one.
+     */
+    public PaymentTransaction acceptPayment(B2CPaymentRequest request) {
+        return acceptPayment(request, null);
+    }
+
+    public PaymentTransaction acceptPayment(B2CPaymentRequest request, String idempotencyKey) {
+        logger.info("Accepting payment for recipient: {}", request.getRecipientPhoneNumber());
+
+        Money amount = amountOf(request);
+        ProviderType provider = resolveProvider(request);
+
+        if (!paymentDispatcher.tryReserve()) {
+            throw new ServiceOverloadedException("Payment dispatch queue is full. Please retry later.");
+        }
+
+        PaymentTransaction savedTransaction = newTransaction(request, amount, provider);
+        savedTransaction.setIdempotencyKey(idempotencyKey);
+        try {
+            transactionTemplate.execute(status -> {
+                paymentTransactionRepository.persistAll(Collections.singletonList(savedTransaction));
+                return null;
+            });
+        } catch (RuntimeException e) {
+            paymentDispatcher.release();
+            throw e;
+        }
+        publishStatusChange(savedTransaction, null);
+        logger.info("Payment transaction accepted with ID: {}", savedTransaction.getId());
+
+        // The worker gets its own copy so the response body is not mutated underneath the caller
+        submitDispatch(copyOf(savedTransaction), providerRegistry.get(provider));
+        return savedTransaction;
+    }
+
+    /**
+     * Queues the provider call of a PENDING payment that no worker ever claimed, e.g. because its dispatch task
+     * was dropped at shutdown or lost in a crash. Returns false if the dispatch queue is full.
+     */
+    public boolean redispatch(PaymentTransaction transaction) {
+        MobileMoneyService mobileMoneyService = findMobileMoneyService(transaction.getProvider());
+        if (!paymentDispatcher.tryReserve()) {
+            return false;
+        }
+        submitDispatch(transaction, mobileMoneyService);
+        return true;
+    }
+
+    private void submitDispatch(PaymentTransaction transaction, MobileMoneyService mobileMoneyService) {
+        if (mobileMoneyService instanceof AsyncMobileMoneyService) {
+            AsyncMobileMoneyService asyncService = (AsyncMobileMoneyService) mobileMoneyService;
+            paymentDispatcher.submitAsyncAfterCommit(() -> dispatchToProviderAsync(transaction, asyncService));
+        } else {
+            paymentDispatcher.submitAfterCommit(() -> dispatchToProvider(transaction));
+        }
+    }
+
+    /**
+     * Claims PENDING payments for their provider call in one transaction and returns those this caller won.
+     * A queued dispatch and a recovery of the same payment cannot both claim it. If the claim cannot be
+     * written, none is returned and the payments stay PENDING for recovery.
+     */
+    List<PaymentTransaction> claimForDispatch(List<PaymentTransaction> transactions) {
+        List<PaymentTransaction> claimed = new ArrayList<>(transactions.size());
+        try {
+            transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                for (PaymentTransaction transaction : transactions) {
+                    if (paymentTransactionRepository.claimDispatch(transaction.getId(), now) == 1) {
+                        transaction.setDispatchedAt(now);
+                        claimed.add(transaction);
+                    }
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            logger.error("Could not claim {} payments for dispatch; left PENDING for recovery", transactions.size(), e);
+            return Collections.emptyList();
+        }
+        if (claimed.size() < transactions.size()) {
+            logger.info("{} of {} payments were already dispatched or are no longer PENDING; skipped",
+                    transactions.size() - claimed.size(), transactions.size());
+        }
+        return claimed;
+    }
+
+    // Runs on a dispatch worker, outside of any transaction: the provider round trip holds no JDBC
+    // connection and the status update below commits on its own.
+    void dispatchToProvider(PaymentTransaction transaction) {
+        if (claimForDispatch(Collections.singletonList(transaction)).isEmpty()) {
+            return;
+        }
+        String providerTransactionId = null;
+        Exception error = null;
+        try {
+            providerTransactionId = findMobileMoneyService(transaction.getProvider()).initiateB2CPayment(transaction);
+        } catch (Exception e) {
+            error = e;
+        }
+        recordDispatch(transaction, providerTransactionId, error);
+    }
+
+    // The worker only starts the provider call; the outcome is recorded on a dispatch worker when the
+    // response arrives, so a few workers keep as many calls in flight as the dispatcher has slots.
+    CompletableFuture<Void> dispatchToProviderAsync(PaymentTransaction transaction, AsyncMobileMoneyService provider) {
+        if (claimForDispatch(Collections.singletonList(transaction)).isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<String> call;
+        try {
+            call = provider.initiateB2CPaymentAsync(transaction);
+        } catch (RuntimeException e) {
+            call = new CompletableFuture<>();
+            call.completeExceptionally(e);
+        }
+        return call.handleAsync((providerTransactionId, error) -> {
+            recordDispatch(transaction, providerTransactionId, error != null ? AsyncMobileMoneyService.unwrap(error) : null);
+            return null;
+        }, paymentDispatcher.getExecutor());
+    }
+
+    private void recordDispatch(PaymentTransaction transaction, String providerTransactionId, Throwable error) {
+        String transactionId = transaction.getId();
+        if (error == null) {
+            try {
+                markInProgress(transaction, providerTransactionId);
+                logger.info("Dispatched transaction {} with provider transaction ID: {}", transactionId, providerTransactionId);
+            } catch (Exception e) {
+                // The provider has the payout, so it must not be marked FAILED; the row stays PENDING for recovery
+                logger.error("Provider accepted transaction {} as {} but the status could not be recorded; left PENDING",
+                        transactionId, providerTransactionId, e);
+            }
+            return;
+        }
+        if (error instanceof ExternalApiException) {
+            logger.error("Error dispatching transaction {} to provider: {}", transactionId, transaction.getProvider(), error);
+            markFailed(transaction, "External API error: " + error.getMessage());
+        } else {
+            logger.error("An unexpected error occurred while dispatching transaction {}", transactionId, error);
+            markFailed(transaction, "An unexpected error occurred: " + error.getMessage());
+        }
+    }
+
+    // Falls back to the archive, as a detached copy
+    public Optional<PaymentTransaction> getPayment(String transactionId) {
+        Optional<PaymentTransaction> transaction = paymentTransactionRepository.findById(transactionId);
+        if (transaction.isPresent()) {
+            return transaction;
+        }
+        return archivedPaymentTransactionRepository.findById(transactionId).map(ArchivedPaymentTransaction::toTransaction);
+    }
+
+    // The payment table first; a key outlives its payment there, so archived payments are still replayed
+    public Optional<String> findPaymentIdByIdempotencyKey(String idempotencyKey) {
+        Optional<String> id = paymentTransactionRepository.findIdByIdempotencyKey(idempotencyKey);
+        return id.isPresent() ? id : archivedPaymentTransactionRepository.findIdByIdempotencyKey(idempotencyKey);
+    }
+
+    // Not @Transactional: cache hits are answered without borrowing a connection. Misses load through
+    // the repository's own read-only transaction.
+    public Optional<PaymentStatusView> getPaymentStatus(String transactionId) {
         logger.info("Fetching payment status for transaction ID: {}", transactionId);
+        PaymentStatusView cached = paymentStatusCache.get(transactionId);
+        if (cached != null) {
+            logger.debug("Serving cached status {} for transaction {}", cached.getStatus(), transactionId);
+            return Optional.of(cached);
+        }
+
         Optional<PaymentTransaction> transaction = paymentTransactionRepository.findById(transactionId);
 
         if (transaction.isPresent()) {
             logger.info("Found transaction with status: {}", transaction.get().getStatus());
-        } else {
-            logger.warn("Payment transaction not found with ID: {}", transactionId);
+            PaymentStatusView view = PaymentStatusView.of(transaction.get());
+            paymentStatusCache.put(view);
+            return Optional.of(view);
         }
-        return transaction;
+
+        // Terminal payments moved out by PaymentArchiver; their status is final, so cached like any other
+        Optional<PaymentStatusView> archived = archivedPaymentTransactionRepository.findStatusById(transactionId);
+        if (archived.isPresent()) {
+            logger.info("Found archived transaction with status: {}", archived.get().getStatus());
+            paymentStatusCache.put(archived.get());
+            return archived;
+        }
+        logger.warn("Payment transaction not found with ID: {}", transactionId);
+        return Optional.empty();
     }
 
-    public void processProviderStatusUpdate(String providerTransactionId, PaymentStatus newStatus, String failureReason) {
+    public void processProviderStatusUpdate(String provider, String providerTransactionId, PaymentStatus newStatus, String failureReason) {
         logger.info("Processing provider status update for provider transaction ID: {} with new status: {}", providerTransactionId, newStatus);
-        Optional<PaymentTransaction> optionalTransaction = paymentTransactionRepository.findByProviderTransactionId(providerTransactionId);
+        applyProviderStatusUpdates(Collections.singletonList(new ProviderStatusUpdate(providerTransactionId, newStatus, failureReason, provider)));
+    }
 
-        if (optionalTransaction.isPresent()) {
-            PaymentTransaction transaction = optionalTransaction.get();
-            transaction.setStatus(newStatus);
-            transaction.setFailureReason(failureReason);
-            transaction.setUpdatedAt(LocalDateTime.now());
-            paymentTransactionRepository.save(transaction);
-            logger.info("Updated transaction {} status to {}", transaction.getId(), newStatus);
+    /**
+     * Applies provider status updates using a single IN lookup. Updates that would move a transaction
+     * backwards (e.g. SUCCESS to IN_PROGRESS), or that come from a provider other than the transaction's,
+     * are rejected. Returns the number of transactions whose status changed.
+     * <p>
+     * Must be called outside a transaction: each attempt commits on its own while this instance holds the
+     * lock stripes of the provider transaction IDs, so local writers of the same payment queue up instead of
+     * failing each other's version check. An attempt that still loses to another instance is rolled back and
+     * re-read, up to {@code finsense.status-updates.max-attempts} times.
+     */
+    public int applyProviderStatusUpdates(Collection<ProviderStatusUpdate> updates) {
+        return applyProviderStatusUpdates(updates, new HashSet<>(), new HashSet<>());
+    }
 
-            notifyRecipient(transaction.getId(), newStatus);
-        } else {
-            logger.warn("No local transaction found for provider transaction ID: {}", providerTransactionId);
+    /**
+     * As {@link #applyProviderStatusUpdates(Collection)}, also adding to {@code unmatched} the provider
+     * transaction IDs that no payment carries, and to {@code misdirected} those whose payment belongs to
+     * another provider.
+     */
+    public int applyProviderStatusUpdates(Collection<ProviderStatusUpdate> updates, Set<String> unmatched, Set<String> misdirected) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Provider status updates commit on their own and cannot join a transaction");
+        }
+        Map<String, ProviderStatusUpdate> updatesByKey = new HashMap<>(updates.size() * 2);
+        for (ProviderStatusUpdate update : updates) {
+            updatesByKey.put(update.key(), update);
         }
-    }
 
-    private MobileMoneyService findMobileMoneyService(String provider) {
-        return mobileMoneyServices.stream()
-                .filter(service -> service.getProviderType().equalsIgnoreCase(provider))
-                .findFirst()
-                .orElseThrow(() -> new InvalidRequestException("Unsupported mobile money provider: " + provider));
+        return statusLocks.withLocks(updatesByKey.keySet(), () -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    unmatched.clear();
+                    misdirected.clear();
+                    Integer applied = transactionTemplate.execute(status -> applyInTransaction(updatesByKey, unmatched, misdirected));
+                    return applied != null ? applied : 0;
+                } catch (OptimisticLockingFailureException e) {
+                    if (attempt >= statusUpdateProperties.getMaxAttempts()) {
+                        throw e;
+                    }
+                    logger.info("Provider status updates lost a version check to a concurrent writer, retrying ({} of {})",
+                            attempt, statusUpdateProperties.getMaxAttempts());
+                }
+            }
+        });
     }
 
-    private void notifyRecipient(String transactionId, PaymentStatus status) {
-        notificationExecutor.submit(() -> {
-            try {
-                Optional<PaymentTransaction> optionalTransaction = paymentTransactionRepository.findById(transactionId);
-                if (optionalTransaction.isPresent()) {
-                    PaymentTransaction transaction = optionalTransaction.get();
-                    String message;
-                    switch (status) {
-                        case SUCCESS:
-                            message = String.format("Your payment of %s %s has been successfully processed. Transaction ID: %s",
-                                    transaction.getAmount(), transaction.getCurrency(), transaction.getId());
-                            break;
-                        case FAILED:
-                            message = String.format("Your payment of %s %s failed. Transaction ID: %s. Reason: %s",
-                                    transaction.getAmount(), transaction.getCurrency(), transaction.getId(),
-                                    transaction.getFailureReason() != null ? transaction.getFailureReason() : "Unknown");
-                            break;
-                        case PENDING:
-                            message = String.format("Your payment of %s %s is pending. Transaction ID: %s",
-                                    transaction.getAmount(), transaction.getCurrency(), transaction.getId());
-                            break;
-                        case IN_PROGRESS:
-                            message = String.format("Your payment of %s %s is being processed. Transaction ID: %s",
-                                    transaction.getAmount(), transaction.getCurrency(), transaction.getId());
-                            break;
-                        case CANCELLED:
-                            message = String.format("Your payment of %s %s has been cancelled. Transaction ID: %s",
-                                    transaction.getAmount(), transaction.getCurrency(), transaction.getId());
-                            break;
-                        default:
-                            message = String.format("Update on your payment of %s %s. Transaction ID: %s. Status: %s",
-                                    transaction.getAmount(), transaction.getCurrency(), transaction.getId(), status);
-                    }
-                    smsGateway.sendSms(transaction.getRecipientPhoneNumber(), message);
-                    logger.info("SMS notification sent for transaction ID: {}", transactionId);
+    private int applyInTransaction(Map<String, ProviderStatusUpdate> updatesByKey, Set<String> unmatched,
+                                   Set<String> misdirected) {
+        Set<String> providerTransactionIds = new HashSet<>(updatesByKey.size() * 2);
+        updatesByKey.values().forEach(update -> providerTransactionIds.add(update.getProviderTransactionId()));
+        List<PaymentTransaction> transactions = paymentTransactionRepository.findByProviderTransactionIdIn(providerTransactionIds);
+
+        // Two providers may use the same provider transaction ID, so each row only takes its own provider's update
+        Map<String, ProviderStatusUpdate> unapplied = new HashMap<>(updatesByKey);
+        int applied = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (PaymentTransaction transaction : transactions) {
+            ProviderStatusUpdate update = unapplied.remove(ProviderStatusUpdate.key(transaction.getProvider(),
+                    transaction.getProviderTransactionId()));
+            if (update == null) {
+                continue;
+            }
+            PaymentStatus currentStatus = transaction.getStatus();
+            if (currentStatus == update.getStatus()) {
+                continue;
+            }
+            if (!currentStatus.canTransitionTo(update.getStatus())) {
+                logger.warn("Rejected illegal status transition {} -> {} for transaction {}",
+                        currentStatus, update.getStatus(), transaction.getId());
+                continue;
+            }
+            // Managed entity: flushed at commit together with the rest of the batch, changed columns only,
+            // and only if the version read above is still current
+            transaction.setStatus(update.getStatus());
+            transaction.setFailureReason(update.getFailureReason());
+            transaction.setUpdatedAt(now);
+            publishStatusChange(transaction, currentStatus);
+            logger.info("Updated transaction {} status to {}", transaction.getId(), update.getStatus());
+
+            notificationOutboxService.enqueue(transaction, update.getStatus());
+            applied++;
+        }
+
+        if (!unapplied.isEmpty()) {
+            Set<String> found = new HashSet<>(transactions.size() * 2);
+            transactions.forEach(transaction -> found.add(transaction.getProviderTransactionId()));
+            for (ProviderStatusUpdate update : unapplied.values()) {
+                if (found.contains(update.getProviderTransactionId())) {
+                    logger.warn("Rejected status update from {} for provider transaction {} of another provider",
+                            update.getProvider(), update.getProviderTransactionId());
+                    misdirected.add(update.getProviderTransactionId());
                 } else {
-                    logger.warn("Could not find transaction {} to send notification.", transactionId);
+                    unmatched.add(update.getProviderTransactionId());
                 }
-            } catch (ExternalApiException e) {
-                logger.error("Failed to send SMS notification for transaction ID: {}", transactionId, e);
-                // Handle failure to send SMS (e.g., retry mechanism, logging)
-            } catch (Exception e) {
-                logger.error("An unexpected error occurred while sending SMS notification for transaction ID: {}", transactionId, e);
             }
+            if (!unmatched.isEmpty()) {
+                logger.warn("No local transaction found for provider transaction IDs: {}", unmatched);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * The request amount in minor units of its currency. The only place a request's {@code BigDecimal}
+     * is looked at; everything after it works with the {@link Money}.
+     *
+     * @throws InvalidRequestException for an unsupported currency, or an amount that is not positive or
+     *                                 has more decimal places than the currency's minor unit
+     */
+    public Money amountOf(B2CPaymentRequest request) {
+        CurrencyCode currency = CurrencyCode.fromCode(request.getCurrency());
+        if (currency == null) {
+            throw new InvalidRequestException("Unsupported currency: " + request.getCurrency());
+        }
+        if (request.getAmount().signum() <= 0) {
+            throw new InvalidRequestException("Amount must be positive.");
+        }
+        try {
+            return Money.of(request.getAmount(), currency);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(e.getMessage() + ".");
+        }
+    }
+
+    PaymentTransaction newTransaction(B2CPaymentRequest request, Money amount, ProviderType provider) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId(paymentIdGenerator.generate());
+        transaction.setRecipientPhoneNumber(request.getRecipientPhoneNumber());
+        transaction.setAmount(amount);
+        transaction.setProvider(provider.name());
+        transaction.setDescription(request.getDescription());
+        transaction.setLocale(NotificationLocale.fromTag(request.getLocale()));
+        transaction.setStatus(PaymentStatus.PENDING);
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(LocalDateTime.now());
+        return transaction;
+    }
+
+    private static PaymentTransaction copyOf(PaymentTransaction source) {
+        PaymentTransaction copy = new PaymentTransaction();
+        copy.setId(source.getId());
+        copy.setRecipientPhoneNumber(source.getRecipientPhoneNumber());
+        copy.setAmount(source.getAmount());
+        copy.setProvider(source.getProvider());
+        copy.setDescription(source.getDescription());
+        copy.setLocale(source.getLocale());
+        copy.setStatus(source.getStatus());
+        copy.setProviderTransactionId(source.getProviderTransactionId());
+        copy.setFailureReason(source.getFailureReason());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        copy.setBatchId(source.getBatchId());
+        copy.setBatchIndex(source.getBatchIndex());
+        copy.setLastReconciledAt(source.getLastReconciledAt());
+        copy.setDispatchedAt(source.getDispatchedAt());
+        copy.setIdempotencyKey(source.getIdempotencyKey());
+        copy.setVersion(source.getVersion());
+        return copy;
+    }
+
+    void markInProgress(PaymentTransaction transaction, String providerTransactionId) {
+        transition(transaction, PaymentStatus.IN_PROGRESS, providerTransactionId, null, PaymentStatus.SUCCESS);
+    }
+
+    void markFailed(PaymentTransaction transaction, String failureReason) {
+        transition(transaction, PaymentStatus.FAILED, transaction.getProviderTransactionId(), failureReason, PaymentStatus.FAILED);
+    }
+
+    // One targeted UPDATE of the status columns, guarded by the status the caller last saw, instead of
+    // merging the detached row (a SELECT plus a full-row UPDATE). The status update and its SMS are written
+    // in one transaction: joined in initiatePayment, started here on the dispatch workers.
+    private void transition(PaymentTransaction transaction, PaymentStatus newStatus, String providerTransactionId,
+                            String failureReason, PaymentStatus notification) {
+        transactionTemplate.execute(status -> {
+            PaymentStatus previousStatus = transaction.getStatus();
+            LocalDateTime now = LocalDateTime.now();
+            int updated = paymentTransactionRepository.updateStatus(transaction.getId(), previousStatus, newStatus,
+                    providerTransactionId, failureReason, now);
+            if (updated == 0) {
+                logger.warn("Transaction {} is no longer {}; not moving it to {}", transaction.getId(), previousStatus, newStatus);
+                return null;
+            }
+            transaction.setStatus(newStatus);
+            transaction.setProviderTransactionId(providerTransactionId);
+            transaction.setFailureReason(failureReason);
+            transaction.setUpdatedAt(now);
+            publishStatusChange(transaction, previousStatus);
+            notificationOutboxService.enqueue(transaction, notification);
+            return null;
         });
     }
 
-    @PreDestroy
-    public void shutdown() {
-        notificationExecutor.shutdown();
+    // Listeners that must only see committed state (e.g. PaymentStatusCache) use @TransactionalEventListener
+    void publishStatusChange(PaymentTransaction transaction, PaymentStatus previousStatus) {
+        eventPublisher.publishEvent(new PaymentStatusChangedEvent(PaymentStatusView.of(transaction), previousStatus));
     }
-}
 
+    MobileMoneyService findMobileMoneyService(String provider) {
+        MobileMoneyService service = providerRegistry.get(ProviderType.fromName(provider));
+        if (service == null) {
+            throw new InvalidRequestException("Unsupported mobile money provider: " + provider);
+        }
+        return service;
+    }
+
+    /**
+     * Provider for a new payment: the one routed for the recipient's number when it is deployed, otherwise
+     * the {@code provider} named in the request.
+     */
+    ProviderType resolveProvider(B2CPaymentRequest request) {
+        ProviderType routed = providerRouter.route(request.getRecipientPhoneNumber());
+        if (providerRegistry.contains(routed)) {
+            return routed;
+        }
+        if (request.getProvider() == null || request.getProvider().trim().isEmpty()) {
+            throw new InvalidRequestException(routed != null
+                    ? "Provider " + routed + " routed for the recipient is not available; specify a provider."
+                    : "No provider is routed for the recipient; specify a provider.");
+        }
+        ProviderType requested = ProviderType.fromName(request.getProvider());
+        if (!providerRegistry.contains(requested)) {
+            throw new InvalidRequestException("Unsupported mobile money provider: " + request.getProvider());
+        }
+        return requested;
+    }
+}
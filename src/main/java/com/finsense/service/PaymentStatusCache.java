@@ -0,0 +1,82 @@
+package com.finsense.service;
+
+import com.finsense.config.StatusCacheProperties;
+import com.finsense.model.PaymentStatusChangedEvent;
+import com.finsense.model.PaymentStatusView;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of {@link PaymentStatusView}s in front of {@link PaymentService#getPaymentStatus}.
+ * <p>
+ * Entries are refreshed in place from {@link PaymentStatusChangedEvent}s once the change has committed.
+ * Hit, miss and eviction counts are published as the {@code cache.*} metrics with {@code cache=paymentStatus}.
+ */
+@Component
+public class PaymentStatusCache {
+
+    private final Cache<String, PaymentStatusView> cache;
+
+    @Autowired
+    public PaymentStatusCache(StatusCacheProperties properties, MeterRegistry meterRegistry) {
+        long activeTtlNanos = TimeUnit.SECONDS.toNanos(properties.getActiveTtlSeconds());
+        long terminalTtlNanos = TimeUnit.SECONDS.toNanos(properties.getTerminalTtlSeconds());
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new Expiry<String, PaymentStatusView>() {
+                    @Override
+                    public long expireAfterCreate(String key, PaymentStatusView value, long currentTime) {
+                        return value.getStatus().isTerminal() ? terminalTtlNanos : activeTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, PaymentStatusView value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, PaymentStatusView value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "paymentStatus");
+    }
+
+    public PaymentStatusView get(String transactionId) {
+        return cache.getIfPresent(transactionId);
+    }
+
+    // A reader that loaded the row before a concurrent update committed must not overwrite the newer entry
+    public void put(PaymentStatusView view) {
+        cache.asMap().merge(view.getId(), view, PaymentStatusCache::mostRecent);
+    }
+
+    public void invalidate(String transactionId) {
+        cache.invalidate(transactionId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        // Only refresh entries that are being polled; new transactions are loaded on first read
+        cache.asMap().computeIfPresent(event.getTransaction().getId(),
+                (id, current) -> mostRecent(current, event.getTransaction()));
+    }
+
+    static PaymentStatusView mostRecent(PaymentStatusView current, PaymentStatusView candidate) {
+        if (current.getStatus() == candidate.getStatus()) {
+            return candidate.getUpdatedAt() != null && current.getUpdatedAt() != null
+                    && candidate.getUpdatedAt().isBefore(current.getUpdatedAt()) ? current : candidate;
+        }
+        return current.getStatus().canTransitionTo(candidate.getStatus()) ? candidate : current;
+    }
+}
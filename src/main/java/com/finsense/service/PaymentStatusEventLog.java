@@ -0,0 +1,111 @@
+package com.finsense.service;
+
+import com.finsense.config.StatusEventProperties;
+import com.finsense.model.PaymentStatusChangedEvent;
+import com.finsense.model.PaymentStatusEvent;
+import com.finsense.repository.PaymentStatusEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Append-only history of payment status changes, written behind the payment write paths.
+ * <p>
+ * Committed {@link PaymentStatusChangedEvent}s are queued in memory and inserted by the scheduled
+ * {@link #flush} in batches of {@code batch-size}, so a status change adds no round trip to the transaction
+ * that makes it. Events still queued when an instance dies are lost; {@link com.finsense.model.PaymentTransaction}
+ * remains the source of truth for the current status.
+ */
+@Component
+public class PaymentStatusEventLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentStatusEventLog.class);
+
+    private final PaymentStatusEventRepository paymentStatusEventRepository;
+    private final StatusEventProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PaymentStatusEvent> pending;
+
+    @Autowired
+    public PaymentStatusEventLog(PaymentStatusEventRepository paymentStatusEventRepository,
+                                 StatusEventProperties properties,
+                                 PlatformTransactionManager transactionManager) {
+        this.paymentStatusEventRepository = paymentStatusEventRepository;
+        this.properties = properties;
+        // Flushes can run from an after-commit callback, where the finished transaction is still bound
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.pending = new LinkedBlockingQueue<>(properties.getQueueCapacity());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent change) {
+        PaymentStatusEvent event = PaymentStatusEvent.of(change);
+        if (!pending.offer(event)) {
+            // The writer has fallen behind: the committing thread writes a batch itself rather than drop history
+            flush();
+            if (!pending.offer(event)) {
+                logger.error("Status event queue is full, dropping {} -> {} for transaction {}",
+                        event.getPreviousStatus(), event.getStatus(), event.getTransactionId());
+            }
+        }
+    }
+
+    /**
+     * Status changes of a payment, oldest first, including ones not yet flushed by this instance.
+     */
+    public List<PaymentStatusEvent> getTimeline(String transactionId) {
+        flush();
+        return paymentStatusEventRepository.findByTransactionIdOrderByOccurredAtAscIdAsc(transactionId);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    // Synchronized so a caller returns only after events taken by a concurrent scheduled flush are written
+    @Scheduled(fixedDelayString = "${finsense.status-events.flush-interval-ms:200}")
+    public synchronized void flush() {
+        List<PaymentStatusEvent> batch = new ArrayList<>(properties.getBatchSize());
+        while (pending.drainTo(batch, properties.getBatchSize()) > 0) {
+            if (!write(batch)) {
+                return;
+            }
+            batch = new ArrayList<>(properties.getBatchSize());
+        }
+    }
+
+    private boolean write(List<PaymentStatusEvent> batch) {
+        try {
+            transactionTemplate.execute(status -> paymentStatusEventRepository.saveAll(batch));
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to write {} payment status events, re-queueing", batch.size(), e);
+            for (PaymentStatusEvent event : batch) {
+                event.setId(null);
+                if (!pending.offer(event)) {
+                    logger.error("Status event queue is full, dropping {} -> {} for transaction {}",
+                            event.getPreviousStatus(), event.getStatus(), event.getTransactionId());
+                }
+            }
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
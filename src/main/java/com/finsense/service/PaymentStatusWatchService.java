@@ -0,0 +1,278 @@
+package com.finsense.service;
+
+import com.finsense.config.StatusWatchProperties;
+import com.finsense.exception.InvalidRequestException;
+import com.finsense.exception.ServiceOverloadedException;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusChangedEvent;
+import com.finsense.model.PaymentStatusView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Parks long-poll and SSE clients until the status of a payment changes, without holding a servlet
+ * thread. Waiters are woken by the {@link PaymentStatusChangedEvent}s published by the payment write
+ * paths once the change has committed, which only covers changes made on this instance. Changes made by
+ * another instance are picked up by re-reading every watched payment each {@code poll-interval-ms}
+ * through {@link PaymentService#getPaymentStatus}, so they can arrive up to the poll interval plus the
+ * status cache's {@code active-ttl-seconds} late.
+ * <p>
+ * Those re-reads, and the final read of a timed-out long-poll, run on a small bounded pool; the timer
+ * thread only schedules them.
+ */
+@Service
+public class PaymentStatusWatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentStatusWatchService.class);
+
+    private final ConcurrentMap<String, Set<Consumer<PaymentStatusView>>> watchers = new ConcurrentHashMap<>();
+    private final AtomicInteger watcherCount = new AtomicInteger();
+    private final PaymentService paymentService;
+    private final StatusWatchProperties properties;
+    private final ScheduledThreadPoolExecutor timer;
+    // Status reads for timed-out long-polls and the poll of watched payments
+    private final ThreadPoolExecutor reader;
+    // Deliveries run here so a slow SSE client never blocks the thread that committed the change
+    private final ThreadPoolExecutor notifier;
+
+    @Autowired
+    public PaymentStatusWatchService(PaymentService paymentService, StatusWatchProperties properties) {
+        this.paymentService = paymentService;
+        this.properties = properties;
+        this.timer = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("status-watch-timer-"));
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.reader = new ThreadPoolExecutor(properties.getReadThreads(), properties.getReadThreads(), 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(properties.getMaxWatchers()), new CustomizableThreadFactory("status-watch-read-"));
+        this.notifier = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(properties.getMaxWatchers()), new CustomizableThreadFactory("status-watch-"),
+                (task, executor) -> logger.warn("Status watch notification queue is full, dropping a notification"));
+        if (properties.getPollIntervalMs() > 0) {
+            timer.scheduleWithFixedDelay(this::pollWatched, properties.getPollIntervalMs(), properties.getPollIntervalMs(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Completes as soon as the transaction's status differs from {@code knownStatus} (or from its current
+     * status when none is given), or with the current status once {@code waitSeconds} elapse. Completes
+     * with an empty result if the transaction does not exist.
+     */
+    public CompletableFuture<Optional<PaymentStatusView>> awaitStatusChange(String transactionId, PaymentStatus knownStatus,
+                                                                           Long waitSeconds) {
+        long wait = Math.min(waitSeconds != null ? waitSeconds : properties.getDefaultWaitSeconds(), properties.getMaxWaitSeconds());
+        CompletableFuture<Optional<PaymentStatusView>> result = new CompletableFuture<>();
+        AtomicReference<PaymentStatus> known = new AtomicReference<>(knownStatus);
+
+        // Subscribe before reading the current status so a change committed in between is not missed
+        Runnable unsubscribe = subscribe(transactionId, view -> {
+            PaymentStatus expected = known.get();
+            if (expected == null || view.getStatus() != expected) {
+                result.complete(Optional.of(view));
+            }
+        });
+        result.whenComplete((view, error) -> unsubscribe.run());
+
+        Optional<PaymentStatusView> current = paymentService.getPaymentStatus(transactionId);
+        if (!current.isPresent() || current.get().getStatus().isTerminal()
+                || (knownStatus != null && current.get().getStatus() != knownStatus)) {
+            result.complete(current);
+            return result;
+        }
+        known.compareAndSet(null, current.get().getStatus());
+
+        Optional<PaymentStatusView> lastRead = current;
+        ScheduledFuture<?> timeout = timer.schedule(() -> {
+            try {
+                reader.execute(() -> result.complete(paymentService.getPaymentStatus(transactionId)));
+            } catch (RejectedExecutionException e) {
+                // Every read thread is busy; answer with the status this request already saw
+                result.complete(lastRead);
+            }
+        }, wait, TimeUnit.SECONDS);
+        result.whenComplete((view, error) -> timeout.cancel(false));
+        return result;
+    }
+
+    /**
+     * Streams the current status of each transaction followed by every later transition as {@code status}
+     * events. Unknown IDs get a {@code not-found} event. The stream completes once every watched
+     * transaction is terminal or unknown.
+     */
+    public SseEmitter streamStatus(List<String> transactionIds) {
+        Set<String> ids = new LinkedHashSet<>(transactionIds);
+        if (ids.isEmpty() || ids.size() > properties.getMaxStreamIds()) {
+            throw new InvalidRequestException("Between 1 and " + properties.getMaxStreamIds() + " transaction IDs are required.");
+        }
+
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(properties.getStreamTimeoutSeconds()));
+        StatusStream stream = new StatusStream(emitter, ids.size());
+        List<Runnable> subscriptions = new ArrayList<>(ids.size());
+        Runnable unsubscribeAll = () -> subscriptions.forEach(Runnable::run);
+        try {
+            for (String id : ids) {
+                subscriptions.add(subscribe(id, stream::send));
+            }
+        } catch (RuntimeException e) {
+            unsubscribeAll.run();
+            throw e;
+        }
+        emitter.onCompletion(unsubscribeAll);
+        emitter.onTimeout(unsubscribeAll);
+
+        for (String id : ids) {
+            Optional<PaymentStatusView> current = paymentService.getPaymentStatus(id);
+            if (current.isPresent()) {
+                stream.send(current.get());
+            } else {
+                stream.sendNotFound(id);
+            }
+        }
+        return emitter;
+    }
+
+    public int getWatcherCount() {
+        return watcherCount.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        PaymentStatusView view = event.getTransaction();
+        Set<Consumer<PaymentStatusView>> listeners = watchers.get(view.getId());
+        if (listeners != null) {
+            deliver(listeners, view);
+        }
+    }
+
+    // Re-reads every watched payment, delivering the result like a local change; waiters ignore a status they
+    // already have. Skipped while the previous round is still queued.
+    void pollWatched() {
+        if (!reader.getQueue().isEmpty()) {
+            logger.debug("Previous status watch poll still running, skipping this one");
+            return;
+        }
+        for (String transactionId : watchers.keySet()) {
+            try {
+                reader.execute(() -> {
+                    Set<Consumer<PaymentStatusView>> listeners = watchers.get(transactionId);
+                    if (listeners != null) {
+                        paymentService.getPaymentStatus(transactionId).ifPresent(view -> deliver(listeners, view));
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.warn("Status watch read queue is full, polling the remaining watched payments next round");
+                return;
+            }
+        }
+    }
+
+    private void deliver(Set<Consumer<PaymentStatusView>> listeners, PaymentStatusView view) {
+        for (Consumer<PaymentStatusView> listener : listeners) {
+            notifier.execute(() -> listener.accept(view));
+        }
+    }
+
+    private Runnable subscribe(String transactionId, Consumer<PaymentStatusView> listener) {
+        if (watcherCount.incrementAndGet() > properties.getMaxWatchers()) {
+            watcherCount.decrementAndGet();
+            throw new ServiceOverloadedException("Too many clients are waiting for status changes. Please retry later.");
+        }
+        // add and remove both run inside compute so an emptied set is never removed under a new listener
+        watchers.compute(transactionId, (id, listeners) -> {
+            Set<Consumer<PaymentStatusView>> set = listeners != null ? listeners : ConcurrentHashMap.newKeySet();
+            set.add(listener);
+            return set;
+        });
+        return () -> watchers.computeIfPresent(transactionId, (id, listeners) -> {
+            if (listeners.remove(listener)) {
+                watcherCount.decrementAndGet();
+            }
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        reader.shutdownNow();
+        notifier.shutdownNow();
+    }
+
+    private static final class StatusStream {
+        private final SseEmitter emitter;
+        private final Map<String, PaymentStatus> lastSent = new HashMap<>();
+        private int open;
+
+        StatusStream(SseEmitter emitter, int open) {
+            this.emitter = emitter;
+            this.open = open;
+        }
+
+        synchronized void send(PaymentStatusView view) {
+            PaymentStatus last = lastSent.get(view.getId());
+            // The initial read and a concurrent event can race; never send a status older than the last one
+            if (open == 0 || (last != null && !last.canTransitionTo(view.getStatus()))) {
+                return;
+            }
+            lastSent.put(view.getId(), view.getStatus());
+            try {
+                emitter.send(SseEmitter.event().name("status").id(view.getId()).data(view));
+            } catch (IOException e) {
+                open = 0;
+                emitter.completeWithError(e);
+                return;
+            }
+            if (view.getStatus().isTerminal()) {
+                close();
+            }
+        }
+
+        synchronized void sendNotFound(String transactionId) {
+            if (open == 0 || lastSent.containsKey(transactionId)) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name("not-found").id(transactionId)
+                        .data(Collections.singletonMap("id", transactionId)));
+            } catch (IOException e) {
+                open = 0;
+                emitter.completeWithError(e);
+                return;
+            }
+            close();
+        }
+
+        private void close() {
+            if (--open == 0) {
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.finsense.service;
+
+import com.finsense.config.CallbackProperties;
+import com.finsense.exception.ServiceOverloadedException;
+import com.finsense.model.ProviderStatusUpdate;
+import com.finsense.model.ProviderType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Buffers provider status callbacks so a burst is acknowledged immediately and applied in batches.
+ * <p>
+ * Updates are keyed by provider and provider transaction ID: a provider that reports the same
+ * transaction several times before the next flush costs one row update, an out-of-order regression
+ * (IN_PROGRESS arriving after SUCCESS) never replaces the more advanced status, and two providers that
+ * happen to use the same transaction ID never have their updates merged.
+ * <p>
+ * A batch that fails is re-queued and scheduled flushes back off exponentially until one succeeds. An update
+ * that has been in {@code finsense.callback.max-attempts} failed batches is dropped and logged in full, and
+ * counted in {@code callback.updates.dropped}. Updates for provider transaction IDs no payment carries are
+ * counted in {@code callback.updates.unmatched}, and updates for another provider's payment, which are never
+ * applied, in {@code callback.updates.misdirected}.
+ */
+@Component
+public class ProviderCallbackQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderCallbackQueue.class);
+
+    private final ConcurrentMap<String, ProviderStatusUpdate> pending = new ConcurrentHashMap<>();
+    // Failed batches each queued update has been in; only touched under the flush lock
+    private final Map<String, Integer> failedAttempts = new HashMap<>();
+    private final PaymentService paymentService;
+    private final CallbackProperties properties;
+    private final Counter droppedCounter;
+    private final Counter unmatchedCounter;
+    private final Counter misdirectedCounter;
+    private int consecutiveFailures;
+    private volatile long retryAtMillis;
+
+    @Autowired
+    public ProviderCallbackQueue(PaymentService paymentService, CallbackProperties properties, MeterRegistry meterRegistry) {
+        this.paymentService = paymentService;
+        this.properties = properties;
+        this.droppedCounter = meterRegistry.counter("callback.updates.dropped");
+        this.unmatchedCounter = meterRegistry.counter("callback.updates.unmatched");
+        this.misdirectedCounter = meterRegistry.counter("callback.updates.misdirected");
+    }
+
+    /**
+     * @param provider the provider whose signature the callback carried; each update may only change its payments
+     */
+    public void submit(ProviderType provider, Collection<ProviderStatusUpdate> updates) {
+        // Checked up front so a rejected burst is not half queued; the provider retries the whole call
+        if (pending.size() + updates.size() > properties.getQueueCapacity()) {
+            throw new ServiceOverloadedException("Callback queue is full. Please retry later.");
+        }
+        for (ProviderStatusUpdate update : updates) {
+            update.setProvider(provider.name());
+            pending.merge(update.key(), update, ProviderCallbackQueue::coalesce);
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${finsense.callback.flush-interval-ms:100}")
+    public void scheduledFlush() {
+        if (System.currentTimeMillis() >= retryAtMillis) {
+            flush();
+        }
+    }
+
+    // Synchronized so a caller returns only after updates taken by a concurrent scheduled flush are applied.
+    // Stops at the first failed batch; the rest stays queued for the next flush.
+    public synchronized void flush() {
+        List<ProviderStatusUpdate> batch = new ArrayList<>(properties.getBatchSize());
+        for (String key : pending.keySet()) {
+            ProviderStatusUpdate update = pending.remove(key);
+            if (update == null) {
+                continue;
+            }
+            batch.add(update);
+            if (batch.size() == properties.getBatchSize()) {
+                if (!apply(batch)) {
+                    return;
+                }
+                batch = new ArrayList<>(properties.getBatchSize());
+            }
+        }
+        if (!batch.isEmpty()) {
+            apply(batch);
+        }
+    }
+
+    private boolean apply(List<ProviderStatusUpdate> batch) {
+        Set<String> unmatched = new HashSet<>();
+        Set<String> misdirected = new HashSet<>();
+        try {
+            int applied = paymentService.applyProviderStatusUpdates(batch, unmatched, misdirected);
+            logger.debug("Applied {} of {} queued provider status updates", applied, batch.size());
+        } catch (Exception e) {
+            retry(batch, e);
+            return false;
+        }
+        consecutiveFailures = 0;
+        retryAtMillis = 0;
+        if (!failedAttempts.isEmpty()) {
+            batch.forEach(update -> failedAttempts.remove(update.key()));
+        }
+        if (!unmatched.isEmpty()) {
+            unmatchedCounter.increment(unmatched.size());
+        }
+        if (!misdirected.isEmpty()) {
+            misdirectedCounter.increment(misdirected.size());
+        }
+        return true;
+    }
+
+    private void retry(List<ProviderStatusUpdate> batch, Exception error) {
+        consecutiveFailures++;
+        long backoffMs = Math.min(properties.getMaxBackoffMs(),
+                properties.getInitialBackoffMs() << Math.min(consecutiveFailures - 1, 20));
+        retryAtMillis = System.currentTimeMillis() + backoffMs;
+
+        List<ProviderStatusUpdate> dropped = new ArrayList<>();
+        for (ProviderStatusUpdate update : batch) {
+            int attempts = failedAttempts.merge(update.key(), 1, Integer::sum);
+            if (attempts >= properties.getMaxAttempts()) {
+                failedAttempts.remove(update.key());
+                dropped.add(update);
+                continue;
+            }
+            // Anything that arrived for the same transaction in the meantime is coalesced with the retry
+            pending.merge(update.key(), update, (newer, retried) -> coalesce(retried, newer));
+        }
+        logger.error("Failed to apply {} provider status updates, re-queued {} and retrying in {} ms",
+                batch.size(), batch.size() - dropped.size(), backoffMs, error);
+        if (!dropped.isEmpty()) {
+            droppedCounter.increment(dropped.size());
+            logger.error("Dropped {} provider status updates after {} failed attempts: {}",
+                    dropped.size(), properties.getMaxAttempts(), dropped);
+        }
+    }
+
+    static ProviderStatusUpdate coalesce(ProviderStatusUpdate current, ProviderStatusUpdate incoming) {
+        if (incoming.getStatus() == current.getStatus() || current.getStatus().canTransitionTo(incoming.getStatus())) {
+            return incoming;
+        }
+        logger.warn("Ignoring out-of-order status {} for provider transaction {} already queued as {}",
+                incoming.getStatus(), incoming.getProviderTransactionId(), current.getStatus());
+        return current;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!pending.isEmpty()) {
+            logger.info("Applying {} queued provider status updates before shutdown", pending.size());
+            flush();
+            if (!pending.isEmpty()) {
+                logger.error("Dropped {} provider status updates that could not be applied before shutdown: {}",
+                        pending.size(), pending.values());
+            }
+        }
+    }
+}
@@ -1,6 +1,29 @@
 package com.finsense.service;
 
+import com.finsense.model.SmsMessage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public interface SmsGateway {
 
     void sendSms(String recipientPhoneNumber, String message);
+
+    /**
+     * Sends a batch of messages and returns the error for each message that could not be sent, keyed by
+     * {@link SmsMessage#getReference()}. The default sends them one at a time; gateways with a bulk API
+     * should override it.
+     */
+    default Map<String, String> sendBatch(List<SmsMessage> messages) {
+        Map<String, String> failures = new HashMap<>();
+        for (SmsMessage message : messages) {
+            try {
+                sendSms(message.getRecipientPhoneNumber(), message.getMessage());
+            } catch (RuntimeException e) {
+                failures.put(message.getReference(), String.valueOf(e.getMessage()));
+            }
+        }
+        return failures;
+    }
 }
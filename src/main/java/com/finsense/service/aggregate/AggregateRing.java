@@ -0,0 +1,168 @@
+package com.finsense.service.aggregate;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A ring of {@code slotCount} time slots of {@code slotMillis} each, holding the counters of every key recorded
+ * during the slot. When a slot's index comes round again it is replaced by a fresh slot rather than reset, so
+ * readers never see a half-cleared one. Slots, per-key cells and latency buckets are created on first use, and
+ * each slot and cell keeps a bitmap of the entries it has created so readers skip the empty ones.
+ * <p>
+ * Counters are {@link LongAdder}s: concurrent recorders add to separate cells instead of retrying a CAS on one
+ * shared value, and readers sum the cells.
+ */
+final class AggregateRing {
+
+    private final long slotMillis;
+    private final int keyCount;
+    private final AtomicReferenceArray<Slot> slots;
+
+    AggregateRing(long slotMillis, int slotCount, int keyCount) {
+        this.slotMillis = slotMillis;
+        this.keyCount = keyCount;
+        this.slots = new AtomicReferenceArray<>(slotCount);
+    }
+
+    long getSpanMillis() {
+        return slotMillis * slots.length();
+    }
+
+    /**
+     * @param latencyMillis latency to add to the key's distribution, or -1 for none
+     */
+    void record(long timeMillis, int key, long minorUnits, long latencyMillis) {
+        Slot slot = slot(timeMillis / slotMillis);
+        if (slot != null) {
+            slot.cell(key).record(minorUnits, latencyMillis);
+        }
+    }
+
+    /**
+     * Adds every key's counters from the slot holding {@code nowMillis} and the slots before it, as many as fit
+     * in {@code windowMillis}, to {@code totals}. The current slot is partly elapsed, so the window covers up to
+     * one slot less than {@code windowMillis}.
+     */
+    void collect(long nowMillis, long windowMillis, Totals[] totals) {
+        long current = nowMillis / slotMillis;
+        long oldest = current - Math.min(windowMillis / slotMillis, slots.length()) + 1;
+        for (int i = 0; i < slots.length(); i++) {
+            Slot slot = slots.get(i);
+            if (slot == null || slot.epoch < oldest || slot.epoch > current) {
+                continue;
+            }
+            for (int word = 0; word < slot.used.length(); word++) {
+                for (long bits = slot.used.get(word); bits != 0; bits &= bits - 1) {
+                    int key = word * 64 + Long.numberOfTrailingZeros(bits);
+                    if (totals[key] == null) {
+                        totals[key] = new Totals();
+                    }
+                    totals[key].add(slot.cells.get(key));
+                }
+            }
+        }
+    }
+
+    // Null when the slot for epoch has already been reused for a later one
+    private Slot slot(long epoch) {
+        int index = (int) (epoch % slots.length());
+        Slot slot = slots.get(index);
+        while (slot == null || slot.epoch != epoch) {
+            if (slot != null && slot.epoch > epoch) {
+                return null;
+            }
+            Slot fresh = new Slot(epoch, keyCount);
+            if (slots.compareAndSet(index, slot, fresh)) {
+                return fresh;
+            }
+            slot = slots.get(index);
+        }
+        return slot;
+    }
+
+    // Set only by the thread that created the entry, after publishing it, so a set bit always has an entry
+    private static void markUsed(AtomicLongArray used, int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        long current = used.get(word);
+        while (!used.compareAndSet(word, current, current | bit)) {
+            current = used.get(word);
+        }
+    }
+
+    private static final class Slot {
+
+        final long epoch;
+        final AtomicReferenceArray<Cell> cells;
+        final AtomicLongArray used;
+
+        Slot(long epoch, int keyCount) {
+            this.epoch = epoch;
+            this.cells = new AtomicReferenceArray<>(keyCount);
+            this.used = new AtomicLongArray((keyCount + 63) / 64);
+        }
+
+        Cell cell(int key) {
+            Cell cell = cells.get(key);
+            if (cell == null) {
+                if (cells.compareAndSet(key, null, new Cell())) {
+                    markUsed(used, key);
+                }
+                cell = cells.get(key);
+            }
+            return cell;
+        }
+    }
+
+    private static final class Cell {
+
+        final LongAdder count = new LongAdder();
+        final LongAdder minorUnits = new LongAdder();
+        final LongAccumulator maxLatency = new LongAccumulator(Math::max, -1);
+        final AtomicReferenceArray<LongAdder> latency = new AtomicReferenceArray<>(LatencyHistogram.BUCKETS);
+        final AtomicLongArray usedBuckets = new AtomicLongArray((LatencyHistogram.BUCKETS + 63) / 64);
+
+        void record(long amount, long latencyMillis) {
+            count.increment();
+            minorUnits.add(amount);
+            if (latencyMillis >= 0) {
+                int bucket = LatencyHistogram.bucket(latencyMillis);
+                LongAdder adder = latency.get(bucket);
+                if (adder == null) {
+                    if (latency.compareAndSet(bucket, null, new LongAdder())) {
+                        markUsed(usedBuckets, bucket);
+                    }
+                    adder = latency.get(bucket);
+                }
+                adder.increment();
+                maxLatency.accumulate(latencyMillis);
+            }
+        }
+    }
+
+    // One key's counters summed over the slots of a window
+    static final class Totals {
+
+        long count;
+        long minorUnits;
+        long latencyCount;
+        long maxLatency = -1;
+        final long[] latency = new long[LatencyHistogram.BUCKETS];
+
+        private void add(Cell cell) {
+            count += cell.count.sum();
+            minorUnits += cell.minorUnits.sum();
+            maxLatency = Math.max(maxLatency, cell.maxLatency.get());
+            for (int word = 0; word < cell.usedBuckets.length(); word++) {
+                for (long bits = cell.usedBuckets.get(word); bits != 0; bits &= bits - 1) {
+                    int bucket = word * 64 + Long.numberOfTrailingZeros(bits);
+                    long sum = cell.latency.get(bucket).sum();
+                    latency[bucket] += sum;
+                    latencyCount += sum;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.finsense.service.aggregate;
+
+import java.util.concurrent.TimeUnit;
+
+// Sliding windows served by PaymentAggregates, named as in GET /actuator/payments/{window}
+public enum AggregateWindow {
+    ONE_MINUTE("1m", TimeUnit.MINUTES.toMillis(1)),
+    FIVE_MINUTES("5m", TimeUnit.MINUTES.toMillis(5)),
+    ONE_HOUR("1h", TimeUnit.HOURS.toMillis(1)),
+    ONE_DAY("24h", TimeUnit.DAYS.toMillis(1));
+
+    private final String label;
+    private final long millis;
+
+    AggregateWindow(String label, long millis) {
+        this.label = label;
+        this.millis = millis;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    // Null if no window has this label
+    public static AggregateWindow fromLabel(String label) {
+        for (AggregateWindow window : values()) {
+            if (window.label.equalsIgnoreCase(label)) {
+                return window;
+            }
+        }
+        return null;
+    }
+}
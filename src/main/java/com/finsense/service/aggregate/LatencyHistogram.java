@@ -0,0 +1,54 @@
+package com.finsense.service.aggregate;
+
+/**
+ * Bucket layout of the latency distributions: exact below 8 ms, then eight buckets per power of two, so a
+ * percentile read from the buckets is within 12.5% of the true value. Latencies of a day or more share the
+ * last bucket.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 26; // 2^27 ms is about 37 hours
+
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private LatencyHistogram() {
+    }
+
+    static int bucket(long millis) {
+        if (millis < SUB_BUCKETS) {
+            return (int) Math.max(millis, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(millis);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (millis >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Largest latency that falls in the bucket
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift) - 1;
+    }
+
+    /**
+     * Upper bound of the bucket holding the {@code quantile} of {@code total} recorded latencies.
+     */
+    static long percentile(long[] counts, long total, double quantile) {
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return upperBound(bucket);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+}
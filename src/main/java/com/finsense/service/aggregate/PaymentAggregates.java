@@ -0,0 +1,84 @@
+package com.finsense.service.aggregate;
+
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.PaymentAggregate;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.ProviderType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts, amount totals and latency distributions of payment status transitions by provider, currency and
+ * status, over the sliding {@link AggregateWindow}s. The 1m and 5m windows are read from 5-second slots, the 1h
+ * and 24h windows from 1-minute slots; every transition is recorded in both rings.
+ */
+public class PaymentAggregates {
+
+    private static final ProviderType[] PROVIDERS = ProviderType.values();
+    private static final CurrencyCode[] CURRENCIES = CurrencyCode.values();
+    private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+    private static final int KEYS = PROVIDERS.length * CURRENCIES.length * STATUSES.length;
+
+    private final LongSupplier clock;
+    private final AggregateRing recent = new AggregateRing(TimeUnit.SECONDS.toMillis(5), 60, KEYS);
+    private final AggregateRing daily = new AggregateRing(TimeUnit.MINUTES.toMillis(1), 1440, KEYS);
+
+    public PaymentAggregates(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Records a transition that happened at {@code timeMillis}. Transitions older than the longest window are
+     * ignored.
+     *
+     * @param latencyMillis time from the payment's creation to this transition, or -1 for a new payment
+     */
+    public void record(ProviderType provider, Money amount, PaymentStatus status, long timeMillis, long latencyMillis) {
+        int key = (provider.ordinal() * CURRENCIES.length + amount.getCurrency().ordinal()) * STATUSES.length + status.ordinal();
+        long age = clock.getAsLong() - timeMillis;
+        if (age < recent.getSpanMillis()) {
+            recent.record(timeMillis, key, amount.getMinorUnits(), latencyMillis);
+        }
+        if (age < daily.getSpanMillis()) {
+            daily.record(timeMillis, key, amount.getMinorUnits(), latencyMillis);
+        }
+    }
+
+    /**
+     * Aggregates for {@code window}, ordered by provider, currency and status. Only combinations with at least
+     * one transition in the window are included.
+     */
+    public List<PaymentAggregate> snapshot(AggregateWindow window) {
+        AggregateRing ring = window.getMillis() <= recent.getSpanMillis() ? recent : daily;
+        AggregateRing.Totals[] totals = new AggregateRing.Totals[KEYS];
+        ring.collect(clock.getAsLong(), window.getMillis(), totals);
+
+        List<PaymentAggregate> aggregates = new ArrayList<>();
+        for (int key = 0; key < KEYS; key++) {
+            AggregateRing.Totals total = totals[key];
+            if (total == null) {
+                continue;
+            }
+            ProviderType provider = PROVIDERS[key / (CURRENCIES.length * STATUSES.length)];
+            CurrencyCode currency = CURRENCIES[key / STATUSES.length % CURRENCIES.length];
+            PaymentStatus status = STATUSES[key % STATUSES.length];
+            Money amount = Money.ofMinor(total.minorUnits, currency);
+            if (total.latencyCount == 0) {
+                aggregates.add(new PaymentAggregate(provider, status, total.count, amount, null, null, null, null));
+            } else {
+                aggregates.add(new PaymentAggregate(provider, status, total.count, amount,
+                        percentile(total, 0.50), percentile(total, 0.95), percentile(total, 0.99), total.maxLatency));
+            }
+        }
+        return aggregates;
+    }
+
+    // Bucket bounds can overshoot the largest latency actually recorded
+    private static long percentile(AggregateRing.Totals total, double quantile) {
+        return Math.min(LatencyHistogram.percentile(total.latency, total.latencyCount, quantile), total.maxLatency);
+    }
+}
@@ -0,0 +1,41 @@
+package com.finsense.service.aggregate;
+
+import com.finsense.model.PaymentAggregate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// GET /actuator/payments and /actuator/payments/{1m|5m|1h|24h}: in-memory payment aggregates, no database access
+@Component
+@Endpoint(id = "payments")
+public class PaymentAggregatesEndpoint {
+
+    private final PaymentAggregationService aggregationService;
+
+    @Autowired
+    public PaymentAggregatesEndpoint(PaymentAggregationService aggregationService) {
+        this.aggregationService = aggregationService;
+    }
+
+    @ReadOperation
+    public Map<String, List<PaymentAggregate>> windows() {
+        Map<String, List<PaymentAggregate>> windows = new LinkedHashMap<>();
+        for (AggregateWindow window : AggregateWindow.values()) {
+            windows.put(window.getLabel(), aggregationService.snapshot(window));
+        }
+        return windows;
+    }
+
+    // 404 for an unknown window
+    @ReadOperation
+    public List<PaymentAggregate> window(@Selector String window) {
+        AggregateWindow aggregateWindow = AggregateWindow.fromLabel(window);
+        return aggregateWindow == null ? null : aggregationService.snapshot(aggregateWindow);
+    }
+}
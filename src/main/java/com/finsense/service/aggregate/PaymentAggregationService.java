@@ -0,0 +1,119 @@
+package com.finsense.service.aggregate;
+
+import com.finsense.config.AggregateProperties;
+import com.finsense.model.PaymentAggregate;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusChangedEvent;
+import com.finsense.model.PaymentStatusView;
+import com.finsense.model.ProviderType;
+import com.finsense.repository.PaymentTransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Keeps {@link PaymentAggregates} current from the committed {@link PaymentStatusChangedEvent}s, so dashboards
+ * read volumes, totals and latencies from memory instead of aggregating over the payment table.
+ * <p>
+ * Changes made since this instance started are counted as they commit. Older ones are replayed from the table
+ * in one streaming pass once the application is ready. A row only records when it was created and its latest
+ * change, so intermediate transitions before the restart are not replayed (a payment now {@code SUCCESS} is
+ * not counted as {@code IN_PROGRESS}).
+ */
+@Service
+public class PaymentAggregationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentAggregationService.class);
+
+    private final PaymentTransactionRepository paymentTransactionRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AggregateProperties properties;
+    private final PaymentAggregates aggregates = new PaymentAggregates(System::currentTimeMillis);
+    // Changes from here on are counted live; the rebuild only replays earlier ones, so none is counted twice
+    private final LocalDateTime liveSince = LocalDateTime.now();
+
+    @Autowired
+    public PaymentAggregationService(PaymentTransactionRepository paymentTransactionRepository,
+                                     PlatformTransactionManager transactionManager, AggregateProperties properties) {
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.properties = properties;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        PaymentStatusView transaction = event.getTransaction();
+        ProviderType provider = ProviderType.fromName(transaction.getProvider());
+        if (provider == null || transaction.getUpdatedAt().isBefore(liveSince)) {
+            return;
+        }
+        long latencyMillis = event.getPreviousStatus() == null ? -1
+                : ChronoUnit.MILLIS.between(transaction.getCreatedAt(), transaction.getUpdatedAt());
+        aggregates.record(provider, transaction.getAmount(), transaction.getStatus(), System.currentTimeMillis(), latencyMillis);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (properties.isRebuildOnStartup()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Replays the payments changed in the last 24 hours before this instance started.
+     *
+     * @return number of payments read
+     */
+    public long rebuild() {
+        long startNanos = System.nanoTime();
+        LocalDateTime since = liveSince.minus(AggregateWindow.ONE_DAY.getMillis(), ChronoUnit.MILLIS);
+        ZoneId zone = ZoneId.systemDefault();
+        long rows = readOnlyTransaction.execute(tx -> {
+            try (Stream<PaymentStatusView> stream = paymentTransactionRepository.streamUpdatedSince(since)) {
+                long count = 0;
+                for (Iterator<PaymentStatusView> it = stream.iterator(); it.hasNext(); count++) {
+                    replay(it.next(), since, zone);
+                }
+                return count;
+            }
+        });
+        logger.info("Rebuilt payment aggregates from {} payments changed since {} in {} ms", rows, since,
+                (System.nanoTime() - startNanos) / 1000000);
+        return rows;
+    }
+
+    public List<PaymentAggregate> snapshot(AggregateWindow window) {
+        return aggregates.snapshot(window);
+    }
+
+    private void replay(PaymentStatusView transaction, LocalDateTime since, ZoneId zone) {
+        ProviderType provider = ProviderType.fromName(transaction.getProvider());
+        if (provider == null) {
+            return;
+        }
+        LocalDateTime createdAt = transaction.getCreatedAt();
+        LocalDateTime updatedAt = transaction.getUpdatedAt();
+        if (!createdAt.isBefore(since) && createdAt.isBefore(liveSince)) {
+            aggregates.record(provider, transaction.getAmount(), PaymentStatus.PENDING,
+                    createdAt.atZone(zone).toInstant().toEpochMilli(), -1);
+        }
+        if (transaction.getStatus() != PaymentStatus.PENDING && updatedAt.isBefore(liveSince)) {
+            aggregates.record(provider, transaction.getAmount(), transaction.getStatus(),
+                    updatedAt.atZone(zone).toInstant().toEpochMilli(), ChronoUnit.MILLIS.between(createdAt, updatedAt));
+        }
+    }
+}
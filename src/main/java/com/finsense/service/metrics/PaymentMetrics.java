@@ -0,0 +1,53 @@
+package com.finsense.service.metrics;
+
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Payment-level meters: {@code payment.status.transitions}, tagged {@code from} ({@code NONE} for a new
+ * transaction) and {@code to}, counted once the change commits; and {@code payment.errors}, tagged with the
+ * type of every exception that fails an API request.
+ */
+@Component
+public class PaymentMetrics {
+
+    private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+
+    private final MeterRegistry meterRegistry;
+    // transitions[from.ordinal() + 1][to.ordinal()], row 0 for new transactions; null for illegal transitions
+    private final Counter[][] transitions = new Counter[STATUSES.length + 1][STATUSES.length];
+
+    @Autowired
+    public PaymentMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (PaymentStatus to : STATUSES) {
+            transitions[0][to.ordinal()] = transitionCounter("NONE", to);
+            for (PaymentStatus from : STATUSES) {
+                if (from.canTransitionTo(to)) {
+                    transitions[from.ordinal() + 1][to.ordinal()] = transitionCounter(from.name(), to);
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        PaymentStatus from = event.getPreviousStatus();
+        PaymentStatus to = event.getTransaction().getStatus();
+        Counter counter = transitions[from == null ? 0 : from.ordinal() + 1][to.ordinal()];
+        (counter != null ? counter : transitionCounter(from.name(), to)).increment();
+    }
+
+    public void recordError(Throwable error) {
+        meterRegistry.counter("payment.errors", "exception", error.getClass().getSimpleName()).increment();
+    }
+
+    private Counter transitionCounter(String from, PaymentStatus to) {
+        return meterRegistry.counter("payment.status.transitions", "from", from, "to", to.name());
+    }
+}
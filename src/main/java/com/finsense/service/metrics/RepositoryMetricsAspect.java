@@ -0,0 +1,82 @@
+package com.finsense.service.metrics;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every Spring Data repository method as {@code repository.invocations}, tagged {@code repository},
+ * {@code method} and {@code exception} ({@code None} on success). Success timers are cached per repository
+ * and method, so a call adds two map lookups and two clock reads. Streaming queries are timed until the
+ * stream is returned, not until it is drained.
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final Map<Class<?>, Map<Method, Timer>> timers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RepositoryMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.clock = meterRegistry.config().clock();
+    }
+
+    @Around("this(org.springframework.data.repository.Repository)")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Object repository = joinPoint.getTarget();
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        long start = clock.monotonicTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            timer(repository, method, e.getClass().getSimpleName()).record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        successTimer(repository, method).record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    // get() before computeIfAbsent(): on Java 8 the latter locks the bin even when the key is present
+    private Timer successTimer(Object repository, Method method) {
+        Map<Method, Timer> byMethod = timers.get(repository.getClass());
+        if (byMethod == null) {
+            byMethod = timers.computeIfAbsent(repository.getClass(), type -> new ConcurrentHashMap<>());
+        }
+        Timer timer = byMethod.get(method);
+        return timer != null ? timer : byMethod.computeIfAbsent(method, m -> timer(repository, m, "None"));
+    }
+
+    private Timer timer(Object repository, Method method, String exception) {
+        return Timer.builder("repository.invocations")
+                .tag("repository", repositoryName(repository))
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .register(meterRegistry);
+    }
+
+    private static String repositoryName(Object repository) {
+        for (Class<?> type : AopProxyUtils.proxiedUserInterfaces(repository)) {
+            if (Repository.class.isAssignableFrom(type)) {
+                return type.getSimpleName();
+            }
+        }
+        return repository.getClass().getSimpleName();
+    }
+}
@@ -4,27 +4,38 @@ package com.finsense.service.mock;
 import com.finsense.model.PaymentStatus;
 import com.finsense.model.PaymentTransaction;
 import com.finsense.service.MobileMoneyService;
+import com.finsense.util.PaymentIdGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.UUID;
-
 @Service
 public class MockMobileMoneyService implements MobileMoneyService {
 
     private static final Logger logger = LoggerFactory.getLogger(MockMobileMoneyService.class);
 
+    @Value("${finsense.mock.provider-latency-ms:1000}")
+    private long latencyMs = 1000;
+
+    private final PaymentIdGenerator paymentIdGenerator;
+
+    @Autowired
+    public MockMobileMoneyService(PaymentIdGenerator paymentIdGenerator) {
+        this.paymentIdGenerator = paymentIdGenerator;
+    }
+
     @Override
     public String initiateB2CPayment(PaymentTransaction transaction) {
         logger.info("Mock Mobile Money Service: Initiating B2C payment for transaction ID: {}", transaction.getId());
         // Simulate a successful transaction after a short delay
         try {
-            Thread.sleep(1000); // Simulate network latency
+            Thread.sleep(latencyMs); // Simulate network latency
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
-        String providerTransactionId = "MOCK_" + UUID.randomUUID().toString();
+        String providerTransactionId = "MOCK_" + paymentIdGenerator.generate();
         logger.info("Mock Mobile Money Service: Payment initiated successfully with provider transaction ID: {}", providerTransactionId);
         return providerTransactionId;
     }
@@ -34,7 +45,7 @@ public class MockMobileMoneyService implements MobileMoneyService {
         logger.info("Mock Mobile Money Service: Checking payment status for provider transaction ID: {}", providerTransactionId);
         // Simulate a successful status after a short delay
         try {
-            Thread.sleep(500); // Simulate network latency
+            Thread.sleep(latencyMs / 2); // Simulate network latency
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
@@ -1,25 +1,47 @@
 package com.finsense.service.mock;
 
 
+import com.finsense.model.SmsMessage;
 import com.finsense.service.SmsGateway;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 @Service
 public class MockSmsGateway implements SmsGateway {
 
     private static final Logger logger = LoggerFactory.getLogger(MockSmsGateway.class);
 
+    @Value("${finsense.mock.sms-latency-ms:300}")
+    private long latencyMs;
+
     @Override
     public void sendSms(String recipientPhoneNumber, String message) {
         logger.info("Mock SMS Gateway: Sending SMS to {}: {}", recipientPhoneNumber, message);
         // Simulate successful SMS sending
+        simulateLatency();
+        logger.info("Mock SMS Gateway: SMS sent successfully.");
+    }
+
+    // Simulates a bulk API: one round trip per batch
+    @Override
+    public Map<String, String> sendBatch(List<SmsMessage> messages) {
+        logger.info("Mock SMS Gateway: Sending batch of {} SMS", messages.size());
+        simulateLatency();
+        logger.info("Mock SMS Gateway: Batch of {} SMS sent successfully.", messages.size());
+        return Collections.emptyMap();
+    }
+
+    private void simulateLatency() {
         try {
-            Thread.sleep(300); // Simulate network latency
+            Thread.sleep(latencyMs); // Simulate network latency
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
-        logger.info("Mock SMS Gateway: SMS sent successfully.");
     }
 }
@@ -0,0 +1,101 @@
+package com.finsense.service.mpesa;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * OAuth access token shared by every call. Once the token is within {@code refreshAhead} of expiring, the
+ * first caller starts a background refresh and everyone keeps using the current token until the new one
+ * arrives. Only when no valid token is left do callers wait, all on the same single request.
+ */
+final class AccessTokenCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessTokenCache.class);
+
+    static final class AccessToken {
+        final String value;
+        final Instant expiresAt;
+
+        AccessToken(String value, Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Supplier<CompletableFuture<AccessToken>> fetcher;
+    private final Clock clock;
+    private final Duration refreshAhead;
+    private volatile AccessToken current;
+    private final AtomicReference<CompletableFuture<AccessToken>> refreshing = new AtomicReference<>();
+
+    AccessTokenCache(Supplier<CompletableFuture<AccessToken>> fetcher, Clock clock, Duration refreshAhead) {
+        this.fetcher = fetcher;
+        this.clock = clock;
+        this.refreshAhead = refreshAhead;
+    }
+
+    CompletableFuture<String> get() {
+        AccessToken token = current;
+        Instant now = clock.instant();
+        if (token != null && now.isBefore(token.expiresAt)) {
+            if (!now.isBefore(token.expiresAt.minus(refreshAhead))) {
+                refresh();
+            }
+            return CompletableFuture.completedFuture(token.value);
+        }
+        return refresh().thenApply(refreshed -> refreshed.value);
+    }
+
+    // Drops a token the provider rejected, unless it has already been replaced
+    void invalidate(String value) {
+        AccessToken token = current;
+        if (token != null && token.value.equals(value)) {
+            current = null;
+        }
+    }
+
+    private CompletableFuture<AccessToken> refresh() {
+        while (true) {
+            CompletableFuture<AccessToken> inFlight = refreshing.get();
+            if (inFlight != null) {
+                return inFlight;
+            }
+            CompletableFuture<AccessToken> refresh = new CompletableFuture<>();
+            if (refreshing.compareAndSet(null, refresh)) {
+                fetch(refresh);
+                return refresh;
+            }
+        }
+    }
+
+    private void fetch(CompletableFuture<AccessToken> refresh) {
+        CompletableFuture<AccessToken> fetched;
+        try {
+            fetched = fetcher.get();
+        } catch (RuntimeException e) {
+            fetched = new CompletableFuture<>();
+            fetched.completeExceptionally(e);
+        }
+        fetched.whenComplete((token, error) -> {
+            if (error == null) {
+                current = token;
+            } else {
+                logger.warn("M-Pesa access token refresh failed: {}", error.toString());
+            }
+            // Cleared before completing, so a caller woken by a failure can start the next attempt
+            refreshing.set(null);
+            if (error == null) {
+                refresh.complete(token);
+            } else {
+                refresh.completeExceptionally(error);
+            }
+        });
+    }
+}
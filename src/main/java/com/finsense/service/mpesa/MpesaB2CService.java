@@ -0,0 +1,281 @@
+package com.finsense.service.mpesa;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.finsense.config.MpesaProperties;
+import com.finsense.exception.ExternalApiException;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.model.ProviderType;
+import com.finsense.service.AsyncMobileMoneyService;
+import com.finsense.service.mpesa.AccessTokenCache.AccessToken;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Reference {@link AsyncMobileMoneyService} for the Safaricom M-Pesa B2C API, on a non-blocking HTTP client.
+ * <p>
+ * Requests share a pool of keep-alive connections (at most {@code max-connections-per-route} to the API
+ * host), served by {@code io-threads} I/O threads, so thousands of payments can be in flight without a
+ * thread each. The OAuth token is cached and refreshed {@code token-refresh-ahead-seconds} before it expires;
+ * a request rejected with 401 gets a fresh token and is retried once.
+ * <p>
+ * M-Pesa reports outcomes asynchronously to {@code result-url}: a B2C request returns the ConversationID
+ * used as the provider transaction ID, and a status query only confirms that the result will be posted,
+ * so {@link #checkPaymentStatusAsync} reports {@code IN_PROGRESS}.
+ */
+@Service
+@ConditionalOnProperty(prefix = "finsense.mpesa", name = "enabled", havingValue = "true")
+public class MpesaB2CService implements AsyncMobileMoneyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MpesaB2CService.class);
+
+    private static final String TOKEN_PATH = "/oauth/v1/generate?grant_type=client_credentials";
+    private static final String B2C_PATH = "/mpesa/b2c/v1/paymentrequest";
+    private static final String STATUS_PATH = "/mpesa/transactionstatus/v1/query";
+
+    private final MpesaProperties properties;
+    private final ObjectMapper objectMapper;
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final CloseableHttpAsyncClient httpClient;
+    private final AccessTokenCache accessTokens;
+    private final Clock clock;
+
+    @Autowired
+    public MpesaB2CService(MpesaProperties properties, ObjectMapper objectMapper) throws IOReactorException {
+        this(properties, objectMapper, Clock.systemUTC());
+    }
+
+    public MpesaB2CService(MpesaProperties properties, ObjectMapper objectMapper, Clock clock) throws IOReactorException {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        IOReactorConfig ioConfig = IOReactorConfig.custom()
+                .setIoThreadCount(properties.getIoThreads())
+                .setConnectTimeout((int) properties.getConnectTimeoutMs())
+                .setSoTimeout((int) properties.getResponseTimeoutMs())
+                .setSoKeepAlive(true)
+                .setTcpNoDelay(true)
+                .build();
+        this.connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioConfig));
+        connectionManager.setMaxTotal(properties.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxConnectionsPerRoute());
+        this.httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? keepAlive : properties.getKeepAliveMs();
+                })
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout((int) properties.getConnectTimeoutMs())
+                        .setSocketTimeout((int) properties.getResponseTimeoutMs())
+                        .setConnectionRequestTimeout((int) properties.getConnectionRequestTimeoutMs())
+                        .build())
+                .build();
+        this.accessTokens = new AccessTokenCache(this::fetchAccessToken, clock,
+                Duration.ofSeconds(properties.getTokenRefreshAheadSeconds()));
+        httpClient.start();
+    }
+
+    @Override
+    public CompletableFuture<String> initiateB2CPaymentAsync(PaymentTransaction transaction) {
+        Money amount = transaction.getAmount();
+        if (amount.getCurrency() != CurrencyCode.KES) {
+            return failed(new ExternalApiException("M-Pesa B2C only pays KES, got " + amount.getCurrency()));
+        }
+        if (!amount.isWhole()) {
+            return failed(new ExternalApiException("M-Pesa B2C only pays whole amounts, got " + amount));
+        }
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("InitiatorName", properties.getInitiatorName())
+                .put("SecurityCredential", properties.getSecurityCredential())
+                .put("CommandID", properties.getCommandId())
+                .put("Amount", amount.getMinorUnits() / amount.getCurrency().getSubunits())
+                .put("PartyA", properties.getShortCode())
+                .put("PartyB", msisdn(transaction.getRecipientPhoneNumber()))
+                .put("Remarks", transaction.getDescription() != null ? transaction.getDescription() : transaction.getId())
+                .put("QueueTimeOutURL", properties.getQueueTimeoutUrl())
+                .put("ResultURL", properties.getResultUrl())
+                .put("Occasion", transaction.getId());
+        return post(B2C_PATH, body, true).thenApply(response -> {
+            String conversationId = response.path("ConversationID").asText(null);
+            if (conversationId == null) {
+                throw new ExternalApiException("M-Pesa B2C response has no ConversationID");
+            }
+            logger.debug("M-Pesa accepted transaction {} as {}", transaction.getId(), conversationId);
+            return conversationId;
+        });
+    }
+
+    @Override
+    public CompletableFuture<PaymentTransaction> checkPaymentStatusAsync(String providerTransactionId) {
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("Initiator", properties.getInitiatorName())
+                .put("SecurityCredential", properties.getSecurityCredential())
+                .put("CommandID", "TransactionStatusQuery")
+                .put("TransactionID", providerTransactionId)
+                .put("PartyA", properties.getShortCode())
+                .put("IdentifierType", "4")
+                .put("ResultURL", properties.getResultUrl())
+                .put("QueueTimeOutURL", properties.getQueueTimeoutUrl())
+                .put("Remarks", "Status of " + providerTransactionId)
+                .put("Occasion", providerTransactionId);
+        return post(STATUS_PATH, body, true).thenApply(response -> {
+            PaymentTransaction transaction = new PaymentTransaction();
+            transaction.setProviderTransactionId(providerTransactionId);
+            transaction.setStatus(PaymentStatus.IN_PROGRESS);
+            return transaction;
+        });
+    }
+
+    @Override
+    public String getProviderType() {
+        return ProviderType.MPESA.name();
+    }
+
+    // The server may close keep-alive connections first; idle ones are dropped before it does
+    @Scheduled(fixedDelayString = "${finsense.mpesa.keep-alive-ms:30000}")
+    public void evictIdleConnections() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(properties.getKeepAliveMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        httpClient.close();
+    }
+
+    private CompletableFuture<JsonNode> post(String path, ObjectNode body, boolean retryUnauthorized) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            return failed(new ExternalApiException("Cannot serialize M-Pesa request", e));
+        }
+        return accessTokens.get().thenCompose(token -> {
+            HttpPost request = new HttpPost(properties.getBaseUrl() + path);
+            request.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+            request.setEntity(new ByteArrayEntity(json, ContentType.APPLICATION_JSON));
+            return execute(request, response -> response).thenCompose(response -> {
+                if (response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED && retryUnauthorized) {
+                    accessTokens.invalidate(token);
+                    return post(path, body, false);
+                }
+                return CompletableFuture.completedFuture(readResult(path, response));
+            });
+        });
+    }
+
+    private CompletableFuture<AccessToken> fetchAccessToken() {
+        HttpGet request = new HttpGet(properties.getBaseUrl() + TOKEN_PATH);
+        String credentials = properties.getConsumerKey() + ":" + properties.getConsumerSecret();
+        request.setHeader(HttpHeaders.AUTHORIZATION,
+                "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        Instant requestedAt = clock.instant();
+        return execute(request, response -> {
+            JsonNode token = readJson(TOKEN_PATH, response);
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || !token.hasNonNull("access_token")) {
+                throw new ExternalApiException("M-Pesa token request failed with HTTP " + response.getStatusLine().getStatusCode());
+            }
+            // Counted from the request, so the token is never used past the expiry the server had in mind
+            long expiresIn = token.path("expires_in").asLong(3599);
+            logger.info("Obtained M-Pesa access token valid for {} s", expiresIn);
+            return new AccessToken(token.get("access_token").asText(), requestedAt.plusSeconds(expiresIn));
+        });
+    }
+
+    private JsonNode readResult(String path, HttpResponse response) {
+        int status = response.getStatusLine().getStatusCode();
+        JsonNode result = readJson(path, response);
+        if (status / 100 != 2 || !"0".equals(result.path("ResponseCode").asText())) {
+            String reason = result.hasNonNull("errorMessage") ? result.get("errorMessage").asText()
+                    : result.path("ResponseDescription").asText("no description");
+            throw new ExternalApiException("M-Pesa rejected " + path + " with HTTP " + status + ": " + reason);
+        }
+        return result;
+    }
+
+    private JsonNode readJson(String path, HttpResponse response) {
+        try {
+            byte[] content = response.getEntity() != null ? EntityUtils.toByteArray(response.getEntity()) : new byte[0];
+            return content.length > 0 ? objectMapper.readTree(content) : objectMapper.createObjectNode();
+        } catch (IOException e) {
+            throw new ExternalApiException("Unreadable M-Pesa response from " + path
+                    + " (HTTP " + response.getStatusLine().getStatusCode() + ")", e);
+        }
+    }
+
+    // Completes on an I/O thread once the response is fully buffered; the mapper must not block
+    private <T> CompletableFuture<T> execute(HttpUriRequest request, Function<HttpResponse, T> mapper) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        httpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    future.complete(mapper.apply(response));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.completeExceptionally(new ExternalApiException("M-Pesa request " + request.getURI().getPath()
+                        + " failed: " + e, e));
+            }
+
+            @Override
+            public void cancelled() {
+                future.completeExceptionally(new ExternalApiException("M-Pesa request " + request.getURI().getPath()
+                        + " was cancelled"));
+            }
+        });
+        return future;
+    }
+
+    private static String msisdn(String phoneNumber) {
+        return phoneNumber.startsWith("+") ? phoneNumber.substring(1) : phoneNumber;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+}
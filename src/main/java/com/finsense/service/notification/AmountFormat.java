@@ -0,0 +1,49 @@
+package com.finsense.service.notification;
+
+import com.finsense.model.Money;
+
+/**
+ * Appends amounts as {@code KES 1,500.00}: the currency code, then the amount with the currency's minor
+ * unit (none for UGX, three for KWD) and thousands grouped. Written straight into the caller's builder
+ * from the minor units, without a {@link java.text.NumberFormat} or intermediate strings.
+ */
+final class AmountFormat {
+
+    private AmountFormat() {
+    }
+
+    static void append(StringBuilder out, Money amount) {
+        out.append(amount.getCurrency().name()).append(' ');
+        long value = amount.getMinorUnits();
+        long unit = amount.getCurrency().getSubunits();
+        if (value < 0) {
+            out.append('-');
+        }
+        appendGrouped(out, Math.abs(value / unit));
+        if (unit > 1) {
+            out.append('.');
+            long fraction = Math.abs(value % unit);
+            for (long pad = unit / 10; pad > 1 && fraction < pad; pad /= 10) {
+                out.append('0');
+            }
+            out.append(fraction);
+        }
+    }
+
+    private static void appendGrouped(StringBuilder out, long value) {
+        if (value < 1000) {
+            out.append(value);
+            return;
+        }
+        appendGrouped(out, value / 1000);
+        long group = value % 1000;
+        out.append(',');
+        if (group < 100) {
+            out.append('0');
+        }
+        if (group < 10) {
+            out.append('0');
+        }
+        out.append(group);
+    }
+}
@@ -0,0 +1,81 @@
+package com.finsense.service.notification;
+
+import com.finsense.model.NotificationLocale;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message template compiled into alternating literal text and fields, so rendering is a run of
+ * appends with nothing left to parse. Fields are written as {@code {amount}}, {@code {currency}},
+ * {@code {id}}, {@code {reason}} and {@code {status}}.
+ */
+final class MessageTemplate {
+
+    enum Field {
+        AMOUNT, CURRENCY, ID, REASON, STATUS
+    }
+
+    // literals[i] precedes fields[i]; the last literal follows the last field
+    private final String[] literals;
+    private final Field[] fields;
+
+    private MessageTemplate(String[] literals, Field[] fields) {
+        this.literals = literals;
+        this.fields = fields;
+    }
+
+    static MessageTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        int start = 0;
+        int open;
+        while ((open = source.indexOf('{', start)) >= 0) {
+            int close = source.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed field at position " + open + " in template: " + source);
+            }
+            String name = source.substring(open + 1, close);
+            Field field;
+            try {
+                field = Field.valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown field {" + name + "} in template: " + source);
+            }
+            literals.add(source.substring(start, open));
+            fields.add(field);
+            start = close + 1;
+        }
+        literals.add(source.substring(start));
+        return new MessageTemplate(literals.toArray(new String[0]), fields.toArray(new Field[0]));
+    }
+
+    void renderTo(StringBuilder out, PaymentTransaction transaction, PaymentStatus status, NotificationLocale locale) {
+        for (int i = 0; i < fields.length; i++) {
+            out.append(literals[i]);
+            switch (fields[i]) {
+                case AMOUNT:
+                    AmountFormat.append(out, transaction.getAmount());
+                    break;
+                case CURRENCY:
+                    out.append(transaction.getAmount().getCurrency().name());
+                    break;
+                case ID:
+                    out.append(transaction.getId());
+                    break;
+                case REASON:
+                    String reason = transaction.getFailureReason();
+                    out.append(reason != null ? reason : locale.getUnknownReason());
+                    break;
+                case STATUS:
+                    out.append(status.name());
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled field " + fields[i]);
+            }
+        }
+        out.append(literals[fields.length]);
+    }
+}
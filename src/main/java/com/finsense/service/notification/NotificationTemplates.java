@@ -0,0 +1,88 @@
+package com.finsense.service.notification;
+
+import com.finsense.config.NotificationProperties;
+import com.finsense.model.NotificationLocale;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * SMS bodies for payment status notifications, in the recipient's {@link NotificationLocale}.
+ * <p>
+ * Every template is compiled once at startup into an {@link EnumMap} by locale and status: the built-in
+ * English and Swahili texts, overridden per locale and status by {@code finsense.notification.templates}.
+ * A locale without a template for a status uses the {@code default-locale} one. Messages are rendered
+ * into a per-thread builder that is reused across calls, so the only allocation left is the result.
+ */
+@Component
+public class NotificationTemplates {
+
+    private static final Map<NotificationLocale, Map<PaymentStatus, String>> BUILT_IN = new EnumMap<>(NotificationLocale.class);
+
+    static {
+        Map<PaymentStatus, String> english = new EnumMap<>(PaymentStatus.class);
+        english.put(PaymentStatus.SUCCESS, "Your payment of {amount} has been successfully processed. Transaction ID: {id}");
+        english.put(PaymentStatus.FAILED, "Your payment of {amount} failed. Transaction ID: {id}. Reason: {reason}");
+        english.put(PaymentStatus.PENDING, "Your payment of {amount} is pending. Transaction ID: {id}");
+        english.put(PaymentStatus.IN_PROGRESS, "Your payment of {amount} is being processed. Transaction ID: {id}");
+        english.put(PaymentStatus.CANCELLED, "Your payment of {amount} has been cancelled. Transaction ID: {id}");
+        BUILT_IN.put(NotificationLocale.EN, english);
+
+        Map<PaymentStatus, String> swahili = new EnumMap<>(PaymentStatus.class);
+        swahili.put(PaymentStatus.SUCCESS, "Malipo yako ya {amount} yamefanikiwa. Nambari ya muamala: {id}");
+        swahili.put(PaymentStatus.FAILED, "Malipo yako ya {amount} hayakufanikiwa. Nambari ya muamala: {id}. Sababu: {reason}");
+        swahili.put(PaymentStatus.PENDING, "Malipo yako ya {amount} yanasubiri. Nambari ya muamala: {id}");
+        swahili.put(PaymentStatus.IN_PROGRESS, "Malipo yako ya {amount} yanashughulikiwa. Nambari ya muamala: {id}");
+        swahili.put(PaymentStatus.CANCELLED, "Malipo yako ya {amount} yameghairiwa. Nambari ya muamala: {id}");
+        BUILT_IN.put(NotificationLocale.SW, swahili);
+    }
+
+    private static final int MAX_RETAINED_CAPACITY = 1024;
+
+    private static final ThreadLocal<StringBuilder> builders = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private final NotificationLocale defaultLocale;
+    private final EnumMap<NotificationLocale, EnumMap<PaymentStatus, MessageTemplate>> templates =
+            new EnumMap<>(NotificationLocale.class);
+
+    @Autowired
+    public NotificationTemplates(NotificationProperties properties) {
+        this.defaultLocale = properties.getDefaultLocale();
+        for (NotificationLocale locale : NotificationLocale.values()) {
+            EnumMap<PaymentStatus, MessageTemplate> compiled = new EnumMap<>(PaymentStatus.class);
+            BUILT_IN.getOrDefault(locale, Collections.emptyMap())
+                    .forEach((status, source) -> compiled.put(status, MessageTemplate.compile(source)));
+            properties.getTemplates().getOrDefault(locale, Collections.emptyMap())
+                    .forEach((status, source) -> compiled.put(status, MessageTemplate.compile(source)));
+            templates.put(locale, compiled);
+        }
+        EnumMap<PaymentStatus, MessageTemplate> fallback = templates.get(defaultLocale);
+        for (PaymentStatus status : PaymentStatus.values()) {
+            if (!fallback.containsKey(status)) {
+                throw new IllegalStateException("No " + defaultLocale + " notification template for status " + status);
+            }
+        }
+        templates.values().forEach(compiled -> fallback.forEach(compiled::putIfAbsent));
+    }
+
+    /**
+     * The notification for {@code transaction} reaching {@code status}, in the transaction's locale.
+     */
+    public String render(PaymentTransaction transaction, PaymentStatus status) {
+        NotificationLocale locale = transaction.getLocale() != null ? transaction.getLocale() : defaultLocale;
+        StringBuilder out = builders.get();
+        out.setLength(0);
+        templates.get(locale).get(status).renderTo(out, transaction, status, locale);
+        String message = out.toString();
+        // A rare long message (e.g. a verbose failure reason) should not pin a large buffer to the thread
+        if (out.capacity() > MAX_RETAINED_CAPACITY) {
+            builders.remove();
+        }
+        return message;
+    }
+}
@@ -0,0 +1,226 @@
+package com.finsense.service.ratelimit;
+
+import com.finsense.config.RateLimitProperties;
+import com.finsense.exception.InvalidRequestException;
+import com.finsense.exception.RateLimitExceededException;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission checks the payment endpoints run before any database work: a {@link TokenBucket} per API client,
+ * and the recipient velocity rules ({@code finsense.rate-limit.recipient-rules}), which limit how many payments
+ * and how much money one number receives per window. Both are held in size-bounded maps whose entries expire
+ * once they could no longer refuse anything. The maps evict the least useful entries first, so a number that is
+ * being paid in a loop keeps its history.
+ */
+@Component
+public class PaymentRateLimiter {
+
+    private static final CurrencyCode[] CURRENCIES = CurrencyCode.values();
+
+    private final RateLimitProperties properties;
+    private final LongSupplier nanoClock;
+    private final VelocityRule[] rules;
+    private final long[][] maxAmounts; // [currency ordinal][rule]
+    private final Cache<String, TokenBucket> clients;
+    private final Cache<String, RecipientVelocity> recipients;
+
+    @Autowired
+    public PaymentRateLimiter(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    public PaymentRateLimiter(RateLimitProperties properties, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+
+        List<RateLimitProperties.RecipientRule> configured = properties.getRecipientRules();
+        this.rules = new VelocityRule[configured.size()];
+        this.maxAmounts = new long[CURRENCIES.length][configured.size()];
+        for (long[] limits : maxAmounts) {
+            Arrays.fill(limits, Long.MAX_VALUE);
+        }
+        long longestWindowSeconds = 0;
+        for (int r = 0; r < rules.length; r++) {
+            RateLimitProperties.RecipientRule rule = configured.get(r);
+            if (rule.getWindowSeconds() <= 0) {
+                throw new IllegalStateException("finsense.rate-limit.recipient-rules[" + r + "].window-seconds must be positive");
+            }
+            for (Map.Entry<String, BigDecimal> limit : rule.getMaxAmount().entrySet()) {
+                CurrencyCode currency = CurrencyCode.fromCode(limit.getKey());
+                if (currency == null) {
+                    throw new IllegalStateException("Unsupported currency in finsense.rate-limit.recipient-rules[" + r
+                            + "].max-amount: " + limit.getKey());
+                }
+                maxAmounts[currency.ordinal()][r] = Money.of(limit.getValue(), currency).getMinorUnits();
+            }
+            rules[r] = new VelocityRule(label(rule.getWindowSeconds()), TimeUnit.SECONDS.toNanos(rule.getWindowSeconds()),
+                    rule.getMaxCount());
+            longestWindowSeconds = Math.max(longestWindowSeconds, rule.getWindowSeconds());
+        }
+
+        // A bucket left alone this long is full again, the same as a new one
+        long refillNanos = (long) (TimeUnit.SECONDS.toNanos(properties.getClientBurst()) / properties.getClientRequestsPerSecond());
+        this.clients = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxClients())
+                .expireAfterAccess(Math.max(refillNanos, TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS)
+                .build();
+        this.recipients = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxRecipients())
+                .expireAfterAccess(longestWindowSeconds + longestWindowSeconds / VelocityRule.SUB_WINDOWS + 1, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @throws RateLimitExceededException if the client has used up its request rate
+     */
+    public void checkClient(String clientId) {
+        checkClient(clientId, 1);
+    }
+
+    /**
+     * Charges the client one token per payment in a request that carries {@code payments} of them.
+     *
+     * @throws RateLimitExceededException if the client has used up its request rate
+     */
+    public void checkClient(String clientId, int payments) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        TokenBucket bucket = clients.get(clientId,
+                id -> new TokenBucket(properties.getClientRequestsPerSecond(), properties.getClientBurst(), now));
+        long waitNanos = bucket.tryAcquire(now, payments);
+        if (waitNanos > 0) {
+            throw new RateLimitExceededException("Too many requests from client " + clientId + ".", secondsOf(waitNanos));
+        }
+    }
+
+    /**
+     * Counts a payment of {@code amount} to {@code phoneNumber} against the velocity rules.
+     *
+     * @return the counted payment, to release if the request fails before the payment is stored
+     * @throws RateLimitExceededException if the payment would exceed a rule's count or total in its window
+     * @throws InvalidRequestException    if the amount alone exceeds a rule's total, so no retry can succeed
+     */
+    public RecipientReservation checkRecipient(String phoneNumber, Money amount) {
+        if (!properties.isEnabled() || rules.length == 0) {
+            return RecipientReservation.NONE;
+        }
+        checkAmount(amount);
+        CurrencyCode currency = amount.getCurrency();
+        long now = nanoClock.getAsLong();
+        RecipientVelocity velocity = recipients.get(phoneNumber + '/' + currency.name(), key -> new RecipientVelocity(rules));
+        int broken = velocity.tryRecord(now, 1, amount.getMinorUnits(), maxAmounts[currency.ordinal()]);
+        if (broken >= 0) {
+            throw rejected(phoneNumber, velocity, now, broken);
+        }
+        RecipientReservation reservation = new RecipientReservation(now);
+        reservation.add(velocity, 1, amount.getMinorUnits());
+        return reservation;
+    }
+
+    /**
+     * Counts a batch against the velocity rules, payment {@code i} paying {@code amounts[i]} to
+     * {@code phoneNumbers[i]}. The batch is counted whole or not at all.
+     *
+     * @return the counted batch, to release if the request fails before the batch is stored
+     * @throws RateLimitExceededException if the batch would exceed a rule's count or total for one of its recipients
+     * @throws InvalidRequestException    if the batch alone exceeds a rule for one of its recipients, so no retry can succeed
+     */
+    public RecipientReservation checkRecipients(List<String> phoneNumbers, List<Money> amounts) {
+        if (!properties.isEnabled() || rules.length == 0) {
+            return RecipientReservation.NONE;
+        }
+        Map<String, RecipientTotal> totals = new LinkedHashMap<>();
+        for (int i = 0; i < phoneNumbers.size(); i++) {
+            Money amount = amounts.get(i);
+            checkAmount(amount);
+            totals.computeIfAbsent(phoneNumbers.get(i) + '/' + amount.getCurrency().name(),
+                    key -> new RecipientTotal(amount.getCurrency())).add(amount.getMinorUnits());
+        }
+        for (Map.Entry<String, RecipientTotal> entry : totals.entrySet()) {
+            RecipientTotal total = entry.getValue();
+            long[] limits = maxAmounts[total.currency.ordinal()];
+            for (int r = 0; r < rules.length; r++) {
+                if ((rules[r].maxCount > 0 && total.payments > rules[r].maxCount) || total.minorUnits > limits[r]) {
+                    throw new InvalidRequestException("Batch exceeds the limit per " + rules[r].label + " for recipient "
+                            + phoneNumberOf(entry.getKey()) + ".");
+                }
+            }
+        }
+
+        long now = nanoClock.getAsLong();
+        RecipientReservation reservation = new RecipientReservation(now);
+        for (Map.Entry<String, RecipientTotal> entry : totals.entrySet()) {
+            RecipientTotal total = entry.getValue();
+            RecipientVelocity velocity = recipients.get(entry.getKey(), key -> new RecipientVelocity(rules));
+            int broken = velocity.tryRecord(now, total.payments, total.minorUnits, maxAmounts[total.currency.ordinal()]);
+            if (broken >= 0) {
+                reservation.release();
+                throw rejected(phoneNumberOf(entry.getKey()), velocity, now, broken);
+            }
+            reservation.add(velocity, total.payments, total.minorUnits);
+        }
+        return reservation;
+    }
+
+    private void checkAmount(Money amount) {
+        CurrencyCode currency = amount.getCurrency();
+        long[] limits = maxAmounts[currency.ordinal()];
+        for (int r = 0; r < rules.length; r++) {
+            if (amount.getMinorUnits() > limits[r]) {
+                throw new InvalidRequestException("Amount exceeds the limit of " + Money.ofMinor(limits[r], currency)
+                        + " per " + rules[r].label + " for one recipient.");
+            }
+        }
+    }
+
+    private RateLimitExceededException rejected(String phoneNumber, RecipientVelocity velocity, long now, int broken) {
+        return new RateLimitExceededException("Too many payments to " + phoneNumber + " within " + rules[broken].label + ".",
+                secondsOf(velocity.nanosUntilOldestExpires(now, broken)));
+    }
+
+    private static String phoneNumberOf(String recipientKey) {
+        return recipientKey.substring(0, recipientKey.lastIndexOf('/'));
+    }
+
+    private static long secondsOf(long nanos) {
+        return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static String label(long windowSeconds) {
+        if (windowSeconds % 3600 == 0) {
+            return windowSeconds / 3600 + "h";
+        }
+        return windowSeconds % 60 == 0 ? windowSeconds / 60 + "m" : windowSeconds + "s";
+    }
+
+    private static final class RecipientTotal {
+
+        private final CurrencyCode currency;
+        private int payments;
+        private long minorUnits;
+
+        private RecipientTotal(CurrencyCode currency) {
+            this.currency = currency;
+        }
+
+        private void add(long amount) {
+            payments++;
+            minorUnits += amount;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.finsense.service.ratelimit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payments counted against the recipient velocity rules by one request. A request that fails before its payments
+ * are stored releases them, so the retry a 503 asks for is not counted twice.
+ */
+public final class RecipientReservation {
+
+    static final RecipientReservation NONE = new RecipientReservation(0);
+
+    private final long nowNanos;
+    private final List<Counted> counted = new ArrayList<>(1);
+    private boolean released;
+
+    RecipientReservation(long nowNanos) {
+        this.nowNanos = nowNanos;
+    }
+
+    void add(RecipientVelocity velocity, int payments, long amount) {
+        counted.add(new Counted(velocity, payments, amount));
+    }
+
+    /**
+     * Takes the payments back out of their windows. Only the first call has any effect.
+     */
+    public synchronized void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        for (Counted entry : counted) {
+            entry.velocity.unrecord(nowNanos, entry.payments, entry.amount);
+        }
+    }
+
+    private static final class Counted {
+
+        private final RecipientVelocity velocity;
+        private final int payments;
+        private final long amount;
+
+        private Counted(RecipientVelocity velocity, int payments, long amount) {
+            this.velocity = velocity;
+            this.payments = payments;
+            this.amount = amount;
+        }
+    }
+}
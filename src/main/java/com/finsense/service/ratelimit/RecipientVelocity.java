@@ -0,0 +1,90 @@
+package com.finsense.service.ratelimit;
+
+import java.util.Arrays;
+
+/**
+ * Recent payments to one recipient in one currency: per rule, a count and a total in minor units for each
+ * sub-window. Synchronized, as a check and the payment it admits must not interleave with another payment to
+ * the same recipient; payments to different recipients never share an instance.
+ */
+final class RecipientVelocity {
+
+    private final VelocityRule[] rules;
+    private final long[] epochs;
+    private final int[] counts;
+    private final long[] minorUnits;
+
+    RecipientVelocity(VelocityRule[] rules) {
+        this.rules = rules;
+        int slots = rules.length * VelocityRule.SLOTS;
+        this.epochs = new long[slots];
+        this.counts = new int[slots];
+        this.minorUnits = new long[slots];
+        Arrays.fill(epochs, Long.MIN_VALUE);
+    }
+
+    /**
+     * Counts {@code payments} payments totalling {@code amount} unless they would break a rule.
+     *
+     * @param maxAmounts each rule's limit for the payments' currency
+     * @return -1 if the payments were counted, otherwise the index of the first rule they break
+     */
+    synchronized int tryRecord(long nowNanos, int payments, long amount, long[] maxAmounts) {
+        for (int r = 0; r < rules.length; r++) {
+            VelocityRule rule = rules[r];
+            long oldest = Math.floorDiv(nowNanos, rule.subWindowNanos) - VelocityRule.SUB_WINDOWS;
+            int count = 0;
+            long total = 0;
+            for (int slot = r * VelocityRule.SLOTS; slot < (r + 1) * VelocityRule.SLOTS; slot++) {
+                if (epochs[slot] >= oldest) {
+                    count += counts[slot];
+                    total += minorUnits[slot];
+                }
+            }
+            if ((rule.maxCount > 0 && count > rule.maxCount - payments) || total > maxAmounts[r] - amount) {
+                return r;
+            }
+        }
+        for (int r = 0; r < rules.length; r++) {
+            long epoch = Math.floorDiv(nowNanos, rules[r].subWindowNanos);
+            int slot = r * VelocityRule.SLOTS + (int) Math.floorMod(epoch, (long) VelocityRule.SLOTS);
+            if (epochs[slot] != epoch) {
+                epochs[slot] = epoch;
+                counts[slot] = 0;
+                minorUnits[slot] = 0;
+            }
+            counts[slot] += payments;
+            minorUnits[slot] += amount;
+        }
+        return -1;
+    }
+
+    /**
+     * Takes back payments counted by {@link #tryRecord} at {@code nowNanos}; those already out of a window stay out.
+     */
+    synchronized void unrecord(long nowNanos, int payments, long amount) {
+        for (int r = 0; r < rules.length; r++) {
+            long epoch = Math.floorDiv(nowNanos, rules[r].subWindowNanos);
+            int slot = r * VelocityRule.SLOTS + (int) Math.floorMod(epoch, (long) VelocityRule.SLOTS);
+            if (epochs[slot] == epoch) {
+                counts[slot] -= payments;
+                minorUnits[slot] -= amount;
+            }
+        }
+    }
+
+    /**
+     * Nanoseconds until the oldest payment counted by {@code rule} leaves its window.
+     */
+    synchronized long nanosUntilOldestExpires(long nowNanos, int rule) {
+        long subWindowNanos = rules[rule].subWindowNanos;
+        long current = Math.floorDiv(nowNanos, subWindowNanos);
+        long oldest = current;
+        for (int slot = rule * VelocityRule.SLOTS; slot < (rule + 1) * VelocityRule.SLOTS; slot++) {
+            if (epochs[slot] >= current - VelocityRule.SUB_WINDOWS && counts[slot] > 0) {
+                oldest = Math.min(oldest, epochs[slot]);
+            }
+        }
+        return (oldest + VelocityRule.SLOTS) * subWindowNanos - nowNanos;
+    }
+}
@@ -0,0 +1,52 @@
+package com.finsense.service.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in the form of the generic cell rate algorithm. The only state is the time at which the
+ * bucket would be full again. Taking a token pushes that time forward by one token's worth, and is refused
+ * when it would land more than {@code burst} tokens' worth beyond now. One CAS per request, no refill thread.
+ */
+public final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double tokensPerSecond, int burst, long nowNanos) {
+        this.intervalNanos = Math.max(1, (long) (1000000000 / tokensPerSecond));
+        this.capacityNanos = intervalNanos * burst;
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return 0 if a token was taken, otherwise the nanoseconds until one will be
+     */
+    public long tryAcquire(long nowNanos) {
+        return tryAcquire(nowNanos, 1);
+    }
+
+    /**
+     * Takes {@code permits} tokens if they are available. More than the burst are taken once the bucket is
+     * full, leaving it in debt for the difference, so a large batch is admitted but holds off the client's
+     * next request for as long as its items would have.
+     *
+     * @return 0 if the tokens were taken, otherwise the nanoseconds until they will be
+     */
+    public long tryAcquire(long nowNanos, int permits) {
+        long required = intervalNanos * Math.min(permits, capacityNanos / intervalNanos);
+        while (true) {
+            long current = fullAt.get();
+            long start = Math.max(current, nowNanos);
+            long wait = start + required - nowNanos - capacityNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, start + intervalNanos * permits)) {
+                return 0;
+            }
+        }
+    }
+}
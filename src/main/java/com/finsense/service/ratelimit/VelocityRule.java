@@ -0,0 +1,23 @@
+package com.finsense.service.ratelimit;
+
+/**
+ * A recipient velocity rule, compiled from its properties; its amount limits are kept per currency by
+ * {@link PaymentRateLimiter}. The window is tracked as {@link #SUB_WINDOWS} + 1 sub-windows, the current one
+ * included, so it reaches between one and {@code 1 + 1/SUB_WINDOWS} windows back and never counts less than the
+ * configured window.
+ */
+final class VelocityRule {
+
+    static final int SUB_WINDOWS = 6;
+    static final int SLOTS = SUB_WINDOWS + 1;
+
+    final String label;
+    final long subWindowNanos;
+    final int maxCount; // 0 for no limit
+
+    VelocityRule(String label, long windowNanos, int maxCount) {
+        this.label = label;
+        this.subWindowNanos = Math.max(1, windowNanos / SUB_WINDOWS);
+        this.maxCount = maxCount;
+    }
+}
@@ -0,0 +1,98 @@
+package com.finsense.service.resilience;
+
+/**
+ * AIMD concurrency limit driven by latency, in the spirit of TCP Vegas: while round trips stay within
+ * {@code latencyTolerance} times the best one seen, and the limit is actually being used, it grows by
+ * one per call; a slower round trip or an error multiplies it by {@code backoffRatio}.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final int minRttResetSamples;
+
+    private double limit;
+    private int inFlight;
+    private long minRttNanos = Long.MAX_VALUE;
+    private int samples;
+    private long rejected;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                    double latencyTolerance, int minRttResetSamples) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.minRttResetSamples = minRttResetSamples;
+    }
+
+    public synchronized boolean tryAcquire() {
+        return tryAcquire(0);
+    }
+
+    // Waits up to maxWaitNanos for a slot, so bounded worker pools ride out a short dip in the limit
+    public synchronized boolean tryAcquire(long maxWaitNanos) {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (inFlight >= (int) limit) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                rejected++;
+                return false;
+            }
+            try {
+                wait(Math.max(1, remaining / 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected++;
+                return false;
+            }
+        }
+        inFlight++;
+        return true;
+    }
+
+    public synchronized void onSuccess(long rttNanos) {
+        int used = inFlight;
+        inFlight--;
+        if (++samples >= minRttResetSamples) {
+            samples = 0;
+            minRttNanos = rttNanos;
+        }
+        minRttNanos = Math.min(minRttNanos, rttNanos);
+        if (rttNanos > minRttNanos * latencyTolerance) {
+            decrease();
+        } else if (used * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        notifyAll();
+    }
+
+    public synchronized void onDropped() {
+        inFlight--;
+        decrease();
+        notifyAll();
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getMinRttNanos() {
+        return minRttNanos == Long.MAX_VALUE ? 0 : minRttNanos;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
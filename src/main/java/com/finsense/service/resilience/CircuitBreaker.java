@@ -0,0 +1,131 @@
+package com.finsense.service.resilience;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker. Opens when at least {@code failureRateThreshold} percent of the last
+ * {@code slidingWindowSize} calls failed (once {@code minimumCalls} have been recorded), rejects calls
+ * for {@code openStateMs}, then lets {@code halfOpenProbes} trial calls through: the circuit closes if
+ * they all succeed and opens again on the first failure.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final boolean[] window; // true = failure
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openStateNanos;
+    private final int halfOpenProbes;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+    private long rejected;
+
+    public CircuitBreaker(int slidingWindowSize, int minimumCalls, int failureRateThreshold, long openStateMs,
+                          int halfOpenProbes, LongSupplier nanoClock) {
+        this.window = new boolean[slidingWindowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openStateNanos = openStateMs * 1_000_000L;
+        this.halfOpenProbes = halfOpenProbes;
+        this.nanoClock = nanoClock;
+    }
+
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openStateNanos) {
+                rejected++;
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenProbes) {
+                rejected++;
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+
+    // Gives back a permission that was not used for a call (e.g. the bulkhead was full)
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && probesStarted > 0) {
+            probesStarted--;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenProbes) {
+                close();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getFailureRate() {
+        return recorded == 0 ? 0 : failures * 100 / recorded;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,59 @@
+package com.finsense.service.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one provider's calls as {@code provider.requests}, tagged {@code provider}, {@code operation} and
+ * {@code outcome}, plus {@code provider.errors} tagged with the exception type. The timers are registered up
+ * front, so recording a call is a lookup in a small array and never touches the registry.
+ */
+public class ProviderCallMetrics {
+
+    public enum Operation {
+        INITIATE_B2C_PAYMENT("initiateB2CPayment"),
+        CHECK_PAYMENT_STATUS("checkPaymentStatus");
+
+        private final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final String provider;
+    private final Map<Operation, Timer> successTimers = new EnumMap<>(Operation.class);
+    private final Map<Operation, Timer> errorTimers = new EnumMap<>(Operation.class);
+
+    public ProviderCallMetrics(MeterRegistry meterRegistry, String provider) {
+        this.meterRegistry = meterRegistry;
+        this.provider = provider;
+        for (Operation operation : Operation.values()) {
+            successTimers.put(operation, timer(operation, "success"));
+            errorTimers.put(operation, timer(operation, "error"));
+        }
+    }
+
+    void recordSuccess(Operation operation, long nanos) {
+        successTimers.get(operation).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordError(Operation operation, long nanos, Throwable error) {
+        errorTimers.get(operation).record(nanos, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("provider.errors", "provider", provider, "operation", operation.tag,
+                "exception", error.getClass().getSimpleName()).increment();
+    }
+
+    private Timer timer(Operation operation, String outcome) {
+        return Timer.builder("provider.requests")
+                .tag("provider", provider)
+                .tag("operation", operation.tag)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
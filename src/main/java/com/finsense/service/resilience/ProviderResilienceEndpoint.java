@@ -0,0 +1,43 @@
+package com.finsense.service.resilience;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// GET /actuator/providers: circuit state and concurrency limit of every provider
+@Component
+@Endpoint(id = "providers")
+public class ProviderResilienceEndpoint {
+
+    private final ProviderResilienceRegistry registry;
+
+    @Autowired
+    public ProviderResilienceEndpoint(ProviderResilienceRegistry registry) {
+        this.registry = registry;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> providers() {
+        Map<String, Map<String, Object>> providers = new TreeMap<>();
+        registry.getProviders().forEach((provider, service) -> {
+            AdaptiveConcurrencyLimit limit = service.getConcurrencyLimit();
+            CircuitBreaker circuitBreaker = service.getCircuitBreaker();
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("circuitState", circuitBreaker.getState());
+            details.put("failureRate", circuitBreaker.getFailureRate());
+            details.put("concurrencyLimit", limit.getLimit());
+            details.put("inFlight", limit.getInFlight());
+            details.put("minRttMs", TimeUnit.NANOSECONDS.toMillis(limit.getMinRttNanos()));
+            details.put("rejectedByLimit", limit.getRejected());
+            details.put("rejectedByCircuit", circuitBreaker.getRejected());
+            providers.put(provider, details);
+        });
+        return providers;
+    }
+}
@@ -0,0 +1,51 @@
+package com.finsense.service.resilience;
+
+import com.finsense.service.MobileMoneyService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Publishes per-provider limits and circuit state, tagged {@code provider}: {@code provider.concurrency.limit},
+ * {@code provider.concurrency.in_flight}, {@code provider.circuit.state} (0 closed, 1 half-open, 2 open)
+ * and {@code provider.calls.rejected}. Also binds each provider's {@link ProviderCallMetrics}.
+ */
+@Component
+public class ProviderResilienceMetrics implements MeterBinder {
+
+    private final List<MobileMoneyService> providers;
+
+    // Takes the provider beans rather than ProviderResilienceRegistry so they all exist, wrapped, before binding
+    @Autowired
+    public ProviderResilienceMetrics(List<MobileMoneyService> providers) {
+        this.providers = providers;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        for (MobileMoneyService bean : providers) {
+            if (!(bean instanceof ResilientMobileMoneyService)) {
+                continue;
+            }
+            ResilientMobileMoneyService service = (ResilientMobileMoneyService) bean;
+            String provider = service.getProviderType();
+            AdaptiveConcurrencyLimit limit = service.getConcurrencyLimit();
+            CircuitBreaker circuitBreaker = service.getCircuitBreaker();
+            Gauge.builder("provider.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .tag("provider", provider).register(meterRegistry);
+            Gauge.builder("provider.concurrency.in_flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .tag("provider", provider).register(meterRegistry);
+            Gauge.builder("provider.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                    .tag("provider", provider).register(meterRegistry);
+            FunctionCounter.builder("provider.calls.rejected", service,
+                    s -> s.getConcurrencyLimit().getRejected() + s.getCircuitBreaker().getRejected())
+                    .tag("provider", provider).register(meterRegistry);
+            service.setCallMetrics(new ProviderCallMetrics(meterRegistry, provider));
+        }
+    }
+}
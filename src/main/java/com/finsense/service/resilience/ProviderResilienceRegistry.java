@@ -0,0 +1,57 @@
+package com.finsense.service.resilience;
+
+import com.finsense.config.ProviderResilienceProperties;
+import com.finsense.service.AsyncMobileMoneyService;
+import com.finsense.service.MobileMoneyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps every {@link MobileMoneyService} bean in a {@link ResilientMobileMoneyService} as it is created,
+ * and keeps the wrappers by provider type for the {@code providers} actuator endpoint.
+ */
+public class ProviderResilienceRegistry implements BeanPostProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderResilienceRegistry.class);
+
+    private final ProviderResilienceProperties properties;
+    private final Map<String, ResilientMobileMoneyService> providers = new ConcurrentHashMap<>();
+
+    public ProviderResilienceRegistry(ProviderResilienceProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof MobileMoneyService) || bean instanceof ResilientMobileMoneyService) {
+            return bean;
+        }
+        ResilientMobileMoneyService resilient = wrap((MobileMoneyService) bean);
+        providers.put(resilient.getProviderType(), resilient);
+        logger.info("Provider {} wrapped with a circuit breaker and an adaptive concurrency limit starting at {}",
+                resilient.getProviderType(), properties.getInitialLimit());
+        return resilient;
+    }
+
+    public ResilientMobileMoneyService wrap(MobileMoneyService provider) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(properties.getSlidingWindowSize(), properties.getMinimumCalls(),
+                properties.getFailureRateThreshold(), properties.getOpenStateMs(), properties.getHalfOpenProbes(), System::nanoTime);
+        AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(properties.getInitialLimit(),
+                properties.getMinLimit(), properties.getMaxLimit(), properties.getBackoffRatio(),
+                properties.getLatencyTolerance(), properties.getMinRttResetSamples());
+        if (provider instanceof AsyncMobileMoneyService) {
+            return new ResilientAsyncMobileMoneyService((AsyncMobileMoneyService) provider, circuitBreaker, concurrencyLimit,
+                    properties.getMaxWaitMs(), System::nanoTime);
+        }
+        return new ResilientMobileMoneyService(provider, circuitBreaker, concurrencyLimit, properties.getMaxWaitMs(), System::nanoTime);
+    }
+
+    public Map<String, ResilientMobileMoneyService> getProviders() {
+        return Collections.unmodifiableMap(providers);
+    }
+}
@@ -0,0 +1,12 @@
+package com.finsense.service.resilience;
+
+import com.finsense.exception.ExternalApiException;
+
+/**
+ * Thrown without calling the provider, because its circuit is open or its concurrency limit is reached.
+ */
+public class ProviderUnavailableException extends ExternalApiException {
+    public ProviderUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,63 @@
+package com.finsense.service.resilience;
+
+import com.finsense.model.PaymentTransaction;
+import com.finsense.service.AsyncMobileMoneyService;
+import com.finsense.service.resilience.ProviderCallMetrics.Operation;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * {@link ResilientMobileMoneyService} for an {@link AsyncMobileMoneyService}: the concurrency slot and the
+ * circuit breaker outcome are settled when the future completes, not when the call returns. Only a caller
+ * that finds the provider at its limit waits, for up to {@code max-wait-ms}; rejections complete the future
+ * exceptionally with {@link ProviderUnavailableException}.
+ */
+public class ResilientAsyncMobileMoneyService extends ResilientMobileMoneyService implements AsyncMobileMoneyService {
+
+    private final AsyncMobileMoneyService delegate;
+
+    public ResilientAsyncMobileMoneyService(AsyncMobileMoneyService delegate, CircuitBreaker circuitBreaker,
+                                            AdaptiveConcurrencyLimit concurrencyLimit, long maxWaitMs, LongSupplier nanoClock) {
+        super(delegate, circuitBreaker, concurrencyLimit, maxWaitMs, nanoClock);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<String> initiateB2CPaymentAsync(PaymentTransaction transaction) {
+        return callAsync(Operation.INITIATE_B2C_PAYMENT, () -> delegate.initiateB2CPaymentAsync(transaction));
+    }
+
+    @Override
+    public CompletableFuture<PaymentTransaction> checkPaymentStatusAsync(String providerTransactionId) {
+        return callAsync(Operation.CHECK_PAYMENT_STATUS, () -> delegate.checkPaymentStatusAsync(providerTransactionId));
+    }
+
+    private <T> CompletableFuture<T> callAsync(Operation operation, Supplier<CompletableFuture<T>> providerCall) {
+        CompletableFuture<T> future;
+        try {
+            acquire();
+        } catch (ProviderUnavailableException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        long start = startTime();
+        try {
+            future = providerCall.get();
+        } catch (RuntimeException e) {
+            onFailure(operation, start, e);
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        return future.whenComplete((result, error) -> {
+            if (error == null) {
+                onSuccess(operation, start);
+            } else {
+                onFailure(operation, start, AsyncMobileMoneyService.unwrap(error));
+            }
+        });
+    }
+}
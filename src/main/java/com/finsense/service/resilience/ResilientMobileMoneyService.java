@@ -0,0 +1,112 @@
+package com.finsense.service.resilience;
+
+import com.finsense.model.PaymentTransaction;
+import com.finsense.service.MobileMoneyService;
+import com.finsense.service.resilience.ProviderCallMetrics.Operation;
+
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Wraps a provider with its own bulkhead ({@link AdaptiveConcurrencyLimit}) and {@link CircuitBreaker},
+ * so a degraded provider fails fast instead of tying up the threads that serve the healthy ones. Calls that
+ * reach the provider are timed into {@link ProviderCallMetrics} once {@link ProviderResilienceMetrics} binds it.
+ */
+public class ResilientMobileMoneyService implements MobileMoneyService {
+
+    private final MobileMoneyService delegate;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final long maxWaitNanos;
+    private final LongSupplier nanoClock;
+    private volatile ProviderCallMetrics callMetrics;
+
+    public ResilientMobileMoneyService(MobileMoneyService delegate, CircuitBreaker circuitBreaker,
+                                       AdaptiveConcurrencyLimit concurrencyLimit, long maxWaitMs, LongSupplier nanoClock) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+        this.concurrencyLimit = concurrencyLimit;
+        this.maxWaitNanos = maxWaitMs * 1_000_000L;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public String initiateB2CPayment(PaymentTransaction transaction) {
+        return call(Operation.INITIATE_B2C_PAYMENT, () -> delegate.initiateB2CPayment(transaction));
+    }
+
+    @Override
+    public PaymentTransaction checkPaymentStatus(String providerTransactionId) {
+        return call(Operation.CHECK_PAYMENT_STATUS, () -> delegate.checkPaymentStatus(providerTransactionId));
+    }
+
+    @Override
+    public String getProviderType() {
+        return delegate.getProviderType();
+    }
+
+    public MobileMoneyService getDelegate() {
+        return delegate;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public AdaptiveConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public void setCallMetrics(ProviderCallMetrics callMetrics) {
+        this.callMetrics = callMetrics;
+    }
+
+    private <T> T call(Operation operation, Supplier<T> providerCall) {
+        acquire();
+        long start = startTime();
+        T result;
+        try {
+            result = providerCall.get();
+        } catch (RuntimeException e) {
+            onFailure(operation, start, e);
+            throw e;
+        }
+        onSuccess(operation, start);
+        return result;
+    }
+
+    // Takes a circuit breaker permission and a concurrency slot, waiting up to maxWaitMs for the slot
+    void acquire() {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new ProviderUnavailableException("Provider " + getProviderType() + " is unavailable (circuit open).");
+        }
+        if (!concurrencyLimit.tryAcquire(maxWaitNanos)) {
+            circuitBreaker.releasePermission();
+            throw new ProviderUnavailableException("Provider " + getProviderType() + " is at its concurrency limit of "
+                    + concurrencyLimit.getLimit() + ".");
+        }
+    }
+
+    long startTime() {
+        return nanoClock.getAsLong();
+    }
+
+    void onSuccess(Operation operation, long start) {
+        long elapsed = nanoClock.getAsLong() - start;
+        concurrencyLimit.onSuccess(elapsed);
+        circuitBreaker.onSuccess();
+        ProviderCallMetrics metrics = callMetrics;
+        if (metrics != null) {
+            metrics.recordSuccess(operation, elapsed);
+        }
+    }
+
+    void onFailure(Operation operation, long start, Throwable error) {
+        concurrencyLimit.onDropped();
+        circuitBreaker.onFailure();
+        ProviderCallMetrics metrics = callMetrics;
+        if (metrics != null) {
+            metrics.recordError(operation, nanoClock.getAsLong() - start, error);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.finsense.service.routing;
+
+import com.finsense.model.ProviderType;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable decimal trie of E.164 prefixes, flattened into one array of child indexes: a lookup is one
+ * array read per digit and allocates nothing. Returns the provider of the longest matching prefix.
+ */
+final class MsisdnPrefixTrie {
+
+    private static final int RADIX = 10;
+    private static final int MAX_DIGITS = 15;
+
+    private final int[] children; // children[node * RADIX + digit] is the child node, 0 if none (the root is never a child)
+    private final ProviderType[] providers; // By node, null where no prefix ends
+    private final int routes;
+
+    private MsisdnPrefixTrie(int[] children, ProviderType[] providers, int routes) {
+        this.children = children;
+        this.providers = providers;
+        this.routes = routes;
+    }
+
+    static MsisdnPrefixTrie compile(Map<String, ProviderType> routes) {
+        int capacity = 1;
+        for (String prefix : routes.keySet()) {
+            capacity += prefix.length();
+        }
+        int[] children = new int[capacity * RADIX];
+        ProviderType[] providers = new ProviderType[capacity];
+        int nodes = 1;
+        for (Map.Entry<String, ProviderType> route : routes.entrySet()) {
+            String prefix = route.getKey();
+            int start = prefix.startsWith("+") ? 1 : 0;
+            if (prefix.length() == start || prefix.length() - start > MAX_DIGITS) {
+                throw new IllegalArgumentException("Invalid routing prefix: " + prefix);
+            }
+            int node = 0;
+            for (int i = start; i < prefix.length(); i++) {
+                int digit = prefix.charAt(i) - '0';
+                if (digit < 0 || digit >= RADIX) {
+                    throw new IllegalArgumentException("Invalid routing prefix: " + prefix);
+                }
+                int slot = node * RADIX + digit;
+                if (children[slot] == 0) {
+                    children[slot] = nodes++;
+                }
+                node = children[slot];
+            }
+            providers[node] = route.getValue();
+        }
+        return new MsisdnPrefixTrie(Arrays.copyOf(children, nodes * RADIX), Arrays.copyOf(providers, nodes), routes.size());
+    }
+
+    /**
+     * Provider of the longest prefix of {@code msisdn} (optionally starting with {@code +}), or null if no
+     * prefix matches or the number contains anything but digits.
+     */
+    ProviderType find(String msisdn) {
+        ProviderType match = null;
+        int node = 0;
+        for (int i = msisdn.startsWith("+") ? 1 : 0; i < msisdn.length(); i++) {
+            int digit = msisdn.charAt(i) - '0';
+            if (digit < 0 || digit >= RADIX) {
+                return null;
+            }
+            node = children[node * RADIX + digit];
+            if (node == 0) {
+                break;
+            }
+            if (providers[node] != null) {
+                match = providers[node];
+            }
+        }
+        return match;
+    }
+
+    int size() {
+        return routes;
+    }
+}
@@ -0,0 +1,46 @@
+package com.finsense.service.routing;
+
+import com.finsense.model.ProviderType;
+import com.finsense.service.MobileMoneyService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link MobileMoneyService} beans by {@link ProviderType}, so resolving a provider is one array read
+ * rather than a scan over every bean.
+ */
+@Component
+public class ProviderRegistry {
+
+    private final Map<ProviderType, MobileMoneyService> services = new EnumMap<>(ProviderType.class);
+
+    @Autowired
+    public ProviderRegistry(List<MobileMoneyService> mobileMoneyServices) {
+        for (MobileMoneyService service : mobileMoneyServices) {
+            ProviderType type = ProviderType.fromName(service.getProviderType());
+            if (type == null) {
+                throw new IllegalStateException("Provider type " + service.getProviderType() + " of "
+                        + service.getClass().getName() + " is not a ProviderType");
+            }
+            MobileMoneyService existing = services.put(type, service);
+            if (existing != null) {
+                throw new IllegalStateException("Provider " + type + " is registered twice");
+            }
+        }
+    }
+
+    /**
+     * Service for {@code type}, or null if no such provider is deployed.
+     */
+    public MobileMoneyService get(ProviderType type) {
+        return type != null ? services.get(type) : null;
+    }
+
+    public boolean contains(ProviderType type) {
+        return get(type) != null;
+    }
+}
@@ -0,0 +1,114 @@
+package com.finsense.service.routing;
+
+import com.finsense.config.RoutingProperties;
+import com.finsense.model.ProviderType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Picks the mobile money provider for a recipient from a table of E.164 number prefixes.
+ * <p>
+ * The table is {@code finsense.routing.prefixes} plus the optional {@code finsense.routing.file}, compiled
+ * into a {@link MsisdnPrefixTrie}. The file is checked every {@code reload-interval-ms}; when it changes, a
+ * new trie is compiled and swapped in, and lookups in flight keep the one they started with. A file that
+ * does not compile is logged and the previous table stays in use.
+ */
+@Component
+public class ProviderRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderRouter.class);
+
+    private final RoutingProperties properties;
+    private volatile MsisdnPrefixTrie table;
+    private volatile long fileModified;
+
+    @Autowired
+    public ProviderRouter(RoutingProperties properties) {
+        this.properties = properties;
+        // A broken table at startup fails the application instead of routing nothing
+        try {
+            load();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read routing file " + properties.getFile(), e);
+        }
+    }
+
+    /**
+     * Provider routed for {@code msisdn}, or null if no prefix matches.
+     */
+    public ProviderType route(String msisdn) {
+        return msisdn != null ? table.find(msisdn) : null;
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    @Scheduled(fixedDelayString = "${finsense.routing.reload-interval-ms:10000}")
+    public void reloadIfChanged() {
+        Path file = file();
+        try {
+            if (file != null && Files.getLastModifiedTime(file).toMillis() != fileModified) {
+                reload();
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot check routing file {}: {}", file, e.toString());
+        }
+    }
+
+    /**
+     * Recompiles the table from the current properties and routing file. Keeps the previous table if that
+     * fails.
+     */
+    public synchronized void reload() {
+        try {
+            load();
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Routing table not reloaded, keeping the previous {} routes", table.size(), e);
+        }
+    }
+
+    private synchronized void load() throws IOException {
+        Map<String, ProviderType> routes = new LinkedHashMap<>();
+        properties.getPrefixes().forEach((prefix, provider) -> routes.put(prefix, provider(prefix, provider)));
+        Path file = file();
+        long modified = 0;
+        if (file != null) {
+            modified = Files.getLastModifiedTime(file).toMillis();
+            Properties fileRoutes = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                fileRoutes.load(reader);
+            }
+            fileRoutes.stringPropertyNames().forEach(prefix -> routes.put(prefix.trim(), provider(prefix, fileRoutes.getProperty(prefix))));
+        }
+        table = MsisdnPrefixTrie.compile(routes);
+        fileModified = modified;
+        logger.info("Routing {} number prefixes to providers", table.size());
+    }
+
+    private Path file() {
+        String file = properties.getFile();
+        return file == null || file.isEmpty() ? null : Paths.get(file);
+    }
+
+    private static ProviderType provider(String prefix, String name) {
+        ProviderType provider = ProviderType.fromName(name);
+        if (provider == null) {
+            throw new IllegalArgumentException("Unknown provider " + name + " for routing prefix " + prefix);
+        }
+        return provider;
+    }
+}
@@ -0,0 +1,461 @@
+package com.finsense.service.settlement;
+
+import com.finsense.config.SettlementProperties;
+import com.finsense.model.PaymentStatus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Parses a delimited settlement statement into a {@link SettlementStatement}.
+ * <p>
+ * The file is memory-mapped and cut at line boundaries into one range per thread (more for files above
+ * {@value #MAX_SEGMENT_BYTES} bytes, the most a single mapping can hold). Each thread scans its range
+ * byte by byte and writes the fields it needs straight into primitive column buffers, one per hash
+ * partition, without creating a String per line or field. Then every partition is assembled and indexed
+ * on its own thread, so both phases use all cores.
+ * <p>
+ * Fields may be wrapped in double quotes but may not contain the delimiter or line breaks.
+ */
+public class SettlementFileParser {
+
+    static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+    private static final int BOUNDARY_SCAN_BYTES = 8192;
+    private static final long MALFORMED_AMOUNT = Long.MIN_VALUE;
+    private static final byte[][] STATUS_NAMES;
+    private static final byte[] STATUS_VALUES;
+
+    static {
+        List<String> names = new ArrayList<>();
+        List<PaymentStatus> values = new ArrayList<>();
+        for (PaymentStatus status : PaymentStatus.values()) {
+            names.add(status.name());
+            values.add(status);
+        }
+        // Spellings seen in provider statements
+        names.addAll(Arrays.asList("COMPLETED", "SUCCESSFUL", "FAILURE", "CANCELED"));
+        values.addAll(Arrays.asList(PaymentStatus.SUCCESS, PaymentStatus.SUCCESS, PaymentStatus.FAILED, PaymentStatus.CANCELLED));
+        STATUS_NAMES = new byte[names.size()][];
+        STATUS_VALUES = new byte[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            STATUS_NAMES[i] = names.get(i).getBytes(StandardCharsets.US_ASCII);
+            STATUS_VALUES[i] = (byte) values.get(i).ordinal();
+        }
+    }
+
+    private final SettlementProperties properties;
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    public SettlementFileParser(SettlementProperties properties, ExecutorService executor, int parallelism) {
+        if (Integer.bitCount(properties.getPartitions()) != 1) {
+            throw new IllegalArgumentException("finsense.settlement.partitions must be a power of two");
+        }
+        this.properties = properties;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public SettlementStatement parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = nextLineStart(channel, 0, size);
+            Columns columns = readHeader(channel, dataStart);
+
+            long[] boundaries = splitAtLines(channel, dataStart, size);
+            int ranges = boundaries.length - 1;
+            ByteBuffer[] segments = new ByteBuffer[ranges];
+            long[] segmentStarts = new long[ranges];
+            for (int i = 0; i < ranges; i++) {
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, boundaries[i], boundaries[i + 1] - boundaries[i]);
+                segmentStarts[i] = boundaries[i];
+            }
+            // The mappings stay valid after the channel is closed
+
+            int partitionCount = properties.getPartitions();
+            int partitionShift = 64 - Integer.numberOfTrailingZeros(partitionCount);
+            List<Callable<RangeResult>> parseTasks = new ArrayList<>(ranges);
+            for (int i = 0; i < ranges; i++) {
+                int range = i;
+                parseTasks.add(() -> parseRange(segments[range], segmentStarts[range], columns, partitionCount, partitionShift));
+            }
+            List<RangeResult> results = invokeAll(parseTasks);
+
+            long lines = 0;
+            long malformed = 0;
+            for (RangeResult result : results) {
+                lines += result.lines;
+                malformed += result.malformed;
+            }
+
+            SettlementStatement.Partition[] partitions = new SettlementStatement.Partition[partitionCount];
+            // Duplicate detection compares mapped ID bytes, so build the partitions against a statement
+            // view that already has the segments
+            SettlementStatement lookup = new SettlementStatement(segments, segmentStarts, partitions, 0, 0, 0);
+            List<Callable<Long>> buildTasks = new ArrayList<>(partitionCount);
+            for (int p = 0; p < partitionCount; p++) {
+                int partition = p;
+                buildTasks.add(() -> buildPartition(partitions, partition, results, lookup));
+            }
+            long duplicates = 0;
+            for (long partitionDuplicates : invokeAll(buildTasks)) {
+                duplicates += partitionDuplicates;
+            }
+            return new SettlementStatement(segments, segmentStarts, partitions, lines, malformed, duplicates);
+        }
+    }
+
+    private RangeResult parseRange(ByteBuffer segment, long segmentStart, Columns columns, int partitionCount, int partitionShift) {
+        RangeResult result = new RangeResult(partitionCount, Math.max(16, segment.limit() / 64 / partitionCount));
+        int[] fieldStarts = new int[columns.count];
+        int[] fieldEnds = new int[columns.count];
+        byte delimiter = (byte) properties.getDelimiter();
+        int limit = segment.limit();
+        int position = 0;
+        while (position < limit) {
+            int lineEnd = position;
+            while (lineEnd < limit && segment.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > position && segment.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > position) {
+                result.lines++;
+                if (!parseLine(segment, position, contentEnd, delimiter, columns, fieldStarts, fieldEnds, segmentStart,
+                        result, partitionShift)) {
+                    result.malformed++;
+                }
+            }
+            position = lineEnd + 1;
+        }
+        return result;
+    }
+
+    private boolean parseLine(ByteBuffer segment, int from, int to, byte delimiter, Columns columns, int[] fieldStarts,
+                              int[] fieldEnds, long segmentStart, RangeResult result, int partitionShift) {
+        Arrays.fill(fieldStarts, -1);
+        int column = 0;
+        int fieldStart = from;
+        for (int i = from; i <= to && column < columns.count; i++) {
+            if (i == to || segment.get(i) == delimiter) {
+                int start = fieldStart;
+                int end = i;
+                while (start < end && segment.get(start) == ' ') {
+                    start++;
+                }
+                while (end > start && segment.get(end - 1) == ' ') {
+                    end--;
+                }
+                if (end - start >= 2 && segment.get(start) == '"' && segment.get(end - 1) == '"') {
+                    start++;
+                    end--;
+                }
+                fieldStarts[column] = start;
+                fieldEnds[column] = end;
+                column++;
+                fieldStart = i + 1;
+            }
+        }
+
+        int idStart = fieldStarts[columns.id];
+        int idEnd = fieldEnds[columns.id];
+        if (idStart < 0 || idEnd == idStart) {
+            return false;
+        }
+        if (fieldStarts[columns.amount] < 0) {
+            return false;
+        }
+        long amount = parseAmount(segment, fieldStarts[columns.amount], fieldEnds[columns.amount]);
+        if (amount == MALFORMED_AMOUNT) {
+            return false;
+        }
+        int currency = 0;
+        if (columns.currency >= 0 && fieldStarts[columns.currency] >= 0) {
+            currency = parseCurrency(segment, fieldStarts[columns.currency], fieldEnds[columns.currency]);
+        }
+        byte status = SettlementStatement.UNKNOWN_STATUS;
+        if (columns.status >= 0 && fieldStarts[columns.status] >= 0) {
+            status = parseStatus(segment, fieldStarts[columns.status], fieldEnds[columns.status]);
+        }
+
+        long hash = SettlementStatement.hash(segment, idStart, idEnd);
+        int partition = partitionShift == 64 ? 0 : (int) (hash >>> partitionShift);
+        result.buffers[partition].add(hash, segmentStart + idStart, idEnd - idStart, amount, currency, status);
+        return true;
+    }
+
+    private static Long buildPartition(SettlementStatement.Partition[] partitions, int partition, List<RangeResult> results,
+                                       SettlementStatement lookup) {
+        int capacity = 0;
+        for (RangeResult result : results) {
+            capacity += result.buffers[partition].size;
+        }
+        SettlementStatement.Partition target = new SettlementStatement.Partition(capacity);
+        int mask = target.slots.length - 1;
+        long duplicates = 0;
+        for (RangeResult result : results) {
+            RecordBuffer buffer = result.buffers[partition];
+            for (int i = 0; i < buffer.size; i++) {
+                long hash = buffer.hashes[i];
+                int slot = (int) hash & mask;
+                boolean duplicate = false;
+                while (target.slots[slot] != 0) {
+                    int existing = target.slots[slot] - 1;
+                    if (target.hashes[existing] == hash && lookup.idEquals(target.offsets[existing], target.lengths[existing],
+                            buffer.offsets[i], buffer.lengths[i])) {
+                        duplicate = true;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                if (duplicate) {
+                    duplicates++;
+                    continue;
+                }
+                int index = target.size++;
+                target.hashes[index] = hash;
+                target.offsets[index] = buffer.offsets[i];
+                target.lengths[index] = buffer.lengths[i];
+                target.amounts[index] = buffer.amounts[i];
+                target.currencies[index] = buffer.currencies[i];
+                target.statuses[index] = buffer.statuses[i];
+                target.slots[slot] = index + 1;
+            }
+            // Let the per-thread buffer go as soon as it has been copied
+            result.buffers[partition] = null;
+        }
+        partitions[partition] = target;
+        return duplicates;
+    }
+
+    // Amount in minor units (two decimals); more decimals are accepted only if they are zeros
+    static long parseAmount(ByteBuffer buffer, int from, int to) {
+        if (from == to) {
+            return MALFORMED_AMOUNT;
+        }
+        boolean negative = buffer.get(from) == '-';
+        int i = negative || buffer.get(from) == '+' ? from + 1 : from;
+        long units = 0;
+        int digits = 0;
+        for (; i < to && buffer.get(i) != '.'; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9' || ++digits > 16) {
+                return MALFORMED_AMOUNT;
+            }
+            units = units * 10 + (b - '0');
+        }
+        if (digits == 0) {
+            return MALFORMED_AMOUNT;
+        }
+        long cents = 0;
+        int decimals = 0;
+        if (i < to) {
+            for (i++; i < to; i++) {
+                byte b = buffer.get(i);
+                if (b < '0' || b > '9') {
+                    return MALFORMED_AMOUNT;
+                }
+                if (decimals < 2) {
+                    cents = cents * 10 + (b - '0');
+                } else if (b != '0') {
+                    return MALFORMED_AMOUNT;
+                }
+                decimals++;
+            }
+        }
+        if (decimals < 2) {
+            cents *= decimals == 0 ? 100 : 10;
+        }
+        long amount = units * 100 + cents;
+        return negative ? -amount : amount;
+    }
+
+    private static int parseCurrency(ByteBuffer buffer, int from, int to) {
+        if (to - from != 3) {
+            return 0;
+        }
+        int code = 0;
+        for (int i = from; i < to; i++) {
+            code = code << 8 | Character.toUpperCase((char) buffer.get(i));
+        }
+        return code;
+    }
+
+    private static byte parseStatus(ByteBuffer buffer, int from, int to) {
+        int length = to - from;
+        for (int s = 0; s < STATUS_NAMES.length; s++) {
+            byte[] name = STATUS_NAMES[s];
+            if (name.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && Character.toUpperCase((char) buffer.get(from + i)) == name[i]) {
+                i++;
+            }
+            if (i == length) {
+                return STATUS_VALUES[s];
+            }
+        }
+        return SettlementStatement.UNKNOWN_STATUS;
+    }
+
+    private Columns readHeader(FileChannel channel, long headerEnd) throws IOException {
+        if (headerEnd == 0 || headerEnd > BOUNDARY_SCAN_BYTES * 8L) {
+            throw new IllegalArgumentException("Settlement statement has no header line");
+        }
+        ByteBuffer header = ByteBuffer.allocate((int) headerEnd);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // read until the header line is complete
+        }
+        String line = new String(header.array(), 0, (int) headerEnd, StandardCharsets.UTF_8).trim();
+        if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
+            line = line.substring(1);
+        }
+        String[] names = line.split(Pattern.quote(String.valueOf(properties.getDelimiter())), -1);
+        Columns columns = new Columns();
+        columns.count = names.length;
+        columns.id = indexOf(names, properties.getIdColumn());
+        columns.amount = indexOf(names, properties.getAmountColumn());
+        columns.currency = indexOf(names, properties.getCurrencyColumn());
+        columns.status = indexOf(names, properties.getStatusColumn());
+        if (columns.id < 0 || columns.amount < 0) {
+            throw new IllegalArgumentException("Settlement statement header must contain the columns "
+                    + properties.getIdColumn() + " and " + properties.getAmountColumn());
+        }
+        return columns;
+    }
+
+    private static int indexOf(String[] names, String column) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].trim().replace("\"", "").equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long[] splitAtLines(FileChannel channel, long dataStart, long size) throws IOException {
+        long length = size - dataStart;
+        int ranges = (int) Math.max(1, Math.max(length > 1 << 20 ? parallelism : 1, (length + MAX_SEGMENT_BYTES - 1) / MAX_SEGMENT_BYTES));
+        long[] boundaries = new long[ranges + 1];
+        boundaries[0] = dataStart;
+        int count = 1;
+        for (int i = 1; i < ranges; i++) {
+            long boundary = nextLineStart(channel, dataStart + length * i / ranges, size);
+            if (boundary > boundaries[count - 1] && boundary < size) {
+                boundaries[count++] = boundary;
+            }
+        }
+        boundaries[count++] = size;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    // Position just after the first '\n' at or after `from`, or `size` if there is none
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SCAN_BYTES);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing settlement statement", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Failed to parse settlement statement", e.getCause());
+        }
+        return results;
+    }
+
+    private static final class Columns {
+        int count;
+        int id;
+        int amount;
+        int currency;
+        int status;
+    }
+
+    private static final class RangeResult {
+        final RecordBuffer[] buffers;
+        long lines;
+        long malformed;
+
+        RangeResult(int partitions, int initialCapacity) {
+            buffers = new RecordBuffer[partitions];
+            for (int i = 0; i < partitions; i++) {
+                buffers[i] = new RecordBuffer(initialCapacity);
+            }
+        }
+    }
+
+    private static final class RecordBuffer {
+        long[] hashes;
+        long[] offsets;
+        int[] lengths;
+        long[] amounts;
+        int[] currencies;
+        byte[] statuses;
+        int size;
+
+        RecordBuffer(int capacity) {
+            hashes = new long[capacity];
+            offsets = new long[capacity];
+            lengths = new int[capacity];
+            amounts = new long[capacity];
+            currencies = new int[capacity];
+            statuses = new byte[capacity];
+        }
+
+        void add(long hash, long offset, int length, long amount, int currency, byte status) {
+            if (size == hashes.length) {
+                int capacity = size + (size >> 1) + 1;
+                hashes = Arrays.copyOf(hashes, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                currencies = Arrays.copyOf(currencies, capacity);
+                statuses = Arrays.copyOf(statuses, capacity);
+            }
+            hashes[size] = hash;
+            offsets[size] = offset;
+            lengths[size] = length;
+            amounts[size] = amount;
+            currencies[size] = currency;
+            statuses[size] = status;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.finsense.service.settlement;
+
+import com.finsense.model.Money;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.ProviderStatusUpdate;
+import com.finsense.model.SettlementMismatch;
+import com.finsense.model.SettlementMismatchType;
+import com.finsense.model.SettlementRow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Hash join of local payments against a {@link SettlementStatement}: the statement is the build side, and
+ * local rows are probed one at a time as they stream from the database. Statement records nobody probed
+ * are looked up by ID afterwards, since they may belong to payments outside the statement window.
+ * <p>
+ * Not thread-safe; probing and {@link #finish} run on the caller's thread, and only the scan for
+ * unmatched records is spread over the executor.
+ */
+class SettlementMatcher {
+
+    private final SettlementStatement statement;
+    private final Consumer<SettlementMismatch> sink;
+    private final boolean collectCorrections;
+    private final String provider;
+    private final Map<SettlementMismatchType, Long> mismatchCounts = new EnumMap<>(SettlementMismatchType.class);
+    private final List<ProviderStatusUpdate> corrections = new ArrayList<>();
+    private long localPayments;
+    private long matched;
+
+    SettlementMatcher(SettlementStatement statement, Consumer<SettlementMismatch> sink, boolean collectCorrections, String provider) {
+        this.statement = statement;
+        this.sink = sink;
+        this.collectCorrections = collectCorrections;
+        this.provider = provider;
+        for (SettlementMismatchType type : SettlementMismatchType.values()) {
+            mismatchCounts.put(type, 0L);
+        }
+    }
+
+    /**
+     * Matches a local payment from the statement window.
+     */
+    void probe(SettlementRow row) {
+        localPayments++;
+        long reference = statement.find(row.getProviderTransactionId());
+        if (reference == SettlementStatement.NOT_FOUND) {
+            report(SettlementMismatchType.MISSING_AT_PROVIDER, row, reference);
+            return;
+        }
+        compare(row, reference);
+    }
+
+    /**
+     * Resolves the statement records no window payment matched: each batch of IDs is passed to
+     * {@code lookup}, rows it returns are compared like window payments, and the rest are reported as
+     * {@link SettlementMismatchType#MISSING_LOCALLY}.
+     */
+    void finish(Function<Collection<String>, List<SettlementRow>> lookup, int batchSize, ExecutorService executor)
+            throws InterruptedException {
+        long[][] unmatched = scanUnmatched(executor);
+        Map<String, Long> batch = new HashMap<>(batchSize * 2);
+        for (long[] references : unmatched) {
+            for (long reference : references) {
+                batch.put(statement.getProviderTransactionId(reference), reference);
+                if (batch.size() == batchSize) {
+                    resolve(batch, lookup);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            resolve(batch, lookup);
+        }
+    }
+
+    private void resolve(Map<String, Long> batch, Function<Collection<String>, List<SettlementRow>> lookup) {
+        for (SettlementRow row : lookup.apply(batch.keySet())) {
+            Long reference = batch.remove(row.getProviderTransactionId());
+            if (reference != null) {
+                localPayments++;
+                compare(row, reference);
+            }
+        }
+        for (long reference : batch.values()) {
+            report(SettlementMismatchType.MISSING_LOCALLY, null, reference);
+        }
+        batch.clear();
+    }
+
+    private void compare(SettlementRow row, long reference) {
+        statement.markMatched(reference);
+        boolean agrees = true;
+
+        // Statement amounts are held in hundredths; compared with the row's minor units without allocating
+        int currency = statement.getCurrencyCode(reference);
+        Money amount = row.getAmount();
+        if (amount == null || !amount.hasValue(statement.getAmountMinor(reference), 2)
+                || (currency != 0 && currency != SettlementStatement.encodeCurrency(amount.getCurrency().name()))) {
+            report(SettlementMismatchType.AMOUNT_MISMATCH, row, reference);
+            agrees = false;
+        }
+
+        PaymentStatus providerStatus = statement.getStatus(reference);
+        if (providerStatus != null && providerStatus != row.getStatus()) {
+            report(SettlementMismatchType.STATUS_MISMATCH, row, reference);
+            agrees = false;
+            // Only settle payments we are still waiting on; a terminal local status is never overwritten
+            if (collectCorrections && providerStatus.isTerminal() && row.getStatus().canTransitionTo(providerStatus)) {
+                corrections.add(new ProviderStatusUpdate(row.getProviderTransactionId(), providerStatus,
+                        providerStatus == PaymentStatus.SUCCESS ? null : "Reported " + providerStatus + " in settlement statement", provider));
+            }
+        }
+
+        if (agrees) {
+            matched++;
+        }
+    }
+
+    private void report(SettlementMismatchType type, SettlementRow row, long reference) {
+        mismatchCounts.merge(type, 1L, Long::sum);
+        boolean inStatement = reference != SettlementStatement.NOT_FOUND;
+        sink.accept(new SettlementMismatch(type,
+                row != null ? row.getProviderTransactionId() : statement.getProviderTransactionId(reference),
+                row != null ? row.getId() : null,
+                row != null && row.getAmount() != null ? row.getAmount().toBigDecimal() : null,
+                row != null && row.getAmount() != null ? row.getAmount().getCurrency().name() : null,
+                row != null ? row.getStatus() : null,
+                inStatement ? statement.getAmount(reference) : null,
+                inStatement ? statement.getCurrency(reference) : null,
+                inStatement ? statement.getStatus(reference) : null));
+    }
+
+    private long[][] scanUnmatched(ExecutorService executor) throws InterruptedException {
+        List<Callable<long[]>> tasks = new ArrayList<>(statement.getPartitionCount());
+        for (int p = 0; p < statement.getPartitionCount(); p++) {
+            int partition = p;
+            tasks.add(() -> {
+                int size = statement.getPartitionSize(partition);
+                long[] references = new long[16];
+                int count = 0;
+                for (int i = 0; i < size; i++) {
+                    long reference = SettlementStatement.reference(partition, i);
+                    if (!statement.isMatched(reference)) {
+                        if (count == references.length) {
+                            references = Arrays.copyOf(references, count * 2);
+                        }
+                        references[count++] = reference;
+                    }
+                }
+                return Arrays.copyOf(references, count);
+            });
+        }
+        List<Future<long[]>> futures = executor.invokeAll(tasks);
+        long[][] unmatched = new long[futures.size()][];
+        for (int i = 0; i < unmatched.length; i++) {
+            try {
+                unmatched[i] = futures.get(i).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to scan settlement statement", e.getCause());
+            }
+        }
+        return unmatched;
+    }
+
+    long getLocalPayments() {
+        return localPayments;
+    }
+
+    long getMatched() {
+        return matched;
+    }
+
+    Map<SettlementMismatchType, Long> getMismatchCounts() {
+        return mismatchCounts;
+    }
+
+    List<ProviderStatusUpdate> getCorrections() {
+        return corrections;
+    }
+}
@@ -0,0 +1,229 @@
+package com.finsense.service.settlement;
+
+import com.finsense.config.SettlementProperties;
+import com.finsense.exception.InvalidRequestException;
+import com.finsense.exception.PaymentException;
+import com.finsense.model.ProviderStatusUpdate;
+import com.finsense.model.ProviderType;
+import com.finsense.model.SettlementMismatch;
+import com.finsense.model.SettlementReconciliationRequest;
+import com.finsense.model.SettlementReport;
+import com.finsense.model.SettlementRow;
+import com.finsense.repository.PaymentTransactionRepository;
+import com.finsense.service.PaymentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reconciles a provider settlement statement against local payments.
+ * <p>
+ * The statement is parsed in parallel from a memory-mapped file into a hash-partitioned
+ * {@link SettlementStatement}, then the provider's payments in the statement window are streamed from a
+ * forward-only cursor and probed against it, so neither side is sorted and local rows are never held in
+ * memory. Every mismatch is written to a CSV report in {@code report-dir}; the response carries counts and
+ * the first {@code max-reported-mismatches}. Corrections, when requested, go through
+ * {@link PaymentService#applyProviderStatusUpdates}, the same path as provider callbacks.
+ */
+@Service
+public class SettlementReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SettlementReconciliationService.class);
+
+    private static final DateTimeFormatter REPORT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String REPORT_HEADER = "type,providerTransactionId,transactionId,localAmount,localCurrency," +
+            "localStatus,providerAmount,providerCurrency,providerStatus";
+
+    private final PaymentTransactionRepository paymentTransactionRepository;
+    private final PaymentService paymentService;
+    private final SettlementProperties properties;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    @Autowired
+    public SettlementReconciliationService(PaymentTransactionRepository paymentTransactionRepository,
+                                           PaymentService paymentService,
+                                           SettlementProperties properties,
+                                           PlatformTransactionManager transactionManager) {
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.paymentService = paymentService;
+        this.properties = properties;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.parallelism = properties.getParallelism() > 0 ? properties.getParallelism() : Runtime.getRuntime().availableProcessors();
+        this.executor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("settlement-"));
+    }
+
+    /**
+     * Runs one reconciliation; concurrent calls are serialized, since each one maps a whole statement.
+     */
+    public synchronized SettlementReport reconcile(SettlementReconciliationRequest request) {
+        if (!request.getFrom().isBefore(request.getTo())) {
+            throw new InvalidRequestException("from must be before to.");
+        }
+        ProviderType providerType = ProviderType.fromName(request.getProvider());
+        if (providerType == null) {
+            throw new InvalidRequestException("Unsupported mobile money provider: " + request.getProvider());
+        }
+        // Payments store the canonical name, so an alias such as "m-pesa" still matches
+        String provider = providerType.name();
+        Path file = resolveStatement(request.getFileName());
+        long startNanos = System.nanoTime();
+
+        SettlementStatement statement;
+        try {
+            statement = new SettlementFileParser(properties, executor, parallelism).parse(file);
+        } catch (NoSuchFileException e) {
+            throw new InvalidRequestException("Settlement statement " + request.getFileName() + " not found.");
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(e.getMessage());
+        } catch (IOException e) {
+            throw new PaymentException("Failed to read settlement statement " + request.getFileName(), e);
+        }
+        long parsedNanos = System.nanoTime();
+
+        SettlementReport report = new SettlementReport();
+        report.setFileName(request.getFileName());
+        report.setProvider(provider);
+        report.setStatementLines(statement.getLines());
+        report.setMalformedLines(statement.getMalformedLines());
+        report.setDuplicateLines(statement.getDuplicateLines());
+
+        Path reportFile = reportPath(request.getFileName());
+        SettlementMatcher matcher;
+        try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            writer.write(REPORT_HEADER);
+            writer.write('\n');
+            matcher = new SettlementMatcher(statement, mismatchSink(writer, report.getMismatches()), request.isApplyCorrections(), provider);
+            match(matcher, request, provider);
+        } catch (IOException | UncheckedIOException e) {
+            throw new PaymentException("Failed to write settlement report " + reportFile, e);
+        }
+
+        report.setLocalPayments(matcher.getLocalPayments());
+        report.setMatched(matcher.getMatched());
+        report.setMismatchCounts(matcher.getMismatchCounts());
+        report.setReportFile(reportFile.toString());
+        if (request.isApplyCorrections()) {
+            report.setCorrectionsApplied(applyCorrections(matcher.getCorrections()));
+        }
+        report.setElapsedMs((System.nanoTime() - startNanos) / 1000000);
+
+        logger.info("Reconciled {} ({} lines) against {} {} payments in {} ms (parse {} ms): {} matched, mismatches {}, {} corrections",
+                request.getFileName(), statement.getLines(), report.getLocalPayments(), provider,
+                report.getElapsedMs(), (parsedNanos - startNanos) / 1000000, report.getMatched(), report.getMismatchCounts(),
+                report.getCorrectionsApplied());
+        return report;
+    }
+
+    private void match(SettlementMatcher matcher, SettlementReconciliationRequest request, String provider) {
+        // Stream query methods need an open transaction, which also keeps the JDBC cursor open
+        readOnlyTransaction.execute(tx -> {
+            try (Stream<SettlementRow> rows = paymentTransactionRepository.streamForSettlement(provider,
+                    request.getFrom(), request.getTo())) {
+                rows.forEach(matcher::probe);
+            }
+            try {
+                matcher.finish(paymentTransactionRepository::findSettlementRows, properties.getLookupBatchSize(), executor);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PaymentException("Interrupted while reconciling " + request.getFileName(), e);
+            }
+            return null;
+        });
+    }
+
+    private int applyCorrections(List<ProviderStatusUpdate> corrections) {
+        int applied = 0;
+        for (int from = 0; from < corrections.size(); from += properties.getCorrectionBatchSize()) {
+            List<ProviderStatusUpdate> batch = corrections.subList(from, Math.min(corrections.size(), from + properties.getCorrectionBatchSize()));
+            applied += paymentService.applyProviderStatusUpdates(batch);
+        }
+        return applied;
+    }
+
+    private Consumer<SettlementMismatch> mismatchSink(Writer writer, List<SettlementMismatch> sample) {
+        return mismatch -> {
+            if (sample.size() < properties.getMaxReportedMismatches()) {
+                sample.add(mismatch);
+            }
+            try {
+                writer.write(mismatch.getType().name());
+                writeField(writer, mismatch.getProviderTransactionId());
+                writeField(writer, mismatch.getTransactionId());
+                writeField(writer, mismatch.getLocalAmount() != null ? mismatch.getLocalAmount().toPlainString() : null);
+                writeField(writer, mismatch.getLocalCurrency());
+                writeField(writer, mismatch.getLocalStatus() != null ? mismatch.getLocalStatus().name() : null);
+                writeField(writer, mismatch.getProviderAmount() != null ? mismatch.getProviderAmount().toPlainString() : null);
+                writeField(writer, mismatch.getProviderCurrency());
+                writeField(writer, mismatch.getProviderStatus() != null ? mismatch.getProviderStatus().name() : null);
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static void writeField(Writer writer, String text) throws IOException {
+        writer.write(',');
+        if (text == null) {
+            return;
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    // Statements can only be read from the inbox; names such as "../x" are rejected
+    private Path resolveStatement(String fileName) {
+        Path inbox = Paths.get(properties.getInboxDir()).toAbsolutePath().normalize();
+        Path file = inbox.resolve(fileName).normalize();
+        if (!file.getParent().equals(inbox)) {
+            throw new InvalidRequestException("fileName must name a file in the settlement inbox.");
+        }
+        return file;
+    }
+
+    private Path reportPath(String fileName) {
+        Path reportDir = Paths.get(properties.getReportDir());
+        try {
+            Files.createDirectories(reportDir);
+        } catch (IOException e) {
+            throw new PaymentException("Failed to create settlement report directory " + reportDir, e);
+        }
+        String baseName = fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+        return reportDir.resolve(baseName + "-" + REPORT_TIMESTAMP.format(LocalDateTime.now()) + "-mismatches.csv");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,288 @@
+package com.finsense.service.settlement;
+
+import com.finsense.model.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A parsed provider settlement statement, held as hash-partitioned column arrays over the memory-mapped
+ * file. Provider transaction IDs are not copied out of the file: a record keeps the 64-bit hash, offset
+ * and length of its ID, and lookups compare the mapped bytes only when the hashes agree. A record is
+ * addressed by a {@code long} reference ({@code partition << 32 | index}), so matching allocates nothing
+ * per record.
+ * <p>
+ * Built by {@link SettlementFileParser}. Lookups may run concurrently; {@link #markMatched} for a given
+ * partition must only be called from one thread at a time.
+ */
+public class SettlementStatement {
+
+    static final long NOT_FOUND = -1;
+    static final byte UNKNOWN_STATUS = -1;
+
+    private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+
+    private final ByteBuffer[] segments;
+    private final long[] segmentStarts;
+    private final Partition[] partitions;
+    private final int partitionShift;
+    private final long lines;
+    private final long malformedLines;
+    private final long duplicateLines;
+
+    SettlementStatement(ByteBuffer[] segments, long[] segmentStarts, Partition[] partitions,
+                        long lines, long malformedLines, long duplicateLines) {
+        this.segments = segments;
+        this.segmentStarts = segmentStarts;
+        this.partitions = partitions;
+        this.partitionShift = 64 - Integer.numberOfTrailingZeros(partitions.length);
+        this.lines = lines;
+        this.malformedLines = malformedLines;
+        this.duplicateLines = duplicateLines;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getMalformedLines() {
+        return malformedLines;
+    }
+
+    public long getDuplicateLines() {
+        return duplicateLines;
+    }
+
+    public long getRecords() {
+        long records = 0;
+        for (Partition partition : partitions) {
+            records += partition.size;
+        }
+        return records;
+    }
+
+    int getPartitionCount() {
+        return partitions.length;
+    }
+
+    int getPartitionSize(int partition) {
+        return partitions[partition].size;
+    }
+
+    /**
+     * @return reference of the record for {@code providerTransactionId}, or {@link #NOT_FOUND}
+     */
+    long find(String providerTransactionId) {
+        byte[] utf8 = isAscii(providerTransactionId) ? null : providerTransactionId.getBytes(StandardCharsets.UTF_8);
+        long hash = utf8 == null ? hash(providerTransactionId) : hash(utf8, 0, utf8.length);
+        int p = partitionOf(hash);
+        Partition partition = partitions[p];
+        int mask = partition.slots.length - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = partition.slots[slot];
+            if (entry == 0) {
+                return NOT_FOUND;
+            }
+            int index = entry - 1;
+            if (partition.hashes[index] == hash
+                    && idEquals(partition.offsets[index], partition.lengths[index], providerTransactionId, utf8)) {
+                return (long) p << 32 | index;
+            }
+        }
+    }
+
+    static long reference(int partition, int index) {
+        return (long) partition << 32 | index;
+    }
+
+    long getAmountMinor(long reference) {
+        return partition(reference).amounts[index(reference)];
+    }
+
+    BigDecimal getAmount(long reference) {
+        return BigDecimal.valueOf(getAmountMinor(reference), 2);
+    }
+
+    int getCurrencyCode(long reference) {
+        return partition(reference).currencies[index(reference)];
+    }
+
+    String getCurrency(long reference) {
+        return decodeCurrency(getCurrencyCode(reference));
+    }
+
+    PaymentStatus getStatus(long reference) {
+        byte status = partition(reference).statuses[index(reference)];
+        return status == UNKNOWN_STATUS ? null : STATUSES[status];
+    }
+
+    void markMatched(long reference) {
+        partition(reference).matched[index(reference)] = true;
+    }
+
+    boolean isMatched(long reference) {
+        return partition(reference).matched[index(reference)];
+    }
+
+    String getProviderTransactionId(long reference) {
+        Partition partition = partition(reference);
+        int index = index(reference);
+        long offset = partition.offsets[index];
+        byte[] bytes = new byte[partition.lengths[index]];
+        int segment = segmentOf(offset);
+        int position = (int) (offset - segmentStarts[segment]);
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = segments[segment].get(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    int partitionOf(long hash) {
+        return partitions.length == 1 ? 0 : (int) (hash >>> partitionShift);
+    }
+
+    private Partition partition(long reference) {
+        return partitions[(int) (reference >>> 32)];
+    }
+
+    private static int index(long reference) {
+        return (int) reference;
+    }
+
+    boolean idEquals(long offset, int length, long otherOffset, int otherLength) {
+        if (length != otherLength) {
+            return false;
+        }
+        int segment = segmentOf(offset);
+        int otherSegment = segmentOf(otherOffset);
+        int position = (int) (offset - segmentStarts[segment]);
+        int otherPosition = (int) (otherOffset - segmentStarts[otherSegment]);
+        for (int i = 0; i < length; i++) {
+            if (segments[segment].get(position + i) != segments[otherSegment].get(otherPosition + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean idEquals(long offset, int length, String id, byte[] utf8) {
+        int segment = segmentOf(offset);
+        ByteBuffer buffer = segments[segment];
+        int position = (int) (offset - segmentStarts[segment]);
+        if (utf8 != null) {
+            if (utf8.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(position + i) != utf8[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (id.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(position + i) != (byte) id.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int segmentOf(long offset) {
+        int segment = Arrays.binarySearch(segmentStarts, offset);
+        return segment >= 0 ? segment : -segment - 2;
+    }
+
+    // 64-bit FNV-1a with a murmur3 finalizer; the high bits pick the partition, the low bits the slot
+    static long hash(ByteBuffer buffer, int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= buffer.get(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long hash(byte[] bytes, int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= bytes[i];
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // Same as hashing the UTF-8 bytes, for ASCII-only strings
+    private static long hash(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= (byte) id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int encodeCurrency(String currency) {
+        if (currency == null || currency.length() != 3) {
+            return 0;
+        }
+        return Character.toUpperCase(currency.charAt(0)) << 16 | Character.toUpperCase(currency.charAt(1)) << 8
+                | Character.toUpperCase(currency.charAt(2));
+    }
+
+    static String decodeCurrency(int code) {
+        if (code == 0) {
+            return null;
+        }
+        return new String(new char[]{(char) (code >>> 16), (char) ((code >>> 8) & 0xff), (char) (code & 0xff)});
+    }
+
+    /**
+     * Column arrays of one hash partition plus an open-addressing table of {@code index + 1}.
+     */
+    static final class Partition {
+        final long[] hashes;
+        final long[] offsets;
+        final int[] lengths;
+        final long[] amounts;
+        final int[] currencies;
+        final byte[] statuses;
+        final boolean[] matched;
+        final int[] slots;
+        int size;
+
+        Partition(int capacity) {
+            hashes = new long[capacity];
+            offsets = new long[capacity];
+            lengths = new int[capacity];
+            amounts = new long[capacity];
+            currencies = new int[capacity];
+            statuses = new byte[capacity];
+            matched = new boolean[capacity];
+            slots = new int[Math.max(2, Integer.highestOneBit(Math.max(1, capacity) * 2 - 1) << 1)];
+        }
+    }
+}
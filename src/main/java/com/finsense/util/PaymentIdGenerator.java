@@ -1,10 +1,10 @@
 package com.finsense.util;
 
-import java.util.UUID;
+/**
+ * Source of payment, batch and (mock) provider transaction IDs. The implementation is chosen with
+ * {@code finsense.id.strategy}; see {@link com.finsense.config.IdGeneratorConfig}.
+ */
+public interface PaymentIdGenerator {
 
-public class PaymentIdGenerator {
-
-    public static String generate() {
-        return UUID.randomUUID().toString();
-    }
+    String generate();
 }
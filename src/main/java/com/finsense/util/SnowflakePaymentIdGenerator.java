@@ -0,0 +1,65 @@
+package com.finsense.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style 64-bit IDs: 41 bits of milliseconds since a custom epoch, a 10-bit node ID and a
+ * 12-bit per-millisecond sequence. IDs from one node are strictly increasing, and nodes with distinct
+ * node IDs never collide. They are rendered as 13 Crockford base32 characters, so the string order
+ * matches the numeric order and consecutive payments land next to each other in the primary key index.
+ * <p>
+ * Generation is lock-free: the last (timestamp, sequence) pair lives in one {@link AtomicLong}. When
+ * more than 4096 IDs are requested in one millisecond, or the wall clock steps backwards, the
+ * generator keeps counting ahead of the clock instead of blocking.
+ */
+public class SnowflakePaymentIdGenerator implements PaymentIdGenerator {
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13; // ceil(64 / 5)
+
+    private final long epochMillis;
+    private final long nodeBits;
+    // (millis since epoch << SEQUENCE_BITS) | sequence of the last issued ID
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakePaymentIdGenerator(int nodeId, long epochMillis) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.epochMillis = epochMillis;
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    @Override
+    public String generate() {
+        return encode(nextId());
+    }
+
+    public long nextId() {
+        long now = (System.currentTimeMillis() - epochMillis) << SEQUENCE_BITS;
+        long previous;
+        long next;
+        do {
+            previous = lastState.get();
+            // A new millisecond restarts the sequence; otherwise increment, carrying into the timestamp
+            next = now > previous ? now : previous + 1;
+        } while (!lastState.compareAndSet(previous, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | sequence;
+    }
+
+    static String encode(long id) {
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = CROCKFORD[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+}
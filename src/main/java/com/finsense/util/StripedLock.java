@@ -0,0 +1,58 @@
+package com.finsense.util;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of locks shared by hash: keys on the same stripe are serialized, everything else runs in
+ * parallel, and memory stays constant however many keys are seen. Unrelated keys occasionally share a
+ * stripe, which only costs some waiting.
+ */
+public class StripedLock {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public StripedLock(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReentrantLock[stripes <= 1 ? 1 : size];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = this.stripes.length - 1;
+    }
+
+    /**
+     * Runs {@code action} holding the stripes of all {@code keys}. Stripes are always taken in index order,
+     * so callers with overlapping key sets cannot deadlock.
+     */
+    public <T> T withLocks(Collection<?> keys, Supplier<T> action) {
+        BitSet held = new BitSet(stripes.length);
+        for (Object key : keys) {
+            held.set(stripeOf(key));
+        }
+        int locked = 0;
+        try {
+            for (int i = held.nextSetBit(0); i >= 0; i = held.nextSetBit(i + 1)) {
+                stripes[i].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = held.nextSetBit(0); i >= 0 && locked > 0; i = held.nextSetBit(i + 1), locked--) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    public int size() {
+        return stripes.length;
+    }
+
+    int stripeOf(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,12 @@
+package com.finsense.util;
+
+import java.util.UUID;
+
+// Random version 4 UUIDs: no coordination needed, but inserts land anywhere in the primary key index
+public class UuidPaymentIdGenerator implements PaymentIdGenerator {
+
+    @Override
+    public String generate() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,210 @@
+package com.finsense;
+
+import com.finsense.security.CachingJwtDecoder;
+import com.finsense.security.JwkSetCache;
+import com.finsense.security.JwkSetJwtDecoder;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Bearer token authentication against a key set generated for the test and served from a local JWKS file.
+ */
+@SpringBootTest(properties = {
+        "spring.security.oauth2.resourceserver.jwt.jwk-set-uri=file:target/jwt-test/jwks.json",
+        "finsense.security.jwt.jwk-set-min-refresh-interval-ms=0"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class JwtAuthenticationTest {
+
+    private static final Path JWKS_FILE = Paths.get("target", "jwt-test", "jwks.json");
+
+    private static RSAKey signingKey;
+    private static RSAKey rotatedKey;
+    private static RSAKey unknownKey;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwkSetCache jwkSetCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void generateKeys() throws JOSEException, IOException {
+        signingKey = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        rotatedKey = new RSAKeyGenerator(2048).keyID("key-2").generate();
+        unknownKey = new RSAKeyGenerator(2048).keyID("key-3").generate();
+        writeJwks(signingKey);
+    }
+
+    @Test
+    void testBearerToken_ScopesEnforcedAndVerifiedOnce() throws Exception {
+        String token = token(signingKey, "payment:status", Instant.now().plusSeconds(600));
+
+        mockMvc.perform(get("/api/v1/payments/{transactionId}/status", "non-existent-id"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/v1/payments/{transactionId}/status", "non-existent-id")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isNotFound());
+
+        double hits = cacheHits();
+        mockMvc.perform(get("/api/v1/payments/{transactionId}/status", "non-existent-id")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isNotFound());
+        assertEquals(hits + 1, cacheHits());
+
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"recipientPhoneNumber\":\"+254712345678\",\"amount\":100.00,\"currency\":\"KES\",\"provider\":\"MOCK\"}"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void testBearerToken_RejectedWhenTamperedExpiredOrUnknownKey() throws Exception {
+        String token = token(signingKey, "payment:status", Instant.now().plusSeconds(600));
+        String[] parts = token.split("\\.");
+        String tampered = parts[0] + "." + token(signingKey, "payment:status payment:initiate", Instant.now().plusSeconds(600)).split("\\.")[1] + "." + parts[2];
+
+        for (String rejected : new String[]{
+                tampered,
+                token(signingKey, "payment:status", Instant.now().minusSeconds(300)),
+                token(unknownKey, "payment:status", Instant.now().plusSeconds(600)),
+                "not-a-jwt"}) {
+            mockMvc.perform(get("/api/v1/payments/{transactionId}/status", "non-existent-id")
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + rejected))
+                    .andExpect(status().isUnauthorized());
+        }
+    }
+
+    @Test
+    void testJwkSetRotation_NewKeysPickedUpAndRemovedKeysForgotten() throws Exception {
+        String oldToken = token(signingKey, "payment:status", Instant.now().plusSeconds(600));
+        String newToken = token(rotatedKey, "payment:status", Instant.now().plusSeconds(600));
+        mockMvc.perform(get("/api/v1/payments/{transactionId}/status", "non-existent-id")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + oldToken))
+                .andExpect(status().isNotFound());
+
+        try {
+            writeJwks(rotatedKey);
+            // Unknown key id: the key set is reloaded on the spot
+            mockMvc.perform(get("/api/v1/payments/{transactionId}/status", "non-existent-id")
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + newToken))
+                    .andExpect(status().isNotFound());
+            // The withdrawn key's token was cached but is verified again, and fails
+            mockMvc.perform(get("/api/v1/payments/{transactionId}/status", "non-existent-id")
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + oldToken))
+                    .andExpect(status().isUnauthorized());
+        } finally {
+            writeJwks(signingKey);
+            jwkSetCache.refresh();
+        }
+    }
+
+    @Test
+    void testTokenCache_EntryExpiresWithToken() throws Exception {
+        AtomicInteger verifications = new AtomicInteger();
+        JwtDecoder verifier = new JwkSetJwtDecoder(jwkSetCache);
+        MutableClock clock = new MutableClock();
+        CachingJwtDecoder decoder = new CachingJwtDecoder(token -> {
+            verifications.incrementAndGet();
+            return verifier.decode(token);
+        }, 100, Duration.ofHours(1), clock, new SimpleMeterRegistry());
+
+        String token = token(signingKey, "payment:status", Instant.now().plusSeconds(120));
+        decoder.decode(token);
+        decoder.decode(token);
+        assertEquals(1, verifications.get());
+
+        clock.advanceSeconds(121);
+        decoder.decode(token);
+        assertEquals(2, verifications.get());
+    }
+
+    private double cacheHits() {
+        return meterRegistry.get("cache.gets").tags("cache", "jwt", "result", "hit").functionCounter().count();
+    }
+
+    private static String token(RSAKey key, String scope, Instant expiresAt) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("client")
+                .claim("scope", scope)
+                .issueTime(Date.from(expiresAt.minusSeconds(900)))
+                .expirationTime(Date.from(expiresAt))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    // JWKSet.toString() publishes the public halves only
+    private static void writeJwks(RSAKey key) throws IOException {
+        Files.createDirectories(JWKS_FILE.getParent());
+        Files.write(JWKS_FILE, new JWKSet(key).toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private final AtomicLong offsetSeconds = new AtomicLong();
+
+        void advanceSeconds(long seconds) {
+            offsetSeconds.addAndGet(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.now().plusSeconds(offsetSeconds.get());
+        }
+    }
+}
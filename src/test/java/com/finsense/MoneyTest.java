@@ -0,0 +1,81 @@
+package com.finsense;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusView;
+import com.finsense.model.PaymentTransaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void testOf_MinorUnitsPerCurrencyScale() {
+        assertEquals(150050, Money.of(new BigDecimal("1500.5"), CurrencyCode.KES).getMinorUnits());
+        assertEquals(15000, Money.of(new BigDecimal("15000.000"), CurrencyCode.UGX).getMinorUnits());
+        assertEquals(12500, Money.of(new BigDecimal("12.5"), CurrencyCode.KWD).getMinorUnits());
+        assertEquals(100000, Money.of(new BigDecimal("1E+3"), CurrencyCode.KES).getMinorUnits());
+
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("10.005"), CurrencyCode.KES));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("10.5"), CurrencyCode.UGX));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("1E+20"), CurrencyCode.KES));
+        assertEquals(CurrencyCode.TZS, CurrencyCode.fromCode(" tzs"));
+        assertEquals(null, CurrencyCode.fromCode("KSH"));
+    }
+
+    @Test
+    void testArithmeticAndFormatting() {
+        Money amount = Money.ofMinor(150005, CurrencyCode.KES);
+        assertEquals("1500.05", amount.toPlainString());
+        assertEquals("-0.50", Money.ofMinor(-50, CurrencyCode.KES).toPlainString());
+        assertEquals("0.007", Money.ofMinor(7, CurrencyCode.BHD).toPlainString());
+        assertEquals("15000", Money.ofMinor(15000, CurrencyCode.UGX).toPlainString());
+        assertEquals(new BigDecimal("1500.05"), amount.toBigDecimal());
+
+        assertEquals(Money.ofMinor(150105, CurrencyCode.KES), amount.plus(Money.ofMinor(100, CurrencyCode.KES)));
+        assertThrows(IllegalArgumentException.class, () -> amount.plus(Money.ofMinor(100, CurrencyCode.UGX)));
+        assertFalse(amount.isWhole());
+        assertTrue(Money.ofMinor(150000, CurrencyCode.KES).isWhole());
+
+        assertTrue(amount.hasValue(150005, 2));
+        assertTrue(amount.hasValue(1500050, 3));
+        assertFalse(amount.hasValue(150006, 2));
+        assertTrue(Money.ofMinor(15000, CurrencyCode.UGX).hasValue(1500000, 2));
+        assertFalse(Money.ofMinor(15000, CurrencyCode.UGX).hasValue(1500001, 2));
+        assertTrue(Money.ofMinor(12500, CurrencyCode.KWD).hasValue(1250, 2));
+    }
+
+    @Test
+    void testJson_AmountAndCurrencyFieldsKept() throws Exception {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId("tx-1");
+        transaction.setAmount(Money.ofMinor(150000, CurrencyCode.KES));
+        transaction.setStatus(PaymentStatus.SUCCESS);
+
+        String json = objectMapper.writeValueAsString(transaction);
+        JsonNode tree = objectMapper.readTree(json);
+        assertTrue(tree.get("amount").isNumber(), json);
+        assertTrue(json.contains("\"amount\":1500.00,\"currency\":\"KES\""), json);
+        assertEquals(Money.ofMinor(150000, CurrencyCode.KES), objectMapper.readValue(json, PaymentTransaction.class).getAmount());
+        assertTrue(objectMapper.writeValueAsString(PaymentStatusView.of(transaction)).contains("\"amount\":1500.00,\"currency\":\"KES\""));
+
+        // Standalone, and read from the string forms clients sometimes send
+        assertEquals("{\"amount\":15000,\"currency\":\"UGX\"}", objectMapper.writeValueAsString(Money.ofMinor(15000, CurrencyCode.UGX)));
+        assertEquals(Money.ofMinor(1250, CurrencyCode.KES), objectMapper.readValue("{\"currency\":\"kes\",\"amount\":\"12.50\"}", Money.class));
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("{\"amount\":12.50,\"currency\":\"KSH\"}", Money.class));
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("{\"amount\":12.50,\"currency\":\"UGX\"}", Money.class));
+    }
+}
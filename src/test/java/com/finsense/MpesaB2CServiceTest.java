@@ -0,0 +1,310 @@
+package com.finsense;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finsense.config.MpesaProperties;
+import com.finsense.config.ProviderResilienceProperties;
+import com.finsense.config.StatusUpdateProperties;
+import com.finsense.exception.ExternalApiException;
+import com.finsense.model.B2CPaymentRequest;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.repository.NotificationOutboxRepository;
+import com.finsense.repository.ArchivedPaymentTransactionRepository;
+import com.finsense.repository.PaymentTransactionRepository;
+import com.finsense.service.AsyncMobileMoneyService;
+import com.finsense.service.MobileMoneyService;
+import com.finsense.service.NotificationOutboxService;
+import com.finsense.service.PaymentDispatcher;
+import com.finsense.service.PaymentService;
+import com.finsense.service.PaymentStatusCache;
+import com.finsense.service.mpesa.MpesaB2CService;
+import com.finsense.service.resilience.ProviderResilienceRegistry;
+import com.finsense.service.routing.ProviderRegistry;
+import com.finsense.service.routing.ProviderRouter;
+import com.finsense.util.PaymentIdGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link MpesaB2CService} against a local stub of the M-Pesa API that answers B2C requests after
+ * {@code latencyMs} without holding a thread, so only the client limits how many calls are in flight.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class MpesaB2CServiceTest {
+
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 500;
+
+    @Autowired
+    private PaymentTransactionRepository paymentTransactionRepository;
+
+    @Autowired
+    private ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository;
+
+    @Autowired
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Autowired
+    private ProviderRouter providerRouter;
+
+    @Autowired
+    private NotificationOutboxService notificationOutboxService;
+
+    @Autowired
+    private PaymentStatusCache paymentStatusCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PaymentIdGenerator paymentIdGenerator;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Set<String> validTokens = ConcurrentHashMap.newKeySet();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicInteger conversations = new AtomicInteger();
+    private final MutableClock clock = new MutableClock();
+    private volatile long latencyMs = 50;
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private ScheduledExecutorService responder;
+    private MpesaB2CService mpesa;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        paymentTransactionRepository.deleteAll();
+        notificationOutboxRepository.deleteAll();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        handlers = Executors.newFixedThreadPool(2);
+        responder = Executors.newSingleThreadScheduledExecutor();
+        server.setExecutor(handlers);
+        server.createContext("/oauth/v1/generate", exchange -> {
+            String token = "token-" + tokenRequests.incrementAndGet();
+            validTokens.add(token);
+            respond(exchange, 200, "{\"access_token\":\"" + token + "\",\"expires_in\":\"3599\"}");
+        });
+        server.createContext("/mpesa/b2c/v1/paymentrequest", exchange -> {
+            connections.add(exchange.getRemoteAddress());
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization == null || !validTokens.contains(authorization.substring("Bearer ".length()))) {
+                respond(exchange, 401, "{\"errorCode\":\"404.001.03\",\"errorMessage\":\"Invalid Access Token\"}");
+                return;
+            }
+            if (request.path("PartyB").asText().equals("254700000000")) {
+                respond(exchange, 400, "{\"errorCode\":\"400.002.02\",\"errorMessage\":\"Bad Request - Invalid PartyB\"}");
+                return;
+            }
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            // Answered later from another thread: the stub holds no thread per request
+            responder.schedule(() -> {
+                inFlight.decrementAndGet();
+                respond(exchange, 200, "{\"ConversationID\":\"AG_" + conversations.incrementAndGet()
+                        + "\",\"OriginatorConversationID\":\"" + request.path("Occasion").asText()
+                        + "\",\"ResponseCode\":\"0\",\"ResponseDescription\":\"Accept the service request successfully.\"}");
+            }, latencyMs, TimeUnit.MILLISECONDS);
+        });
+        server.start();
+
+        MpesaProperties properties = new MpesaProperties();
+        properties.setBaseUrl("http://localhost:" + server.getAddress().getPort());
+        properties.setConsumerKey("key");
+        properties.setConsumerSecret("secret");
+        properties.setShortCode("600000");
+        properties.setInitiatorName("testapi");
+        properties.setSecurityCredential("credential");
+        properties.setResultUrl("https://example.com/result");
+        properties.setQueueTimeoutUrl("https://example.com/timeout");
+        properties.setMaxConnectionsPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        mpesa = new MpesaB2CService(properties, objectMapper, clock);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mpesa.shutdown();
+        server.stop(0);
+        responder.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void testPaymentService_KeepsHundredsOfCallsInFlightOnFourWorkers() throws Exception {
+        latencyMs = 1000;
+        ProviderResilienceProperties resilience = new ProviderResilienceProperties();
+        resilience.setInitialLimit(5000);
+        resilience.setMaxLimit(5000);
+        MobileMoneyService provider = new ProviderResilienceRegistry(resilience).wrap(mpesa);
+        assertTrue(provider instanceof AsyncMobileMoneyService);
+        PaymentDispatcher dispatcher = new PaymentDispatcher("mpesa-test", 4, 5000, 10000);
+        PaymentService paymentService = new PaymentService(paymentTransactionRepository, archivedPaymentTransactionRepository,
+                new ProviderRegistry(Collections.singletonList(provider)), providerRouter, notificationOutboxService,
+                dispatcher, paymentStatusCache, eventPublisher, transactionManager, paymentIdGenerator,
+                new StatusUpdateProperties());
+
+        int payments = 2000;
+        List<String> ids = new ArrayList<>(payments);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < payments; i++) {
+                B2CPaymentRequest request = new B2CPaymentRequest();
+                request.setRecipientPhoneNumber("+2547123" + String.format("%05d", i));
+                request.setAmount(BigDecimal.valueOf(100));
+                request.setCurrency("KES");
+                request.setProvider("MPESA");
+                ids.add(paymentService.acceptPayment(request).getId());
+            }
+            long deadline = System.currentTimeMillis() + 60000;
+            while (countInStatus(ids, PaymentStatus.IN_PROGRESS) < payments) {
+                assertTrue(System.currentTimeMillis() < deadline, "Payments were not all dispatched");
+                Thread.sleep(200);
+            }
+        } finally {
+            dispatcher.shutdown();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Four workers calling a blocking client would keep at most four requests in flight, and need
+        // payments / 4 round trips (500 s here) to dispatch them all
+        assertTrue(peakInFlight.get() > 100, "Peak in flight was " + peakInFlight.get());
+        assertTrue(elapsedMs < payments / 4 * latencyMs / 10, "Dispatching took " + elapsedMs + " ms");
+        // Kept-alive connections are reused, and never more than the per-host limit are opened
+        assertTrue(connections.size() <= MAX_CONNECTIONS_PER_ROUTE, connections.size() + " connections");
+        assertEquals(1, tokenRequests.get());
+        assertEquals(payments, paymentTransactionRepository.findAllById(ids).stream()
+                .map(PaymentTransaction::getProviderTransactionId).filter(id -> id.startsWith("AG_")).distinct().count());
+    }
+
+    @Test
+    void testAccessToken_RefreshedAheadOfExpiry() {
+        assertEquals("AG_1", mpesa.initiateB2CPayment(transaction("+254712345678")));
+        assertEquals(1, tokenRequests.get());
+
+        // Well before expiry the cached token is used as is
+        clock.advanceSeconds(3000);
+        mpesa.initiateB2CPayment(transaction("+254712345678"));
+        assertEquals(1, tokenRequests.get());
+
+        // Within a minute of expiry the call goes ahead with the current token while a new one is fetched
+        clock.advanceSeconds(550);
+        mpesa.initiateB2CPayment(transaction("+254712345678"));
+        assertEquals(2, tokenRequests.get());
+        clock.advanceSeconds(100);
+        mpesa.initiateB2CPayment(transaction("+254712345678"));
+        assertEquals(2, tokenRequests.get());
+    }
+
+    @Test
+    void testRejectedToken_ReplacedAndRequestRetried() {
+        mpesa.initiateB2CPayment(transaction("+254712345678"));
+        validTokens.clear();
+
+        assertEquals("AG_2", mpesa.initiateB2CPayment(transaction("+254712345678")));
+        assertEquals(2, tokenRequests.get());
+    }
+
+    @Test
+    void testProviderRejection_FailsWithExternalApiException() {
+        ExternalApiException e = assertThrows(ExternalApiException.class,
+                () -> mpesa.initiateB2CPayment(transaction("+254700000000")));
+        assertTrue(e.getMessage().contains("Invalid PartyB"), e.getMessage());
+
+        PaymentTransaction fractional = transaction("+254712345678");
+        fractional.setAmount(Money.of(new BigDecimal("10.50"), CurrencyCode.KES));
+        assertThrows(ExternalApiException.class, () -> mpesa.initiateB2CPayment(fractional));
+    }
+
+    private long countInStatus(List<String> ids, PaymentStatus status) {
+        return paymentTransactionRepository.findAllById(ids).stream()
+                .filter(transaction -> transaction.getStatus() == status)
+                .count();
+    }
+
+    private static PaymentTransaction transaction(String recipient) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId("mpesa-" + recipient);
+        transaction.setRecipientPhoneNumber(recipient);
+        transaction.setAmount(Money.of(BigDecimal.valueOf(250), CurrencyCode.KES));
+        return transaction;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            exchange.close();
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private final AtomicLong offsetSeconds = new AtomicLong();
+
+        void advanceSeconds(long seconds) {
+            offsetSeconds.addAndGet(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.now().plusSeconds(offsetSeconds.get());
+        }
+    }
+}
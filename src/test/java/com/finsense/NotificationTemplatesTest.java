@@ -0,0 +1,87 @@
+package com.finsense;
+
+import com.finsense.config.NotificationProperties;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.NotificationLocale;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.service.notification.NotificationTemplates;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationTemplatesTest {
+
+    @Test
+    void testRender_BuiltInTemplatesPerLocale() {
+        NotificationTemplates templates = new NotificationTemplates(new NotificationProperties());
+        PaymentTransaction transaction = transaction("1234567.5", "KES");
+
+        assertEquals("Your payment of KES 1,234,567.50 has been successfully processed. Transaction ID: tx-1",
+                templates.render(transaction, PaymentStatus.SUCCESS));
+        assertEquals("Your payment of KES 1,234,567.50 failed. Transaction ID: tx-1. Reason: Unknown",
+                templates.render(transaction, PaymentStatus.FAILED));
+
+        transaction.setLocale(NotificationLocale.SW);
+        transaction.setFailureReason("Invalid account");
+        assertEquals("Malipo yako ya KES 1,234,567.50 hayakufanikiwa. Nambari ya muamala: tx-1. Sababu: Invalid account",
+                templates.render(transaction, PaymentStatus.FAILED));
+    }
+
+    @Test
+    void testRender_AmountFormattedPerCurrency() {
+        NotificationTemplates templates = new NotificationTemplates(new NotificationProperties());
+
+        assertTrue(templates.render(transaction("15000", "UGX"), PaymentStatus.PENDING).contains(" UGX 15,000 "));
+        assertTrue(templates.render(transaction("1000000", "TZS"), PaymentStatus.PENDING).contains(" TZS 1,000,000.00 "));
+        assertTrue(templates.render(transaction("12.5", "KWD"), PaymentStatus.PENDING).contains(" KWD 12.500 "));
+        assertTrue(templates.render(transaction("0.05", "USD"), PaymentStatus.PENDING).contains(" USD 0.05 "));
+        assertTrue(templates.render(transaction("0.5", "BHD"), PaymentStatus.PENDING).contains(" BHD 0.500 "));
+    }
+
+    @Test
+    void testRender_TemplatesFromConfiguration() {
+        Map<String, String> config = new HashMap<>();
+        config.put("finsense.notification.default-locale", "sw");
+        config.put("finsense.notification.templates.en.FAILED", "Payment {id} of {amount} ({currency}) is {status}: {reason}");
+        NotificationProperties properties = new Binder(new MapConfigurationPropertySource(config))
+                .bind("finsense.notification", Bindable.of(NotificationProperties.class)).get();
+        NotificationTemplates templates = new NotificationTemplates(properties);
+
+        PaymentTransaction transaction = transaction("250", "KES");
+        transaction.setLocale(NotificationLocale.EN);
+        assertEquals("Payment tx-1 of KES 250.00 (KES) is FAILED: Unknown", templates.render(transaction, PaymentStatus.FAILED));
+        assertEquals("Your payment of KES 250.00 is pending. Transaction ID: tx-1", templates.render(transaction, PaymentStatus.PENDING));
+
+        transaction.setLocale(null);
+        assertEquals("Malipo yako ya KES 250.00 yanasubiri. Nambari ya muamala: tx-1", templates.render(transaction, PaymentStatus.PENDING));
+    }
+
+    @Test
+    void testCompile_UnknownFieldFailsAtStartup() {
+        NotificationProperties properties = new NotificationProperties();
+        Map<PaymentStatus, String> english = new HashMap<>();
+        english.put(PaymentStatus.SUCCESS, "Paid {amount} to {recipient}");
+        properties.getTemplates().put(NotificationLocale.EN, english);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new NotificationTemplates(properties));
+        assertTrue(e.getMessage().contains("{recipient}"), e.getMessage());
+    }
+
+    private static PaymentTransaction transaction(String amount, String currency) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId("tx-1");
+        transaction.setAmount(Money.of(new BigDecimal(amount), CurrencyCode.valueOf(currency)));
+        return transaction;
+    }
+}
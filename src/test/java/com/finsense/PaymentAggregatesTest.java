@@ -0,0 +1,113 @@
+package com.finsense;
+
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.PaymentAggregate;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.ProviderType;
+import com.finsense.service.aggregate.AggregateWindow;
+import com.finsense.service.aggregate.PaymentAggregates;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaymentAggregatesTest {
+
+    private static final long START = TimeUnit.DAYS.toMillis(20000);
+
+    private final AtomicLong clock = new AtomicLong(START);
+    private final PaymentAggregates aggregates = new PaymentAggregates(clock::get);
+
+    @Test
+    void testTransitionsSlideOutOfEachWindow() {
+        aggregates.record(ProviderType.MPESA, Money.ofMinor(150000, CurrencyCode.KES), PaymentStatus.PENDING, START, -1);
+        aggregates.record(ProviderType.MPESA, Money.ofMinor(150000, CurrencyCode.KES), PaymentStatus.SUCCESS, START, 1200);
+        aggregates.record(ProviderType.MPESA, Money.ofMinor(5000, CurrencyCode.UGX), PaymentStatus.SUCCESS, START, 800);
+
+        List<PaymentAggregate> minute = aggregates.snapshot(AggregateWindow.ONE_MINUTE);
+        assertEquals(3, minute.size());
+        assertEquals(PaymentStatus.PENDING, minute.get(0).getStatus());
+        assertNull(minute.get(0).getLatencyP50Ms());
+        assertEquals(Money.ofMinor(150000, CurrencyCode.KES), minute.get(1).getAmount());
+        assertEquals(1200, (long) minute.get(1).getLatencyMaxMs());
+        assertEquals(CurrencyCode.UGX, minute.get(2).getAmount().getCurrency());
+
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(2));
+        assertTrue(aggregates.snapshot(AggregateWindow.ONE_MINUTE).isEmpty());
+        assertEquals(3, aggregates.snapshot(AggregateWindow.FIVE_MINUTES).size());
+
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(10));
+        assertTrue(aggregates.snapshot(AggregateWindow.FIVE_MINUTES).isEmpty());
+        assertEquals(3, aggregates.snapshot(AggregateWindow.ONE_HOUR).size());
+
+        clock.addAndGet(TimeUnit.HOURS.toMillis(2));
+        assertTrue(aggregates.snapshot(AggregateWindow.ONE_HOUR).isEmpty());
+        assertEquals(3, aggregates.snapshot(AggregateWindow.ONE_DAY).size());
+
+        // Replayed transitions are placed by their own time; anything older than a day is dropped
+        aggregates.record(ProviderType.MPESA, Money.ofMinor(100, CurrencyCode.KES), PaymentStatus.FAILED,
+                clock.get() - TimeUnit.MINUTES.toMillis(30), 50);
+        aggregates.record(ProviderType.MPESA, Money.ofMinor(100, CurrencyCode.KES), PaymentStatus.FAILED,
+                clock.get() - TimeUnit.HOURS.toMillis(25), 50);
+        assertEquals(1, aggregates.snapshot(AggregateWindow.ONE_HOUR).size());
+        assertTrue(aggregates.snapshot(AggregateWindow.FIVE_MINUTES).isEmpty());
+
+        clock.addAndGet(TimeUnit.HOURS.toMillis(22));
+        assertEquals(1, aggregates.snapshot(AggregateWindow.ONE_DAY).size());
+    }
+
+    @Test
+    void testLatencyPercentiles() {
+        for (int i = 1; i <= 1000; i++) {
+            aggregates.record(ProviderType.AIRTEL_MONEY, Money.ofMinor(100, CurrencyCode.KES), PaymentStatus.SUCCESS, START, i);
+        }
+        PaymentAggregate aggregate = aggregates.snapshot(AggregateWindow.ONE_MINUTE).get(0);
+        assertEquals(1000, aggregate.getCount());
+        assertEquals(Money.ofMinor(100000, CurrencyCode.KES), aggregate.getAmount());
+        assertWithin(500, aggregate.getLatencyP50Ms());
+        assertWithin(950, aggregate.getLatencyP95Ms());
+        assertWithin(990, aggregate.getLatencyP99Ms());
+        assertEquals(1000, (long) aggregate.getLatencyMaxMs());
+    }
+
+    @Test
+    void testConcurrentRecordersLoseNoCounts() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        aggregates.record(ProviderType.MPESA, Money.ofMinor(250, CurrencyCode.KES), PaymentStatus.SUCCESS,
+                                START + i % 1000, i % 300);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        PaymentAggregate aggregate = aggregates.snapshot(AggregateWindow.ONE_DAY).get(0);
+        assertEquals(80000, aggregate.getCount());
+        assertEquals(Money.ofMinor(20000000, CurrencyCode.KES), aggregate.getAmount());
+        assertEquals(299, (long) aggregate.getLatencyMaxMs());
+    }
+
+    // Percentiles come from bucket bounds, which are within 12.5% of the recorded latency
+    private static void assertWithin(long expected, Long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.125, "Expected about " + expected + ", got " + actual);
+    }
+}
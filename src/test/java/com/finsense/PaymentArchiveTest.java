@@ -0,0 +1,267 @@
+package com.finsense;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finsense.config.ArchiveProperties;
+import com.finsense.model.ArchivedPaymentTransaction;
+import com.finsense.model.BatchItemResult;
+import com.finsense.model.BatchSummary;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.ExportFormat;
+import com.finsense.model.Money;
+import com.finsense.model.PaymentListItem;
+import com.finsense.model.PaymentSearchCriteria;
+import com.finsense.model.PaymentSearchPage;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusView;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.repository.ArchivedPaymentTransactionRepository;
+import com.finsense.repository.PaymentTransactionRepository;
+import com.finsense.service.BatchPaymentService;
+import com.finsense.service.PaymentArchiver;
+import com.finsense.service.PaymentExportService;
+import com.finsense.service.PaymentSearchService;
+import com.finsense.service.PaymentService;
+import com.finsense.service.PaymentStatusCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link PaymentArchiver} moving old terminal payments out of the payment table while new ones keep arriving.
+ * However many rows have been archived, the payment table only holds the recent and in-flight payments, so
+ * the indexes a lookup walks stay the same size; archived payments are still found by ID.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PaymentArchiveTest {
+
+    private static final int HOT_PAYMENTS = 300;
+    private static final int OLD_PAYMENTS_PER_ROUND = 3000;
+    private static final PaymentStatus[] OLD_STATUSES = {PaymentStatus.SUCCESS, PaymentStatus.FAILED,
+            PaymentStatus.CANCELLED, PaymentStatus.IN_PROGRESS};
+
+    @Autowired
+    private PaymentArchiver paymentArchiver;
+
+    @Autowired
+    private ArchiveProperties archiveProperties;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private BatchPaymentService batchPaymentService;
+
+    @Autowired
+    private PaymentSearchService paymentSearchService;
+
+    @Autowired
+    private PaymentExportService paymentExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PaymentStatusCache paymentStatusCache;
+
+    @Autowired
+    private PaymentTransactionRepository paymentTransactionRepository;
+
+    @Autowired
+    private ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ArchiveProperties defaults = new ArchiveProperties();
+
+    @BeforeEach
+    void setUp() {
+        paymentTransactionRepository.deleteAll();
+        archivedPaymentTransactionRepository.deleteAllInBatch();
+    }
+
+    @AfterEach
+    void restoreProperties() {
+        archiveProperties.setBatchSize(defaults.getBatchSize());
+        archiveProperties.setMaxBatchesPerRun(defaults.getMaxBatchesPerRun());
+        archivedPaymentTransactionRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void testArchivingKeepsPaymentTableAtLiveSetAsArchiveGrows() {
+        LocalDateTime now = LocalDateTime.now();
+        insert("hot", HOT_PAYMENTS, PaymentStatus.SUCCESS, now);
+
+        int stuck = 0;
+        for (int round = 1; round <= 3; round++) {
+            LocalDateTime old = now.minusDays(archiveProperties.getMinAgeDays() + round * 40);
+            for (int s = 0; s < OLD_STATUSES.length; s++) {
+                insert("old-" + round + "-" + s, OLD_PAYMENTS_PER_ROUND / OLD_STATUSES.length, OLD_STATUSES[s], old);
+            }
+            // IN_PROGRESS is never archived, however old
+            stuck += OLD_PAYMENTS_PER_ROUND / OLD_STATUSES.length;
+
+            int archived = paymentArchiver.archive();
+
+            assertEquals(OLD_PAYMENTS_PER_ROUND - OLD_PAYMENTS_PER_ROUND / OLD_STATUSES.length, archived);
+            assertEquals(HOT_PAYMENTS + stuck, paymentTransactionRepository.count(), "payment table after round " + round);
+            assertEquals((long) round * archived, archivedPaymentTransactionRepository.count());
+            int month = ArchivedPaymentTransaction.monthOf(old.minusMinutes(1));
+            assertEquals(archived, archivedPaymentTransactionRepository.countByArchiveMonth(month));
+        }
+
+        assertStatus("hot-17", PaymentStatus.SUCCESS);
+        assertStatus("old-2-1-5", PaymentStatus.FAILED);
+        assertStatus("old-3-2-9", PaymentStatus.CANCELLED);
+        assertStatus("old-1-3-0", PaymentStatus.IN_PROGRESS);
+        assertFalse(paymentTransactionRepository.existsById("old-1-0-0"));
+        assertFalse(paymentService.getPaymentStatus("never-issued").isPresent());
+    }
+
+    @Test
+    void testCappedRunResumesOnNextRun() {
+        archiveProperties.setBatchSize(100);
+        archiveProperties.setMaxBatchesPerRun(2);
+        insert("old", 1000, PaymentStatus.SUCCESS, LocalDateTime.now().minusDays(archiveProperties.getMinAgeDays() + 1));
+
+        assertEquals(200, paymentArchiver.archive());
+        assertEquals(800, paymentTransactionRepository.count());
+        assertEquals(200, paymentArchiver.archive());
+        archiveProperties.setMaxBatchesPerRun(defaults.getMaxBatchesPerRun());
+        assertEquals(600, paymentArchiver.archive());
+        assertEquals(0, paymentTransactionRepository.count());
+        assertEquals(1000, archivedPaymentTransactionRepository.count());
+    }
+
+    @Test
+    void testIdempotencyKeysAndBatchesFoundAfterArchiving() {
+        LocalDateTime old = LocalDateTime.now().minusDays(archiveProperties.getMinAgeDays() + 1);
+        insert("keyed", 1, PaymentStatus.SUCCESS, old);
+        insert("batch", 4, PaymentStatus.SUCCESS, old);
+        new TransactionTemplate(transactionManager).execute(tx -> {
+            paymentTransactionRepository.findById("keyed-0").get().setIdempotencyKey("initiate:client-key");
+            for (int i = 0; i < 4; i++) {
+                PaymentTransaction item = paymentTransactionRepository.findById("batch-" + i).get();
+                item.setBatchId("archived-batch");
+                item.setBatchIndex(i);
+                item.setIdempotencyKey("batch:client-key#" + i);
+                // The last item is still in flight, so the batch ends up split across both tables
+                if (i == 3) {
+                    item.setStatus(PaymentStatus.IN_PROGRESS);
+                }
+            }
+            return null;
+        });
+
+        assertEquals(4, paymentArchiver.archive());
+
+        assertFalse(paymentTransactionRepository.existsById("keyed-0"));
+        assertEquals(Optional.of("keyed-0"), paymentService.findPaymentIdByIdempotencyKey("initiate:client-key"));
+        PaymentTransaction replayed = paymentService.getPayment("keyed-0").get();
+        assertEquals(PaymentStatus.SUCCESS, replayed.getStatus());
+        assertEquals("MOCK_keyed_0", replayed.getProviderTransactionId());
+
+        assertEquals(Optional.of("archived-batch"), batchPaymentService.findBatchIdByIdempotencyKey("batch:client-key"));
+        BatchSummary summary = batchPaymentService.getBatchSummary("archived-batch").get();
+        assertEquals(4, summary.getTotal());
+        assertEquals(Long.valueOf(3), summary.getStatusCounts().get(PaymentStatus.SUCCESS));
+        assertEquals(Long.valueOf(1), summary.getStatusCounts().get(PaymentStatus.IN_PROGRESS));
+        assertEquals(Arrays.asList("batch-0", "batch-1", "batch-2", "batch-3"), summary.getItems().stream()
+                .map(BatchItemResult::getTransactionId).collect(Collectors.toList()));
+        assertFalse(batchPaymentService.getBatchSummary("never-issued").isPresent());
+    }
+
+    @Test
+    void testSearchAndExportIncludeArchivedPayments() throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime old = now.minusDays(archiveProperties.getMinAgeDays() + 1);
+        insert("old", 5, PaymentStatus.SUCCESS, old);
+        insert("stuck", 1, PaymentStatus.IN_PROGRESS, old);
+        insert("hot", 3, PaymentStatus.SUCCESS, now);
+        assertEquals(5, paymentArchiver.archive());
+
+        // Rows created at the same time are ordered by id, so the page boundaries cross between the two tables
+        List<String> newestFirst = Arrays.asList("hot-2", "hot-1", "hot-0", "stuck-0", "old-4", "old-3", "old-2", "old-1", "old-0");
+        PaymentSearchCriteria all = new PaymentSearchCriteria();
+        List<String> found = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            PaymentSearchPage page = paymentSearchService.search(all, cursor, 4);
+            page.getItems().stream().map(PaymentListItem::getId).forEach(found::add);
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(newestFirst, found);
+        assertEquals(3, pages);
+
+        PaymentSearchCriteria recent = new PaymentSearchCriteria();
+        recent.setCreatedFrom(now.minusDays(1));
+        assertEquals(3, paymentSearchService.search(recent, null, 50).getItems().size());
+
+        List<String> oldestFirst = new ArrayList<>(newestFirst);
+        Collections.reverse(oldestFirst);
+        assertEquals(oldestFirst, export(old.minusDays(1), now.plusMinutes(1), null));
+        assertEquals(8, export(old.minusDays(1), now.plusMinutes(1), PaymentStatus.SUCCESS).size());
+        assertEquals(Arrays.asList("hot-0", "hot-1", "hot-2"), export(now.minusDays(1), now.plusMinutes(1), null));
+    }
+
+    private List<String> export(LocalDateTime from, LocalDateTime to, PaymentStatus status) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        paymentExportService.export(from, to, status, ExportFormat.NDJSON, false, out);
+        List<String> ids = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8.name()).split("\n")) {
+            ids.add(objectMapper.readTree(line).get("id").asText());
+        }
+        return ids;
+    }
+
+    private void assertStatus(String id, PaymentStatus expected) {
+        paymentStatusCache.invalidate(id);
+        Optional<PaymentStatusView> status = paymentService.getPaymentStatus(id);
+        assertTrue(status.isPresent(), id);
+        assertEquals(expected, status.get().getStatus());
+    }
+
+    private void insert(String prefix, int count, PaymentStatus status, LocalDateTime time) {
+        List<PaymentTransaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PaymentTransaction transaction = new PaymentTransaction();
+            transaction.setId(prefix + "-" + i);
+            transaction.setRecipientPhoneNumber("+254712345678");
+            transaction.setAmount(Money.of(BigDecimal.valueOf(100 + i), CurrencyCode.KES));
+            transaction.setProvider("MOCK");
+            transaction.setProviderTransactionId("MOCK_" + prefix + "_" + i);
+            transaction.setStatus(status);
+            transaction.setCreatedAt(time.minusMinutes(1));
+            transaction.setUpdatedAt(time);
+            transactions.add(transaction);
+        }
+        new TransactionTemplate(transactionManager).execute(tx -> {
+            paymentTransactionRepository.persistAll(transactions);
+            return null;
+        });
+    }
+}
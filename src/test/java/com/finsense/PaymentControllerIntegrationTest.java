@@ -1,34 +1,92 @@
 package com.finsense;
 
+import com.finsense.config.AggregateProperties;
+import com.finsense.config.RoutingProperties;
+import com.finsense.config.SettlementProperties;
 import com.finsense.model.B2CPaymentRequest;
+import com.finsense.model.BatchPaymentRequest;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.NotificationOutbox;
+import com.finsense.model.NotificationStatus;
+import com.finsense.model.PaymentAggregate;
 import com.finsense.model.PaymentStatus;
 import com.finsense.model.PaymentTransaction;
+import com.finsense.repository.NotificationOutboxRepository;
 import com.finsense.repository.PaymentTransactionRepository;
+import com.finsense.service.NotificationRelay;
+import com.finsense.service.PaymentReconciler;
+import com.finsense.service.PaymentStatusCache;
+import com.finsense.service.ProviderCallbackQueue;
+import com.finsense.service.aggregate.AggregateWindow;
+import com.finsense.service.aggregate.PaymentAggregationService;
+import com.finsense.service.routing.ProviderRouter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StreamUtils;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 
-@SpringBootTest
+@SpringBootTest(properties = {"finsense.callback.secrets.MOCK=" + PaymentControllerIntegrationTest.CALLBACK_SECRET,
+        "finsense.callback.secrets.MPESA=" + PaymentControllerIntegrationTest.MPESA_CALLBACK_SECRET})
 @AutoConfigureMockMvc
 @ActiveProfiles("test") // Use a test profile for H2 configuration
 class PaymentControllerIntegrationTest {
 
+    static final String CALLBACK_SECRET = "test-callback-secret";
+    static final String MPESA_CALLBACK_SECRET = "test-mpesa-callback-secret";
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -38,9 +96,40 @@ class PaymentControllerIntegrationTest {
     @Autowired
     private PaymentTransactionRepository paymentTransactionRepository;
 
+    @Autowired
+    private ProviderCallbackQueue providerCallbackQueue;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Autowired
+    private NotificationRelay notificationRelay;
+
+    @Autowired
+    private PaymentReconciler paymentReconciler;
+
+    @Autowired
+    private PaymentStatusCache paymentStatusCache;
+
+    @Autowired
+    private SettlementProperties settlementProperties;
+
+    @Autowired
+    private RoutingProperties routingProperties;
+
+    @Autowired
+    private ProviderRouter providerRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @BeforeEach
     void setUp() {
         paymentTransactionRepository.deleteAll();
+        notificationOutboxRepository.deleteAll();
     }
 
     @Test
@@ -62,6 +151,33 @@ class PaymentControllerIntegrationTest {
                 .andExpect(jsonPath("$.status", is("IN_PROGRESS"))); // Mock always returns IN_PROGRESS initially
     }
 
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:initiate"})
+    void testInitiatePayment_NotificationInRecipientLocale() throws Exception {
+        B2CPaymentRequest request = batchItem("+254712345678", "2500.00");
+        request.setLocale("sw-KE");
+
+        String response = mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String transactionId = objectMapper.readTree(response).get("id").asText();
+
+        List<NotificationOutbox> notifications = notificationOutboxRepository.findAll().stream()
+                .filter(notification -> notification.getTransactionId().equals(transactionId))
+                .collect(Collectors.toList());
+        assertEquals(1, notifications.size());
+        assertEquals("Malipo yako ya KES 2,500.00 yamefanikiwa. Nambari ya muamala: " + transactionId,
+                notifications.get(0).getMessage());
+
+        request.setLocale("fr");
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser(authorities = {"SCOPE_payment:initiate"})
     void testInitiatePayment_InvalidRequest() throws Exception {
@@ -76,6 +192,21 @@ class PaymentControllerIntegrationTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
+
+        // Unknown currency code, and an amount finer than the currency's minor unit
+        request.setRecipientPhoneNumber("+254712345678");
+        request.setCurrency("KSH");
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+        request.setAmount(new BigDecimal("100.50"));
+        request.setCurrency("UGX");
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+        assertEquals(0, paymentTransactionRepository.count());
     }
 
     @Test
@@ -84,9 +215,9 @@ class PaymentControllerIntegrationTest {
         PaymentTransaction transaction = new PaymentTransaction();
         transaction.setId("test-transaction-id");
         transaction.setRecipientPhoneNumber("+254720123456");
-        transaction.setAmount(BigDecimal.valueOf(200.00));
-        transaction.setCurrency("KES");
+        transaction.setAmount(Money.of(BigDecimal.valueOf(200.00), CurrencyCode.KES));
         transaction.setProvider("MPESA");
+        transaction.setDescription("Salary");
         transaction.setStatus(PaymentStatus.SUCCESS);
         transaction.setCreatedAt(LocalDateTime.now());
         transaction.setUpdatedAt(LocalDateTime.now());
@@ -96,7 +227,11 @@ class PaymentControllerIntegrationTest {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id", is("test-transaction-id")))
-                .andExpect(jsonPath("$.status", is("SUCCESS")));
+                .andExpect(jsonPath("$.status", is("SUCCESS")))
+                .andExpect(jsonPath("$.recipientPhoneNumber", is("+254720123456")))
+                .andExpect(jsonPath("$.description", is("Salary")))
+                .andExpect(jsonPath("$.amount", is(200.00)))
+                .andExpect(jsonPath("$.currency", is("KES")));
     }
 
     @Test
@@ -122,4 +257,856 @@ class PaymentControllerIntegrationTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:initiate"})
+    void testInitiatePayment_RoutedByNumberPrefix(@TempDir Path routingDir) throws Exception {
+        B2CPaymentRequest unnamed = batchItem("+255712345678", "100.00");
+        unnamed.setProvider(null);
+        // Routed to MPESA by the default table, which is not deployed here; the named provider is used instead
+        B2CPaymentRequest undeployed = batchItem("+254712345678", "100.00");
+        undeployed.setProvider(null);
+
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(unnamed)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(undeployed)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batchItem("+254712345678", "100.00"))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.provider", is("MOCK")));
+
+        Path routes = routingDir.resolve("routes.properties");
+        Files.write(routes, "+2557=mock\n".getBytes(StandardCharsets.UTF_8));
+        routingProperties.setFile(routes.toString());
+        try {
+            providerRouter.reloadIfChanged();
+
+            mockMvc.perform(post("/api/v1/payments/initiate")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(unnamed)))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.provider", is("MOCK")));
+
+            // A broken table is not swapped in
+            Files.write(routes, "+2557=UNKNOWN\n".getBytes(StandardCharsets.UTF_8));
+            providerRouter.reload();
+            mockMvc.perform(post("/api/v1/payments/initiate")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(unnamed)))
+                    .andExpect(status().isCreated());
+        } finally {
+            routingProperties.setFile(null);
+            providerRouter.reload();
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:initiate", "SCOPE_payment:status"})
+    void testSubmitBatch_AcceptedAndQueryable() throws Exception {
+        BatchPaymentRequest batch = new BatchPaymentRequest();
+        batch.setPayments(Arrays.asList(
+                batchItem("+254712345678", "150.00"),
+                batchItem("+254712345679", "250.00"),
+                batchItem("+254712345680", "350.00")));
+
+        String response = mockMvc.perform(post("/api/v1/payments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.total", is(3)))
+                .andExpect(jsonPath("$.items", hasSize(3)))
+                .andExpect(jsonPath("$.items[2].index", is(2)))
+                .andReturn().getResponse().getContentAsString();
+        String batchId = objectMapper.readTree(response).get("batchId").asText();
+
+        mockMvc.perform(get("/api/v1/payments/batch/{batchId}", batchId)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(3)))
+                .andExpect(jsonPath("$.items", hasSize(3)));
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:initiate"})
+    void testSubmitBatch_ReportsEveryInvalidItem() throws Exception {
+        B2CPaymentRequest badPhone = batchItem("0712345678", "100.00");
+        B2CPaymentRequest badProvider = batchItem("+254712345678", "100.00");
+        badProvider.setProvider("UNSUPPORTED");
+        B2CPaymentRequest badCurrency = batchItem("+254712345678", "100.00");
+        badCurrency.setCurrency("KSH");
+        BatchPaymentRequest batch = new BatchPaymentRequest();
+        batch.setPayments(Arrays.asList(batchItem("+254712345678", "100.00"), badPhone, badProvider, badCurrency));
+
+        mockMvc.perform(post("/api/v1/payments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors", hasSize(3)))
+                .andExpect(jsonPath("$.errors[0]", is("payments[1].recipientPhoneNumber: Invalid phone number format")))
+                .andExpect(jsonPath("$.errors[2]", is("payments[3].amount: Unsupported currency: KSH")));
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:initiate"})
+    void testInitiatePayment_IdempotencyKeyReplaysOriginal() throws Exception {
+        String key = UUID.randomUUID().toString();
+        String body = objectMapper.writeValueAsString(batchItem("+254712345678", "500.00"));
+
+        String first = mockMvc.perform(post("/api/v1/payments/initiate")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String transactionId = objectMapper.readTree(first).get("id").asText();
+
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id", is(transactionId)))
+                .andExpect(jsonPath("$.status", is("IN_PROGRESS")));
+        assertEquals(1, paymentTransactionRepository.count());
+    }
+
+    @Test
+    void testInitiatePayment_ConcurrentDuplicatesCollapse() throws Exception {
+        String key = UUID.randomUUID().toString();
+        String body = objectMapper.writeValueAsString(batchItem("+254712345678", "500.00"));
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<MvcResult>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(clients.submit(() -> mockMvc.perform(post("/api/v1/payments/initiate")
+                                .with(user("client").authorities(new SimpleGrantedAuthority("SCOPE_payment:initiate")))
+                                .header("Idempotency-Key", key)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(body))
+                        .andReturn()));
+            }
+            Set<String> ids = new HashSet<>();
+            int created = 0;
+            for (Future<MvcResult> result : results) {
+                MvcResult response = result.get(30, TimeUnit.SECONDS);
+                created += response.getResponse().getStatus() == 201 ? 1 : 0;
+                ids.add(objectMapper.readTree(response.getResponse().getContentAsString()).get("id").asText());
+            }
+            assertEquals(1, created);
+            assertEquals(1, ids.size());
+            assertEquals(1, paymentTransactionRepository.count());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:initiate"})
+    void testSubmitBatch_IdempotencyKeyReplaysOriginal() throws Exception {
+        String key = UUID.randomUUID().toString();
+        BatchPaymentRequest batch = new BatchPaymentRequest();
+        batch.setPayments(Arrays.asList(batchItem("+254712345678", "150.00"), batchItem("+254712345679", "250.00")));
+        String body = objectMapper.writeValueAsString(batch);
+
+        String first = mockMvc.perform(post("/api/v1/payments/batch")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        String batchId = objectMapper.readTree(first).get("batchId").asText();
+
+        mockMvc.perform(post("/api/v1/payments/batch")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.batchId", is(batchId)))
+                .andExpect(jsonPath("$.total", is(2)));
+        assertEquals(2, paymentTransactionRepository.count());
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:status"})
+    void testProviderCallbacks_CoalescedAndApplied() throws Exception {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId("callback-transaction-id");
+        transaction.setRecipientPhoneNumber("+254720123456");
+        transaction.setAmount(Money.of(BigDecimal.valueOf(200.00), CurrencyCode.KES));
+        transaction.setProvider("MOCK");
+        transaction.setProviderTransactionId("MOCK_callback");
+        transaction.setStatus(PaymentStatus.IN_PROGRESS);
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(LocalDateTime.now());
+        paymentTransactionRepository.save(transaction);
+
+        // Populates the status cache, which the applied callback must then update in place
+        mockMvc.perform(get("/api/v1/payments/{transactionId}/status", "callback-transaction-id")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.status", is("IN_PROGRESS")));
+
+        // SUCCESS followed by a late IN_PROGRESS in the same burst: the regression must not win
+        mockMvc.perform(callback("[{\"providerTransactionId\":\"MOCK_callback\",\"status\":\"SUCCESS\"}," +
+                "{\"providerTransactionId\":\"MOCK_callback\",\"status\":\"IN_PROGRESS\"}]"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.accepted", is(2)));
+        mockMvc.perform(callback("{\"providerTransactionId\":\"MOCK_callback\",\"status\":\"IN_PROGRESS\"}"))
+                .andExpect(status().isAccepted());
+        providerCallbackQueue.flush();
+
+        mockMvc.perform(get("/api/v1/payments/{transactionId}/status", "callback-transaction-id")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("SUCCESS")));
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:initiate", "SCOPE_payment:status"})
+    void testPaymentTimeline_RecordsEveryStatusChange() throws Exception {
+        String created = mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batchItem("+254712345678", "500.00"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String transactionId = objectMapper.readTree(created).get("id").asText();
+        String providerTransactionId = objectMapper.readTree(created).get("providerTransactionId").asText();
+
+        mockMvc.perform(callback("{\"providerTransactionId\":\"" + providerTransactionId + "\",\"status\":\"SUCCESS\"}"))
+                .andExpect(status().isAccepted());
+        providerCallbackQueue.flush();
+
+        mockMvc.perform(get("/api/v1/payments/{transactionId}/events", transactionId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].status", contains("PENDING", "IN_PROGRESS", "SUCCESS")))
+                .andExpect(jsonPath("$[1].previousStatus", is("PENDING")))
+                .andExpect(jsonPath("$[1].providerTransactionId", is(providerTransactionId)))
+                .andExpect(jsonPath("$[2].previousStatus", is("IN_PROGRESS")));
+        assertEquals(PaymentStatus.SUCCESS, paymentTransactionRepository.findById(transactionId).get().getStatus());
+
+        mockMvc.perform(get("/api/v1/payments/{transactionId}/events", "missing-transaction-id"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:status"})
+    void testAwaitPaymentStatus_WokenByStatusChange() throws Exception {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId("await-transaction-id");
+        transaction.setRecipientPhoneNumber("+254720123456");
+        transaction.setAmount(Money.of(BigDecimal.valueOf(200.00), CurrencyCode.KES));
+        transaction.setProvider("MOCK");
+        transaction.setProviderTransactionId("MOCK_await");
+        transaction.setStatus(PaymentStatus.IN_PROGRESS);
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(LocalDateTime.now());
+        paymentTransactionRepository.save(transaction);
+
+        MvcResult parked = mockMvc.perform(get("/api/v1/payments/{transactionId}/status/await", "await-transaction-id")
+                        .param("knownStatus", "IN_PROGRESS")
+                        .param("timeoutSeconds", "30"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(callback("{\"providerTransactionId\":\"MOCK_await\",\"status\":\"SUCCESS\"}"))
+                .andExpect(status().isAccepted());
+        providerCallbackQueue.flush();
+
+        mockMvc.perform(asyncDispatch(parked))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("SUCCESS")));
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:status"})
+    void testAwaitPaymentStatus_SeesChangeCommittedElsewhere() throws Exception {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId("remote-await-id");
+        transaction.setRecipientPhoneNumber("+254720123456");
+        transaction.setAmount(Money.of(BigDecimal.valueOf(200.00), CurrencyCode.KES));
+        transaction.setProvider("MOCK");
+        transaction.setProviderTransactionId("MOCK_remote_await");
+        transaction.setStatus(PaymentStatus.IN_PROGRESS);
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(LocalDateTime.now());
+        paymentTransactionRepository.save(transaction);
+
+        MvcResult parked = mockMvc.perform(get("/api/v1/payments/{transactionId}/status/await", "remote-await-id")
+                        .param("knownStatus", "IN_PROGRESS")
+                        .param("timeoutSeconds", "30"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // As if another instance had applied it: no local event, and this instance's cache entry expired
+        PaymentTransaction row = paymentTransactionRepository.findById("remote-await-id").get();
+        row.setStatus(PaymentStatus.SUCCESS);
+        paymentTransactionRepository.save(row);
+        paymentStatusCache.invalidate("remote-await-id");
+
+        long start = System.currentTimeMillis();
+        mockMvc.perform(asyncDispatch(parked))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("SUCCESS")));
+        assertTrue(System.currentTimeMillis() - start < 10000, "Woken by the timeout rather than the poll");
+    }
+
+    @Test
+    void testStatusChange_NotificationDeliveredThroughOutbox() throws Exception {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId("outbox-transaction-id");
+        transaction.setRecipientPhoneNumber("+254720123456");
+        transaction.setAmount(Money.of(BigDecimal.valueOf(200.00), CurrencyCode.KES));
+        transaction.setProvider("MOCK");
+        transaction.setProviderTransactionId("MOCK_outbox");
+        transaction.setStatus(PaymentStatus.IN_PROGRESS);
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(LocalDateTime.now());
+        paymentTransactionRepository.save(transaction);
+
+        mockMvc.perform(callback("{\"providerTransactionId\":\"MOCK_outbox\",\"status\":\"FAILED\",\"failureReason\":\"Invalid account\"}"))
+                .andExpect(status().isAccepted());
+        providerCallbackQueue.flush();
+
+        List<NotificationOutbox> notifications = notificationOutboxRepository.findAll().stream()
+                .filter(notification -> notification.getTransactionId().equals("outbox-transaction-id"))
+                .collect(Collectors.toList());
+        assertEquals(1, notifications.size());
+        assertTrue(notifications.get(0).getMessage().contains("Reason: Invalid account"));
+
+        notificationRelay.poll();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (notificationOutboxRepository.findById(notifications.get(0).getId()).get().getStatus() != NotificationStatus.SENT) {
+            assertTrue(System.currentTimeMillis() < deadline, "Notification was not delivered");
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    void testReconciler_ResolvesStuckPaymentsOnly() throws Exception {
+        PaymentTransaction stuck = new PaymentTransaction();
+        stuck.setId("stuck-transaction-id");
+        stuck.setRecipientPhoneNumber("+254720123456");
+        stuck.setAmount(Money.of(BigDecimal.valueOf(200.00), CurrencyCode.KES));
+        stuck.setProvider("MOCK");
+        stuck.setProviderTransactionId("MOCK_stuck");
+        stuck.setStatus(PaymentStatus.IN_PROGRESS);
+        stuck.setCreatedAt(LocalDateTime.now().minusMinutes(30));
+        stuck.setUpdatedAt(LocalDateTime.now().minusMinutes(30));
+        paymentTransactionRepository.save(stuck);
+
+        PaymentTransaction recent = new PaymentTransaction();
+        recent.setId("recent-transaction-id");
+        recent.setRecipientPhoneNumber("+254720123456");
+        recent.setAmount(Money.of(BigDecimal.valueOf(200.00), CurrencyCode.KES));
+        recent.setProvider("MOCK");
+        recent.setProviderTransactionId("MOCK_recent");
+        recent.setStatus(PaymentStatus.IN_PROGRESS);
+        recent.setCreatedAt(LocalDateTime.now());
+        recent.setUpdatedAt(LocalDateTime.now());
+        paymentTransactionRepository.save(recent);
+
+        assertEquals(1, paymentReconciler.reconcile());
+
+        PaymentTransaction reconciled = paymentTransactionRepository.findById("stuck-transaction-id").get();
+        assertEquals(PaymentStatus.SUCCESS, reconciled.getStatus());
+        assertTrue(reconciled.getLastReconciledAt() != null);
+        assertEquals(PaymentStatus.IN_PROGRESS, paymentTransactionRepository.findById("recent-transaction-id").get().getStatus());
+    }
+
+    @Test
+    void testReconciler_RedispatchesPendingPaymentsNeverSent() throws Exception {
+        PaymentTransaction lost = pending("lost-dispatch-id", null);
+        PaymentTransaction unrecorded = pending("unrecorded-dispatch-id", LocalDateTime.now().minusMinutes(30));
+
+        assertEquals(1, paymentReconciler.recoverPending());
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (paymentTransactionRepository.findById(lost.getId()).get().getStatus() == PaymentStatus.PENDING
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        PaymentTransaction redispatched = paymentTransactionRepository.findById(lost.getId()).get();
+        assertEquals(PaymentStatus.IN_PROGRESS, redispatched.getStatus());
+        assertTrue(redispatched.getProviderTransactionId() != null);
+        // Claimed before: it may have reached the provider, so it is only reported
+        PaymentTransaction reported = paymentTransactionRepository.findById(unrecorded.getId()).get();
+        assertEquals(PaymentStatus.PENDING, reported.getStatus());
+        assertTrue(reported.getLastReconciledAt() != null);
+        assertEquals(0, paymentReconciler.recoverPending());
+    }
+
+    private PaymentTransaction pending(String id, LocalDateTime dispatchedAt) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId(id);
+        transaction.setRecipientPhoneNumber("+254720123456");
+        transaction.setAmount(Money.of(BigDecimal.valueOf(200.00), CurrencyCode.KES));
+        transaction.setProvider("MOCK");
+        transaction.setStatus(PaymentStatus.PENDING);
+        transaction.setCreatedAt(LocalDateTime.now().minusMinutes(30));
+        transaction.setUpdatedAt(LocalDateTime.now().minusMinutes(30));
+        transaction.setDispatchedAt(dispatchedAt);
+        return paymentTransactionRepository.save(transaction);
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:status"})
+    void testSearchPayments_KeysetPagesNewestFirst() throws Exception {
+        LocalDateTime base = LocalDateTime.of(2024, 3, 1, 12, 0);
+        List<PaymentTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            PaymentTransaction transaction = new PaymentTransaction();
+            transaction.setId("search-" + i);
+            transaction.setRecipientPhoneNumber("+254720123456");
+            transaction.setAmount(Money.of(BigDecimal.valueOf(100 + i), CurrencyCode.KES));
+            transaction.setProvider("MOCK");
+            transaction.setStatus(i == 2 ? PaymentStatus.FAILED : PaymentStatus.SUCCESS);
+            // search-3 and search-4 share a timestamp: the id breaks the tie
+            transaction.setCreatedAt(base.plusMinutes(Math.min(i, 3)));
+            transaction.setUpdatedAt(base.plusMinutes(i));
+            transactions.add(transaction);
+        }
+        paymentTransactionRepository.saveAll(transactions);
+
+        String firstPage = mockMvc.perform(get("/api/v1/payments/search").param("status", "SUCCESS").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains("search-4", "search-3")))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(firstPage).get("nextCursor").asText();
+
+        mockMvc.perform(get("/api/v1/payments/search").param("status", "SUCCESS").param("limit", "2").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains("search-1", "search-0")))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mockMvc.perform(get("/api/v1/payments/search")
+                        .param("createdFrom", "2024-03-01T12:01:00").param("createdTo", "2024-03-01T12:03:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains("search-2", "search-1")));
+
+        mockMvc.perform(get("/api/v1/payments/search").param("currency", "kes").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id", is("search-4")))
+                .andExpect(jsonPath("$.items[0].amount", is(104.00)))
+                .andExpect(jsonPath("$.items[0].currency", is("KES")));
+        mockMvc.perform(get("/api/v1/payments/search").param("currency", "UGX"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(0)));
+
+        mockMvc.perform(get("/api/v1/payments/search").param("provider", "mock"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(5)));
+        mockMvc.perform(get("/api/v1/payments/search").param("provider", "M-PESA"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(0)));
+
+        mockMvc.perform(get("/api/v1/payments/search").param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/payments/search").param("currency", "KSH"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/payments/search").param("provider", "PAYPAL"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:export"})
+    void testExportPayments_NdjsonCsvAndGzip() throws Exception {
+        LocalDateTime day = LocalDateTime.of(2024, 3, 1, 0, 0);
+        List<PaymentTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            PaymentTransaction transaction = new PaymentTransaction();
+            transaction.setId("export-" + i);
+            transaction.setRecipientPhoneNumber("+254720123456");
+            transaction.setAmount(Money.of(new BigDecimal("100.50"), CurrencyCode.KES));
+            transaction.setProvider("MOCK");
+            transaction.setDescription(i == 1 ? "Rent, \"March\"" : "Payout");
+            transaction.setStatus(i == 2 ? PaymentStatus.FAILED : PaymentStatus.SUCCESS);
+            transaction.setCreatedAt(day.plusHours(i * 12)); // export-2 falls on the next day
+            transaction.setUpdatedAt(day.plusHours(i * 12));
+            transactions.add(transaction);
+        }
+        paymentTransactionRepository.saveAll(transactions);
+
+        MvcResult ndjson = mockMvc.perform(get("/api/v1/payments/export")
+                        .param("from", "2024-03-01T00:00:00").param("to", "2024-03-02T00:00:00"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(ndjson))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("export-0", objectMapper.readTree(lines[0]).get("id").asText());
+        assertEquals("Rent, \"March\"", objectMapper.readTree(lines[1]).get("description").asText());
+
+        MvcResult csv = mockMvc.perform(get("/api/v1/payments/export").param("format", "csv").param("gzip", "true")
+                        .param("from", "2024-03-01T00:00:00").param("to", "2024-03-03T00:00:00").param("status", "SUCCESS"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] compressed = mockMvc.perform(asyncDispatch(csv))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        String text = StreamUtils.copyToString(new GZIPInputStream(new ByteArrayInputStream(compressed)), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList(
+                "id,createdAt,updatedAt,status,recipientPhoneNumber,amount,currency,provider,providerTransactionId,batchId,failureReason,description",
+                "export-0,2024-03-01T00:00:00,2024-03-01T00:00:00,SUCCESS,+254720123456,100.50,KES,MOCK,,,,Payout",
+                "export-1,2024-03-01T12:00:00,2024-03-01T12:00:00,SUCCESS,+254720123456,100.50,KES,MOCK,,,,\"Rent, \"\"March\"\"\""),
+                Arrays.asList(text.split("\n")));
+
+        mockMvc.perform(get("/api/v1/payments/export").param("from", "2024-03-01T00:00:00").param("to", "2024-06-01T00:00:00"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:reconcile"})
+    void testReconcileSettlement_ReportsMismatchesAndAppliesCorrections(@TempDir Path settlementDir) throws Exception {
+        LocalDateTime day = LocalDateTime.of(2024, 3, 1, 0, 0);
+        List<PaymentTransaction> transactions = new ArrayList<>();
+        String[][] local = {
+                {"settle-0", "MOCK_S0", "100.00", "SUCCESS"}, // matches
+                {"settle-1", "MOCK_S1", "250.00", "IN_PROGRESS"}, // statement says settled
+                {"settle-2", "MOCK_S2", "75.00", "SUCCESS"}, // statement amount differs
+                {"settle-3", "MOCK_S3", "20.00", "SUCCESS"}, // not in the statement
+                {"settle-4", "MOCK_S4", "10.00", "SUCCESS"}}; // created before the window, still matched
+        for (int i = 0; i < local.length; i++) {
+            PaymentTransaction transaction = new PaymentTransaction();
+            transaction.setId(local[i][0]);
+            transaction.setProviderTransactionId(local[i][1]);
+            transaction.setRecipientPhoneNumber("+254720123456");
+            transaction.setAmount(Money.of(new BigDecimal(local[i][2]), CurrencyCode.KES));
+            transaction.setProvider("MOCK");
+            transaction.setStatus(PaymentStatus.valueOf(local[i][3]));
+            transaction.setCreatedAt(i == 4 ? day.minusDays(1) : day.plusHours(i));
+            transaction.setUpdatedAt(transaction.getCreatedAt());
+            transactions.add(transaction);
+        }
+        paymentTransactionRepository.saveAll(transactions);
+
+        Files.write(settlementDir.resolve("mock-2024-03-01.csv"), ("Provider_Transaction_ID,Amount,Currency,Fee,Status\n" +
+                "MOCK_S0,100.00,KES,1.00,COMPLETED\r\n" +
+                "\"MOCK_S1\",250,kes,2.50,SUCCESS\r\n" +
+                "MOCK_S2,70.00,KES,0.70,SUCCESS\n" +
+                "MOCK_S4,10.0,KES,0.10,SUCCESS\n" +
+                "MOCK_UNKNOWN,5.00,KES,0.05,SUCCESS\n" +
+                "MOCK_S0,100.00,KES,1.00,SUCCESS\n" + // duplicate
+                "MOCK_BAD,abc,KES,0,SUCCESS\n").getBytes(StandardCharsets.UTF_8));
+
+        String inboxDir = settlementProperties.getInboxDir();
+        String reportDir = settlementProperties.getReportDir();
+        settlementProperties.setInboxDir(settlementDir.toString());
+        settlementProperties.setReportDir(settlementDir.resolve("reports").toString());
+        try {
+            Map<String, Object> request = new HashMap<>();
+            request.put("fileName", "mock-2024-03-01.csv");
+            request.put("provider", "mock");
+            request.put("from", "2024-03-01T00:00:00");
+            request.put("to", "2024-03-02T00:00:00");
+            request.put("applyCorrections", true);
+
+            String body = mockMvc.perform(post("/api/v1/settlements/reconcile")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.statementLines", is(7)))
+                    .andExpect(jsonPath("$.malformedLines", is(1)))
+                    .andExpect(jsonPath("$.duplicateLines", is(1)))
+                    .andExpect(jsonPath("$.localPayments", is(5)))
+                    .andExpect(jsonPath("$.matched", is(2)))
+                    .andExpect(jsonPath("$.mismatchCounts.MISSING_LOCALLY", is(1)))
+                    .andExpect(jsonPath("$.mismatchCounts.MISSING_AT_PROVIDER", is(1)))
+                    .andExpect(jsonPath("$.mismatchCounts.AMOUNT_MISMATCH", is(1)))
+                    .andExpect(jsonPath("$.mismatchCounts.STATUS_MISMATCH", is(1)))
+                    .andExpect(jsonPath("$.correctionsApplied", is(1)))
+                    .andReturn().getResponse().getContentAsString();
+
+            List<String> reportLines = Files.readAllLines(Paths.get(objectMapper.readTree(body).get("reportFile").asText()));
+            assertEquals(5, reportLines.size());
+            assertTrue(reportLines.contains("AMOUNT_MISMATCH,MOCK_S2,settle-2,75.00,KES,SUCCESS,70.00,KES,SUCCESS"));
+            assertTrue(reportLines.contains("MISSING_LOCALLY,MOCK_UNKNOWN,,,,,5.00,KES,SUCCESS"));
+            assertEquals(PaymentStatus.SUCCESS, paymentTransactionRepository.findById("settle-1").get().getStatus());
+
+            request.put("fileName", "../mock-2024-03-01.csv");
+            mockMvc.perform(post("/api/v1/settlements/reconcile")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isBadRequest());
+            request.put("fileName", "mock-2024-03-01.csv");
+            request.put("provider", "PAYPAL");
+            mockMvc.perform(post("/api/v1/settlements/reconcile")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            settlementProperties.setInboxDir(inboxDir);
+            settlementProperties.setReportDir(reportDir);
+        }
+    }
+
+    @Test
+    void testProvidersEndpoint_ExposesCircuitStateAndLimit() throws Exception {
+        mockMvc.perform(get("/actuator/providers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.MOCK.circuitState", is("CLOSED")))
+                .andExpect(jsonPath("$.MOCK.concurrencyLimit", is(200)));
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:initiate"})
+    void testInitiatePayment_RecipientVelocityLimitReturns429() throws Exception {
+        // finsense.rate-limit.recipient-rules[2] allows KES 1,000,000 per recipient per 24h
+        B2CPaymentRequest request = batchItem("+255712345001", "600000.00");
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(content().string("Too many payments to +255712345001 within 24h."));
+
+        request.setAmount(new BigDecimal("1000000.01"));
+        request.setRecipientPhoneNumber("+255712345002");
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        // Rejected before anything was stored
+        assertEquals(1, paymentTransactionRepository.count());
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:initiate"})
+    void testSubmitBatch_RecipientVelocityLimitReturns429() throws Exception {
+        // finsense.rate-limit.recipient-rules[0] allows 30 payments per recipient per minute
+        List<B2CPaymentRequest> payments = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            payments.add(batchItem("+255712345003", "100.00"));
+        }
+        BatchPaymentRequest batch = new BatchPaymentRequest();
+        batch.setPayments(payments);
+        mockMvc.perform(post("/api/v1/payments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isAccepted());
+
+        payments.add(0, batchItem("+255712345004", "100.00"));
+        mockMvc.perform(post("/api/v1/payments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(content().string("Too many payments to +255712345003 within 1m."));
+
+        // More payouts to one number than a rule allows can never be admitted
+        List<B2CPaymentRequest> oversized = new ArrayList<>();
+        for (int i = 0; i < 31; i++) {
+            oversized.add(batchItem("+255712345005", "100.00"));
+        }
+        batch.setPayments(oversized);
+        mockMvc.perform(post("/api/v1/payments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isBadRequest());
+
+        // Only the first batch was stored, and the rejected batch's other recipient was not counted
+        assertEquals(20, paymentTransactionRepository.count());
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batchItem("+255712345004", "1000000.00"))))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:initiate"})
+    void testPaymentsEndpoint_AggregatesLiveAndRebuiltFromTable() throws Exception {
+        // GHS is used by no other test, so these are the only GHS payments counted by the shared context
+        for (String amount : new String[]{"10.00", "20.50", "30.00"}) {
+            B2CPaymentRequest request = batchItem("+254712345678", amount);
+            request.setCurrency("GHS");
+            mockMvc.perform(post("/api/v1/payments/initiate")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isCreated());
+        }
+
+        String ghsPending = "$[?(@.currency == 'GHS' && @.status == 'PENDING')]";
+        String ghsInProgress = "$[?(@.currency == 'GHS' && @.status == 'IN_PROGRESS')]";
+        mockMvc.perform(get("/actuator/payments/1m"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(ghsPending + ".count", contains(3)))
+                .andExpect(jsonPath(ghsPending + ".amount", contains(60.50)))
+                .andExpect(jsonPath(ghsPending + ".provider", contains("MOCK")))
+                .andExpect(jsonPath(ghsPending + ".latencyP50Ms", hasSize(0)))
+                .andExpect(jsonPath(ghsInProgress + ".count", contains(3)))
+                .andExpect(jsonPath(ghsInProgress + ".latencyMaxMs", hasSize(1)));
+        mockMvc.perform(get("/actuator/payments"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.24h" + ghsPending.substring(1) + ".count", contains(3)));
+        mockMvc.perform(get("/actuator/payments/2h"))
+                .andExpect(status().isNotFound());
+
+        // A new instance sees the same payments in the table
+        PaymentAggregationService rebuilt = new PaymentAggregationService(paymentTransactionRepository, transactionManager,
+                new AggregateProperties());
+        assertEquals(3, rebuilt.rebuild());
+        List<PaymentAggregate> aggregates = rebuilt.snapshot(AggregateWindow.ONE_HOUR).stream()
+                .filter(aggregate -> aggregate.getAmount().getCurrency() == CurrencyCode.GHS)
+                .collect(Collectors.toList());
+        assertEquals(2, aggregates.size());
+        assertEquals(PaymentStatus.PENDING, aggregates.get(0).getStatus());
+        assertEquals(Money.of(new BigDecimal("60.50"), CurrencyCode.GHS), aggregates.get(0).getAmount());
+        assertEquals(PaymentStatus.IN_PROGRESS, aggregates.get(1).getStatus());
+        assertEquals(3, aggregates.get(1).getCount());
+    }
+
+    @Test
+    @WithMockUser(authorities = {"SCOPE_payment:initiate"})
+    void testPrometheusEndpoint_ExposesPipelineMetrics() throws Exception {
+        B2CPaymentRequest request = batchItem("+254712345678", "150.00");
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated());
+        request.setRecipientPhoneNumber("+15551234567");
+        request.setProvider("UNKNOWN");
+        mockMvc.perform(post("/api/v1/payments/initiate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        String metrics = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(metrics.contains("provider_requests_seconds_bucket{"), "No provider latency histogram");
+        assertTrue(metrics.contains("operation=\"initiateB2CPayment\",outcome=\"success\",provider=\"MOCK\",quantile=\"0.99\""),
+                "No provider latency percentiles");
+        assertTrue(metrics.contains("sms_requests_seconds_bucket{"), "No SMS latency histogram");
+        assertTrue(metrics.contains("payment_status_transitions_total{application=\"finsense\",from=\"PENDING\",to=\"IN_PROGRESS\",}"),
+                "No status transition counter");
+        assertTrue(metrics.contains("executor_queued_tasks{application=\"finsense\",name=\"sms-relay\",}"), "No notification queue depth");
+        assertTrue(metrics.contains("executor_active_threads{application=\"finsense\",name=\"payment-dispatch\",}"), "No dispatch pool gauge");
+        assertTrue(metrics.contains("repository_invocations_seconds_count{application=\"finsense\",exception=\"None\",method=\"persistAll\",repository=\"PaymentTransactionRepository\",}"),
+                "No repository timings");
+        assertTrue(metrics.contains("payment_errors_total{application=\"finsense\",exception=\"InvalidRequestException\",}"),
+                "No error counter");
+    }
+
+    @Test
+    void testProviderCallbacks_RejectedWithoutValidSignature() throws Exception {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId("signed-callback-id");
+        transaction.setRecipientPhoneNumber("+254720123456");
+        transaction.setAmount(Money.of(BigDecimal.valueOf(200.00), CurrencyCode.KES));
+        transaction.setProvider("MOCK");
+        transaction.setProviderTransactionId("MOCK_signed");
+        transaction.setStatus(PaymentStatus.IN_PROGRESS);
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(LocalDateTime.now());
+        paymentTransactionRepository.save(transaction);
+        String body = "{\"providerTransactionId\":\"MOCK_signed\",\"status\":\"SUCCESS\"}";
+        mockMvc.perform(post("/api/v1/callbacks/status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/v1/callbacks/status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("X-Callback-Provider", "MOCK")
+                        .header("X-Callback-Signature", sign("wrong-secret", body))
+                        .content(body))
+                .andExpect(status().isUnauthorized());
+        // Signed correctly, but the body was changed on the way
+        mockMvc.perform(post("/api/v1/callbacks/status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("X-Callback-Provider", "MOCK")
+                        .header("X-Callback-Signature", sign(CALLBACK_SECRET, body))
+                        .content(body.replace("SUCCESS", "FAILED")))
+                .andExpect(status().isUnauthorized());
+        // No secret is configured for TKASH
+        mockMvc.perform(post("/api/v1/callbacks/status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("X-Callback-Provider", "TKASH")
+                        .header("X-Callback-Signature", sign(CALLBACK_SECRET, body))
+                        .content(body))
+                .andExpect(status().isUnauthorized());
+        providerCallbackQueue.flush();
+        assertEquals(PaymentStatus.IN_PROGRESS, paymentTransactionRepository.findById("signed-callback-id").get().getStatus());
+
+        mockMvc.perform(callback(body))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.accepted", is(1)));
+        providerCallbackQueue.flush();
+        assertEquals(PaymentStatus.SUCCESS, paymentTransactionRepository.findById("signed-callback-id").get().getStatus());
+    }
+
+    @Test
+    void testProviderCallbacks_CannotChangeAnotherProvidersPayment() throws Exception {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId("airtel-callback-id");
+        transaction.setRecipientPhoneNumber("+254730123456");
+        transaction.setAmount(Money.of(BigDecimal.valueOf(300.00), CurrencyCode.KES));
+        transaction.setProvider("AIRTEL_MONEY");
+        transaction.setProviderTransactionId("AIRTEL_victim");
+        transaction.setStatus(PaymentStatus.IN_PROGRESS);
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(LocalDateTime.now());
+        paymentTransactionRepository.save(transaction);
+        double misdirected = meterRegistry.counter("callback.updates.misdirected").count();
+
+        // Correctly signed by MPESA, and a provider named in the body is ignored
+        String body = "{\"providerTransactionId\":\"AIRTEL_victim\",\"status\":\"SUCCESS\",\"provider\":\"AIRTEL_MONEY\"}";
+        mockMvc.perform(post("/api/v1/callbacks/status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("X-Callback-Provider", "MPESA")
+                        .header("X-Callback-Signature", sign(MPESA_CALLBACK_SECRET, body))
+                        .content(body))
+                .andExpect(status().isAccepted());
+        providerCallbackQueue.flush();
+
+        assertEquals(PaymentStatus.IN_PROGRESS, paymentTransactionRepository.findById("airtel-callback-id").get().getStatus());
+        assertEquals(misdirected + 1, meterRegistry.counter("callback.updates.misdirected").count());
+    }
+
+    @Test
+    void testProviderCallbacks_InvalidPayload() throws Exception {
+        mockMvc.perform(callback("[{\"providerTransactionId\":\"MOCK_1\",\"status\":\"NOT_A_STATUS\"}]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static MockHttpServletRequestBuilder callback(String body) throws Exception {
+        return post("/api/v1/callbacks/status")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("X-Callback-Provider", "MOCK")
+                .header("X-Callback-Signature", sign(CALLBACK_SECRET, body))
+                .content(body);
+    }
+
+    private static String sign(String secret, String body) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : mac.doFinal(body.getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static B2CPaymentRequest batchItem(String phoneNumber, String amount) {
+        B2CPaymentRequest request = new B2CPaymentRequest();
+        request.setRecipientPhoneNumber(phoneNumber);
+        request.setAmount(new BigDecimal(amount));
+        request.setCurrency("KES");
+        request.setProvider("MOCK");
+        request.setDescription("Batch payout");
+        return request;
+    }
 }
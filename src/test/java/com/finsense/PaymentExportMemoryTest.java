@@ -0,0 +1,110 @@
+package com.finsense;
+
+import com.finsense.model.ExportFormat;
+import com.finsense.service.PaymentExportService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exports {@value #ROWS} payments from a file-backed H2 database in a child JVM limited to a
+ * {@value #HEAP} heap. Held in memory at once, the exported rows alone would need several hundred MB.
+ * Seeding the database takes a few minutes, so this only runs with {@code -Pslow-tests}.
+ */
+@Tag("slow")
+class PaymentExportMemoryTest {
+
+    private static final int ROWS = 2000000;
+    private static final String HEAP = "96m";
+    private static final int INSERT_CHUNK = 20000;
+
+    @Test
+    void testExport_MillionsOfRowsInSmallHeap() throws Exception {
+        File workDir = new File("target/export-memory-test");
+        workDir.mkdirs();
+        File log = new File(workDir, "child.log");
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process child = new ProcessBuilder(java, "-Xmx" + HEAP, "-XX:+ExitOnOutOfMemoryError",
+                "-cp", System.getProperty("java.class.path"),
+                PaymentExportMemoryTest.class.getName(), new File(workDir, "paymentdb").getAbsolutePath())
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        try {
+            assertTrue(child.waitFor(15, TimeUnit.MINUTES), "Export did not finish");
+        } finally {
+            child.destroyForcibly();
+            Files.deleteIfExists(new File(workDir, "paymentdb.mv.db").toPath());
+        }
+
+        List<String> output = Files.readAllLines(log.toPath(), StandardCharsets.UTF_8);
+        assertEquals(0, child.exitValue(), "Child JVM failed, see " + log);
+        assertTrue(output.contains("EXPORTED " + ROWS), "Unexpected export result, see " + log);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String dbPath = args[0];
+        Files.deleteIfExists(new File(dbPath + ".mv.db").toPath());
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:file:" + dbPath + ";LAZY_QUERY_EXECUTION=1",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--finsense.reconciliation.enabled=false",
+                        "--logging.level.root=WARN");
+        try {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            for (int start = 0; start < ROWS; start += INSERT_CHUNK) {
+                // One payment every 40 ms fills the exported day
+                jdbcTemplate.update("insert into payment_transaction (id, recipient_phone_number, amount_minor, currency, provider, " +
+                        "status, provider_transaction_id, description, created_at, updated_at) " +
+                        "select 'export-' || lpad(x, 8, '0'), '+254712345678', 150000, 'KES', 'MOCK', 'SUCCESS', 'MOCK_' || x, " +
+                        "'Settlement test payout', dateadd('MILLISECOND', x * 40, timestamp '2024-03-01 00:00:00'), " +
+                        "dateadd('MILLISECOND', x * 40, timestamp '2024-03-01 00:00:00') " +
+                        "from system_range(?, ?)", start, start + INSERT_CHUNK - 1);
+            }
+
+            LineCountingOutputStream out = new LineCountingOutputStream();
+            long exported = context.getBean(PaymentExportService.class).export(LocalDateTime.of(2024, 3, 1, 0, 0),
+                    LocalDateTime.of(2024, 3, 2, 0, 0), null, ExportFormat.NDJSON, false, out);
+            System.out.println("EXPORTED " + (out.lines == exported ? exported : -1));
+        } finally {
+            context.close();
+        }
+        System.exit(0);
+    }
+
+    private static class LineCountingOutputStream extends OutputStream {
+        private long lines;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    lines++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.finsense;
+
+import com.finsense.config.RateLimitProperties;
+import com.finsense.exception.InvalidRequestException;
+import com.finsense.exception.RateLimitExceededException;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.service.ratelimit.PaymentRateLimiter;
+import com.finsense.service.ratelimit.RecipientReservation;
+import com.finsense.service.ratelimit.TokenBucket;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PaymentRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(-TimeUnit.DAYS.toNanos(1));
+
+    @Test
+    void testClientBucketAllowsBurstThenRefillsAtRate() {
+        PaymentRateLimiter limiter = new PaymentRateLimiter(properties(10, 5), clock::get);
+        for (int i = 0; i < 5; i++) {
+            limiter.checkClient("client-a");
+        }
+        RateLimitExceededException rejected = assertThrows(RateLimitExceededException.class, () -> limiter.checkClient("client-a"));
+        assertEquals(1, rejected.getRetryAfterSeconds());
+        limiter.checkClient("client-b");
+
+        // One token every 100 ms
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        limiter.checkClient("client-a");
+        limiter.checkClient("client-a");
+        assertThrows(RateLimitExceededException.class, () -> limiter.checkClient("client-a"));
+    }
+
+    @Test
+    void testClientBucketChargesBatchPerPayment() {
+        PaymentRateLimiter limiter = new PaymentRateLimiter(properties(10, 5), clock::get);
+        limiter.checkClient("client-a", 3);
+        assertThrows(RateLimitExceededException.class, () -> limiter.checkClient("client-a", 3));
+        limiter.checkClient("client-a", 2);
+        assertThrows(RateLimitExceededException.class, () -> limiter.checkClient("client-a"));
+
+        // A batch larger than the burst waits for a full bucket, then holds off the client for its excess
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+        assertThrows(RateLimitExceededException.class, () -> limiter.checkClient("client-a", 12));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        limiter.checkClient("client-a", 12);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(700));
+        assertThrows(RateLimitExceededException.class, () -> limiter.checkClient("client-a"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        limiter.checkClient("client-a");
+    }
+
+    @Test
+    void testTokenBucketAdmitsExactlyBurstUnderContention() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 1000, 0);
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 500; i++) {
+                        if (bucket.tryAcquire(0) == 0) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1000, admitted.get());
+    }
+
+    @Test
+    void testRecipientCountAndAmountPerWindow() {
+        RateLimitProperties properties = properties(1000, 1000);
+        properties.getRecipientRules().add(rule(60, 3));
+        RateLimitProperties.RecipientRule daily = rule(86400, 0);
+        daily.getMaxAmount().put("KES", new BigDecimal("1000"));
+        properties.getRecipientRules().add(daily);
+        PaymentRateLimiter limiter = new PaymentRateLimiter(properties, clock::get);
+
+        for (int i = 0; i < 3; i++) {
+            limiter.checkRecipient("+254712345678", kes("100"));
+        }
+        RateLimitExceededException rejected = assertThrows(RateLimitExceededException.class,
+                () -> limiter.checkRecipient("+254712345678", kes("100")));
+        assertEquals("Too many payments to +254712345678 within 1m.", rejected.getMessage());
+        assertEquals(70, rejected.getRetryAfterSeconds());
+        limiter.checkRecipient("+254712345679", kes("100"));
+        limiter.checkRecipient("+254712345678", Money.of(new BigDecimal("100"), CurrencyCode.UGX));
+
+        // The count window has passed; the day's KES total (300 so far) has not
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(75));
+        limiter.checkRecipient("+254712345678", kes("600"));
+        rejected = assertThrows(RateLimitExceededException.class, () -> limiter.checkRecipient("+254712345678", kes("100.01")));
+        assertEquals("Too many payments to +254712345678 within 24h.", rejected.getMessage());
+        limiter.checkRecipient("+254712345678", kes("100"));
+        assertThrows(InvalidRequestException.class, () -> limiter.checkRecipient("+254712345670", kes("1000.01")));
+
+        clock.addAndGet(TimeUnit.HOURS.toNanos(29));
+        limiter.checkRecipient("+254712345678", kes("1000"));
+    }
+
+    @Test
+    void testRecipientBatchCountedWholeOrNotAtAll() {
+        RateLimitProperties properties = properties(1000, 1000);
+        properties.getRecipientRules().add(rule(60, 3));
+        RateLimitProperties.RecipientRule daily = rule(86400, 0);
+        daily.getMaxAmount().put("KES", new BigDecimal("1000"));
+        properties.getRecipientRules().add(daily);
+        PaymentRateLimiter limiter = new PaymentRateLimiter(properties, clock::get);
+        String a = "+254712345678";
+        String b = "+254712345679";
+
+        limiter.checkRecipients(Arrays.asList(a, a, b), Arrays.asList(kes("100"), kes("100"), kes("100")));
+        RateLimitExceededException rejected = assertThrows(RateLimitExceededException.class,
+                () -> limiter.checkRecipients(Arrays.asList(b, a, a), Arrays.asList(kes("100"), kes("100"), kes("100"))));
+        assertEquals("Too many payments to +254712345678 within 1m.", rejected.getMessage());
+
+        // The rejected batch's payment to b was taken back
+        limiter.checkRecipients(Arrays.asList(b, b), Arrays.asList(kes("100"), kes("100")));
+        assertThrows(RateLimitExceededException.class, () -> limiter.checkRecipient(b, kes("100")));
+
+        // Batches that could never fit are refused outright and count for nothing
+        String c = "+254712345670";
+        assertThrows(InvalidRequestException.class,
+                () -> limiter.checkRecipients(Arrays.asList(c, c, c, c), Arrays.asList(kes("1"), kes("1"), kes("1"), kes("1"))));
+        assertThrows(InvalidRequestException.class,
+                () -> limiter.checkRecipients(Arrays.asList(c, c), Arrays.asList(kes("600"), kes("600"))));
+        limiter.checkRecipients(Arrays.asList(c, c, c), Arrays.asList(kes("300"), kes("300"), kes("400")));
+    }
+
+    @Test
+    void testReleasedReservationNoLongerCounts() {
+        RateLimitProperties properties = properties(1000, 1000);
+        properties.getRecipientRules().add(rule(60, 2));
+        PaymentRateLimiter limiter = new PaymentRateLimiter(properties, clock::get);
+
+        limiter.checkRecipient("+254712345678", kes("100"));
+        RecipientReservation refused = limiter.checkRecipient("+254712345678", kes("100"));
+        assertThrows(RateLimitExceededException.class, () -> limiter.checkRecipient("+254712345678", kes("100")));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        refused.release();
+        refused.release();
+        limiter.checkRecipient("+254712345678", kes("100"));
+        assertThrows(RateLimitExceededException.class, () -> limiter.checkRecipient("+254712345678", kes("100")));
+
+        RecipientReservation batch = limiter.checkRecipients(Arrays.asList("+254712345679", "+254712345679"),
+                Arrays.asList(kes("100"), kes("100")));
+        batch.release();
+        limiter.checkRecipients(Arrays.asList("+254712345679", "+254712345679"), Arrays.asList(kes("100"), kes("100")));
+    }
+
+    private static RateLimitProperties properties(double requestsPerSecond, int burst) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setClientRequestsPerSecond(requestsPerSecond);
+        properties.setClientBurst(burst);
+        return properties;
+    }
+
+    private static RateLimitProperties.RecipientRule rule(long windowSeconds, int maxCount) {
+        RateLimitProperties.RecipientRule rule = new RateLimitProperties.RecipientRule();
+        rule.setWindowSeconds(windowSeconds);
+        rule.setMaxCount(maxCount);
+        return rule;
+    }
+
+    private static Money kes(String amount) {
+        return Money.of(new BigDecimal(amount), CurrencyCode.KES);
+    }
+}
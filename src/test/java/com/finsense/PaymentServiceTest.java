@@ -1,27 +1,55 @@
 package com.finsense;
 
+import com.finsense.config.BatchProperties;
+import com.finsense.config.RateLimitProperties;
+import com.finsense.config.RoutingProperties;
+import com.finsense.config.StatusUpdateProperties;
 import com.finsense.exception.PaymentException;
+import com.finsense.exception.RateLimitExceededException;
 import com.finsense.model.B2CPaymentRequest;
+import com.finsense.model.BatchPaymentRequest;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
 import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusView;
 import com.finsense.model.PaymentTransaction;
+import com.finsense.model.ProviderStatusUpdate;
+import com.finsense.repository.ArchivedPaymentTransactionRepository;
 import com.finsense.repository.PaymentTransactionRepository;
 import com.finsense.exception.InvalidRequestException;
 import com.finsense.exception.ExternalApiException;
+import com.finsense.exception.ServiceOverloadedException;
+import com.finsense.service.BatchPaymentService;
 import com.finsense.service.MobileMoneyService;
+import com.finsense.service.NotificationOutboxService;
+import com.finsense.service.PaymentDispatcher;
+import com.finsense.service.PaymentStatusCache;
 import com.finsense.service.PaymentService;
 import com.finsense.service.mock.MockMobileMoneyService;
-import com.finsense.service.mock.MockSmsGateway;
+import com.finsense.service.ratelimit.PaymentRateLimiter;
+import com.finsense.service.routing.ProviderRegistry;
+import com.finsense.service.routing.ProviderRouter;
+import com.finsense.util.SnowflakePaymentIdGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import javax.validation.Validation;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -31,11 +59,29 @@ class PaymentServiceTest {
     @Mock
     private PaymentTransactionRepository paymentTransactionRepository;
 
+    @Mock
+    private ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository;
+
     @Mock
     private MockMobileMoneyService mockMobileMoneyService;
 
     @Mock
-    private MockSmsGateway mockSmsGateway;
+    private NotificationOutboxService notificationOutboxService;
+
+    @Mock
+    private PaymentDispatcher paymentDispatcher;
+
+    @Mock
+    private PaymentStatusCache paymentStatusCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private StatusUpdateProperties statusUpdateProperties = new StatusUpdateProperties();
 
     private List<MobileMoneyService> mobileMoneyServices;
 
@@ -45,11 +91,14 @@ class PaymentServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.initMocks(this);
-        mobileMoneyServices = Collections.singletonList(mockMobileMoneyService); // Provide the mock service
-        paymentService = new PaymentService(paymentTransactionRepository, mobileMoneyServices, mockSmsGateway);
-
         // Configure the mock mobile money service to return a specific provider type
         when(mockMobileMoneyService.getProviderType()).thenReturn("MOCK");
+
+        mobileMoneyServices = Collections.singletonList(mockMobileMoneyService); // Provide the mock service
+        paymentService = new PaymentService(paymentTransactionRepository, archivedPaymentTransactionRepository,
+                new ProviderRegistry(mobileMoneyServices), new ProviderRouter(new RoutingProperties()), notificationOutboxService, paymentDispatcher,
+                paymentStatusCache, eventPublisher, transactionManager, new SnowflakePaymentIdGenerator(0, 0L),
+                statusUpdateProperties);
     }
 
     @Test
@@ -61,9 +110,7 @@ class PaymentServiceTest {
         request.setProvider("MOCK");
         request.setDescription("Test payment");
 
-        PaymentTransaction initialTransaction = new PaymentTransaction();
-        initialTransaction.setId("test-id");
-        when(paymentTransactionRepository.save(any(PaymentTransaction.class))).thenReturn(initialTransaction);
+        when(paymentTransactionRepository.updateStatus(anyString(), any(), any(), any(), any(), any())).thenReturn(1);
         when(mockMobileMoneyService.initiateB2CPayment(any(PaymentTransaction.class))).thenReturn("provider-tx-id");
 
         PaymentTransaction result = paymentService.initiatePayment(request);
@@ -72,9 +119,13 @@ class PaymentServiceTest {
         assertEquals(PaymentStatus.IN_PROGRESS, result.getStatus());
         assertEquals("provider-tx-id", result.getProviderTransactionId());
 
-        verify(paymentTransactionRepository, times(2)).save(any(PaymentTransaction.class)); // Initial save and update
+        // Insert, then a targeted status update instead of a second full-row save
+        verify(paymentTransactionRepository, times(1)).persistAll(anyList());
+        verify(paymentTransactionRepository, times(1)).updateStatus(eq(result.getId()), eq(PaymentStatus.PENDING),
+                eq(PaymentStatus.IN_PROGRESS), eq("provider-tx-id"), isNull(), any());
+        verify(paymentTransactionRepository, never()).save(any(PaymentTransaction.class));
         verify(mockMobileMoneyService, times(1)).initiateB2CPayment(any(PaymentTransaction.class));
-        // verify(mockSmsGateway, times(1)).sendSms(anyString(), anyString()); // Notification is async
+        verify(notificationOutboxService, times(1)).enqueue(any(PaymentTransaction.class), eq(PaymentStatus.SUCCESS));
     }
 
     @Test
@@ -88,9 +139,33 @@ class PaymentServiceTest {
 
         assertThrows(InvalidRequestException.class, () -> paymentService.initiatePayment(request));
 
-        verify(paymentTransactionRepository, never()).save(any(PaymentTransaction.class));
+        verify(paymentTransactionRepository, never()).persistAll(anyList());
         verify(mockMobileMoneyService, never()).initiateB2CPayment(any(PaymentTransaction.class));
-        verify(mockSmsGateway, never()).sendSms(anyString(), anyString());
+        verify(notificationOutboxService, never()).enqueue(any(PaymentTransaction.class), any(PaymentStatus.class));
+    }
+
+    @Test
+    void testInitiatePayment_CurrencyCheckedAndAmountHeldInMinorUnits() {
+        B2CPaymentRequest request = new B2CPaymentRequest();
+        request.setRecipientPhoneNumber("+254712345678");
+        request.setAmount(new BigDecimal("1500.5"));
+        request.setCurrency("KSH"); // Typo of KES
+        request.setProvider("MOCK");
+
+        InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> paymentService.initiatePayment(request));
+        assertEquals("Unsupported currency: KSH", e.getMessage());
+
+        request.setCurrency("UGX");
+        e = assertThrows(InvalidRequestException.class, () -> paymentService.initiatePayment(request));
+        assertEquals("UGX amounts cannot have decimal places.", e.getMessage());
+        verify(paymentTransactionRepository, never()).persistAll(anyList());
+
+        request.setCurrency("kes");
+        when(paymentTransactionRepository.updateStatus(anyString(), any(), any(), any(), any(), any())).thenReturn(1);
+        when(mockMobileMoneyService.initiateB2CPayment(any(PaymentTransaction.class))).thenReturn("provider-tx-id");
+        PaymentTransaction result = paymentService.initiatePayment(request);
+        assertEquals(150050, result.getAmount().getMinorUnits());
+        assertEquals(CurrencyCode.KES, result.getAmount().getCurrency());
     }
 
     @Test
@@ -104,9 +179,9 @@ class PaymentServiceTest {
 
         assertThrows(InvalidRequestException.class, () -> paymentService.initiatePayment(request));
 
-        verify(paymentTransactionRepository, never()).save(any(PaymentTransaction.class));
+        verify(paymentTransactionRepository, never()).persistAll(anyList());
         verify(mockMobileMoneyService, never()).initiateB2CPayment(any(PaymentTransaction.class));
-        verify(mockSmsGateway, never()).sendSms(anyString(), anyString());
+        verify(notificationOutboxService, never()).enqueue(any(PaymentTransaction.class), any(PaymentStatus.class));
     }
 
     @Test
@@ -118,25 +193,272 @@ class PaymentServiceTest {
         request.setProvider("MOCK");
         request.setDescription("Test payment");
 
-        PaymentTransaction initialTransaction = new PaymentTransaction();
-        initialTransaction.setId("test-id");
-        when(paymentTransactionRepository.save(any(PaymentTransaction.class))).thenReturn(initialTransaction);
+        when(paymentTransactionRepository.updateStatus(anyString(), any(), any(), any(), any(), any())).thenReturn(1);
         when(mockMobileMoneyService.initiateB2CPayment(any(PaymentTransaction.class)))
                 .thenThrow(new ExternalApiException("Provider API error"));
 
         assertThrows(PaymentException.class, () -> paymentService.initiatePayment(request));
 
-        ArgumentCaptor<PaymentTransaction> transactionCaptor = ArgumentCaptor.forClass(PaymentTransaction.class);
-        verify(paymentTransactionRepository, times(2)).save(transactionCaptor.capture()); // Initial save and update
-
-        PaymentTransaction failedTransaction = transactionCaptor.getAllValues().get(1);
-        assertEquals(PaymentStatus.FAILED, failedTransaction.getStatus());
-        assertTrue(failedTransaction.getFailureReason().contains("External API error"));
+        verify(paymentTransactionRepository, times(1)).persistAll(anyList());
+        ArgumentCaptor<String> reasonCaptor = ArgumentCaptor.forClass(String.class);
+        verify(paymentTransactionRepository, times(1)).updateStatus(anyString(), eq(PaymentStatus.PENDING),
+                eq(PaymentStatus.FAILED), isNull(), reasonCaptor.capture(), any());
+        assertTrue(reasonCaptor.getValue().contains("External API error"));
 
         verify(mockMobileMoneyService, times(1)).initiateB2CPayment(any(PaymentTransaction.class));
-        // verify(mockSmsGateway, times(1)).sendSms(anyString(), anyString()); // Notification is async
+        verify(notificationOutboxService, times(1)).enqueue(any(PaymentTransaction.class), eq(PaymentStatus.FAILED));
+    }
+
+    @Test
+    void testAcceptPayment_PersistsPendingAndDispatchesLater() {
+        B2CPaymentRequest request = new B2CPaymentRequest();
+        request.setRecipientPhoneNumber("+254712345678");
+        request.setAmount(BigDecimal.valueOf(100.00));
+        request.setCurrency("KES");
+        request.setProvider("MOCK");
+        request.setDescription("Test payment");
+
+        when(paymentDispatcher.tryReserve()).thenReturn(true);
+        when(paymentTransactionRepository.claimDispatch(anyString(), any())).thenReturn(1);
+        when(paymentTransactionRepository.updateStatus(anyString(), any(), any(), any(), any(), any())).thenReturn(1);
+
+        PaymentTransaction result = paymentService.acceptPayment(request);
+
+        assertEquals(PaymentStatus.PENDING, result.getStatus());
+        verify(mockMobileMoneyService, never()).initiateB2CPayment(any(PaymentTransaction.class));
+
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(paymentDispatcher).submitAfterCommit(taskCaptor.capture());
+
+        when(mockMobileMoneyService.initiateB2CPayment(any(PaymentTransaction.class))).thenReturn("provider-tx-id");
+        taskCaptor.getValue().run();
+
+        verify(paymentTransactionRepository, times(1)).persistAll(anyList());
+        verify(paymentTransactionRepository, times(1)).updateStatus(eq(result.getId()), eq(PaymentStatus.PENDING),
+                eq(PaymentStatus.IN_PROGRESS), eq("provider-tx-id"), isNull(), any());
+        assertEquals(PaymentStatus.PENDING, result.getStatus());
+    }
+
+    @Test
+    void testAcceptPayment_ProviderAcceptedButStatusNotRecorded() {
+        B2CPaymentRequest request = new B2CPaymentRequest();
+        request.setRecipientPhoneNumber("+254712345678");
+        request.setAmount(BigDecimal.valueOf(100.00));
+        request.setCurrency("KES");
+        request.setProvider("MOCK");
+
+        when(paymentDispatcher.tryReserve()).thenReturn(true);
+        when(paymentTransactionRepository.claimDispatch(anyString(), any())).thenReturn(1);
+        when(mockMobileMoneyService.initiateB2CPayment(any(PaymentTransaction.class))).thenReturn("provider-tx-id");
+        when(paymentTransactionRepository.updateStatus(anyString(), any(), eq(PaymentStatus.IN_PROGRESS), any(), any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection lost"));
+
+        paymentService.acceptPayment(request);
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(paymentDispatcher).submitAfterCommit(taskCaptor.capture());
+        taskCaptor.getValue().run();
+
+        // The payout went out: no FAILED status and no failure SMS
+        verify(paymentTransactionRepository, never()).updateStatus(anyString(), any(), eq(PaymentStatus.FAILED), any(), any(), any());
+        verify(notificationOutboxService, never()).enqueue(any(PaymentTransaction.class), any(PaymentStatus.class));
     }
 
+    @Test
+    void testAcceptPayment_DispatchSkippedWhenAlreadyClaimed() {
+        B2CPaymentRequest request = new B2CPaymentRequest();
+        request.setRecipientPhoneNumber("+254712345678");
+        request.setAmount(BigDecimal.valueOf(100.00));
+        request.setCurrency("KES");
+        request.setProvider("MOCK");
+
+        when(paymentDispatcher.tryReserve()).thenReturn(true);
+        // Recovery, or another worker, claimed the payment first
+        when(paymentTransactionRepository.claimDispatch(anyString(), any())).thenReturn(0);
+
+        paymentService.acceptPayment(request);
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(paymentDispatcher).submitAfterCommit(taskCaptor.capture());
+        taskCaptor.getValue().run();
+
+        verify(mockMobileMoneyService, never()).initiateB2CPayment(any(PaymentTransaction.class));
+        verify(paymentTransactionRepository, never()).updateStatus(anyString(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatchDispatch_ChunkWriteFailsFallsBackToPerRowUpdates() {
+        BatchPaymentService batchPaymentService = new BatchPaymentService(paymentTransactionRepository,
+                archivedPaymentTransactionRepository, paymentService, notificationOutboxService, paymentDispatcher,
+                Validation.buildDefaultValidatorFactory().getValidator(), transactionManager, new BatchProperties(),
+                new SnowflakePaymentIdGenerator(0, 1L), new PaymentRateLimiter(new RateLimitProperties()));
+        BatchPaymentRequest request = new BatchPaymentRequest();
+        request.setPayments(Arrays.asList(batchItem("+254712345678"), batchItem("+254712345679"), batchItem("+254712345670")));
+
+        when(paymentDispatcher.tryReserve(1)).thenReturn(true);
+        when(paymentTransactionRepository.claimDispatch(anyString(), any())).thenReturn(1);
+        when(mockMobileMoneyService.initiateB2CPayment(any(PaymentTransaction.class)))
+                .thenReturn("provider-tx-1")
+                .thenThrow(new ExternalApiException("Provider down"))
+                .thenReturn("provider-tx-3");
+        when(paymentTransactionRepository.findAllById(any())).thenThrow(new DataAccessResourceFailureException("Connection lost"));
+        when(paymentTransactionRepository.updateStatus(anyString(), any(), any(), any(), any(), any())).thenReturn(1);
+
+        batchPaymentService.submitBatch(request);
+        ArgumentCaptor<List<Runnable>> tasksCaptor = ArgumentCaptor.forClass(List.class);
+        verify(paymentDispatcher).submitAfterCommit(tasksCaptor.capture());
+        tasksCaptor.getValue().forEach(Runnable::run);
+
+        verify(paymentTransactionRepository).updateStatus(anyString(), eq(PaymentStatus.PENDING),
+                eq(PaymentStatus.IN_PROGRESS), eq("provider-tx-1"), isNull(), any());
+        verify(paymentTransactionRepository).updateStatus(anyString(), eq(PaymentStatus.PENDING),
+                eq(PaymentStatus.IN_PROGRESS), eq("provider-tx-3"), isNull(), any());
+        verify(paymentTransactionRepository).updateStatus(anyString(), eq(PaymentStatus.PENDING),
+                eq(PaymentStatus.FAILED), isNull(), eq("External API error: Provider down"), any());
+        verify(notificationOutboxService, times(2)).enqueue(any(PaymentTransaction.class), eq(PaymentStatus.SUCCESS));
+        verify(notificationOutboxService).enqueue(any(PaymentTransaction.class), eq(PaymentStatus.FAILED));
+    }
+
+    @Test
+    void testSubmitBatch_DispatchQueueFullLeavesRecipientCountsUnchanged() {
+        RateLimitProperties rateLimitProperties = new RateLimitProperties();
+        RateLimitProperties.RecipientRule rule = new RateLimitProperties.RecipientRule();
+        rule.setWindowSeconds(60);
+        rule.setMaxCount(3);
+        rateLimitProperties.getRecipientRules().add(rule);
+        PaymentRateLimiter rateLimiter = new PaymentRateLimiter(rateLimitProperties);
+        BatchPaymentService batchPaymentService = new BatchPaymentService(paymentTransactionRepository,
+                archivedPaymentTransactionRepository, paymentService, notificationOutboxService, paymentDispatcher,
+                Validation.buildDefaultValidatorFactory().getValidator(), transactionManager, new BatchProperties(),
+                new SnowflakePaymentIdGenerator(0, 1L), rateLimiter);
+        BatchPaymentRequest request = new BatchPaymentRequest();
+        request.setPayments(Arrays.asList(batchItem("+254712345678"), batchItem("+254712345678"), batchItem("+254712345678")));
+
+        when(paymentDispatcher.tryReserve(1)).thenReturn(false);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ServiceOverloadedException.class, () -> batchPaymentService.submitBatch(request));
+        }
+        verify(paymentTransactionRepository, never()).persistAll(anyList());
+
+        // None of the refused batches was counted, so the recipient still has all three payments of its minute
+        when(paymentDispatcher.tryReserve(1)).thenReturn(true);
+        batchPaymentService.submitBatch(request);
+        assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.checkRecipient("+254712345678", Money.of(BigDecimal.ONE, CurrencyCode.KES)));
+    }
+
+    private static B2CPaymentRequest batchItem(String recipientPhoneNumber) {
+        B2CPaymentRequest item = new B2CPaymentRequest();
+        item.setRecipientPhoneNumber(recipientPhoneNumber);
+        item.setAmount(BigDecimal.valueOf(100.00));
+        item.setCurrency("KES");
+        item.setProvider("MOCK");
+        return item;
+    }
+
+    @Test
+    void testAcceptPayment_DispatchQueueFull() {
+        B2CPaymentRequest request = new B2CPaymentRequest();
+        request.setRecipientPhoneNumber("+254712345678");
+        request.setAmount(BigDecimal.valueOf(100.00));
+        request.setCurrency("KES");
+        request.setProvider("MOCK");
+
+        when(paymentDispatcher.tryReserve()).thenReturn(false);
+
+        assertThrows(ServiceOverloadedException.class, () -> paymentService.acceptPayment(request));
+
+        verify(paymentTransactionRepository, never()).persistAll(anyList());
+        verify(paymentDispatcher, never()).submitAfterCommit(any(Runnable.class));
+    }
+
+    @Test
+    void testApplyProviderStatusUpdates_RejectsRegressions() {
+        PaymentTransaction completed = new PaymentTransaction();
+        completed.setId("completed-id");
+        completed.setProvider("MOCK");
+        completed.setProviderTransactionId("provider-1");
+        completed.setStatus(PaymentStatus.SUCCESS);
+        PaymentTransaction inProgress = new PaymentTransaction();
+        inProgress.setId("in-progress-id");
+        inProgress.setProvider("MOCK");
+        inProgress.setProviderTransactionId("provider-2");
+        inProgress.setStatus(PaymentStatus.IN_PROGRESS);
+        when(paymentTransactionRepository.findByProviderTransactionIdIn(anyCollection()))
+                .thenReturn(Arrays.asList(completed, inProgress));
+
+        int applied = paymentService.applyProviderStatusUpdates(Arrays.asList(
+                new ProviderStatusUpdate("provider-1", PaymentStatus.IN_PROGRESS, null, "MOCK"),
+                new ProviderStatusUpdate("provider-2", PaymentStatus.FAILED, "Insufficient float", "MOCK")));
+
+        assertEquals(1, applied);
+        assertEquals(PaymentStatus.SUCCESS, completed.getStatus());
+        assertEquals(PaymentStatus.FAILED, inProgress.getStatus());
+        assertEquals("Insufficient float", inProgress.getFailureReason());
+        verify(paymentTransactionRepository, times(1)).findByProviderTransactionIdIn(anyCollection());
+        verify(paymentTransactionRepository, never()).save(any(PaymentTransaction.class)); // Flushed at commit
+        verify(notificationOutboxService, times(1)).enqueue(inProgress, PaymentStatus.FAILED);
+        verify(notificationOutboxService, never()).enqueue(completed, PaymentStatus.IN_PROGRESS);
+    }
+
+    @Test
+    void testApplyProviderStatusUpdates_MatchesOnProviderAndProviderTransactionId() {
+        PaymentTransaction mock = new PaymentTransaction();
+        mock.setId("mock-id");
+        mock.setProvider("MOCK");
+        mock.setProviderTransactionId("shared-1");
+        mock.setStatus(PaymentStatus.IN_PROGRESS);
+        PaymentTransaction mpesa = new PaymentTransaction();
+        mpesa.setId("mpesa-id");
+        mpesa.setProvider("MPESA");
+        mpesa.setProviderTransactionId("shared-1");
+        mpesa.setStatus(PaymentStatus.IN_PROGRESS);
+        when(paymentTransactionRepository.findByProviderTransactionIdIn(anyCollection()))
+                .thenReturn(Arrays.asList(mock, mpesa));
+        Set<String> unmatched = new HashSet<>();
+        Set<String> misdirected = new HashSet<>();
+
+        int applied = paymentService.applyProviderStatusUpdates(Arrays.asList(
+                new ProviderStatusUpdate("shared-1", PaymentStatus.SUCCESS, null, "MOCK"),
+                new ProviderStatusUpdate("shared-1", PaymentStatus.FAILED, "Invalid account", "MPESA"),
+                new ProviderStatusUpdate("shared-1", PaymentStatus.SUCCESS, null, "AIRTEL_MONEY")), unmatched, misdirected);
+
+        assertEquals(2, applied);
+        assertEquals(PaymentStatus.SUCCESS, mock.getStatus());
+        assertEquals(PaymentStatus.FAILED, mpesa.getStatus());
+        assertEquals(Collections.singleton("shared-1"), misdirected);
+        assertTrue(unmatched.isEmpty());
+    }
+
+    @Test
+    void testApplyProviderStatusUpdates_RetriesAfterLosingVersionCheck() {
+        PaymentTransaction stale = new PaymentTransaction();
+        stale.setId("raced-id");
+        stale.setProvider("MOCK");
+        stale.setProviderTransactionId("provider-1");
+        stale.setStatus(PaymentStatus.IN_PROGRESS);
+        PaymentTransaction reread = new PaymentTransaction();
+        reread.setId("raced-id");
+        reread.setProvider("MOCK");
+        reread.setProviderTransactionId("provider-1");
+        reread.setStatus(PaymentStatus.FAILED);
+        when(paymentTransactionRepository.findByProviderTransactionIdIn(anyCollection()))
+                .thenReturn(Collections.singletonList(stale))
+                .thenReturn(Collections.singletonList(reread));
+        // The first commit finds the row changed by another instance
+        doThrow(new ObjectOptimisticLockingFailureException(PaymentTransaction.class, "raced-id"))
+                .doNothing()
+                .when(transactionManager).commit(any());
+
+        int applied = paymentService.applyProviderStatusUpdates(Collections.singletonList(
+                new ProviderStatusUpdate("provider-1", PaymentStatus.SUCCESS, null, "MOCK")));
+
+        // Re-read as FAILED on the second attempt, so SUCCESS is no longer a legal transition
+        assertEquals(0, applied);
+        assertEquals(PaymentStatus.FAILED, reread.getStatus());
+        verify(paymentTransactionRepository, times(2)).findByProviderTransactionIdIn(anyCollection());
+        verify(notificationOutboxService, times(1)).enqueue(stale, PaymentStatus.SUCCESS);
+        verify(notificationOutboxService, never()).enqueue(reread, PaymentStatus.SUCCESS);
+    }
 
     @Test
     void testGetPaymentStatus_Found() {
@@ -147,11 +469,27 @@ class PaymentServiceTest {
 
         when(paymentTransactionRepository.findById(transactionId)).thenReturn(Optional.of(transaction));
 
-        Optional<PaymentTransaction> result = paymentService.getPaymentStatus(transactionId);
+        Optional<PaymentStatusView> result = paymentService.getPaymentStatus(transactionId);
 
         assertTrue(result.isPresent());
         assertEquals(PaymentStatus.SUCCESS, result.get().getStatus());
         verify(paymentTransactionRepository, times(1)).findById(transactionId);
+        verify(paymentStatusCache, times(1)).put(any(PaymentStatusView.class));
+    }
+
+    @Test
+    void testGetPaymentStatus_CacheHitSkipsRepository() {
+        String transactionId = "cached-id";
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId(transactionId);
+        transaction.setStatus(PaymentStatus.SUCCESS);
+        when(paymentStatusCache.get(transactionId)).thenReturn(PaymentStatusView.of(transaction));
+
+        Optional<PaymentStatusView> result = paymentService.getPaymentStatus(transactionId);
+
+        assertTrue(result.isPresent());
+        assertEquals(PaymentStatus.SUCCESS, result.get().getStatus());
+        verify(paymentTransactionRepository, never()).findById(anyString());
     }
 
     @Test
@@ -159,10 +497,27 @@ class PaymentServiceTest {
         String transactionId = "non-existent-id";
         when(paymentTransactionRepository.findById(transactionId)).thenReturn(Optional.empty());
 
-        Optional<PaymentTransaction> result = paymentService.getPaymentStatus(transactionId);
+        Optional<PaymentStatusView> result = paymentService.getPaymentStatus(transactionId);
 
         assertFalse(result.isPresent());
         verify(paymentTransactionRepository, times(1)).findById(transactionId);
+        verify(archivedPaymentTransactionRepository, times(1)).findStatusById(transactionId);
+    }
+
+    @Test
+    void testGetPaymentStatus_FallsBackToArchive() {
+        String transactionId = "archived-id";
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId(transactionId);
+        transaction.setStatus(PaymentStatus.FAILED);
+        when(paymentTransactionRepository.findById(transactionId)).thenReturn(Optional.empty());
+        when(archivedPaymentTransactionRepository.findStatusById(transactionId)).thenReturn(Optional.of(PaymentStatusView.of(transaction)));
+
+        Optional<PaymentStatusView> result = paymentService.getPaymentStatus(transactionId);
+
+        assertTrue(result.isPresent());
+        assertEquals(PaymentStatus.FAILED, result.get().getStatus());
+        verify(paymentStatusCache, times(1)).put(result.get());
     }
 }
 
@@ -0,0 +1,186 @@
+package com.finsense;
+
+import com.finsense.config.StatusUpdateProperties;
+import com.finsense.model.CurrencyCode;
+import com.finsense.model.Money;
+import com.finsense.model.NotificationOutbox;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.PaymentStatusEvent;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.model.ProviderStatusUpdate;
+import com.finsense.repository.NotificationOutboxRepository;
+import com.finsense.repository.ArchivedPaymentTransactionRepository;
+import com.finsense.repository.PaymentTransactionRepository;
+import com.finsense.service.NotificationOutboxService;
+import com.finsense.service.PaymentDispatcher;
+import com.finsense.service.PaymentService;
+import com.finsense.service.PaymentStatusCache;
+import com.finsense.service.PaymentStatusEventLog;
+import com.finsense.service.routing.ProviderRegistry;
+import com.finsense.service.routing.ProviderRouter;
+import com.finsense.util.PaymentIdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Thousands of conflicting provider status updates raced through two {@link PaymentService} instances that
+ * share the database but not their locks, as two nodes would. Every payment must end in exactly one legal
+ * transition, whichever update committed first.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PaymentStatusConcurrencyTest {
+
+    private static final int PAYMENTS = 200;
+    private static final int UPDATES_PER_PAYMENT = 20;
+    private static final int BATCH_SIZE = 10;
+    private static final int THREADS_PER_INSTANCE = 8;
+    private static final PaymentStatus[] STATUSES = {PaymentStatus.SUCCESS, PaymentStatus.IN_PROGRESS,
+            PaymentStatus.FAILED, PaymentStatus.PENDING, PaymentStatus.CANCELLED};
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentTransactionRepository paymentTransactionRepository;
+
+    @Autowired
+    private ArchivedPaymentTransactionRepository archivedPaymentTransactionRepository;
+
+    @Autowired
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Autowired
+    private PaymentStatusEventLog paymentStatusEventLog;
+
+    @Autowired
+    private ProviderRegistry providerRegistry;
+
+    @Autowired
+    private ProviderRouter providerRouter;
+
+    @Autowired
+    private NotificationOutboxService notificationOutboxService;
+
+    @Autowired
+    private PaymentDispatcher paymentDispatcher;
+
+    @Autowired
+    private PaymentStatusCache paymentStatusCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PaymentIdGenerator paymentIdGenerator;
+
+    @BeforeEach
+    void setUp() {
+        paymentTransactionRepository.deleteAll();
+        notificationOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void testConflictingProviderUpdates_OneTransitionPerPayment() throws Exception {
+        List<PaymentTransaction> seeded = new ArrayList<>(PAYMENTS);
+        for (int i = 0; i < PAYMENTS; i++) {
+            PaymentTransaction transaction = new PaymentTransaction();
+            transaction.setId("race-" + i);
+            transaction.setRecipientPhoneNumber("+254712345678");
+            transaction.setAmount(Money.of(BigDecimal.valueOf(100), CurrencyCode.KES));
+            transaction.setProvider("MOCK");
+            transaction.setProviderTransactionId("MOCK_race_" + i);
+            transaction.setStatus(PaymentStatus.IN_PROGRESS);
+            transaction.setCreatedAt(LocalDateTime.now());
+            transaction.setUpdatedAt(LocalDateTime.now());
+            seeded.add(transaction);
+        }
+        paymentTransactionRepository.saveAll(seeded);
+
+        // Every payment gets both SUCCESS and FAILED, plus regressions, in random order across all workers
+        List<ProviderStatusUpdate> updates = new ArrayList<>(PAYMENTS * UPDATES_PER_PAYMENT);
+        for (int i = 0; i < PAYMENTS; i++) {
+            for (int k = 0; k < UPDATES_PER_PAYMENT; k++) {
+                updates.add(new ProviderStatusUpdate("MOCK_race_" + i, STATUSES[k % STATUSES.length], "attempt " + k, "MOCK"));
+            }
+        }
+        Collections.shuffle(updates, new Random(42));
+
+        PaymentService otherInstance = new PaymentService(paymentTransactionRepository, archivedPaymentTransactionRepository,
+                providerRegistry, providerRouter, notificationOutboxService, paymentDispatcher, paymentStatusCache, eventPublisher,
+                transactionManager, paymentIdGenerator, new StatusUpdateProperties());
+        AtomicInteger applied = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_PER_INSTANCE * 2);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int from = 0, n = 0; from < updates.size(); from += BATCH_SIZE, n++) {
+                List<ProviderStatusUpdate> batch = updates.subList(from, from + BATCH_SIZE);
+                PaymentService instance = n % 2 == 0 ? paymentService : otherInstance;
+                workers.add(executor.submit(() -> {
+                    // Re-submitted when every attempt lost to the other instance, as ProviderCallbackQueue does
+                    while (true) {
+                        try {
+                            applied.addAndGet(instance.applyProviderStatusUpdates(batch));
+                            return;
+                        } catch (OptimisticLockingFailureException e) {
+                            // Every attempt lost to the other instance; submitted again
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(PAYMENTS, applied.get());
+        Map<String, Long> notifications = notificationOutboxRepository.findAll().stream()
+                .collect(Collectors.groupingBy(NotificationOutbox::getTransactionId, Collectors.counting()));
+        Map<String, PaymentTransaction> rows = paymentTransactionRepository.findAllById(
+                seeded.stream().map(PaymentTransaction::getId).collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(PaymentTransaction::getId, Function.identity()));
+        for (PaymentTransaction transaction : seeded) {
+            PaymentTransaction row = rows.get(transaction.getId());
+            List<PaymentStatusEvent> timeline = paymentStatusEventLog.getTimeline(transaction.getId());
+
+            assertTrue(row.getStatus().isTerminal(), row.getId() + " ended " + row.getStatus());
+            assertEquals(1, timeline.size(), row.getId() + " changed status " + timeline.size() + " times");
+            assertEquals(PaymentStatus.IN_PROGRESS, timeline.get(0).getPreviousStatus());
+            assertEquals(row.getStatus(), timeline.get(0).getStatus());
+            assertEquals(Long.valueOf(1), row.getVersion());
+            assertEquals(Long.valueOf(1), notifications.get(row.getId()));
+        }
+        assertTrue(elapsedMs < TimeUnit.SECONDS.toMillis(60), "Took " + elapsedMs + " ms");
+    }
+}
@@ -0,0 +1,92 @@
+package com.finsense;
+
+import com.finsense.config.CallbackProperties;
+import com.finsense.model.PaymentStatus;
+import com.finsense.model.ProviderStatusUpdate;
+import com.finsense.model.ProviderType;
+import com.finsense.service.PaymentService;
+import com.finsense.service.ProviderCallbackQueue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProviderCallbackQueueTest {
+
+    private PaymentService paymentService;
+    private CallbackProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private ProviderCallbackQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        paymentService = mock(PaymentService.class);
+        properties = new CallbackProperties();
+        properties.setMaxAttempts(3);
+        properties.setInitialBackoffMs(60000);
+        meterRegistry = new SimpleMeterRegistry();
+        queue = new ProviderCallbackQueue(paymentService, properties, meterRegistry);
+    }
+
+    @Test
+    void testFailedBatchBacksOffAndIsDroppedAfterMaxAttempts() {
+        when(paymentService.applyProviderStatusUpdates(anyCollection(), anySet(), anySet()))
+                .thenThrow(new DataAccessResourceFailureException("Connection lost"));
+        queue.submit(ProviderType.MOCK, Arrays.asList(new ProviderStatusUpdate("MOCK_1", PaymentStatus.SUCCESS, null, "MOCK"),
+                new ProviderStatusUpdate("MOCK_2", PaymentStatus.FAILED, "Invalid account", "MOCK")));
+
+        queue.flush();
+        assertEquals(2, queue.size());
+        // Scheduled flushes wait out the backoff
+        queue.scheduledFlush();
+        verify(paymentService, times(1)).applyProviderStatusUpdates(anyCollection(), anySet(), anySet());
+
+        queue.flush();
+        assertEquals(2, queue.size());
+        queue.flush();
+        assertEquals(0, queue.size());
+        verify(paymentService, times(3)).applyProviderStatusUpdates(anyCollection(), anySet(), anySet());
+        assertEquals(2.0, meterRegistry.counter("callback.updates.dropped").count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUnmatchedUpdatesCounted() {
+        when(paymentService.applyProviderStatusUpdates(anyCollection(), anySet(), anySet())).thenAnswer(invocation -> {
+            ((Set<String>) invocation.getArgument(1)).add("MOCK_unknown");
+            return 1;
+        });
+        queue.submit(ProviderType.MOCK, Arrays.asList(new ProviderStatusUpdate("MOCK_1", PaymentStatus.SUCCESS, null, "MOCK"),
+                new ProviderStatusUpdate("MOCK_unknown", PaymentStatus.SUCCESS, null, "MOCK")));
+
+        queue.scheduledFlush();
+
+        assertEquals(0, queue.size());
+        assertEquals(1.0, meterRegistry.counter("callback.updates.unmatched").count());
+        assertEquals(0.0, meterRegistry.counter("callback.updates.dropped").count());
+        queue.submit(ProviderType.MOCK, Collections.singletonList(new ProviderStatusUpdate("MOCK_2", PaymentStatus.SUCCESS, null, "MOCK")));
+        queue.flush();
+        assertEquals(2.0, meterRegistry.counter("callback.updates.unmatched").count());
+    }
+
+    @Test
+    void testSameTransactionIdFromTwoProvidersQueuedApart() {
+        queue.submit(ProviderType.MOCK, Collections.singletonList(new ProviderStatusUpdate("TX_1", PaymentStatus.SUCCESS, null, null)));
+        queue.submit(ProviderType.MPESA, Collections.singletonList(new ProviderStatusUpdate("TX_1", PaymentStatus.FAILED, null, null)));
+        queue.submit(ProviderType.MOCK, Collections.singletonList(new ProviderStatusUpdate("TX_1", PaymentStatus.SUCCESS, null, null)));
+
+        assertEquals(2, queue.size());
+    }
+}
@@ -0,0 +1,159 @@
+package com.finsense;
+
+import com.finsense.exception.ExternalApiException;
+import com.finsense.model.PaymentTransaction;
+import com.finsense.service.MobileMoneyService;
+import com.finsense.service.resilience.AdaptiveConcurrencyLimit;
+import com.finsense.service.resilience.CircuitBreaker;
+import com.finsense.service.resilience.ProviderUnavailableException;
+import com.finsense.service.resilience.ResilientMobileMoneyService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProviderResilienceTest {
+
+    @Test
+    void testCircuitOpensOnFailuresAndRecoversThroughHalfOpenProbes() {
+        AtomicLong clock = new AtomicLong();
+        LatencyInjectingProvider provider = new LatencyInjectingProvider("MPESA", 0);
+        ResilientMobileMoneyService resilient = new ResilientMobileMoneyService(provider,
+                new CircuitBreaker(10, 10, 50, 10000, 2, clock::get),
+                new AdaptiveConcurrencyLimit(10, 1, 10, 0.9, 2.0, 1000), 0, clock::get);
+
+        provider.failing = true;
+        for (int i = 0; i < 10; i++) {
+            assertThrows(ExternalApiException.class, () -> resilient.initiateB2CPayment(new PaymentTransaction()));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, resilient.getCircuitBreaker().getState());
+
+        // Open: fails fast without reaching the provider
+        provider.failing = false;
+        assertThrows(ProviderUnavailableException.class, () -> resilient.initiateB2CPayment(new PaymentTransaction()));
+        assertEquals(10, provider.calls.get());
+
+        // After the open period two probes are let through and close the circuit
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        resilient.initiateB2CPayment(new PaymentTransaction());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, resilient.getCircuitBreaker().getState());
+        resilient.initiateB2CPayment(new PaymentTransaction());
+        assertEquals(CircuitBreaker.State.CLOSED, resilient.getCircuitBreaker().getState());
+        assertEquals(12, provider.calls.get());
+    }
+
+    @Test
+    void testConcurrencyLimitBacksOffWhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 2, 100, 0.5, 2.0, 1000);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.onSuccess(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertEquals(20, limit.getLimit());
+
+        assertTrue(limit.tryAcquire());
+        limit.onSuccess(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(10, limit.getLimit());
+
+        assertTrue(limit.tryAcquire());
+        limit.onDropped();
+        assertEquals(5, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void testSlowProviderIsBulkheadedFromHealthyOne() throws Exception {
+        LatencyInjectingProvider slow = new LatencyInjectingProvider("MPESA", 300);
+        LatencyInjectingProvider healthy = new LatencyInjectingProvider("AIRTEL_MONEY", 0);
+        ResilientMobileMoneyService slowResilient = resilient(slow, 4);
+        ResilientMobileMoneyService healthyResilient = resilient(healthy, 4);
+
+        ExecutorService callers = Executors.newFixedThreadPool(10);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(callers.submit(() -> {
+                    start.await();
+                    return slowResilient.initiateB2CPayment(new PaymentTransaction());
+                }));
+            }
+            start.countDown();
+
+            // While MPESA is saturated, the other provider still answers immediately
+            assertNotNull(healthyResilient.initiateB2CPayment(new PaymentTransaction()));
+
+            int succeeded = 0;
+            int rejected = 0;
+            for (Future<String> result : results) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                    succeeded++;
+                } catch (java.util.concurrent.ExecutionException e) {
+                    assertTrue(e.getCause() instanceof ProviderUnavailableException);
+                    rejected++;
+                }
+            }
+            assertEquals(4, succeeded);
+            assertEquals(6, rejected);
+            assertEquals(4, slow.maxConcurrent.get());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private static ResilientMobileMoneyService resilient(MobileMoneyService provider, int limit) {
+        return new ResilientMobileMoneyService(provider, new CircuitBreaker(20, 10, 50, 10000, 3, System::nanoTime),
+                new AdaptiveConcurrencyLimit(limit, limit, limit, 0.9, 2.0, 1000), 0, System::nanoTime);
+    }
+
+    private static final class LatencyInjectingProvider implements MobileMoneyService {
+        private final String providerType;
+        private final long latencyMs;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+        private volatile boolean failing;
+
+        LatencyInjectingProvider(String providerType, long latencyMs) {
+            this.providerType = providerType;
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public String initiateB2CPayment(PaymentTransaction transaction) {
+            calls.incrementAndGet();
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            if (failing) {
+                throw new ExternalApiException(providerType + " timed out");
+            }
+            return providerType + "_" + calls.get();
+        }
+
+        @Override
+        public PaymentTransaction checkPaymentStatus(String providerTransactionId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getProviderType() {
+            return providerType;
+        }
+    }
+}